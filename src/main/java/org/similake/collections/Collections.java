@@ -1,5 +1,6 @@
 package org.similake.collections;
 
+import org.similake.collections.config.CollectionConfig;
 import org.similake.model.Distance;
 import org.similake.model.Point;
 import org.similake.model.VectorStore;
@@ -23,6 +24,11 @@ public class Collections {
         collectionMap.put(storeName, vectorStore);
     }
 
+    // Create and add a new VectorStore from a full collection config, including its index settings
+    public void addVectorStore(String storeName, CollectionConfig config) {
+        collectionMap.put(storeName, new VectorStore(config));
+    }
+
     // Get all VectorStores
     public Map<String, VectorStore> getAllVectorStores() {
         return collectionMap;
@@ -1,7 +1,12 @@
 package org.similake.collections.config;
 
 import org.similake.model.Distance;
+import org.similake.model.IndexType;
+import org.similake.model.Quantization;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public class CollectionConfig implements java.io.Serializable {
@@ -9,6 +14,15 @@ public class CollectionConfig implements java.io.Serializable {
     private int size;
     private Distance distance;
     private boolean persist;
+    private IndexType indexType = IndexType.Flat;
+    private int hnswM = 16;
+    private int hnswEfConstruction = 200;
+    private Quantization quantization = Quantization.None;
+    private int pqSubvectors = 0;
+    private int quantizationTrainingSize = 1024;
+    private boolean rerank = true;
+    private int oversample = 4;
+    private List<String> rangeIndexFields = new ArrayList<>();
 
     // Constructor
     public CollectionConfig(String collectionName, int size, Distance distance, boolean persist) {
@@ -51,6 +65,85 @@ public class CollectionConfig implements java.io.Serializable {
         this.persist = persist;
     }
 
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
+    public void setIndexType(IndexType indexType) {
+        this.indexType = indexType;
+    }
+
+    // Maximum number of graph neighbours per node on the upper HNSW layers (layer 0 keeps 2 * M)
+    public int getHnswM() {
+        return hnswM;
+    }
+
+    public void setHnswM(int hnswM) {
+        this.hnswM = hnswM;
+    }
+
+    // Size of the candidate list used while inserting into the HNSW graph
+    public int getHnswEfConstruction() {
+        return hnswEfConstruction;
+    }
+
+    public void setHnswEfConstruction(int hnswEfConstruction) {
+        this.hnswEfConstruction = hnswEfConstruction;
+    }
+
+    public Quantization getQuantization() {
+        return quantization;
+    }
+
+    public void setQuantization(Quantization quantization) {
+        this.quantization = quantization;
+    }
+
+    // Number of product-quantization sub-vectors (bytes per code); 0 picks one per 16 dimensions
+    public int getPqSubvectors() {
+        return pqSubvectors;
+    }
+
+    public void setPqSubvectors(int pqSubvectors) {
+        this.pqSubvectors = pqSubvectors;
+    }
+
+    // Number of points buffered at full precision before the quantizer is trained
+    public int getQuantizationTrainingSize() {
+        return quantizationTrainingSize;
+    }
+
+    public void setQuantizationTrainingSize(int quantizationTrainingSize) {
+        this.quantizationTrainingSize = quantizationTrainingSize;
+    }
+
+    // Whether quantized candidates are rescored against the original vectors (keeps them in memory)
+    public boolean isRerank() {
+        return rerank;
+    }
+
+    public void setRerank(boolean rerank) {
+        this.rerank = rerank;
+    }
+
+    // Quantized search shortlists limit * oversample candidates for rescoring
+    public int getOversample() {
+        return oversample;
+    }
+
+    public void setOversample(int oversample) {
+        this.oversample = oversample;
+    }
+
+    // Numeric metadata fields that keep a sorted range index for gt/gte/lt/lte filters
+    public List<String> getRangeIndexFields() {
+        return rangeIndexFields;
+    }
+
+    public void setRangeIndexFields(List<String> rangeIndexFields) {
+        this.rangeIndexFields = rangeIndexFields != null ? new ArrayList<>(rangeIndexFields) : new ArrayList<>();
+    }
+
     @Override
     public String toString() {
         return "CollectionConfig{" +
@@ -58,6 +151,15 @@ public class CollectionConfig implements java.io.Serializable {
                 ", size=" + size +
                 ", distance=" + distance +
                 ", persist=" + persist +
+                ", indexType=" + indexType +
+                ", hnswM=" + hnswM +
+                ", hnswEfConstruction=" + hnswEfConstruction +
+                ", quantization=" + quantization +
+                ", pqSubvectors=" + pqSubvectors +
+                ", quantizationTrainingSize=" + quantizationTrainingSize +
+                ", rerank=" + rerank +
+                ", oversample=" + oversample +
+                ", rangeIndexFields=" + rangeIndexFields +
                 '}';
     }
 
@@ -73,6 +175,60 @@ public class CollectionConfig implements java.io.Serializable {
         } catch (IllegalArgumentException e) {
             throw new RuntimeException("Invalid distance metric: " + distanceMetric);
         }
-        return new CollectionConfig(VectorName, size, distanceType, persist);
+        CollectionConfig config = new CollectionConfig(VectorName, size, distanceType, persist);
+
+        // Optional index settings
+        Object indexType = requestBody.get("indexType");
+        if (indexType != null) {
+            try {
+                config.setIndexType(IndexType.valueOf(indexType.toString()));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid index type: " + indexType);
+            }
+        }
+        config.setHnswM(intValue(requestBody, "hnswM", config.getHnswM()));
+        config.setHnswEfConstruction(intValue(requestBody, "hnswEfConstruction", config.getHnswEfConstruction()));
+
+        // Optional quantization settings
+        Object quantization = requestBody.get("quantization");
+        if (quantization != null) {
+            try {
+                config.setQuantization(Quantization.valueOf(quantization.toString()));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid quantization: " + quantization);
+            }
+        }
+        config.setPqSubvectors(intValue(requestBody, "pqSubvectors", config.getPqSubvectors()));
+        config.setQuantizationTrainingSize(intValue(requestBody, "quantizationTrainingSize", config.getQuantizationTrainingSize()));
+        config.setOversample(Math.max(1, intValue(requestBody, "oversample", config.getOversample())));
+        Object rerank = requestBody.get("rerank");
+        if (rerank != null) {
+            config.setRerank(Boolean.parseBoolean(rerank.toString()));
+        }
+
+        // Optional metadata range index fields, as a list or a comma separated string
+        Object rangeIndexFields = requestBody.get("rangeIndexFields");
+        if (rangeIndexFields instanceof Collection<?> fields) {
+            config.setRangeIndexFields(fields.stream().map(Object::toString).map(String::trim).toList());
+        } else if (rangeIndexFields != null) {
+            config.setRangeIndexFields(List.of(rangeIndexFields.toString().trim().split("\\s*,\\s*")));
+        }
+        return config;
+    }
+
+    // Helper method to read an optional integer that may arrive as a number or a string
+    private static int intValue(Map<String, Object> requestBody, String key, int defaultValue) {
+        Object value = requestBody.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid value for " + key + ": " + value);
+        }
     }
 }
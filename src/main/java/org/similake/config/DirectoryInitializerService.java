@@ -23,9 +23,15 @@ public class DirectoryInitializerService {
     @Value("${config.path}")
     private String CONFIG_DIR;
 
+    // Set to false to keep persisted collections, and replay their logs, across restarts
+    @Value("${storage.clean-on-startup:true}")
+    private boolean cleanOnStartup;
+
     @PostConstruct
     public void initDirectories() {
-        cleanAllDirectories();
+        if (cleanOnStartup) {
+            cleanAllDirectories();
+        }
         createDirectoryIfNotExists(COLLECTIONS_DIR);
         createDirectoryIfNotExists(CONFIG_DIR);
     }
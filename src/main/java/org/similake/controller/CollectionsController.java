@@ -1,24 +1,47 @@
 package org.similake.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.similake.collections.Collections;
 import org.similake.collections.config.CollectionConfig;
 import org.similake.creteria.FilterCriteria;
+import org.similake.creteria.FilterPredicate;
+import org.similake.index.Neighbor;
+import org.similake.model.BatchQuery;
 import org.similake.model.Distance;
 import org.similake.model.Payload;
+import org.similake.model.PayloadPage;
 import org.similake.model.Point;
+import org.similake.model.ScoredPoint;
 import org.similake.model.VectorStore;
+import org.similake.persist.IvfVectorStoreService;
 import org.similake.persist.VectorStoreService;
+import org.similake.search.QueryPlan;
+import org.similake.search.QueryPlanner;
+import org.similake.search.SearchExecutor;
 import org.similake.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/collections")
@@ -29,6 +52,30 @@ public class CollectionsController {
 
     private static final Logger logger = LoggerFactory.getLogger(CollectionsController.class);
 
+    // Default HNSW candidate list size when the query does not set ef
+    private static final int DEFAULT_HNSW_EF = 64;
+
+    // Default number of IVF partitions probed when the query does not set nprobe
+    private static final int DEFAULT_IVF_NPROBE = 8;
+
+    // Points of a persisted collection scored for every query of a batch before moving on
+    private static final int PERSISTED_BATCH_BLOCK = 256;
+
+    // Response header describing how a similarity query was executed
+    private static final String QUERY_PLAN_HEADER = "X-Query-Plan";
+
+    // Largest page a payload listing returns
+    private static final int MAX_PAGE_SIZE = 10_000;
+
+    // Media type of the streaming payload export, one JSON object per line
+    private static final String NDJSON = "application/x-ndjson";
+
+    // Cursor kinds: ordinals of in-memory stores and storage positions of persisted collections
+    private static final String IN_MEMORY_CURSOR = "m";
+    private static final String PERSISTED_CURSOR = "p";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
     public CollectionsController() {
         this.collections = new Collections();  // Initialize collections
     }
@@ -36,6 +83,12 @@ public class CollectionsController {
     @Autowired
     private VectorStoreService vectorStoreService;
 
+    @Autowired
+    private SearchExecutor searchExecutor;
+
+    @Autowired
+    private QueryPlanner queryPlanner;
+
     /**
      * Endpoint to create a new VectorStore.
      *
@@ -70,7 +123,7 @@ public class CollectionsController {
             return new ResponseEntity<>(response, HttpStatus.OK);
         } else {
             // Create a new VectorStore and add it to the collections
-            collections.addVectorStore(storeName, size, distanceType);
+            collections.addVectorStore(storeName, config);
         }
 
         // Display all vector stores
@@ -175,9 +228,13 @@ public class CollectionsController {
             }
         }
        // assert vectorStore != null;
-        vectorStore.addPoint(point);
+        try {
+            vectorStore.addPoint(point);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
         logger.info("Payload added to VectorStore: {}", vectorStore);
-        logger.info("Current size of points: {}", vectorStore.getPoints().size());
+        logger.info("Current size of points: {}", vectorStore.pointCount());
         return new ResponseEntity<>("Payload added successfully to " + vectorName, HttpStatus.CREATED);
     }
 
@@ -237,11 +294,16 @@ public class CollectionsController {
             } else {
                 // Add all points to in-memory vector store
                 for (Point point : points) {
-                    vectorStore.addPoint(point);
-                    successCount++;
+                    try {
+                        vectorStore.addPoint(point);
+                        successCount++;
+                    } catch (IllegalArgumentException e) {
+                        failedIds.add(point.getId().toString());
+                        logger.error("Failed to add payload with ID: {}", point.getId(), e);
+                    }
                 }
                 logger.info("Payloads added to VectorStore: {}. Current size of points: {}",
-                        vectorStore, vectorStore.getPoints().size());
+                        vectorStore, vectorStore.pointCount());
             }
 
             // Prepare response message
@@ -268,6 +330,65 @@ public class CollectionsController {
         }
     }
 
+    /**
+     * Endpoint to bulk-load a persisted collection from NDJSON, one payload per line, read as it is streamed.
+     * RocksDB-backed collections sort the payloads into SST files and attach them once the whole body is read, so
+     * an invalid line rejects the import without adding anything; other engines add the payloads one by one.
+     * A payload with the id of an existing point replaces it.
+     *
+     * @param vectorName the name of the persisted vector store
+     * @param body the payloads, one JSON object per line
+     * @return a ResponseEntity with the number of imported payloads or an error message
+     */
+    @PostMapping(value = "/{vectorName}/payloads/import", consumes = NDJSON)
+    public ResponseEntity<String> importPayloads(
+            @PathVariable("vectorName") String vectorName,
+            InputStream body) {
+        logger.info("Import request received for vector store: {}", vectorName);
+        if (collections.getVectorStoreByName(vectorName) != null) {
+            return new ResponseEntity<>("Imports are only available for persisted collections", HttpStatus.BAD_REQUEST);
+        }
+        CollectionConfig config = vectorStoreService.fetchVectorFromStorage(vectorName);
+        if (config == null) {
+            return new ResponseEntity<>("Vector store not found: " + vectorName, HttpStatus.NOT_FOUND);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        int[] lineNumber = new int[1];
+        Stream<Point> points = reader.lines()
+                .peek(line -> lineNumber[0]++)
+                .filter(line -> !line.isBlank())
+                .map(line -> toImportedPoint(line, lineNumber[0], config.getSize()));
+        try {
+            long imported = vectorStoreService.importPoints(vectorName, points);
+            return new ResponseEntity<>("Imported " + imported + " payloads into " + vectorName, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            logger.error("Error importing payloads into {}", vectorName, e);
+            return new ResponseEntity<>("Error importing payloads: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private Point toImportedPoint(String line, int lineNumber, int dimension) {
+        Payload payload;
+        try {
+            payload = mapper.readValue(line, Payload.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid payload on line " + lineNumber + ": " + e.getOriginalMessage());
+        }
+        if (payload.getId() == null) {
+            throw new IllegalArgumentException("Payload on line " + lineNumber + " has no id");
+        }
+        if (payload.getEmbedding() == null || payload.getEmbedding().length != dimension) {
+            throw new IllegalArgumentException("Payload on line " + lineNumber + " must have an embedding of size " + dimension);
+        }
+        try {
+            return new Point(UUID.fromString(payload.getId()), payload.getContent(), payload.getEmbedding(), payload.getMetadata());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid payload id on line " + lineNumber + ": " + payload.getId());
+        }
+    }
+
     @GetMapping("/{vectorName}/payloads")
     public ResponseEntity<List<Payload>> getAllPayloads(
             @PathVariable("vectorName") String vectorName,
@@ -281,24 +402,142 @@ public class CollectionsController {
             Map<String, VectorStore> allVectorStores2 = getAllVectorStores2();
             if (allVectorStores2.containsKey(vectorName)) {
                 List<Point> allPointsFromVectorStore = vectorStoreService.getAllPointsFromVectorStore(vectorName);
+                FilterPredicate predicate = FilterPredicate.compile(filters);
                 List<Payload> payloads = allPointsFromVectorStore.stream()
-                        .map(point -> new Payload(point.getId().toString(), point.getMetadata(),
-                                point.getContent(), List.of(), point.getVector()))
-                        .filter(point -> Utils.filterPayload(point, filters))
+                        .filter(point -> predicate.test(point.getMetadata()))
+                        .map(CollectionsController::toPayload)
                         .collect(Collectors.toList());
                 return new ResponseEntity<>(payloads, HttpStatus.OK);
             }
         }
 
         assert vectorStore != null;
-        List<Payload> payloads = vectorStore.getPoints().stream()
-                .map(point -> new Payload(point.getId().toString(), point.getMetadata(),
-                        point.getContent(), List.of(), point.getVector()))
-                .filter(point -> Utils.filterPayload(point, filters))
+        List<Payload> payloads = filteredOrdinals(vectorStore, filters, 0)
+                .mapToObj(vectorStore::toPayload)
                 .collect(Collectors.toList());
         return new ResponseEntity<>(payloads, HttpStatus.OK);
     }
 
+    /**
+     * Returns one page of the filtered payloads in storage order. Passing the nextCursor of a page back as cursor
+     * continues after its last payload; nextCursor is null on the last page. Cursors stay valid while points are added.
+     */
+    @GetMapping(value = "/{vectorName}/payloads", params = "limit")
+    public ResponseEntity<PayloadPage> getPayloadPage(
+            @PathVariable("vectorName") String vectorName,
+            @RequestParam("limit") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam MultiValueMap<String, String> metadata) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<FilterCriteria> filters = convertToFilterCriteria(metadata);
+        VectorStore vectorStore = collections.getVectorStoreByName(vectorName);
+        try {
+            if (vectorStore != null) {
+                return ResponseEntity.ok(inMemoryPage(vectorStore, filters, limit, cursor));
+            }
+            if (vectorStoreService.fetchVectorFromStorage(vectorName) == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(persistedPage(vectorName, filters, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid cursor for {}: {}", vectorName, cursor);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams the filtered payloads as NDJSON, one object per line, writing each row as storage is read so that
+     * exports of any size run in constant memory.
+     */
+    @GetMapping(value = "/{vectorName}/payloads", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamPayloads(
+            @PathVariable("vectorName") String vectorName,
+            @RequestParam MultiValueMap<String, String> metadata) {
+        List<FilterCriteria> filters = convertToFilterCriteria(metadata);
+        VectorStore vectorStore = collections.getVectorStoreByName(vectorName);
+        StreamingResponseBody body;
+        if (vectorStore != null) {
+            body = out -> {
+                PrimitiveIterator.OfInt ordinals = filteredOrdinals(vectorStore, filters, 0).iterator();
+                while (ordinals.hasNext()) {
+                    writeLine(out, vectorStore.toPayload(ordinals.nextInt()));
+                }
+            };
+        } else if (vectorStoreService.fetchVectorFromStorage(vectorName) != null) {
+            FilterPredicate predicate = FilterPredicate.compile(filters);
+            body = out -> vectorStoreService.scanPoints(vectorName, null, point -> {
+                if (predicate.test(point.getMetadata())) {
+                    try {
+                        writeLine(out, toPayload(point));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return true;
+            });
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private static PayloadPage inMemoryPage(VectorStore vectorStore, List<FilterCriteria> filters, int limit, String cursor) {
+        String position = decodeCursor(cursor, IN_MEMORY_CURSOR);
+        int from = position == null ? 0 : Integer.parseInt(position);
+        if (from < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        // One ordinal past the page tells whether another page follows, and where it starts
+        int[] ordinals = filteredOrdinals(vectorStore, filters, from).limit(limit + 1L).toArray();
+        int size = Math.min(limit, ordinals.length);
+        List<Payload> payloads = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            payloads.add(vectorStore.toPayload(ordinals[i]));
+        }
+        String nextCursor = ordinals.length > limit ? encodeCursor(IN_MEMORY_CURSOR, Integer.toString(ordinals[limit])) : null;
+        return new PayloadPage(payloads, nextCursor);
+    }
+
+    private PayloadPage persistedPage(String vectorName, List<FilterCriteria> filters, int limit, String cursor) {
+        FilterPredicate predicate = FilterPredicate.compile(filters);
+        List<Payload> payloads = new ArrayList<>(limit);
+        String next = vectorStoreService.scanPoints(vectorName, decodeCursor(cursor, PERSISTED_CURSOR), point -> {
+            if (predicate.test(point.getMetadata())) {
+                payloads.add(toPayload(point));
+            }
+            return payloads.size() < limit;
+        });
+        return new PayloadPage(payloads, encodeCursor(PERSISTED_CURSOR, next));
+    }
+
+    // Cursors are the kind of store plus its resume position, Base64-encoded so that clients treat them as opaque
+    private static String encodeCursor(String kind, String position) {
+        if (position == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((kind + ":" + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns the resume position of a cursor, or null for the first page; throws IllegalArgumentException if invalid
+    private static String decodeCursor(String cursor, String kind) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (!decoded.startsWith(kind + ":")) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return decoded.substring(kind.length() + 1);
+    }
+
+    private void writeLine(OutputStream out, Payload payload) throws IOException {
+        out.write(mapper.writeValueAsBytes(payload));
+        out.write('\n');
+    }
+
     private List<FilterCriteria> convertToFilterCriteria(MultiValueMap<String, String> metadata) {
         List<FilterCriteria> filters = new ArrayList<>();
 
@@ -360,98 +599,479 @@ public class CollectionsController {
         }
     }
 
-    /* Endpoint to calculate cosine similarity between a query vector and all vectors in a store.
-     * Calculates the cosine similarity between two vectors.
+    /**
+     * Endpoint to delete one point of a persisted collection.
+     * Supported by the segment and RocksDB storage engines; JSONL files and in-memory collections are append-only.
+     *
+     * @param vectorName the name of the persisted vector store
+     * @param pointId the id of the point to delete
+     * @return a ResponseEntity with a confirmation or an error message
+     */
+    @DeleteMapping("/{vectorName}/points/{pointId}")
+    public ResponseEntity<String> deletePoint(
+            @PathVariable("vectorName") String vectorName,
+            @PathVariable("pointId") String pointId) {
+        logger.info("Request received to delete point {} from vector store: {}", pointId, vectorName);
+        if (collections.getVectorStoreByName(vectorName) != null) {
+            return new ResponseEntity<>("Points cannot be deleted from in-memory collections", HttpStatus.BAD_REQUEST);
+        }
+        if (vectorStoreService.fetchVectorFromStorage(vectorName) == null) {
+            return new ResponseEntity<>("Vector store not found: " + vectorName, HttpStatus.NOT_FOUND);
+        }
+        UUID id;
+        try {
+            id = UUID.fromString(pointId);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Invalid point id: " + pointId, HttpStatus.BAD_REQUEST);
+        }
+        try {
+            if (!vectorStoreService.deletePoint(vectorName, id)) {
+                return new ResponseEntity<>("Point not found: " + pointId, HttpStatus.NOT_FOUND);
+            }
+        } catch (UnsupportedOperationException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>("Point deleted successfully from " + vectorName, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to (re)train the IVF index of a persisted collection.
+     * Clusters the collection's vectors into nlist partitions and writes one posting list per partition.
+     *
+     * @param vectorName the name of the persisted vector store
+     * @param nlist optional number of partitions (default: square root of the number of points)
+     * @return a ResponseEntity with a summary of the trained index or an error message
+     */
+    @PostMapping("/{vectorName}/index/ivf")
+    public ResponseEntity<String> trainIvfIndex(
+            @PathVariable("vectorName") String vectorName,
+            @RequestParam(defaultValue = "0") int nlist) {
+        logger.info("Request received to train IVF index for vector store: {}", vectorName);
+        if (vectorStoreService.fetchVectorFromStorage(vectorName) == null) {
+            return new ResponseEntity<>("Persisted vector store not found: " + vectorName, HttpStatus.NOT_FOUND);
+        }
+        if (!(vectorStoreService instanceof IvfVectorStoreService ivfService)) {
+            return new ResponseEntity<>("IVF index is only available for JSONL-persisted collections",
+                    HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(ivfService.trainIvfIndex(vectorName, nlist), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /* Endpoint to calculate the similarity between a query vector and all vectors in a store.
+     * Scores use the collection's distance: Cosine and Dot return similarities, sorted in descending order,
+     * Euclidean and Manhattan return distances, sorted in ascending order.
      * Cosine similarity = (A·B)/(||A||×||B||)
      * where A·B is the dot product and ||A||, ||B|| are the magnitudes.
-     * Returns vectors sorted by similarity score in descending order.
      * @param vectorName the name of the vector store to search in
      * @param payload (float[]) the query payload containing the vector to compare against
      * @param limit optional parameter to limit the number of results (default: 10)
-     * @param threshold optional parameter to filter results below a similarity threshold (default: 0.0)
+     * @param threshold optional minimum similarity for Cosine and Dot (default: 0.0), or maximum distance for Euclidean and Manhattan (default: none)
      * @param metadata optional parameter for filtering payloads based on metadata
-     * @return ResponseEntity containing list of PayloadSimilarity objects
+     * @param ef optional HNSW candidate list size for indexed collections (default: 64)
+     * @param nprobe optional number of IVF partitions to read for persisted collections with a trained IVF index (default: 8)
+     * @param exact optional flag to bypass the HNSW and IVF indexes and scan every point (default: false)
+     * @return ResponseEntity containing list of PayloadSimilarity objects, with the chosen plan in the X-Query-Plan header
      */
     @PostMapping("/{vectorName}/similarity")
     public ResponseEntity<List<PayloadSimilarity>> calculateCosineSimilarity(
             @PathVariable("vectorName") String vectorName,
             @RequestBody float[] embedding,
             @RequestParam(defaultValue = "10") int limit,
-            @RequestParam(defaultValue = "0.0") double threshold,
-            @RequestParam MultiValueMap<String, String> metadata) {
+            @RequestParam(required = false) Double threshold,
+            @RequestParam MultiValueMap<String, String> metadata,
+            @RequestParam(required = false) Integer ef,
+            @RequestParam(required = false) Integer nprobe,
+            @RequestParam(defaultValue = "false") boolean exact) {
 
-        logger.info("Calculating cosine similarity for vector store: {} with metadata filters", vectorName);
+        logger.info("Calculating similarity for vector store: {} with metadata filters", vectorName);
 
         try {
+            // In-memory collections are scanned in place; the HNSW index or quantized codes are used
+            // when the collection has them, unless an exact scan was requested
+            VectorStore searchableStore = findSearchableVectorStore(vectorName, exact);
+            if (searchableStore != null) {
+                Distance metric = metricOf(searchableStore.getDistanceType());
+                List<FilterCriteria> filters = convertToFilterCriteria(metadata);
+                QueryPlan plan = queryPlanner.plan(searchableStore, filters, limit, exact);
+                List<PayloadSimilarity> results = searchVectorStore(searchableStore, embedding, limit, minScore(metric, threshold),
+                        ef != null ? ef : DEFAULT_HNSW_EF, exact, filters, plan);
+                logger.info("Found {} similar vectors above threshold {} in store {} with plan {}",
+                        results.size(), threshold, vectorName, plan);
+                return ResponseEntity.ok().header(QUERY_PLAN_HEADER, plan.toString()).body(results);
+            }
 
-            // Get query vector
-
-            // Get all payloads with applied filters
-            List<Payload> filteredPayloads = getAllPayloadsForSimilarity(vectorName, metadata);
+            CollectionConfig config = vectorStoreService.fetchVectorFromStorage(vectorName);
+            if (config == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            Distance metric = persistedMetric(config, embedding);
+            FilterPredicate predicate = FilterPredicate.compile(convertToFilterCriteria(metadata));
+
+            // Storage engines that can read their vectors in place score them without materializing points
+            List<ScoredPoint> stored = vectorStoreService.searchStoredVectors(vectorName, embedding, limit,
+                    minScore(metric, threshold), metric, predicate);
+            if (stored != null) {
+                QueryPlan plan = new QueryPlan(QueryPlan.Strategy.STORED_VECTOR_SCAN, 0, 1, limit);
+                List<PayloadSimilarity> results = toSimilarities(stored, metric);
+                logger.info("Found {} similar vectors above threshold {} in store {} with plan {}",
+                        results.size(), threshold, vectorName, plan);
+                return ResponseEntity.ok().header(QUERY_PLAN_HEADER, plan.toString()).body(results);
+            }
 
-            if (filteredPayloads.isEmpty()) {
-                logger.warn("No payloads found in vector store {} with given filters", vectorName);
-                return new ResponseEntity<>(List.of(), HttpStatus.OK);
+            // Persisted collections with a trained IVF index only read the nprobe closest partitions
+            List<Point> candidates = exact ? null
+                    : getIvfCandidates(vectorName, embedding, nprobe != null ? nprobe : DEFAULT_IVF_NPROBE);
+            QueryPlan.Strategy strategy = QueryPlan.Strategy.IVF_PROBE;
+            if (candidates == null) {
+                candidates = vectorStoreService.getAllPointsFromVectorStore(vectorName);
+                strategy = QueryPlan.Strategy.PERSISTED_SCAN;
             }
+            QueryPlan plan = new QueryPlan(strategy, candidates.size(), 1, limit);
 
-            // Calculate similarities for filtered payloads
-            List<PayloadSimilarity> similarities = new ArrayList<>();
-            for (Payload candidatePayload : filteredPayloads) {
-                float[] vector = candidatePayload.getEmbedding();
-                Double similarity = vectorStoreService.calculateCosineSimilarity(embedding, vector);
+            // Filter and score the points in place with the collection's metric; only the results become payloads
+            List<PayloadSimilarity> limitedResults = scorePoints(candidates, embedding, limit,
+                    minScore(metric, threshold), metric, predicate);
 
-                if (similarity != null && similarity >= threshold) {
-                    PayloadSimilarity payloadSimilarity = new PayloadSimilarity(candidatePayload, similarity);
-                    similarities.add(payloadSimilarity);
-                }
-            }
+            logger.info("Found {} similar vectors above threshold {} in store {} after filtering with plan {}",
+                    limitedResults.size(), threshold, vectorName, plan);
 
-            // Sort by similarity in descending order
-            similarities.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
+            return ResponseEntity.ok().header(QUERY_PLAN_HEADER, plan.toString()).body(limitedResults);
 
-            // Limit results
-            List<PayloadSimilarity> limitedResults = similarities.stream()
-                    .limit(limit)
-                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            logger.error("Error calculating similarity: {}", e.getMessage(), e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        }
 
-            logger.info("Found {} similar vectors above threshold {} in store {} after filtering",
-                    limitedResults.size(), threshold, vectorName);
 
-            return new ResponseEntity<>(limitedResults, HttpStatus.OK);
+    /**
+     * Endpoint to score a batch of query vectors against a store in one request.
+     * Exact scans read each block of the collection once for all queries together; collections answered
+     * through their HNSW index, quantized codes or IVF partitions run the queries one after another.
+     * @param vectorName the name of the vector store to search in
+     * @param queries the queries, each with its own embedding, limit, threshold and metadata filters
+     * @param ef optional HNSW candidate list size for indexed collections (default: 64)
+     * @param nprobe optional number of IVF partitions to read for persisted collections with a trained IVF index (default: 8)
+     * @param exact optional flag to bypass the HNSW and IVF indexes and scan every point (default: false)
+     * @return ResponseEntity containing one list of PayloadSimilarity objects per query, in query order
+     */
+    @PostMapping("/{vectorName}/similarity/batch")
+    public ResponseEntity<List<List<PayloadSimilarity>>> calculateBatchSimilarity(
+            @PathVariable("vectorName") String vectorName,
+            @RequestBody List<BatchQuery> queries,
+            @RequestParam(required = false) Integer ef,
+            @RequestParam(required = false) Integer nprobe,
+            @RequestParam(defaultValue = "false") boolean exact) {
+
+        logger.info("Calculating batch similarity for vector store: {} with {} queries", vectorName,
+                queries != null ? queries.size() : 0);
+        if (queries == null || queries.isEmpty() || queries.stream().anyMatch(query -> query.getEmbedding() == null)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
+        try {
+            List<List<PayloadSimilarity>> results;
+            VectorStore searchableStore = findSearchableVectorStore(vectorName, exact);
+            if (searchableStore != null) {
+                results = batchSearchVectorStore(searchableStore, queries, ef != null ? ef : DEFAULT_HNSW_EF, exact);
+            } else if (vectorStoreService.fetchVectorFromStorage(vectorName) != null) {
+                results = batchSearchPersisted(vectorName, queries, nprobe != null ? nprobe : DEFAULT_IVF_NPROBE, exact);
+            } else {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            logger.info("Answered {} queries against store {}", results.size(), vectorName);
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid batch similarity request for {}: {}", vectorName, e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
-            logger.error("Error calculating cosine similarity: {}", e.getMessage(), e);
+            logger.error("Error calculating batch similarity: {}", e.getMessage(), e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
+    }
+
+    private List<List<PayloadSimilarity>> batchSearchVectorStore(VectorStore vectorStore, List<BatchQuery> queries,
+                                                                 int ef, boolean exact) {
+        Distance metric = metricOf(vectorStore.getDistanceType());
+        if (!QueryPlanner.usesExactScan(vectorStore, exact)) {
+            List<List<PayloadSimilarity>> results = new ArrayList<>(queries.size());
+            for (BatchQuery query : queries) {
+                QueryPlan plan = queryPlanner.plan(vectorStore, query.getFilters(), query.getLimit(), exact);
+                results.add(searchVectorStore(vectorStore, query.getEmbedding(), query.getLimit(),
+                        minScore(metric, query.getThreshold()), ef, exact, query.getFilters(), plan));
+            }
+            return results;
         }
 
+        int count = queries.size();
+        float[][] embeddings = new float[count][];
+        IntPredicate[] accepts = new IntPredicate[count];
+        int[] limits = new int[count];
+        for (int q = 0; q < count; q++) {
+            BatchQuery query = queries.get(q);
+            if (query.getEmbedding().length != vectorStore.getSize()) {
+                throw new IllegalArgumentException("Vectors must have the same dimension");
+            }
+            List<FilterCriteria> filters = query.getFilters();
+            embeddings[q] = query.getEmbedding();
+            accepts[q] = acceptOf(vectorStore, filters, filters.isEmpty() ? null : vectorStore.matchingOrdinals(filters));
+            limits[q] = query.getLimit();
+        }
+        List<List<Neighbor>> neighbors = searchExecutor.searchBatch(vectorStore.pointCount(), limits,
+                (from, to, heaps) -> vectorStore.scanExactBatch(embeddings, from, to, accepts, heaps));
 
-    public List<Payload> getAllPayloadsForSimilarity(
-            @PathVariable("vectorName") String vectorName,
-            @RequestParam MultiValueMap<String, String> metadata) {
+        List<List<PayloadSimilarity>> results = new ArrayList<>(count);
+        for (int q = 0; q < count; q++) {
+            results.add(toSimilarities(vectorStore, neighbors.get(q), minScore(metric, queries.get(q).getThreshold())));
+        }
+        return results;
+    }
 
-        List<FilterCriteria> filters = convertToFilterCriteria(metadata);
-        logger.info("Filters: {}", filters);
+    private List<List<PayloadSimilarity>> batchSearchPersisted(String vectorName, List<BatchQuery> queries,
+                                                               int nprobe, boolean exact) {
+        Distance metric = persistedMetric(vectorStoreService.fetchVectorFromStorage(vectorName), queries.get(0).getEmbedding());
+        List<List<PayloadSimilarity>> results = new ArrayList<>(queries.size());
+
+        // Storage engines that read their vectors in place answer each query themselves
+        for (BatchQuery query : queries) {
+            List<ScoredPoint> stored = vectorStoreService.searchStoredVectors(vectorName, query.getEmbedding(),
+                    query.getLimit(), minScore(metric, query.getThreshold()), metric, FilterPredicate.compile(query.getFilters()));
+            if (stored == null) {
+                break;
+            }
+            results.add(toSimilarities(stored, metric));
+        }
+        if (results.size() == queries.size()) {
+            return results;
+        }
+        results.clear();
+
+        // A trained IVF index answers every query from its own partitions
+        if (!exact) {
+            for (BatchQuery query : queries) {
+                List<Point> candidates = getIvfCandidates(vectorName, query.getEmbedding(), nprobe);
+                if (candidates == null) {
+                    break;
+                }
+                results.add(scorePoints(candidates, query.getEmbedding(), query.getLimit(),
+                        minScore(metric, query.getThreshold()), metric, FilterPredicate.compile(query.getFilters())));
+            }
+            if (results.size() == queries.size()) {
+                return results;
+            }
+            results.clear();
+        }
+
+        // Otherwise read the collection once and score it block by block for all queries
+        int count = queries.size();
+        int[] limits = new int[count];
+        double[] minScores = new double[count];
+        FilterPredicate[] predicates = new FilterPredicate[count];
+        for (int q = 0; q < count; q++) {
+            if (queries.get(q).getEmbedding().length != queries.get(0).getEmbedding().length) {
+                throw new IllegalArgumentException("Vectors must have the same dimension");
+            }
+            limits[q] = queries.get(q).getLimit();
+            predicates[q] = FilterPredicate.compile(queries.get(q).getFilters());
+            minScores[q] = minScore(metric, queries.get(q).getThreshold());
+        }
+        List<Point> points = vectorStoreService.getAllPointsFromVectorStore(vectorName);
+        List<List<Neighbor>> neighbors = searchExecutor.searchBatch(points.size(), limits, (from, to, heaps) -> {
+            for (int blockStart = from; blockStart < to; blockStart += PERSISTED_BATCH_BLOCK) {
+                int blockEnd = Math.min(to, blockStart + PERSISTED_BATCH_BLOCK);
+                for (int q = 0; q < count; q++) {
+                    float[] embedding = queries.get(q).getEmbedding();
+                    for (int i = blockStart; i < blockEnd; i++) {
+                        Point point = points.get(i);
+                        float[] vector = point.getVector();
+                        if (vector == null || vector.length != embedding.length
+                                || !predicates[q].test(point.getMetadata())) {
+                            continue;
+                        }
+                        double score = metric.score(embedding, vector);
+                        if (score >= minScores[q]) {
+                            heaps[q].offer(i, score);
+                        }
+                    }
+                }
+            }
+        });
+        for (List<Neighbor> queryNeighbors : neighbors) {
+            List<PayloadSimilarity> similarities = new ArrayList<>(queryNeighbors.size());
+            for (Neighbor neighbor : queryNeighbors) {
+                similarities.add(new PayloadSimilarity(toPayload(points.get(neighbor.getOrdinal())),
+                        metric.toReported(neighbor.getScore())));
+            }
+            results.add(similarities);
+        }
+        return results;
+    }
+
+    // Metric of a persisted collection, after checking the query has the collection's dimension
+    private static Distance persistedMetric(CollectionConfig config, float[] embedding) {
+        if (config != null && embedding.length != config.getSize()) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        return metricOf(config != null ? config.getDistance() : null);
+    }
+
+    // Exact top-limit of the points passing the filter; candidates are kept as list indexes in the heaps,
+    // so Payload objects are only built for the results
+    private List<PayloadSimilarity> scorePoints(List<Point> points, float[] embedding, int limit,
+                                                double minScore, Distance metric, FilterPredicate predicate) {
+        List<Neighbor> neighbors = searchExecutor.search(points.size(), limit, (from, to, topK) -> {
+            for (int i = from; i < to; i++) {
+                Point point = points.get(i);
+                float[] vector = point.getVector();
+                if (vector == null || vector.length != embedding.length || !predicate.test(point.getMetadata())) {
+                    continue;
+                }
+                double score = metric.score(embedding, vector);
+                if (score >= minScore) {
+                    topK.offer(i, score);
+                }
+            }
+        });
+        List<PayloadSimilarity> results = new ArrayList<>(neighbors.size());
+        for (Neighbor neighbor : neighbors) {
+            results.add(new PayloadSimilarity(toPayload(points.get(neighbor.getOrdinal())), metric.toReported(neighbor.getScore())));
+        }
+        return results;
+    }
 
+    private static List<PayloadSimilarity> toSimilarities(List<ScoredPoint> scoredPoints, Distance metric) {
+        List<PayloadSimilarity> results = new ArrayList<>(scoredPoints.size());
+        for (ScoredPoint scored : scoredPoints) {
+            results.add(new PayloadSimilarity(toPayload(scored.getPoint()), metric.toReported(scored.getScore())));
+        }
+        return results;
+    }
+
+    private static Payload toPayload(Point point) {
+        return new Payload(point.getId().toString(), point.getMetadata(), point.getContent(), List.of(), point.getVector());
+    }
+
+    private static Distance metricOf(Distance distance) {
+        return distance != null ? distance : Distance.Cosine;
+    }
+
+    // Lowest internal score a result may have: thresholds are minimum similarities, or maximum distances
+    private static double minScore(Distance metric, Double threshold) {
+        if (threshold == null) {
+            return metric.isDistance() ? Double.NEGATIVE_INFINITY : 0.0;
+        }
+        return metric.fromReported(threshold);
+    }
+
+    // Returns the in-memory store for a collection, or its HNSW-indexed or quantized mirror from storage, or null
+    private VectorStore findSearchableVectorStore(String vectorName, boolean exact) {
         VectorStore vectorStore = collections.getVectorStoreByName(vectorName);
-        if (vectorStore == null) {
-            Map<String, VectorStore> allVectorStores2 = getAllVectorStores2();
-            if (allVectorStores2.containsKey(vectorName)) {
-                List<Point> allPointsFromVectorStore = vectorStoreService.getAllPointsFromVectorStore(vectorName);
-                return allPointsFromVectorStore.stream()
-                        .map(point -> new Payload(point.getId().toString(), point.getMetadata(),
-                                point.getContent(), List.of(), point.getVector()))
-                        .filter(point -> Utils.filterPayload(point, filters))
+        if (vectorStore != null) {
+            return vectorStore;
+        }
+        if (exact) {
+            return null;
+        }
+        vectorStore = vectorStoreService.getIndexedVectorStore(vectorName);
+        if (vectorStore != null && (vectorStore.hasHnswIndex() || vectorStore.hasTrainedQuantizer())) {
+            return vectorStore;
+        }
+        return null;
+    }
+
+    private List<PayloadSimilarity> searchVectorStore(VectorStore vectorStore, float[] embedding, int limit,
+                                                      double minScore, int ef, boolean exact,
+                                                      List<FilterCriteria> filters, QueryPlan plan) {
+        if (embedding.length != vectorStore.getSize()) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        IntPredicate filterCheck = acceptOf(vectorStore, filters, null);
+        List<Neighbor> neighbors = switch (plan.getStrategy()) {
+            case FILTERED_EXACT_SCAN -> {
+                // The metadata index narrows the store down, so only the matches are scored
+                int[] matches = vectorStore.matchingOrdinals(filters);
+                yield searchExecutor.search(matches.length, limit,
+                        (from, to, topK) -> vectorStore.scanOrdinals(embedding, matches, from, to, topK));
+            }
+            case ANN -> searchIndex(vectorStore, embedding, limit, ef, exact, null);
+            case ANN_INLINE_FILTER -> searchIndex(vectorStore, embedding, limit, ef, exact,
+                    acceptOf(vectorStore, filters, vectorStore.matchingOrdinals(filters)));
+            case ANN_OVERFETCH -> {
+                int fetch = plan.getFetchLimit();
+                List<Neighbor> filtered = searchIndex(vectorStore, embedding, fetch, Math.max(ef, fetch), exact, null)
+                        .stream()
+                        .filter(neighbor -> filterCheck.test(neighbor.getOrdinal()))
+                        .limit(limit)
                         .collect(Collectors.toList());
+                if (filtered.size() >= limit || fetch >= vectorStore.pointCount()) {
+                    yield filtered;
+                }
+                // Too few of the fetched neighbours passed, so walk the index again with the filter inline
+                plan.setFallback(true);
+                yield searchIndex(vectorStore, embedding, limit, ef, exact, filterCheck);
             }
+            default -> searchExecutor.search(vectorStore.pointCount(), limit,
+                    (from, to, topK) -> vectorStore.scanExact(embedding, from, to, filterCheck, topK));
+        };
+        return toSimilarities(vectorStore, neighbors, minScore);
+    }
+
+    // Approximate search through the HNSW graph, or the quantized codes when there is no usable graph
+    private static List<Neighbor> searchIndex(VectorStore vectorStore, float[] embedding, int limit, int ef,
+                                              boolean exact, IntPredicate accept) {
+        if (vectorStore.hasHnswIndex() && !exact) {
+            return vectorStore.searchHnsw(embedding, limit, ef, accept);
         }
+        return vectorStore.searchQuantized(embedding, limit, accept);
+    }
 
-        assert vectorStore != null;
-        return vectorStore.getPoints().stream()
-                .map(point -> new Payload(point.getId().toString(), point.getMetadata(),
-                        point.getContent(), List.of(), point.getVector()))
-                .filter(point -> Utils.filterPayload(point, filters))
-                .collect(Collectors.toList());
+    // Filter check for index and graph walks: a binary search in the index matches when there are some
+    private static IntPredicate acceptOf(VectorStore vectorStore, List<FilterCriteria> filters, int[] matches) {
+        if (matches != null) {
+            return ordinal -> Arrays.binarySearch(matches, ordinal) >= 0;
+        }
+        if (filters.isEmpty()) {
+            return null;
+        }
+        FilterPredicate predicate = FilterPredicate.compile(filters);
+        return ordinal -> predicate.test(vectorStore.getMetadata(ordinal));
+    }
+
+    // Ordinals from the given one on of a store passing the filters, from the metadata index when it can answer them
+    private static IntStream filteredOrdinals(VectorStore vectorStore, List<FilterCriteria> filters, int from) {
+        int[] matches = filters.isEmpty() ? null : vectorStore.matchingOrdinals(filters);
+        if (matches != null) {
+            int start = Arrays.binarySearch(matches, from);
+            return Arrays.stream(matches, start >= 0 ? start : -start - 1, matches.length);
+        }
+        FilterPredicate predicate = FilterPredicate.compile(filters);
+        return IntStream.range(from, vectorStore.pointCount())
+                .filter(ordinal -> predicate.test(vectorStore.getMetadata(ordinal)));
+    }
+
+    private static List<PayloadSimilarity> toSimilarities(VectorStore vectorStore, List<Neighbor> neighbors, double minScore) {
+        Distance metric = metricOf(vectorStore.getDistanceType());
+        List<PayloadSimilarity> results = new ArrayList<>(neighbors.size());
+        for (Neighbor neighbor : neighbors) {
+            if (neighbor.getScore() >= minScore) {
+                results.add(new PayloadSimilarity(vectorStore.toPayload(neighbor.getOrdinal()),
+                        metric.toReported(neighbor.getScore())));
+            }
+        }
+        return results;
+    }
+
+    // Returns the points of the probed IVF partitions, or null when the collection has no IVF index
+    private List<Point> getIvfCandidates(String vectorName, float[] embedding, int nprobe) {
+        if (collections.getVectorStoreByName(vectorName) != null
+                || !(vectorStoreService instanceof IvfVectorStoreService ivfService)) {
+            return null;
+        }
+        return ivfService.getIvfCandidates(vectorName, embedding, nprobe);
     }
 
 }
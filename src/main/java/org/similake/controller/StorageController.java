@@ -0,0 +1,42 @@
+package org.similake.controller;
+
+import org.similake.persist.RocksDBProfile;
+import org.similake.persist.RocksDBRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/storage")
+public class StorageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageController.class);
+
+    @Autowired
+    private RocksDBProfile rocksDBProfile;
+
+    @Autowired
+    private RocksDBRegistry rocksDBRegistry;
+
+    /**
+     * Endpoint to read the RocksDB performance profile with its block cache use and read statistics, aggregated over
+     * all open databases since startup.
+     *
+     * @return a ResponseEntity with the settings, cache use and statistics tickers
+     */
+    @GetMapping("/rocksdb/stats")
+    public ResponseEntity<Map<String, Object>> rocksDBStatistics() {
+        logger.info("Request received for RocksDB statistics");
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("openDatabases", rocksDBRegistry.openCount());
+        stats.putAll(rocksDBProfile.statistics());
+        return ResponseEntity.ok(stats);
+    }
+}
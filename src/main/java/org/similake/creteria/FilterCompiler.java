@@ -0,0 +1,223 @@
+package org.similake.creteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds FilterPredicate trees. Each filter becomes a leaf specialised for its literal type:
+ * - numeric literals compare against numeric metadata by double value;
+ * - string literals match string metadata ignoring case (eq, ne) or as a case-insensitive substring (like);
+ * - any other literal only supports an exact "eq".
+ * A point value of another type than the literal, a missing field or an unknown operator never matches,
+ * as in the original per-point comparison.
+ */
+final class FilterCompiler {
+
+    private static final FilterPredicate NEVER = metadata -> false;
+
+    private FilterCompiler() {
+    }
+
+    static FilterPredicate compile(List<FilterCriteria> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return FilterPredicate.ALWAYS;
+        }
+        List<FilterPredicate> leaves = new ArrayList<>(filters.size());
+        for (FilterCriteria filter : filters) {
+            leaves.add(compile(filter));
+        }
+        return and(leaves);
+    }
+
+    static FilterPredicate compile(FilterCriteria filter) {
+        String operator = filter.getOperator() == null ? "" : filter.getOperator().toLowerCase(Locale.ROOT);
+        Object value = filter.getValue();
+        if (value instanceof Number number) {
+            NumberComparison comparison = NumberComparison.of(operator);
+            return comparison == null ? NEVER : new NumberLeaf(filter.getField(), comparison, number.doubleValue());
+        }
+        if (value instanceof String string) {
+            return switch (operator) {
+                case "eq" -> new StringEqualsLeaf(filter.getField(), string, false);
+                case "ne" -> new StringEqualsLeaf(filter.getField(), string, true);
+                case "like" -> new StringContainsLeaf(filter.getField(), string.toLowerCase(Locale.ROOT));
+                default -> NEVER;
+            };
+        }
+        // Other literals fall back to plain equality, and only under the exact operator name
+        if (value == null || !"eq".equals(filter.getOperator())) {
+            return NEVER;
+        }
+        return new EqualsLeaf(filter.getField(), value);
+    }
+
+    static FilterPredicate and(List<FilterPredicate> predicates) {
+        return predicates.size() == 1 ? predicates.get(0) : new And(predicates.toArray(new FilterPredicate[0]));
+    }
+
+    static FilterPredicate or(List<FilterPredicate> predicates) {
+        return predicates.size() == 1 ? predicates.get(0) : new Or(predicates.toArray(new FilterPredicate[0]));
+    }
+
+    static FilterPredicate not(FilterPredicate predicate) {
+        return new Not(predicate);
+    }
+
+    private enum NumberComparison {
+        EQ, NE, GT, LT, GTE, LTE;
+
+        static NumberComparison of(String operator) {
+            return switch (operator) {
+                case "eq" -> EQ;
+                case "ne" -> NE;
+                case "gt" -> GT;
+                case "lt" -> LT;
+                case "gte" -> GTE;
+                case "lte" -> LTE;
+                default -> null;
+            };
+        }
+    }
+
+    private static Object fieldValue(Map<String, Object> metadata, String field) {
+        return metadata == null ? null : metadata.get(field);
+    }
+
+    private static final class NumberLeaf implements FilterPredicate {
+        private final String field;
+        private final NumberComparison comparison;
+        private final double literal;
+
+        NumberLeaf(String field, NumberComparison comparison, double literal) {
+            this.field = field;
+            this.comparison = comparison;
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            if (!(fieldValue(metadata, field) instanceof Number number)) {
+                return false;
+            }
+            double value = number.doubleValue();
+            return switch (comparison) {
+                case EQ -> value == literal;
+                case NE -> value != literal;
+                case GT -> value > literal;
+                case LT -> value < literal;
+                case GTE -> value >= literal;
+                case LTE -> value <= literal;
+            };
+        }
+    }
+
+    private static final class StringEqualsLeaf implements FilterPredicate {
+        private final String field;
+        private final String literal;
+        private final boolean negated;
+
+        StringEqualsLeaf(String field, String literal, boolean negated) {
+            this.field = field;
+            this.literal = literal;
+            this.negated = negated;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            return fieldValue(metadata, field) instanceof String value && value.equalsIgnoreCase(literal) != negated;
+        }
+    }
+
+    private static final class StringContainsLeaf implements FilterPredicate {
+        private final String field;
+        // Lower-cased once at compile time
+        private final String pattern;
+
+        StringContainsLeaf(String field, String pattern) {
+            this.field = field;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            if (!(fieldValue(metadata, field) instanceof String value)) {
+                return false;
+            }
+            // Case-insensitive substring search in place, instead of lower-casing every stored value
+            int last = value.length() - pattern.length();
+            for (int start = 0; start <= last; start++) {
+                if (value.regionMatches(true, start, pattern, 0, pattern.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class EqualsLeaf implements FilterPredicate {
+        private final String field;
+        private final Object literal;
+
+        EqualsLeaf(String field, Object literal) {
+            this.field = field;
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            Object value = fieldValue(metadata, field);
+            return value != null && value.equals(literal);
+        }
+    }
+
+    private static final class And implements FilterPredicate {
+        private final FilterPredicate[] children;
+
+        And(FilterPredicate[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            for (FilterPredicate child : children) {
+                if (!child.test(metadata)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Or implements FilterPredicate {
+        private final FilterPredicate[] children;
+
+        Or(FilterPredicate[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            for (FilterPredicate child : children) {
+                if (child.test(metadata)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Not implements FilterPredicate {
+        private final FilterPredicate child;
+
+        Not(FilterPredicate child) {
+            this.child = child;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> metadata) {
+            return !child.test(metadata);
+        }
+    }
+}
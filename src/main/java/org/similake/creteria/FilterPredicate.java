@@ -0,0 +1,40 @@
+package org.similake.creteria;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A metadata filter compiled once per request. Operators and literal types are resolved when the
+ * predicate is built, so testing a point is a map lookup plus one typed comparison per filter, with no
+ * string dispatch and no allocation.
+ * Predicates compose with and/or/not; a list of FilterCriteria compiles to the conjunction of its filters.
+ */
+@FunctionalInterface
+public interface FilterPredicate {
+
+    // Accepts every point, including ones without metadata
+    FilterPredicate ALWAYS = metadata -> true;
+
+    boolean test(Map<String, Object> metadata);
+
+    default FilterPredicate and(FilterPredicate other) {
+        return FilterCompiler.and(List.of(this, other));
+    }
+
+    default FilterPredicate or(FilterPredicate other) {
+        return FilterCompiler.or(List.of(this, other));
+    }
+
+    default FilterPredicate negate() {
+        return FilterCompiler.not(this);
+    }
+
+    // Conjunction of the filters; ALWAYS for an empty list
+    static FilterPredicate compile(List<FilterCriteria> filters) {
+        return FilterCompiler.compile(filters);
+    }
+
+    static FilterPredicate compile(FilterCriteria filter) {
+        return FilterCompiler.compile(filter);
+    }
+}
@@ -0,0 +1,51 @@
+package org.similake.distance;
+
+// Plain loops, used when the Vector API is unavailable or disabled
+public class ScalarVectorKernel implements VectorKernel {
+
+    @Override
+    public double dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double dotProduct = 0;
+        double norm1 = 0;
+        double norm2 = 0;
+        for (int i = 0; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            dotProduct += x * y;
+            norm1 += x * x;
+            norm2 += y * y;
+        }
+        if (norm1 == 0 || norm2 == 0) {
+            return 0;
+        }
+        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+
+    @Override
+    public double squaredEuclidean(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public double manhattan(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs(a[aOffset + i] - b[bOffset + i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,98 @@
+package org.similake.distance;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the incubating Java Vector API. Each loop processes one hardware register of floats
+ * per iteration with fused multiply-adds into vector accumulators, reduces the lanes once at the end,
+ * and finishes the remaining length % lanes values with scalar code.
+ * Only loaded through {@link VectorKernels}, which falls back to {@link ScalarVectorKernel} when the
+ * jdk.incubator.vector module is not available at runtime.
+ */
+public class SimdVectorKernel implements VectorKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public double dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector dotAcc = FloatVector.zero(SPECIES);
+        FloatVector norm1Acc = FloatVector.zero(SPECIES);
+        FloatVector norm2Acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            dotAcc = va.fma(vb, dotAcc);
+            norm1Acc = va.fma(va, norm1Acc);
+            norm2Acc = vb.fma(vb, norm2Acc);
+        }
+        double dotProduct = dotAcc.reduceLanes(VectorOperators.ADD);
+        double norm1 = norm1Acc.reduceLanes(VectorOperators.ADD);
+        double norm2 = norm2Acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            dotProduct += x * y;
+            norm1 += x * x;
+            norm2 += y * y;
+        }
+        if (norm1 == 0 || norm2 == 0) {
+            return 0;
+        }
+        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+
+    @Override
+    public double squaredEuclidean(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            acc = diff.fma(diff, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public double manhattan(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            acc = acc.add(diff.abs());
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += Math.abs(a[aOffset + i] - b[bOffset + i]);
+        }
+        return sum;
+    }
+}
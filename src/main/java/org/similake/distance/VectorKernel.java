@@ -0,0 +1,18 @@
+package org.similake.distance;
+
+/**
+ * Primitive distance computations over slices of float arrays: length values of a starting at
+ * aOffset against length values of b starting at bOffset. Offsets let callers score vectors in
+ * place inside large backing arrays.
+ */
+public interface VectorKernel {
+
+    double dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    // Cosine similarity, 0 when either slice has zero magnitude
+    double cosine(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    double squaredEuclidean(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    double manhattan(float[] a, int aOffset, float[] b, int bOffset, int length);
+}
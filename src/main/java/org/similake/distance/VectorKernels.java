@@ -0,0 +1,38 @@
+package org.similake.distance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the distance kernel once per JVM. The SIMD kernel needs the incubating module on the
+ * module path (--add-modules jdk.incubator.vector); without it, or with -Dsimilake.simd=false,
+ * the scalar kernel is used.
+ */
+public final class VectorKernels {
+    private static final Logger logger = LoggerFactory.getLogger(VectorKernels.class);
+
+    private static final VectorKernel KERNEL = load();
+
+    private VectorKernels() {
+    }
+
+    public static VectorKernel get() {
+        return KERNEL;
+    }
+
+    private static VectorKernel load() {
+        if (!Boolean.parseBoolean(System.getProperty("similake.simd", "true"))) {
+            logger.info("SIMD distance kernels disabled, using scalar kernels");
+            return new ScalarVectorKernel();
+        }
+        try {
+            VectorKernel kernel = (VectorKernel) Class.forName("org.similake.distance.SimdVectorKernel")
+                    .getDeclaredConstructor().newInstance();
+            logger.info("Using SIMD distance kernels");
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.info("Vector API not available ({}), using scalar distance kernels", e.toString());
+            return new ScalarVectorKernel();
+        }
+    }
+}
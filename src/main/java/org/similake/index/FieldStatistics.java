@@ -0,0 +1,55 @@
+package org.similake.index;
+
+import java.util.SplittableRandom;
+
+/**
+ * Statistics of one metadata field for selectivity estimates: how many points hold an indexable value
+ * and a uniform reservoir sample of its numeric values, which stands in for an equi-depth histogram for range
+ * filters on fields without a range index. Not thread-safe; the owning MetadataIndex serializes access.
+ */
+class FieldStatistics {
+    private static final int SAMPLE_SIZE = 256;
+
+    private int present;
+    private int numeric;
+    private final double[] sample = new double[SAMPLE_SIZE];
+    // Fixed seed so estimates, and therefore plans, are reproducible for the same data
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    void add(Object key) {
+        present++;
+        if (key instanceof Double value) {
+            // Reservoir sampling keeps every numeric value with the same probability
+            if (numeric < SAMPLE_SIZE) {
+                sample[numeric] = value;
+            } else {
+                long slot = random.nextLong(numeric + 1L);
+                if (slot < SAMPLE_SIZE) {
+                    sample[(int) slot] = value;
+                }
+            }
+            numeric++;
+        }
+    }
+
+    // Number of points holding a string or numeric value for the field
+    int present() {
+        return present;
+    }
+
+    // Estimated number of numeric values between low and high, from the sampled histogram
+    double estimateBetween(double low, boolean lowInclusive, double high, boolean highInclusive) {
+        int sampled = Math.min(numeric, SAMPLE_SIZE);
+        if (sampled == 0) {
+            return 0;
+        }
+        int matches = 0;
+        for (int i = 0; i < sampled; i++) {
+            double value = sample[i];
+            if ((lowInclusive ? value >= low : value > low) && (highInclusive ? value <= high : value < high)) {
+                matches++;
+            }
+        }
+        return (double) matches / sampled * numeric;
+    }
+}
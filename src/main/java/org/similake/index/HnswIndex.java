@@ -0,0 +1,294 @@
+package org.similake.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Hierarchical Navigable Small World graph over the vectors of one collection.
+ * Nodes are identified by their insertion ordinal, which matches the ordinal of the
+ * point in the owning store; vectors are read from the store rather than copied.
+ * Inserts take the write lock, searches share the read lock.
+ *
+ * @see <a href="https://arxiv.org/abs/1603.09320">Malkov &amp; Yashunin, HNSW</a>
+ */
+public class HnswIndex {
+    private final int m;
+    private final int maxConnections0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final VectorValues vectors;
+
+    // node -> level -> neighbour ordinals, slot 0 of every level holds the neighbour count
+    private final List<int[][]> links = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Random random = new Random(42);
+    // Visited sets are reused across searches, so a query allocates nothing proportional to the graph size
+    private final ConcurrentLinkedQueue<VisitedSet> visitedPool = new ConcurrentLinkedQueue<>();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int m, int efConstruction, VectorValues vectors) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW M must be at least 2");
+        }
+        if (efConstruction < 1) {
+            throw new IllegalArgumentException("HNSW efConstruction must be positive");
+        }
+        this.m = m;
+        this.maxConnections0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = vectors;
+    }
+
+    // Insert the next ordinal, whose vector must already be readable from the vector values, and return it
+    public int add(float[] vector) {
+        lock.writeLock().lock();
+        try {
+            int node = links.size();
+            int level = randomLevel();
+            int[][] nodeLinks = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                nodeLinks[l] = new int[maxConnections(l) + 1];
+            }
+            links.add(nodeLinks);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            IntToDoubleFunction scorer = vectors.scorer(vector);
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(scorer, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Neighbor> candidates = sortedDescending(searchLayer(scorer, current, efConstruction, l, null));
+                for (Neighbor selected : selectNeighbors(candidates, m)) {
+                    connect(node, selected.getOrdinal(), l);
+                    connect(selected.getOrdinal(), node, l);
+                }
+                current = candidates.get(0).getOrdinal();
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to k nearest neighbours of the query, best first.
+     *
+     * @param query  the query vector
+     * @param k      number of neighbours to return
+     * @param ef     size of the dynamic candidate list, raised to k when smaller
+     * @param accept optional filter; rejected nodes are still traversed but never returned
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            IntToDoubleFunction scorer = vectors.scorer(query);
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(scorer, current, l);
+            }
+            List<Neighbor> results = sortedDescending(searchLayer(scorer, current, Math.max(ef, k), 0, accept));
+            return results.size() > k ? new ArrayList<>(results.subList(0, k)) : results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return links.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxConnections0 : m;
+    }
+
+    // Walk greedily towards the query on a single layer
+    private int greedyClosest(IntToDoubleFunction scorer, int start, int level) {
+        int current = start;
+        double best = scorer.applyAsDouble(current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links.get(current)[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                double candidateScore = scorer.applyAsDouble(candidate);
+                if (candidateScore > best) {
+                    best = candidateScore;
+                    current = candidate;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Best-first search on one layer, returning a min-heap of at most ef accepted nodes
+    private PriorityQueue<Neighbor> searchLayer(IntToDoubleFunction scorer, int entry, int ef, int level, IntPredicate accept) {
+        VisitedSet visited = visitedPool.poll();
+        if (visited == null) {
+            visited = new VisitedSet();
+        }
+        visited.reset(links.size());
+        try {
+            return searchLayer(scorer, entry, ef, level, accept, visited);
+        } finally {
+            visitedPool.offer(visited);
+        }
+    }
+
+    private PriorityQueue<Neighbor> searchLayer(IntToDoubleFunction scorer, int entry, int ef, int level, IntPredicate accept,
+                                                VisitedSet visited) {
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(Neighbor.BY_SCORE.reversed());
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(Neighbor.BY_SCORE);
+
+        Neighbor start = new Neighbor(entry, scorer.applyAsDouble(entry));
+        visited.visit(entry);
+        candidates.add(start);
+        if (accept == null || accept.test(entry)) {
+            results.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Neighbor closest = candidates.poll();
+            if (results.size() >= ef && closest.getScore() < results.peek().getScore()) {
+                break;
+            }
+            int[][] nodeLinks = links.get(closest.getOrdinal());
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbours = nodeLinks[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                if (!visited.visit(candidate)) {
+                    continue;
+                }
+                double candidateScore = scorer.applyAsDouble(candidate);
+                if (results.size() < ef || candidateScore > results.peek().getScore()) {
+                    Neighbor neighbor = new Neighbor(candidate, candidateScore);
+                    candidates.add(neighbor);
+                    if (accept == null || accept.test(candidate)) {
+                        results.add(neighbor);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // Neighbour selection heuristic: keep a candidate only if it is closer to the base than to any kept neighbour
+    private List<Neighbor> selectNeighbors(List<Neighbor> candidatesDescending, int max) {
+        List<Neighbor> selected = new ArrayList<>(max);
+        for (Neighbor candidate : candidatesDescending) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Neighbor kept : selected) {
+                if (vectors.similarity(candidate.getOrdinal(), kept.getOrdinal()) > candidate.getScore()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    // Add a directed edge, shrinking the neighbour list with the heuristic when it overflows
+    private void connect(int from, int to, int level) {
+        int[] neighbours = links.get(from)[level];
+        int count = neighbours[0];
+        int capacity = neighbours.length - 1;
+        if (count < capacity) {
+            neighbours[count + 1] = to;
+            neighbours[0] = count + 1;
+            return;
+        }
+
+        List<Neighbor> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Neighbor(neighbours[i], vectors.similarity(from, neighbours[i])));
+        }
+        candidates.add(new Neighbor(to, vectors.similarity(from, to)));
+        candidates.sort(Neighbor.BY_SCORE.reversed());
+
+        List<Neighbor> kept = selectNeighbors(candidates, capacity);
+        neighbours[0] = kept.size();
+        for (int i = 0; i < kept.size(); i++) {
+            neighbours[i + 1] = kept.get(i).getOrdinal();
+        }
+    }
+
+    // Nodes are marked with the current generation, so starting a new search is a counter increment, not a clear
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[size + (size >> 1)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        // Marks the node and returns true if it was not visited yet in this search
+        boolean visit(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    private static List<Neighbor> sortedDescending(PriorityQueue<Neighbor> heap) {
+        List<Neighbor> sorted = new ArrayList<>(heap);
+        sorted.sort(Collections.reverseOrder(Neighbor.BY_SCORE));
+        return sorted;
+    }
+}
@@ -0,0 +1,69 @@
+package org.similake.index;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleBiFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Inverted-file (IVF-Flat) partitioning: every point belongs to the posting list of its nearest
+ * k-means centroid, and a query only visits the posting lists of its nprobe nearest centroids.
+ * This class holds the coarse quantizer; the posting lists are kept by the storage layer.
+ */
+public class IvfIndex {
+    private static final int TRAINING_ITERATIONS = 20;
+
+    private final float[][] centroids;
+    private final ToDoubleBiFunction<float[], float[]> similarity;
+
+    public IvfIndex(float[][] centroids, ToDoubleBiFunction<float[], float[]> similarity) {
+        this.centroids = centroids;
+        this.similarity = similarity;
+    }
+
+    // Train nlist centroids over the given vectors
+    public static IvfIndex train(List<float[]> vectors, int nlist, ToDoubleBiFunction<float[], float[]> similarity) {
+        float[][] centroids = KMeans.train(vectors, nlist, TRAINING_ITERATIONS, similarity, new Random(42));
+        return new IvfIndex(centroids, similarity);
+    }
+
+    // Posting list a vector belongs to
+    public int assign(float[] vector) {
+        return KMeans.nearest(vector, centroids, similarity);
+    }
+
+    // Posting lists to visit for a query, nearest centroid first
+    public int[] probe(float[] query, int nprobe) {
+        double[] scores = new double[centroids.length];
+        for (int c = 0; c < centroids.length; c++) {
+            scores[c] = similarity.applyAsDouble(query, centroids[c]);
+        }
+        return IntStream.range(0, centroids.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer c) -> scores[c]).reversed())
+                .limit(Math.max(1, nprobe))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    public float[][] getCentroids() {
+        return centroids;
+    }
+
+    // Dimension of the vectors the index assigns
+    public int getDimension() {
+        return centroids.length > 0 ? centroids[0].length : 0;
+    }
+
+    public int getListCount() {
+        return centroids.length;
+    }
+
+    @Override
+    public String toString() {
+        return "IvfIndex{" +
+                "lists=" + centroids.length +
+                ", dim=" + getDimension() +
+                '}';
+    }
+}
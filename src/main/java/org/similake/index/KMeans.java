@@ -0,0 +1,106 @@
+package org.similake.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Lloyd's k-means over float vectors. Assignment uses the supplied similarity (higher is closer),
+ * centroids are the mean of their members. Large inputs are subsampled before training.
+ */
+public final class KMeans {
+    // Training uses at most this many points per centroid
+    private static final int MAX_POINTS_PER_CENTROID = 256;
+
+    private KMeans() {
+    }
+
+    public static float[][] train(List<float[]> vectors, int k, int iterations,
+                                  ToDoubleBiFunction<float[], float[]> similarity, Random random) {
+        if (vectors.isEmpty()) {
+            throw new IllegalArgumentException("Cannot train k-means without vectors");
+        }
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of clusters must be positive: " + k);
+        }
+        // Centroid sums read every component of the first vector from each of them
+        int dim = vectors.get(0) == null ? 0 : vectors.get(0).length;
+        for (float[] vector : vectors) {
+            if (vector == null || vector.length != dim || dim == 0) {
+                throw new IllegalArgumentException("Cannot train k-means on vectors that are missing or differ in dimension");
+            }
+        }
+        int clusters = Math.min(k, vectors.size());
+        List<float[]> sample = sample(vectors, clusters * MAX_POINTS_PER_CENTROID, random);
+
+        // Seed with distinct random points
+        float[][] centroids = new float[clusters][];
+        List<float[]> seeds = new ArrayList<>(sample);
+        Collections.shuffle(seeds, random);
+        for (int c = 0; c < clusters; c++) {
+            centroids[c] = seeds.get(c).clone();
+        }
+
+        int[] assignment = new int[sample.size()];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            boolean changed = false;
+            for (int i = 0; i < sample.size(); i++) {
+                int nearest = nearest(sample.get(i), centroids, similarity);
+                if (iteration == 0 || nearest != assignment[i]) {
+                    assignment[i] = nearest;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+
+            double[][] sums = new double[clusters][dim];
+            int[] counts = new int[clusters];
+            for (int i = 0; i < sample.size(); i++) {
+                float[] vector = sample.get(i);
+                double[] sum = sums[assignment[i]];
+                for (int d = 0; d < dim; d++) {
+                    sum[d] += vector[d];
+                }
+                counts[assignment[i]]++;
+            }
+            for (int c = 0; c < clusters; c++) {
+                if (counts[c] == 0) {
+                    // Re-seed empty clusters with a random point
+                    centroids[c] = sample.get(random.nextInt(sample.size())).clone();
+                    continue;
+                }
+                for (int d = 0; d < dim; d++) {
+                    centroids[c][d] = (float) (sums[c][d] / counts[c]);
+                }
+            }
+        }
+        return centroids;
+    }
+
+    // Index of the most similar centroid
+    public static int nearest(float[] vector, float[][] centroids, ToDoubleBiFunction<float[], float[]> similarity) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < centroids.length; c++) {
+            double score = similarity.applyAsDouble(vector, centroids[c]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static List<float[]> sample(List<float[]> vectors, int maxSize, Random random) {
+        if (vectors.size() <= maxSize) {
+            return vectors;
+        }
+        List<float[]> shuffled = new ArrayList<>(vectors);
+        Collections.shuffle(shuffled, random);
+        return shuffled.subList(0, maxSize);
+    }
+}
@@ -0,0 +1,268 @@
+package org.similake.index;
+
+import org.similake.creteria.FilterCriteria;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index over point metadata: for every field, each distinct value maps to the bitmap of the
+ * ordinals holding it. Equality filters resolve to bitmap intersections before any vector is read, so a
+ * selective filter costs time proportional to its matches rather than to the collection size.
+ * Keys follow the rules of Utils.filterMetadata: strings compare ignoring case and numbers by their
+ * double value, so a bitmap holds exactly the ordinals an "eq" filter would accept.
+ * Fields declared as range fields also keep a {@link RangeIndex}, which answers gt/gte/lt/lte filters with
+ * numeric values; all range filters on one field are merged into a single interval first.
+ * Per-field statistics (value frequencies from the bitmaps, exact range counts or a sampled histogram)
+ * estimate how selective a filter is without resolving it, for the query planner.
+ * Writers and readers are serialized on the index; resolved bitmaps are private copies.
+ */
+public class MetadataIndex {
+
+    // Share of a field's points assumed to pass operators the statistics cannot estimate, such as like
+    private static final double DEFAULT_SELECTIVITY = 0.1;
+
+    private final Map<String, Map<Object, OrdinalBitmap>> fields = new HashMap<>();
+    private final Map<String, RangeIndex> ranges = new HashMap<>();
+    private final Map<String, FieldStatistics> statistics = new HashMap<>();
+
+    public MetadataIndex() {
+        this(List.of());
+    }
+
+    public MetadataIndex(Collection<String> rangeFields) {
+        for (String field : rangeFields) {
+            ranges.put(field, new RangeIndex());
+        }
+    }
+
+    // Index every string and numeric value of a point's metadata
+    public synchronized void add(int ordinal, Map<String, Object> metadata) {
+        if (metadata == null) {
+            return;
+        }
+        metadata.forEach((field, value) -> {
+            Object key = key(value);
+            if (key != null) {
+                fields.computeIfAbsent(field, ignored -> new HashMap<>())
+                        .computeIfAbsent(key, ignored -> new OrdinalBitmap())
+                        .add(ordinal);
+                statistics.computeIfAbsent(field, ignored -> new FieldStatistics()).add(key);
+                RangeIndex range = ranges.get(field);
+                if (range != null && key instanceof Double number) {
+                    range.add(ordinal, number);
+                }
+            }
+        });
+    }
+
+    /**
+     * Intersects the bitmaps of every indexable equality and range filter. Returns null when no filter can be
+     * answered by the index; otherwise the candidates plus the filters still to be checked per point.
+     */
+    public synchronized Resolution resolve(List<FilterCriteria> filters) {
+        OrdinalBitmap candidates = null;
+        List<FilterCriteria> remaining = new ArrayList<>();
+        Map<String, Interval> intervals = new LinkedHashMap<>();
+        for (FilterCriteria filter : filters) {
+            if (isRangeFilter(filter)) {
+                intervals.computeIfAbsent(filter.getField(), ignored -> new Interval())
+                        .tighten(filter.getOperator(), ((Number) filter.getValue()).doubleValue());
+                continue;
+            }
+            Object key = "eq".equalsIgnoreCase(filter.getOperator()) ? key(filter.getValue()) : null;
+            if (key == null) {
+                remaining.add(filter);
+                continue;
+            }
+            OrdinalBitmap matches = fields.getOrDefault(filter.getField(), Map.of()).get(key);
+            if (matches == null) {
+                // No point holds this value, so nothing can pass the conjunction
+                return new Resolution(new OrdinalBitmap(), List.of());
+            }
+            candidates = candidates == null ? matches.copy() : OrdinalBitmap.and(candidates, matches);
+        }
+        for (Map.Entry<String, Interval> entry : intervals.entrySet()) {
+            Interval interval = entry.getValue();
+            OrdinalBitmap matches = ranges.get(entry.getKey())
+                    .range(interval.low, interval.lowInclusive, interval.high, interval.highInclusive);
+            candidates = candidates == null ? matches : OrdinalBitmap.and(candidates, matches);
+        }
+        return candidates == null ? null : new Resolution(candidates, remaining);
+    }
+
+    /**
+     * Estimates the share of the given number of points that pass every filter, assuming the filters are
+     * independent. Equality and indexed range filters are counted exactly, ranges on other numeric fields
+     * come from the sampled histogram, and the remaining operators fall back to fixed guesses.
+     */
+    public synchronized Estimate estimate(List<FilterCriteria> filters, int total) {
+        if (total <= 0) {
+            return new Estimate(0, false);
+        }
+        double selectivity = 1;
+        boolean indexed = false;
+        Map<String, Interval> intervals = new LinkedHashMap<>();
+        for (FilterCriteria filter : filters) {
+            String operator = filter.getOperator() == null ? "" : filter.getOperator().toLowerCase();
+            FieldStatistics field = statistics.get(filter.getField());
+            int present = field == null ? 0 : field.present();
+            if (isNumericRange(filter)) {
+                intervals.computeIfAbsent(filter.getField(), ignored -> new Interval())
+                        .tighten(operator, ((Number) filter.getValue()).doubleValue());
+                indexed |= ranges.containsKey(filter.getField());
+                continue;
+            }
+            Object key = key(filter.getValue());
+            int frequency = 0;
+            if (key != null) {
+                OrdinalBitmap matches = fields.getOrDefault(filter.getField(), Map.of()).get(key);
+                frequency = matches == null ? 0 : matches.getCardinality();
+            }
+            double matching = switch (operator) {
+                case "eq" -> key != null ? frequency : present * DEFAULT_SELECTIVITY;
+                case "ne" -> Math.max(0, present - frequency);
+                default -> present * DEFAULT_SELECTIVITY;
+            };
+            indexed |= operator.equals("eq") && key != null;
+            selectivity *= Math.min(1, matching / total);
+        }
+        for (Map.Entry<String, Interval> entry : intervals.entrySet()) {
+            Interval interval = entry.getValue();
+            RangeIndex range = ranges.get(entry.getKey());
+            FieldStatistics field = statistics.get(entry.getKey());
+            double matching = range != null
+                    ? range.count(interval.low, interval.lowInclusive, interval.high, interval.highInclusive)
+                    : field == null ? 0 : field.estimateBetween(interval.low, interval.lowInclusive, interval.high, interval.highInclusive);
+            selectivity *= Math.min(1, matching / total);
+        }
+        return new Estimate(selectivity, indexed);
+    }
+
+    // A numeric gt/gte/lt/lte filter on a field with a range index
+    private boolean isRangeFilter(FilterCriteria filter) {
+        return ranges.containsKey(filter.getField()) && isNumericRange(filter);
+    }
+
+    private static boolean isNumericRange(FilterCriteria filter) {
+        if (!(filter.getValue() instanceof Number number) || Double.isNaN(number.doubleValue())
+                || filter.getOperator() == null) {
+            return false;
+        }
+        return switch (filter.getOperator().toLowerCase()) {
+            case "gt", "gte", "lt", "lte" -> true;
+            default -> false;
+        };
+    }
+
+    public synchronized boolean hasRangeIndex(String field) {
+        return ranges.containsKey(field);
+    }
+
+    // Number of distinct indexed values of a field
+    public synchronized int distinctValues(String field) {
+        return fields.getOrDefault(field, Map.of()).size();
+    }
+
+    // Approximate heap footprint of the bitmaps in bytes
+    public synchronized long sizeInBytes() {
+        long bytes = 0;
+        for (Map<Object, OrdinalBitmap> values : fields.values()) {
+            for (OrdinalBitmap bitmap : values.values()) {
+                bytes += bitmap.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    // Normalized index key of a value, or null for values equality filters never match through the index
+    static Object key(Object value) {
+        if (value instanceof String string) {
+            // Same folding as String.equalsIgnoreCase: upper case, then lower case, per code point
+            StringBuilder folded = new StringBuilder(string.length());
+            string.codePoints().forEach(codePoint ->
+                    folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(codePoint))));
+            return folded.toString();
+        }
+        if (value instanceof Number number) {
+            double key = number.doubleValue();
+            // NaN never equals itself under ==, and -0.0 must share the key of 0.0
+            return Double.isNaN(key) ? null : key + 0.0;
+        }
+        return null;
+    }
+
+    // Intersection of the range filters on one field
+    private static class Interval {
+        private double low = Double.NEGATIVE_INFINITY;
+        private boolean lowInclusive = true;
+        private double high = Double.POSITIVE_INFINITY;
+        private boolean highInclusive = true;
+
+        void tighten(String operator, double value) {
+            switch (operator.toLowerCase()) {
+                case "gt" -> raiseLow(value, false);
+                case "gte" -> raiseLow(value, true);
+                case "lt" -> lowerHigh(value, false);
+                case "lte" -> lowerHigh(value, true);
+                default -> throw new IllegalArgumentException("Not a range operator: " + operator);
+            }
+        }
+
+        private void raiseLow(double value, boolean inclusive) {
+            if (value > low || (value == low && !inclusive)) {
+                low = value;
+                lowInclusive = inclusive;
+            }
+        }
+
+        private void lowerHigh(double value, boolean inclusive) {
+            if (value < high || (value == high && !inclusive)) {
+                high = value;
+                highInclusive = inclusive;
+            }
+        }
+    }
+
+    // Estimated share of points passing a filter, and whether resolve() can answer part of it from the index
+    public static class Estimate {
+        private final double selectivity;
+        private final boolean indexed;
+
+        public Estimate(double selectivity, boolean indexed) {
+            this.selectivity = selectivity;
+            this.indexed = indexed;
+        }
+
+        public double getSelectivity() {
+            return selectivity;
+        }
+
+        public boolean isIndexed() {
+            return indexed;
+        }
+    }
+
+    // Candidate ordinals from the index and the filters it could not answer
+    public static class Resolution {
+        private final OrdinalBitmap ordinals;
+        private final List<FilterCriteria> remainingFilters;
+
+        public Resolution(OrdinalBitmap ordinals, List<FilterCriteria> remainingFilters) {
+            this.ordinals = ordinals;
+            this.remainingFilters = remainingFilters;
+        }
+
+        public OrdinalBitmap getOrdinals() {
+            return ordinals;
+        }
+
+        public List<FilterCriteria> getRemainingFilters() {
+            return remainingFilters;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.similake.index;
+
+import java.util.Comparator;
+
+// A point ordinal paired with its similarity to the query (higher is more similar)
+public class Neighbor {
+    public static final Comparator<Neighbor> BY_SCORE = Comparator.comparingDouble(Neighbor::getScore);
+
+    private final int ordinal;
+    private final double score;
+
+    public Neighbor(int ordinal, double score) {
+        this.ordinal = ordinal;
+        this.score = score;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "Neighbor{" +
+                "ordinal=" + ordinal +
+                ", score=" + score +
+                '}';
+    }
+}
@@ -0,0 +1,476 @@
+package org.similake.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ordinals, split like a roaring bitmap into chunks of 2^16 ordinals.
+ * A chunk holding up to ARRAY_MAX ordinals keeps them as a sorted char array (2 bytes each), a denser
+ * chunk switches to a fixed 8 KB bitset, so sparse and dense sets both stay small and AND/OR run chunk
+ * by chunk in time proportional to the stored ordinals rather than to the largest ordinal.
+ * Not thread-safe; callers serialize writers and readers.
+ */
+public class OrdinalBitmap {
+    // Past this many ordinals an array chunk is larger than a bitset chunk
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITSET_WORDS = 1 << 10;
+
+    // High 16 bits of the ordinals of every chunk, ascending, and the matching chunks
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int chunks;
+    private int cardinality;
+
+    public OrdinalBitmap() {
+    }
+
+    public static OrdinalBitmap of(int... ordinals) {
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        for (int ordinal : ordinals) {
+            bitmap.add(ordinal);
+        }
+        return bitmap;
+    }
+
+    public void add(int ordinal) {
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Ordinals must not be negative: " + ordinal);
+        }
+        char high = (char) (ordinal >>> 16);
+        // Ordinals usually arrive in increasing order, so try the last chunk first
+        int index = chunks > 0 && keys[chunks - 1] == high ? chunks - 1 : Arrays.binarySearch(keys, 0, chunks, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, high, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) ordinal);
+        cardinality += containers[index].cardinality() - before;
+    }
+
+    public boolean contains(int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, chunks, (char) (ordinal >>> 16));
+        return index >= 0 && containers[index].contains((char) ordinal);
+    }
+
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    // Calls the consumer for every ordinal in ascending order
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < chunks; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    // Ordinals in ascending order
+    public int[] toArray() {
+        int[] ordinals = new int[cardinality];
+        int[] position = new int[1];
+        forEach(ordinal -> ordinals[position[0]++] = ordinal);
+        return ordinals;
+    }
+
+    public OrdinalBitmap copy() {
+        OrdinalBitmap copy = new OrdinalBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(chunks, 1));
+        copy.containers = new Container[Math.max(chunks, 1)];
+        for (int i = 0; i < chunks; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.chunks = chunks;
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+    // Ordinals present in both bitmaps
+    public static OrdinalBitmap and(OrdinalBitmap a, OrdinalBitmap b) {
+        OrdinalBitmap result = new OrdinalBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunks && j < b.chunks) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendChunk(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Ordinals present in either bitmap
+    public static OrdinalBitmap or(OrdinalBitmap a, OrdinalBitmap b) {
+        OrdinalBitmap result = new OrdinalBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunks || j < b.chunks) {
+            if (j == b.chunks || (i < a.chunks && a.keys[i] < b.keys[j])) {
+                result.appendChunk(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i == a.chunks || a.keys[i] > b.keys[j]) {
+                result.appendChunk(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendChunk(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Ordinals of a that are not in b
+    public static OrdinalBitmap andNot(OrdinalBitmap a, OrdinalBitmap b) {
+        OrdinalBitmap result = new OrdinalBitmap();
+        int j = 0;
+        for (int i = 0; i < a.chunks; i++) {
+            while (j < b.chunks && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            Container container = j < b.chunks && b.keys[j] == a.keys[i]
+                    ? a.containers[i].andNot(b.containers[j])
+                    : a.containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.appendChunk(a.keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    // Approximate heap footprint in bytes
+    public long sizeInBytes() {
+        long bytes = 16L + keys.length * 2L + containers.length * 8L;
+        for (int i = 0; i < chunks; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private void insertChunk(int index, char key, Container container) {
+        if (chunks == keys.length) {
+            keys = Arrays.copyOf(keys, chunks * 2);
+            containers = Arrays.copyOf(containers, chunks * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunks - index);
+        System.arraycopy(containers, index, containers, index + 1, chunks - index);
+        keys[index] = key;
+        containers[index] = container;
+        chunks++;
+    }
+
+    private void appendChunk(char key, Container container) {
+        insertChunk(chunks, key, container);
+        cardinality += container.cardinality();
+    }
+
+    @Override
+    public String toString() {
+        return "OrdinalBitmap{cardinality=" + cardinality + ", chunks=" + chunks + '}';
+    }
+
+    // The low 16 bits of the ordinals of one chunk
+    private abstract static class Container {
+        // Returns the container now holding the value, which may be a converted one
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract void forEach(int base, IntConsumer consumer);
+
+        abstract Container copy();
+
+        abstract long sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = cardinality > 0 && values[cardinality - 1] < value
+                    ? -cardinality - 1
+                    : Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitset().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int size = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[size++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[size++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, size);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitsetContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_MAX) {
+                return toBitset().or(other);
+            }
+            char[] result = new char[cardinality + array.cardinality];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[size++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[size++] = array.values[j++];
+                } else {
+                    result[size++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, size);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[size++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, size);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24L + values.length * 2L;
+        }
+
+        private BitsetContainer toBitset() {
+            BitsetContainer bitset = new BitsetContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitset.add(values[i]);
+            }
+            return bitset;
+        }
+    }
+
+    private static final class BitsetContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitsetContainer() {
+            this(new long[BITSET_WORDS], 0);
+        }
+
+        BitsetContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long word = words[value >>> 6];
+            long updated = word | (1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitsetContainer) other).words;
+            long[] result = new long[BITSET_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return shrink(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    if ((result[value >>> 6] & (1L << value)) == 0) {
+                        result[value >>> 6] |= 1L << value;
+                        count++;
+                    }
+                }
+                return new BitsetContainer(result, count);
+            }
+            long[] otherWords = ((BitsetContainer) other).words;
+            count = 0;
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                result[i] |= otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return new BitsetContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+                }
+            } else {
+                long[] otherWords = ((BitsetContainer) other).words;
+                for (int i = 0; i < BITSET_WORDS; i++) {
+                    result[i] &= ~otherWords[i];
+                }
+            }
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            return shrink(result, count);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitsetContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24L + BITSET_WORDS * 8L;
+        }
+
+        // Sparse results go back to the array form
+        private static Container shrink(long[] words, int count) {
+            if (count > ARRAY_MAX) {
+                return new BitsetContainer(words, count);
+            }
+            char[] values = new char[count];
+            int size = 0;
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[size++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.similake.index;
+
+import java.util.Arrays;
+
+/**
+ * Numeric index of one metadata field: (value, ordinal) pairs kept sorted by value, so a range filter is
+ * two binary searches plus a copy of the ordinals in between. New pairs go to a small unsorted tail that
+ * is sorted and merged into the main run once it reaches an eighth of it, which keeps inserts amortized
+ * O(log n) while queries only scan the tail linearly.
+ * Not thread-safe; the owning MetadataIndex serializes access.
+ */
+public class RangeIndex {
+    // The tail is merged when it holds this many pairs or an eighth of the sorted run, whichever is larger
+    private static final int MIN_MERGE_SIZE = 1024;
+
+    private double[] sortedValues = new double[0];
+    private int[] sortedOrdinals = new int[0];
+    private double[] tailValues = new double[64];
+    private int[] tailOrdinals = new int[64];
+    private int tailSize;
+
+    public void add(int ordinal, double value) {
+        if (tailSize == tailValues.length) {
+            tailValues = Arrays.copyOf(tailValues, tailSize * 2);
+            tailOrdinals = Arrays.copyOf(tailOrdinals, tailSize * 2);
+        }
+        tailValues[tailSize] = value;
+        tailOrdinals[tailSize] = ordinal;
+        tailSize++;
+        if (tailSize >= Math.max(MIN_MERGE_SIZE, sortedValues.length / 8)) {
+            mergeTail();
+        }
+    }
+
+    public int size() {
+        return sortedValues.length + tailSize;
+    }
+
+    /**
+     * Ordinals whose value lies between low and high; each bound is inclusive or exclusive and may be
+     * infinite to leave that side open.
+     */
+    public OrdinalBitmap range(double low, boolean lowInclusive, double high, boolean highInclusive) {
+        int from = lowInclusive ? firstAtLeast(low) : firstAbove(low);
+        int to = highInclusive ? firstAbove(high) : firstAtLeast(high);
+        int[] ordinals = new int[Math.max(0, to - from) + tailSize];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            ordinals[count++] = sortedOrdinals[i];
+        }
+        for (int i = 0; i < tailSize; i++) {
+            double value = tailValues[i];
+            if ((lowInclusive ? value >= low : value > low) && (highInclusive ? value <= high : value < high)) {
+                ordinals[count++] = tailOrdinals[i];
+            }
+        }
+        // Sorted ordinals fill the bitmap through its append fast path
+        Arrays.sort(ordinals, 0, count);
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        for (int i = 0; i < count; i++) {
+            bitmap.add(ordinals[i]);
+        }
+        return bitmap;
+    }
+
+    // Number of indexed values in a range, for selectivity estimates; no ordinals are copied
+    public int count(double low, boolean lowInclusive, double high, boolean highInclusive) {
+        int from = lowInclusive ? firstAtLeast(low) : firstAbove(low);
+        int to = highInclusive ? firstAbove(high) : firstAtLeast(high);
+        int matches = Math.max(0, to - from);
+        for (int i = 0; i < tailSize; i++) {
+            double value = tailValues[i];
+            if ((lowInclusive ? value >= low : value > low) && (highInclusive ? value <= high : value < high)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    // Index of the first sorted value >= bound
+    private int firstAtLeast(double bound) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] < bound) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first sorted value > bound
+    private int firstAbove(double bound) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] <= bound) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void mergeTail() {
+        sortPairs(tailValues, tailOrdinals, tailSize);
+        int total = sortedValues.length + tailSize;
+        double[] values = new double[total];
+        int[] ordinals = new int[total];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < total; k++) {
+            if (j == tailSize || (i < sortedValues.length && sortedValues[i] <= tailValues[j])) {
+                values[k] = sortedValues[i];
+                ordinals[k] = sortedOrdinals[i++];
+            } else {
+                values[k] = tailValues[j];
+                ordinals[k] = tailOrdinals[j++];
+            }
+        }
+        sortedValues = values;
+        sortedOrdinals = ordinals;
+        tailSize = 0;
+    }
+
+    // Bottom-up merge sort of the first length pairs by value, moving the ordinals along
+    private static void sortPairs(double[] values, int[] ordinals, int length) {
+        double[] valueBuffer = new double[length];
+        int[] ordinalBuffer = new int[length];
+        double[] sourceValues = values;
+        int[] sourceOrdinals = ordinals;
+        double[] targetValues = valueBuffer;
+        int[] targetOrdinals = ordinalBuffer;
+        for (int width = 1; width < length; width *= 2) {
+            for (int start = 0; start < length; start += 2 * width) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + 2 * width, length);
+                int i = start;
+                int j = middle;
+                for (int k = start; k < end; k++) {
+                    if (j == end || (i < middle && sourceValues[i] <= sourceValues[j])) {
+                        targetValues[k] = sourceValues[i];
+                        targetOrdinals[k] = sourceOrdinals[i++];
+                    } else {
+                        targetValues[k] = sourceValues[j];
+                        targetOrdinals[k] = sourceOrdinals[j++];
+                    }
+                }
+            }
+            double[] swapValues = sourceValues;
+            sourceValues = targetValues;
+            targetValues = swapValues;
+            int[] swapOrdinals = sourceOrdinals;
+            sourceOrdinals = targetOrdinals;
+            targetOrdinals = swapOrdinals;
+        }
+        if (sourceValues != values) {
+            System.arraycopy(sourceValues, 0, values, 0, length);
+            System.arraycopy(sourceOrdinals, 0, ordinals, 0, length);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.similake.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded min-heap keeping the k best (ordinal, score) pairs seen so far.
+ * Backed by primitive arrays, so offering a candidate never allocates.
+ */
+public class TopK {
+    private final int k;
+    private final int[] ordinals;
+    private final double[] scores;
+    private int size;
+
+    public TopK(int k) {
+        this.k = Math.max(0, k);
+        this.ordinals = new int[this.k];
+        this.scores = new double[this.k];
+    }
+
+    public void offer(int ordinal, double score) {
+        if (size < k) {
+            ordinals[size] = ordinal;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (k > 0 && score > scores[0]) {
+            ordinals[0] = ordinal;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    // Lowest score currently kept; anything not above it is rejected once the heap is full
+    public double minScore() {
+        return size < k || k == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public boolean isFull() {
+        return size == k;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Merge another heap's entries into this one
+    public void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ordinals[i], other.scores[i]);
+        }
+    }
+
+    // Kept entries, best first
+    public List<Neighbor> toSortedList() {
+        List<Neighbor> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(new Neighbor(ordinals[i], scores[i]));
+        }
+        sorted.sort(Neighbor.BY_SCORE.reversed());
+        return sorted;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[index] >= scores[parent]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[index] <= scores[smallest]) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int ordinal = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = ordinal;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
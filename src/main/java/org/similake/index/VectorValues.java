@@ -0,0 +1,13 @@
+package org.similake.index;
+
+import java.util.function.IntToDoubleFunction;
+
+// Random access to the stored vectors an index is built over, addressed by ordinal
+public interface VectorValues {
+
+    // Similarity of every stored ordinal to a query, higher is more similar; per-query work is done once up front
+    IntToDoubleFunction scorer(float[] query);
+
+    // Similarity between two stored vectors
+    double similarity(int ordinal1, int ordinal2);
+}
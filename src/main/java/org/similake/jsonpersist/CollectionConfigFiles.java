@@ -0,0 +1,171 @@
+package org.similake.jsonpersist;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.model.Distance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Collection configs stored as <config dir>/<collection>/config.json, shared by the file-based storage engines
+public class CollectionConfigFiles {
+    private static final Logger logger = LoggerFactory.getLogger(CollectionConfigFiles.class);
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final String configDir;
+
+    public CollectionConfigFiles(String configDir) {
+        this.configDir = configDir;
+    }
+
+    public boolean write(String collectionName, CollectionConfig config) {
+        logger.info("Persisting config to disk: {}", collectionName);
+        try {
+            Path collectionConfigDir = Paths.get(configDir, collectionName);
+            Files.createDirectories(collectionConfigDir);
+
+            Path configFile = collectionConfigDir.resolve("config.json");
+            if (!Files.exists(configFile)) {
+                Files.createFile(configFile);
+                logger.info("Created config file: {}", configFile);
+            }
+
+            // Write config to file
+            mapper.writeValue(configFile.toFile(), config);
+            logger.info("Persisted config to disk successfully for collection: {}", collectionName);
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to persist config: {}", e.getMessage());
+            throw new RuntimeException("Failed to persist config", e);
+        }
+    }
+
+    public CollectionConfig read(String collectionName) {
+        logger.info("Fetching collection from disk: {}", collectionName);
+        Path configFile = Paths.get(configDir, collectionName, "config.json");
+
+        if (Files.exists(configFile)) {
+            try {
+                // Read the JSON content as a Map first
+                Map<String, Object> configMap = mapper.readValue(configFile.toFile(),
+                        new TypeReference<Map<String, Object>>() {});
+
+                // Convert the distance string to Distance enum
+                String distanceStr = (String) configMap.get("distance");
+                Distance distance = Distance.valueOf(distanceStr);
+
+                // Create CollectionConfig using the existing fromMap method
+                Map<String, Object> requestBody = new HashMap<>(configMap);
+                requestBody.put("persist", String.valueOf(configMap.get("persist")));
+
+                return CollectionConfig.fromMap(collectionName, requestBody);
+
+            } catch (IOException e) {
+                logger.error("Failed to read config for {}: {}. Config content: {}",
+                        collectionName, e.getMessage(),
+                        readFileContent(configFile));
+                throw new RuntimeException("Failed to read config: " + collectionName, e);
+            } catch (IllegalArgumentException e) {
+                logger.error("Invalid distance metric in config for {}: {}",
+                        collectionName, e.getMessage());
+                throw new RuntimeException("Invalid config for: " + collectionName, e);
+            }
+        } else {
+            logger.warn("Collection config not found: {}", collectionName);
+            return null;
+        }
+    }
+
+    // Helper method to safely read file content for error logging
+    private String readFileContent(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            return "Unable to read file content";
+        }
+    }
+
+    public Map<String, CollectionConfig> readAll() {
+        Map<String, CollectionConfig> collectionConfigs = new HashMap<>();
+        Path configPath = Paths.get(configDir);
+
+        try {
+            if (!Files.exists(configPath)) {
+                logger.info("Config directory does not exist. Creating it.");
+                Files.createDirectories(configPath);
+                return collectionConfigs;
+            }
+
+            // List all subdirectories in config directory
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(configPath, Files::isDirectory)) {
+                for (Path collectionConfigDir : stream) {
+                    String vectorName = collectionConfigDir.getFileName().toString();
+                    Path configFile = collectionConfigDir.resolve("config.json");
+
+                    if (Files.exists(configFile)) {
+                        try {
+                            // Read the JSON content as a Map first
+                            Map<String, Object> configMap = mapper.readValue(configFile.toFile(),
+                                    new TypeReference<Map<String, Object>>() {});
+
+                            // Convert the distance string to Distance enum
+                            String distanceStr = (String) configMap.get("distance");
+                            Distance distance = Distance.valueOf(distanceStr);
+
+                            // Create CollectionConfig using the existing fromMap method
+                            Map<String, Object> requestBody = new HashMap<>(configMap);
+                            requestBody.put("persist", String.valueOf(configMap.get("persist")));
+
+                            CollectionConfig config = CollectionConfig.fromMap(vectorName, requestBody);
+
+                            collectionConfigs.put(vectorName, config);
+                            logger.info("Fetched config for vector store: {}", vectorName);
+
+                        } catch (IOException e) {
+                            logger.error("Failed to read config file for {}: {}. Config content: {}",
+                                    vectorName, e.getMessage(),
+                                    Files.readString(configFile));
+                        } catch (IllegalArgumentException e) {
+                            logger.error("Invalid distance metric in config for {}: {}",
+                                    vectorName, e.getMessage());
+                        }
+                    } else {
+                        logger.warn("Config file does not exist for vector store: {}", vectorName);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to fetch configs: {}", e.getMessage());
+            throw new RuntimeException("Failed to fetch configs", e);
+        }
+        return collectionConfigs;
+    }
+
+
+    // Deletes the config directory of a collection; true if nothing is left of it
+    public boolean delete(String collectionName) {
+        Path collectionConfigDir = Paths.get(configDir, collectionName);
+        if (!Files.exists(collectionConfigDir)) {
+            return true;
+        }
+        try (Stream<Path> paths = Files.walk(collectionConfigDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to delete config of {}: {}", collectionName, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.similake.jsonpersist;
+
+import org.similake.index.IvfIndex;
+import org.similake.wal.LogAppender;
+import org.similake.wal.SyncPolicy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One trained IVF index of a JSONL collection: its coarse quantizer and the generation directory holding its posting
+ * lists, <collection>/ivf/<generation>/list-<n>.jsonl, next to centroids.json. Retraining writes a new generation and
+ * then switches <collection>/ivf/CURRENT to it with an atomic rename, so a crash leaves either index whole, and readers
+ * always probe lists with the centroids they were assigned by. A replaced generation is deleted once its last reader
+ * is done.
+ * <p>
+ * Posting lists are derived from vectors.jsonl and can be retrained, so they are appended through long-lived appenders
+ * that are never forced, except when a new generation is completed.
+ */
+final class IvfLists implements Closeable {
+
+    static final String CURRENT = "CURRENT";
+    static final String CENTROIDS = "centroids.json";
+
+    private final IvfIndex index;
+    private final Path directory;
+    // Append channels of the posting lists, opened on first append
+    private final Map<Integer, LogAppender> appenders = new ConcurrentHashMap<>();
+    // Held shared while reading the lists; retiring takes it alone before deleting the directory
+    private final ReentrantReadWriteLock readers = new ReentrantReadWriteLock();
+    // Guarded by readers
+    private boolean retired;
+
+    IvfLists(IvfIndex index, Path directory) {
+        this.index = index;
+        this.directory = directory;
+    }
+
+    IvfIndex index() {
+        return index;
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    Path listPath(int list) {
+        return directory.resolve("list-" + list + ".jsonl");
+    }
+
+    // Appends a line to a posting list without forcing it
+    void append(int list, byte[] line) throws IOException {
+        LogAppender appender = appenders.get(list);
+        if (appender == null) {
+            synchronized (appenders) {
+                appender = appenders.get(list);
+                if (appender == null) {
+                    Path path = listPath(list);
+                    long size = Files.exists(path) ? Files.size(path) : 0;
+                    // A line torn by a crash is cut off, so the next one starts on a line of its own
+                    appender = LogAppender.open(path, JsonlVectorStoreService.completeLinesLength(path, size), SyncPolicy.os());
+                    appenders.put(list, appender);
+                }
+            }
+        }
+        appender.write(ByteBuffer.wrap(line));
+    }
+
+    // Takes read access to the lists; false if this generation was replaced meanwhile, so the caller reloads
+    boolean acquire() {
+        readers.readLock().lock();
+        if (retired) {
+            readers.readLock().unlock();
+            return false;
+        }
+        return true;
+    }
+
+    void release() {
+        readers.readLock().unlock();
+    }
+
+    // Forces and closes the posting lists; later appends open them again
+    @Override
+    public void close() throws IOException {
+        synchronized (appenders) {
+            IOException failure = null;
+            for (LogAppender appender : appenders.values()) {
+                try {
+                    appender.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            appenders.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    // Waits for the readers of this generation, then closes and deletes it
+    void retire() throws IOException {
+        readers.writeLock().lock();
+        try {
+            retired = true;
+            close();
+            deleteRecursively(directory);
+        } finally {
+            readers.writeLock().unlock();
+        }
+    }
+
+    // Generation named by the CURRENT file of an IVF directory, or null if none was completed
+    static Path current(Path ivfDir) throws IOException {
+        Path pointer = ivfDir.resolve(CURRENT);
+        if (!Files.exists(pointer)) {
+            return null;
+        }
+        return ivfDir.resolve(Files.readString(pointer, StandardCharsets.UTF_8).trim());
+    }
+
+    // Directory for the next generation, numbered past every generation present, even unfinished ones
+    static Path nextGeneration(Path ivfDir) throws IOException {
+        long last = 0;
+        for (Path generation : generations(ivfDir)) {
+            last = Math.max(last, Long.parseLong(generation.getFileName().toString()));
+        }
+        return ivfDir.resolve(String.format("%08d", last + 1));
+    }
+
+    // Deletes the generations left behind by a crash: unfinished ones and replaced ones that were not deleted yet
+    static void deleteStale(Path ivfDir, Path current) throws IOException {
+        for (Path generation : generations(ivfDir)) {
+            if (!generation.equals(current)) {
+                deleteRecursively(generation);
+            }
+        }
+    }
+
+    // Writes the centroids into a generation and forces them, then makes it the current one with an atomic rename
+    static void publish(Path ivfDir, Path generation, byte[] centroids) throws IOException {
+        writeForced(generation.resolve(CENTROIDS), centroids);
+        Path pointer = ivfDir.resolve(CURRENT + ".tmp");
+        writeForced(pointer, generation.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(pointer, ivfDir.resolve(CURRENT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel channel = FileChannel.open(ivfDir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can force a directory; the rename itself is still atomic
+        }
+    }
+
+    private static void writeForced(Path path, byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private static List<Path> generations(Path ivfDir) throws IOException {
+        if (!Files.isDirectory(ivfDir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(ivfDir)) {
+            return paths.filter(Files::isDirectory)
+                    .filter(path -> path.getFileName().toString().matches("\\d+"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path file : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+}
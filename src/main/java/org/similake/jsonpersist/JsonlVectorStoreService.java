@@ -3,25 +3,44 @@ package org.similake.jsonpersist;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterPredicate;
+import org.similake.index.IvfIndex;
 import org.similake.model.Distance;
+import org.similake.model.IndexType;
 import org.similake.model.Point;
+import org.similake.model.Quantization;
+import org.similake.model.ScoredPoint;
+import org.similake.model.VectorStore;
+import org.similake.persist.IvfVectorStoreService;
 import org.similake.persist.VectorStoreService;
+import org.similake.utils.Utils;
+import org.similake.wal.LogAppender;
+import org.similake.wal.SyncPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Primary
 @Service
-public class JsonlVectorStoreService implements VectorStoreService {
+@ConditionalOnProperty(name = "storage.engine", havingValue = "jsonl", matchIfMissing = true)
+public class JsonlVectorStoreService implements VectorStoreService, IvfVectorStoreService {
     private static final Logger logger = LoggerFactory.getLogger(JsonlVectorStoreService.class);
     private final ObjectMapper mapper = new ObjectMapper();
 
@@ -31,8 +50,41 @@ public class JsonlVectorStoreService implements VectorStoreService {
     @Value("${config.path}")
     private String CONFIG_DIR;
 
+    // In-memory HNSW/quantized mirrors of persisted collections, loaded on first search and kept current on append
+    private final Map<String, VectorStore> indexedStores = new ConcurrentHashMap<>();
+
+    // Persisted collections whose config asks for neither an HNSW index nor quantization, so that searches do not read
+    // the config again just to find there is no mirror; dropped when the collection is created again or removed
+    private final Set<String> unindexedCollections = ConcurrentHashMap.newKeySet();
+
+    // Current IVF generation of persisted collections; posting lists live under <collection>/ivf/<generation>/
+    private final Map<String, IvfLists> ivfIndexes = new ConcurrentHashMap<>();
+
+    // Bytes read from a JSONL file per call while scanning it
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    // Estimated heap bytes of parsed points kept across queries; 0 reads vectors.jsonl on every call
+    @Value("${storage.cache.max-bytes:268435456}")
+    private long cacheMaxBytes;
+
+    private PointCache pointCache = new PointCache(0);
+
+    private CollectionConfigFiles configFiles;
+
+    // Serializes appends with index builds of the same collection
+    private final Map<String, Object> collectionLocks = new ConcurrentHashMap<>();
+
+    // When appended points are forced to disk
+    @Autowired
+    private SyncPolicy syncPolicy;
+
+    // Long-lived append channels of vectors.jsonl by collection, opened on first append and closed on removal or shutdown
+    private final Map<String, LogAppender> appenders = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void init() {
+        pointCache = new PointCache(cacheMaxBytes);
+        configFiles = new CollectionConfigFiles(CONFIG_DIR);
         try {
             // Create base directories if they don't exist
             createDirectoryStructure();
@@ -103,208 +155,496 @@ public class JsonlVectorStoreService implements VectorStoreService {
     }
 
     public boolean createConfig(String collectionName, CollectionConfig config) {
-        logger.info("Persisting config to disk: {}", collectionName);
-        try {
-            Path configDir = Paths.get(CONFIG_DIR, collectionName);
-            Files.createDirectories(configDir);
+        unindexedCollections.remove(collectionName);
+        return configFiles.write(collectionName, config);
+    }
+
+    public CollectionConfig fetchVectorFromStorage(String collectionName) {
+        return configFiles.read(collectionName);
+    }
 
-            Path configFile = configDir.resolve("config.json");
-            if (!Files.exists(configFile)) {
-                Files.createFile(configFile);
-                logger.info("Created config file: {}", configFile);
+    public Map<String, CollectionConfig> fetchAllCollectionConfigs() {
+        return configFiles.readAll();
+    }
+
+    public void addPayloadToVectorStore(String vectorName, Point point) {
+        logger.info("Adding payload to VectorStore: {}", vectorName);
+        // Append and update the in-memory indexes under the collection lock so a concurrent load or train cannot miss the point
+        LogAppender appender = appender(vectorName);
+        long end;
+        synchronized (collectionLock(vectorName)) {
+            byte[] jsonLine = jsonLine(point);
+            try {
+                end = appender.write(ByteBuffer.wrap(jsonLine));
+            } catch (IOException e) {
+                logger.error("Failed to add payload: {}", e.getMessage());
+                throw new RuntimeException("Failed to add payload to VectorStore", e);
             }
+            long offset = end - jsonLine.length;
+            // Extend a cache that is current with the file; otherwise the next read picks the line up from disk
+            PointCache.Entry entry = pointCache.get(vectorName);
+            if (entry != null && entry.getOffset() == offset) {
+                entry.add(point);
+                entry.setOffset(end);
+                pointCache.put(vectorName, entry);
+            }
+            IvfLists ivfLists = loadIvfLists(vectorName);
+            // Points without a vector of the index dimension cannot be assigned and stay out of the posting lists
+            if (ivfLists != null && hasDimension(point, ivfLists.index().getDimension())) {
+                try {
+                    ivfLists.append(ivfLists.index().assign(point.getVector()), jsonLine);
+                } catch (IOException e) {
+                    logger.error("Failed to add payload: {}", e.getMessage());
+                    throw new RuntimeException("Failed to add payload to VectorStore", e);
+                }
+            }
+            // Last, since a quantized mirror may release the point's original vector
+            VectorStore indexedStore = indexedStores.get(vectorName);
+            if (indexedStore != null) {
+                mirrorPoint(indexedStore, vectorName, point);
+            }
+        }
+        // Outside the collection lock, so concurrent writers share the fsync
+        try {
+            appender.commit(end);
+        } catch (IOException e) {
+            logger.error("Failed to sync payload: {}", e.getMessage());
+            throw new RuntimeException("Failed to add payload to VectorStore", e);
+        }
+        logger.info("Payload added to VectorStore: {}", vectorName);
+    }
 
-            // Write config to file
-            mapper.writeValue(configFile.toFile(), config);
-            logger.info("Persisted config to disk successfully for collection: {}", collectionName);
-            return true;
+    // The point as a single line of JSON
+    private byte[] jsonLine(Point point) {
+        try {
+            return (mapper.writeValueAsString(point) + "\n").getBytes(StandardCharsets.UTF_8);
         } catch (IOException e) {
-            logger.error("Failed to persist config: {}", e.getMessage());
-            throw new RuntimeException("Failed to persist config", e);
+            throw new RuntimeException("Failed to serialize payload", e);
         }
     }
-    public CollectionConfig fetchVectorFromStorage(String collectionName) {
-        logger.info("Fetching collection from disk: {}", collectionName);
-        Path configFile = Paths.get(CONFIG_DIR, collectionName, "config.json");
 
-        if (Files.exists(configFile)) {
+    // Append channel of a collection's vectors.jsonl, opened on first use
+    private LogAppender appender(String vectorName) {
+        return appenders.computeIfAbsent(vectorName, name -> {
+            Path vectorPath = Paths.get(COLLECTIONS_DIR, name, "vectors.jsonl");
             try {
-                // Read the JSON content as a Map first
-                Map<String, Object> configMap = mapper.readValue(configFile.toFile(),
-                        new TypeReference<Map<String, Object>>() {});
-
-                // Convert the distance string to Distance enum
-                String distanceStr = (String) configMap.get("distance");
-                Distance distance = Distance.valueOf(distanceStr);
+                return openAppender(vectorPath);
+            } catch (IOException e) {
+                logger.error("Failed to open {}: {}", vectorPath, e.getMessage());
+                throw new RuntimeException("Failed to open VectorStore: " + name, e);
+            }
+        });
+    }
 
-                // Create CollectionConfig using the existing fromMap method
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("size", configMap.get("size"));
-                requestBody.put("distance", distanceStr);
-                requestBody.put("persist", String.valueOf(configMap.get("persist")));
+    /**
+     * Opens vectors.jsonl for appending. A last line without its newline was torn by a crash during an append and is
+     * cut off, so the next point starts on a line of its own; if it still holds a whole point, for instance one written
+     * by hand, the newline is added instead.
+     */
+    private LogAppender openAppender(Path vectorPath) throws IOException {
+        long size = Files.exists(vectorPath) ? Files.size(vectorPath) : 0;
+        long complete = completeLinesLength(vectorPath, size);
+        boolean keepTail = false;
+        if (complete < size) {
+            try (FileChannel channel = FileChannel.open(vectorPath, StandardOpenOption.READ)) {
+                ByteBuffer tail = ByteBuffer.allocate((int) (size - complete));
+                readFully(channel, tail, complete);
+                mapper.readValue(tail.array(), Point.class);
+                keepTail = true;
+            } catch (IOException e) {
+                logger.warn("Cutting off {} bytes of a torn line at the end of {}", size - complete, vectorPath);
+            }
+        }
+        LogAppender appender = LogAppender.open(vectorPath, keepTail ? -1 : complete, syncPolicy);
+        if (keepTail) {
+            appender.append(ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+        return appender;
+    }
 
-                return CollectionConfig.fromMap(collectionName, requestBody);
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+        }
+    }
 
-            } catch (IOException e) {
-                logger.error("Failed to read config for {}: {}. Config content: {}",
-                        collectionName, e.getMessage(),
-                        readFileContent(configFile));
-                throw new RuntimeException("Failed to read config: " + collectionName, e);
-            } catch (IllegalArgumentException e) {
-                logger.error("Invalid distance metric in config for {}: {}",
-                        collectionName, e.getMessage());
-                throw new RuntimeException("Invalid config for: " + collectionName, e);
+    // Length of the file up to and including its last newline
+    static long completeLinesLength(Path path, long size) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long end = size;
+            while (end > 0) {
+                int length = (int) Math.min(buffer.capacity(), end);
+                buffer.clear().limit(length);
+                readFully(channel, buffer, end - length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return end - length + i + 1;
+                    }
+                }
+                end -= length;
             }
-        } else {
-            logger.warn("Collection config not found: {}", collectionName);
+            return 0;
+        }
+    }
+
+    private Object collectionLock(String vectorName) {
+        return collectionLocks.computeIfAbsent(vectorName, name -> new Object());
+    }
+
+    // Stored points are only reachable by parsing them, so searches go through getAllPointsFromVectorStore
+    @Override
+    public List<ScoredPoint> searchStoredVectors(String vectorName, float[] query, int limit, double minScore,
+                                                 Distance metric, FilterPredicate filter) {
+        return null;
+    }
+
+    @Override
+    public VectorStore getIndexedVectorStore(String vectorName) {
+        VectorStore indexedStore = indexedStores.get(vectorName);
+        if (indexedStore != null) {
+            return indexedStore;
+        }
+        if (unindexedCollections.contains(vectorName)) {
+            return null;
+        }
+        CollectionConfig config = fetchVectorFromStorage(vectorName);
+        if (config == null) {
             return null;
         }
+        if (config.getIndexType() != IndexType.Hnsw && config.getQuantization() == Quantization.None) {
+            unindexedCollections.add(vectorName);
+            return null;
+        }
+        synchronized (collectionLock(vectorName)) {
+            return indexedStores.computeIfAbsent(vectorName, name -> {
+                logger.info("Building in-memory index for persisted collection: {}", name);
+                VectorStore store = new VectorStore(config);
+                getAllPointsFromVectorStore(name).forEach(point -> mirrorPoint(store, name, point));
+                logger.info("Built in-memory index for {} with {} points", name, store.pointCount());
+                return store;
+            });
+        }
     }
 
-    // Helper method to safely read file content for error logging
-    private String readFileContent(Path file) {
+    // Points whose vector does not match the collection dimension stay on disk but are left out of the mirror
+    private void mirrorPoint(VectorStore store, String vectorName, Point point) {
         try {
-            return Files.readString(file);
-        } catch (IOException e) {
-            return "Unable to read file content";
+            store.addPoint(point);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Skipping point {} in the in-memory index of {}: {}", point.getId(), vectorName, e.getMessage());
         }
     }
 
-    public Map<String, CollectionConfig> fetchAllCollectionConfigs() {
-        Map<String, CollectionConfig> collectionConfigs = new HashMap<>();
-        Path configDir = Paths.get(CONFIG_DIR);
-
-        try {
-            if (!Files.exists(configDir)) {
-                logger.info("Config directory does not exist. Creating it.");
-                Files.createDirectories(configDir);
-                return collectionConfigs;
+    @Override
+    public String trainIvfIndex(String vectorName, int nlist) {
+        logger.info("Training IVF index for collection: {}", vectorName);
+        CollectionConfig config = fetchVectorFromStorage(vectorName);
+        if (config == null) {
+            throw new IllegalArgumentException("Persisted vector store not found: " + vectorName);
+        }
+        synchronized (collectionLock(vectorName)) {
+            // Ingest does not check dimensions, so points the index could not assign are left out. Only the vectors
+            // are held for k-means; the points are streamed from vectors.jsonl into the posting lists afterwards
+            List<float[]> vectors = new ArrayList<>();
+            scanPoints(vectorName, null, point -> {
+                if (hasDimension(point, config.getSize())) {
+                    vectors.add(point.getVector());
+                }
+                return true;
+            });
+            if (vectors.isEmpty()) {
+                throw new IllegalArgumentException("Cannot train IVF index without points of dimension "
+                        + config.getSize() + ": " + vectorName);
             }
-
-            // List all subdirectories in config directory
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(configDir, Files::isDirectory)) {
-                for (Path collectionConfigDir : stream) {
-                    String vectorName = collectionConfigDir.getFileName().toString();
-                    Path configFile = collectionConfigDir.resolve("config.json");
-
-                    if (Files.exists(configFile)) {
-                        try {
-                            // Read the JSON content as a Map first
-                            Map<String, Object> configMap = mapper.readValue(configFile.toFile(),
-                                    new TypeReference<Map<String, Object>>() {});
-
-                            // Convert the distance string to Distance enum
-                            String distanceStr = (String) configMap.get("distance");
-                            Distance distance = Distance.valueOf(distanceStr);
-
-                            // Create CollectionConfig using the existing fromMap method
-                            Map<String, Object> requestBody = new HashMap<>();
-                            requestBody.put("size", configMap.get("size"));
-                            requestBody.put("distance", distanceStr);
-                            requestBody.put("persist", String.valueOf(configMap.get("persist")));
-
-                            CollectionConfig config = CollectionConfig.fromMap(vectorName, requestBody);
-
-                            collectionConfigs.put(vectorName, config);
-                            logger.info("Fetched config for vector store: {}", vectorName);
-
-                        } catch (IOException e) {
-                            logger.error("Failed to read config file for {}: {}. Config content: {}",
-                                    vectorName, e.getMessage(),
-                                    Files.readString(configFile));
-                        } catch (IllegalArgumentException e) {
-                            logger.error("Invalid distance metric in config for {}: {}",
-                                    vectorName, e.getMessage());
+            int lists = nlist > 0 ? nlist : Math.max(1, (int) Math.sqrt(vectors.size()));
+            IvfIndex ivfIndex = IvfIndex.train(vectors, lists, distanceOf(vectorName)::score);
+            int points = vectors.size();
+            vectors.clear();
+
+            // Write a new generation next to the current one, then switch CURRENT to it
+            Path ivfDir = Paths.get(COLLECTIONS_DIR, vectorName, "ivf");
+            IvfLists previous = loadIvfLists(vectorName);
+            IvfLists next;
+            try {
+                IvfLists.deleteStale(ivfDir, previous != null ? previous.directory() : null);
+                Path generation = IvfLists.nextGeneration(ivfDir);
+                Files.createDirectories(generation);
+                next = new IvfLists(ivfIndex, generation);
+                try {
+                    scanPoints(vectorName, null, point -> {
+                        if (hasDimension(point, config.getSize())) {
+                            try {
+                                next.append(ivfIndex.assign(point.getVector()), jsonLine(point));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
                         }
-                    } else {
-                        logger.warn("Config file does not exist for vector store: {}", vectorName);
-                    }
+                        return true;
+                    });
+                    // Forces the posting lists before the generation is published
+                    next.close();
+                    IvfLists.publish(ivfDir, generation, mapper.writeValueAsBytes(ivfIndex.getCentroids()));
+                } catch (IOException | UncheckedIOException e) {
+                    next.close();
+                    IvfLists.deleteRecursively(generation);
+                    throw e;
                 }
+            } catch (IOException | UncheckedIOException e) {
+                logger.error("Failed to write IVF index for {}: {}", vectorName, e.getMessage());
+                throw new RuntimeException("Failed to write IVF index: " + vectorName, e);
             }
-        } catch (IOException e) {
-            logger.error("Failed to fetch configs: {}", e.getMessage());
-            throw new RuntimeException("Failed to fetch configs", e);
+            ivfIndexes.put(vectorName, next);
+            // Appends take the collection lock, so none reach the replaced lists from here on; searches still
+            // probing them finish before their directory is deleted
+            if (previous != null) {
+                retire(vectorName, previous);
+            }
+            logger.info("Trained IVF index for {} with {} lists over {} points", vectorName, ivfIndex.getListCount(), points);
+            return "Trained IVF index with " + ivfIndex.getListCount() + " lists over " + points + " points for " + vectorName;
         }
-        return collectionConfigs;
     }
 
-    public void addPayloadToVectorStore(String vectorName, Point point) {
-        logger.info("Adding payload to VectorStore: {}", vectorName);
-        try {
-            // Ensure collection exists
-            ensureCollectionExists(vectorName);
-
-            Path vectorPath = Paths.get(COLLECTIONS_DIR, vectorName, "vectors.jsonl");
+    @Override
+    public List<Point> getIvfCandidates(String vectorName, float[] query, int nprobe) {
+        while (true) {
+            IvfLists ivfLists = loadIvfLists(vectorName);
+            if (ivfLists == null) {
+                return null;
+            }
+            // A retrained index retires its lists only after their readers are done; if that already happened, the
+            // new generation is current
+            if (!ivfLists.acquire()) {
+                continue;
+            }
+            try {
+                IvfIndex ivfIndex = ivfLists.index();
+                List<Point> candidates = new ArrayList<>();
+                for (int list : ivfIndex.probe(query, nprobe)) {
+                    // Lists no point was assigned to are never created
+                    Path listPath = ivfLists.listPath(list);
+                    if (Files.exists(listPath)) {
+                        candidates.addAll(readPoints(listPath, vectorName));
+                    }
+                }
+                logger.info("IVF probed {} of {} lists in {} and read {} candidates",
+                        Math.min(nprobe, ivfIndex.getListCount()), ivfIndex.getListCount(), vectorName, candidates.size());
+                return candidates;
+            } finally {
+                ivfLists.release();
+            }
+        }
+    }
 
-            // Append the point as a single line JSON
-            String jsonLine = mapper.writeValueAsString(point) + "\n";
-            Files.write(vectorPath, jsonLine.getBytes(), StandardOpenOption.APPEND);
+    // Returns the current IVF generation of a collection, loading its centroids from disk once, or null if untrained
+    private IvfLists loadIvfLists(String vectorName) {
+        IvfLists ivfLists = ivfIndexes.get(vectorName);
+        if (ivfLists != null) {
+            return ivfLists;
+        }
+        Path ivfDir = Paths.get(COLLECTIONS_DIR, vectorName, "ivf");
+        if (!Files.exists(ivfDir.resolve(IvfLists.CURRENT))) {
+            return null;
+        }
+        return ivfIndexes.computeIfAbsent(vectorName, name -> {
+            try {
+                Path generation = IvfLists.current(ivfDir);
+                float[][] centroids = mapper.readValue(generation.resolve(IvfLists.CENTROIDS).toFile(), float[][].class);
+                return new IvfLists(new IvfIndex(centroids, distanceOf(name)::score), generation);
+            } catch (IOException e) {
+                logger.error("Failed to read IVF centroids for {}: {}", name, e.getMessage());
+                throw new RuntimeException("Failed to read IVF index: " + name, e);
+            }
+        });
+    }
 
-            logger.info("Payload added to VectorStore: {}", vectorName);
+    private void retire(String vectorName, IvfLists ivfLists) {
+        try {
+            ivfLists.retire();
         } catch (IOException e) {
-            logger.error("Failed to add payload: {}", e.getMessage());
-            throw new RuntimeException("Failed to add payload to VectorStore", e);
+            logger.warn("Failed to remove replaced IVF lists of {}: {}", vectorName, e.getMessage());
         }
     }
 
+    private static boolean hasDimension(Point point, int size) {
+        return point.getVector() != null && point.getVector().length == size;
+    }
+
+    // Metric of a persisted collection, cosine if its config does not name one
+    private Distance distanceOf(String vectorName) {
+        CollectionConfig config = fetchVectorFromStorage(vectorName);
+        return config != null && config.getDistance() != null ? config.getDistance() : Distance.Cosine;
+    }
+
+    // Served from the point cache when enabled: only lines appended since the last call are read and parsed
     public List<Point> getAllPointsFromVectorStore(String vectorName) {
-        List<Point> points = new ArrayList<>();
         Path vectorPath = Paths.get(COLLECTIONS_DIR, vectorName, "vectors.jsonl");
-
-        try {
+        if (!pointCache.isEnabled()) {
+            return readPoints(vectorPath, vectorName);
+        }
+        synchronized (collectionLock(vectorName)) {
             if (!Files.exists(vectorPath)) {
-                logger.warn("Vector store file does not exist: {}", vectorName);
-                return points;
+                pointCache.remove(vectorName);
+                logger.warn("Vector store file does not exist: {}", vectorPath);
+                return new ArrayList<>();
+            }
+            PointCache.Entry entry = pointCache.get(vectorName);
+            long size = fileSize(vectorPath);
+            if (entry == null || size < entry.getOffset()) {
+                // Not cached yet, or the file was replaced by a shorter one
+                entry = new PointCache.Entry();
             }
+            if (size > entry.getOffset()) {
+                // A partly written last line is left for the next call
+                entry.setOffset(scanLines(vectorPath, vectorName, entry.getOffset(), entry::add, false));
+                pointCache.put(vectorName, entry);
+                logger.debug("Point cache of {} read up to offset {}", vectorName, entry.getOffset());
+            }
+            return entry.points();
+        }
+    }
 
-            try (BufferedReader reader = Files.newBufferedReader(vectorPath)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (!line.trim().isEmpty()) {
-                        try {
-                            // Read each line as a Map first
-                            Map<String, Object> pointMap = mapper.readValue(line,
-                                    new TypeReference<Map<String, Object>>() {});
-
-                            // Extract values from the map
-                            String id = (String) pointMap.get("id");
-                            String content = (String) pointMap.get("content");
-                            @SuppressWarnings("unchecked")
-                            List<Number> vectorValues = (List<Number>) pointMap.get("vector");
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> metadata = (Map<String, Object>) pointMap.get("metadata");
-
-                            // Convert List<Number> to float[]
-                            float[] vector = null;
-                            if (vectorValues != null) {
-                                vector = new float[vectorValues.size()];
-                                for (int i = 0; i < vectorValues.size(); i++) {
-                                    vector[i] = vectorValues.get(i).floatValue();
-                                }
-                            }
+    private long fileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read size of " + path, e);
+        }
+    }
 
-                            // Create Point object using the appropriate constructor
-                            Point point;
-                            if (metadata != null) {
-                                point = new Point(UUID.fromString(id), content, vector, metadata);
-                            } else {
-                                point = new Point(UUID.fromString(id), content, vector);
-                            }
+    // Reads every point stored in a JSONL file, skipping lines that cannot be parsed
+    private List<Point> readPoints(Path vectorPath, String vectorName) {
+        List<Point> points = new ArrayList<>();
+        if (!Files.exists(vectorPath)) {
+            logger.warn("Vector store file does not exist: {}", vectorPath);
+            return points;
+        }
+        scanLines(vectorPath, vectorName, 0, points::add, true);
+        return points;
+    }
 
-                            points.add(point);
+    // vectors.jsonl is append-only, so single points cannot be removed from it
+    @Override
+    public boolean deletePoint(String vectorName, UUID pointId) {
+        throw new UnsupportedOperationException("Points cannot be deleted from JSONL-persisted collections; "
+                + "use storage.engine=segment or rocksdb");
+    }
 
-                        } catch (Exception e) {
-                            logger.error("Failed to parse point from line: {}. Error: {}", line, e.getMessage());
-                            continue;
-                        }
+    // The cursor is the byte offset of the next line in vectors.jsonl, so a scan resumes with a seek instead of re-reading
+    @Override
+    public String scanPoints(String vectorName, String cursor, Predicate<Point> visitor) {
+        Path vectorPath = Paths.get(COLLECTIONS_DIR, vectorName, "vectors.jsonl");
+        if (!Files.exists(vectorPath)) {
+            return null;
+        }
+        long start;
+        try {
+            start = cursor == null ? 0 : Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        if (start < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        boolean[] stopped = new boolean[1];
+        long next = scanLines(vectorPath, vectorName, start, point -> {
+            boolean more = visitor.test(point);
+            stopped[0] = !more;
+            return more;
+        }, true);
+        return stopped[0] && next < fileSize(vectorPath) ? Long.toString(next) : null;
+    }
+
+    // Parses the lines of a JSONL file from a byte offset and hands each point to the visitor, holding one read buffer
+    // and one line at a time, until the visitor returns false. A last line without a newline is only visited if
+    // lastPartialLine is set. Returns the offset after the last line read, where a later scan resumes
+    private long scanLines(Path vectorPath, String vectorName, long start, Predicate<Point> visitor, boolean lastPartialLine) {
+        try (FileChannel channel = FileChannel.open(vectorPath, StandardOpenOption.READ)) {
+            channel.position(start);
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = start;
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < buffer.limit(); i++) {
+                    if (bytes[i] != '\n') {
+                        continue;
+                    }
+                    line.write(bytes, lineStart, i - lineStart);
+                    // The line may have started in an earlier buffer
+                    position += line.size() + 1;
+                    lineStart = i + 1;
+                    boolean more = visitLine(line, visitor);
+                    line.reset();
+                    if (!more) {
+                        return position;
                     }
                 }
+                line.write(bytes, lineStart, buffer.limit() - lineStart);
+                buffer.clear();
+            }
+            // A last line without a trailing newline
+            if (lastPartialLine && line.size() > 0) {
+                visitLine(line, visitor);
+                position += line.size();
             }
+            return position;
         } catch (IOException e) {
             logger.error("Error while fetching points for vector store {}: {}", vectorName, e.getMessage());
             throw new RuntimeException("Failed to read points from vector store", e);
         }
-        return points;
+    }
+
+    // Returns false when the visitor stops the scan; blank and unparseable lines are skipped
+    private boolean visitLine(ByteArrayOutputStream line, Predicate<Point> visitor) {
+        String text = line.toString(StandardCharsets.UTF_8);
+        if (text.trim().isEmpty()) {
+            return true;
+        }
+        Point point;
+        try {
+            point = parsePoint(text);
+        } catch (Exception e) {
+            logger.error("Failed to parse point from line: {}. Error: {}", text, e.getMessage());
+            return true;
+        }
+        return visitor.test(point);
+    }
+
+    private Point parsePoint(String line) throws IOException {
+        // Read each line as a Map first
+        Map<String, Object> pointMap = mapper.readValue(line,
+                new TypeReference<Map<String, Object>>() {});
+
+        // Extract values from the map
+        String id = (String) pointMap.get("id");
+        String content = (String) pointMap.get("content");
+        @SuppressWarnings("unchecked")
+        List<Number> vectorValues = (List<Number>) pointMap.get("vector");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metadata = (Map<String, Object>) pointMap.get("metadata");
+
+        // Convert List<Number> to float[]
+        float[] vector = null;
+        if (vectorValues != null) {
+            vector = new float[vectorValues.size()];
+            for (int i = 0; i < vectorValues.size(); i++) {
+                vector[i] = vectorValues.get(i).floatValue();
+            }
+        }
+
+        // Create Point object using the appropriate constructor
+        if (metadata != null) {
+            return new Point(UUID.fromString(id), content, vector, metadata);
+        }
+        return new Point(UUID.fromString(id), content, vector);
     }
 
     public List<Point> getAllPointsFromVectorStoreWithFilter(String vectorName, Map<String, Object> metadata) {
@@ -352,6 +692,14 @@ public class JsonlVectorStoreService implements VectorStoreService {
     public boolean removeVector(String collectionName) {
         logger.info("Removing vector and config for collection: {}", collectionName);
         AtomicBoolean success = new AtomicBoolean(true);
+        indexedStores.remove(collectionName);
+        unindexedCollections.remove(collectionName);
+        IvfLists ivfLists = ivfIndexes.remove(collectionName);
+        if (ivfLists != null) {
+            retire(collectionName, ivfLists);
+        }
+        pointCache.remove(collectionName);
+        closeAppender(collectionName);
 
         try {
             // Remove vector directory and all its contents
@@ -395,6 +743,31 @@ public class JsonlVectorStoreService implements VectorStoreService {
         return success.get();
     }
 
+    private void closeAppender(String collectionName) {
+        LogAppender appender = appenders.remove(collectionName);
+        if (appender != null) {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close {}: {}", appender.path(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (String collectionName : new ArrayList<>(appenders.keySet())) {
+            closeAppender(collectionName);
+        }
+        for (Map.Entry<String, IvfLists> entry : ivfIndexes.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                logger.warn("Failed to close IVF lists of {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
     /**
      * Calculates the cosine similarity between two vectors.
      * Cosine similarity = (A·B)/(||A||×||B||)
@@ -422,23 +795,8 @@ public class JsonlVectorStoreService implements VectorStoreService {
         }
 
         try {
-            double dotProduct = 0.0;
-            double norm1 = 0.0;
-            double norm2 = 0.0;
-
-            for (int i = 0; i < vector1.length; i++) {
-                dotProduct += vector1[i] * vector2[i];
-                norm1 += vector1[i] * vector1[i];
-                norm2 += vector2[i] * vector2[i];
-            }
-
-            // Check for zero vectors
-            if (norm1 == 0 || norm2 == 0) {
-                logger.warn("One or both vectors have zero magnitude");
-                return 0.0;
-            }
-
-            double similarity = dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+            // Zero-magnitude vectors score 0
+            double similarity = Distance.Cosine.score(vector1, vector2);
 
             // Handle potential numerical errors
             if (similarity > 1.0) {
@@ -0,0 +1,125 @@
+package org.similake.jsonpersist;
+
+import org.similake.model.Point;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed points of JSONL-persisted collections, so that searches and listings stop re-reading and re-parsing
+ * vectors.jsonl. Each entry remembers the byte offset of the file it has read up to; lines appended after it, by
+ * this service or by another process, are parsed on the next access.
+ * Whole collections are evicted, least recently used first, once their estimated heap footprint exceeds the budget;
+ * a collection larger than the budget on its own is not cached at all.
+ */
+class PointCache {
+
+    private final long maxBytes;
+    // Access-ordered, so iteration starts at the least recently used collection
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    PointCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    // Returns the cached entry of a collection and marks it as recently used, or null
+    synchronized Entry get(String collectionName) {
+        return entries.get(collectionName);
+    }
+
+    // Caches an entry, or re-accounts one that grew, then evicts until the budget holds
+    synchronized void put(String collectionName, Entry entry) {
+        Entry previous = entries.remove(collectionName);
+        if (previous != null) {
+            totalBytes -= previous.accountedBytes;
+        }
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        entry.accountedBytes = entry.bytes;
+        entries.put(collectionName, entry);
+        totalBytes += entry.bytes;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> candidate = eldest.next();
+            if (!candidate.getKey().equals(collectionName)) {
+                totalBytes -= candidate.getValue().accountedBytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    synchronized void remove(String collectionName) {
+        Entry entry = entries.remove(collectionName);
+        if (entry != null) {
+            totalBytes -= entry.accountedBytes;
+        }
+    }
+
+    synchronized long sizeInBytes() {
+        return totalBytes;
+    }
+
+    synchronized int collectionCount() {
+        return entries.size();
+    }
+
+    /**
+     * The points read from one vectors.jsonl and the offset after the last line parsed. Points are only appended, and
+     * views returned by points() cover what was present when they were taken, so readers need no copy.
+     * Writers are serialized by the service's collection lock.
+     */
+    static class Entry {
+        private Point[] points = new Point[64];
+        private int size;
+        private long offset;
+        private long bytes;
+        // Bytes charged against the budget when the entry was last put
+        private long accountedBytes;
+
+        boolean add(Point point) {
+            if (size == points.length) {
+                points = Arrays.copyOf(points, size * 2);
+            }
+            points[size++] = point;
+            bytes += estimateBytes(point);
+            return true;
+        }
+
+        List<Point> points() {
+            return Collections.unmodifiableList(Arrays.asList(points).subList(0, size));
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        void setOffset(long offset) {
+            this.offset = offset;
+        }
+
+        // Rough heap footprint of a parsed point: object headers, the vector, the content and the metadata map
+        private static long estimateBytes(Point point) {
+            long bytes = 96;
+            if (point.getVector() != null) {
+                bytes += 16 + 4L * point.getVector().length;
+            }
+            if (point.getContent() != null) {
+                bytes += 40 + point.getContent().length();
+            }
+            if (point.getMetadata() != null) {
+                bytes += 64 + 96L * point.getMetadata().size();
+            }
+            return bytes;
+        }
+    }
+}
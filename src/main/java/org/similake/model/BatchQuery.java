@@ -0,0 +1,69 @@
+package org.similake.model;
+
+import org.similake.creteria.FilterCriteria;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One query of a batch similarity request, with its own limit, threshold and metadata filters
+public class BatchQuery {
+
+    private float[] embedding;
+    private int limit = 10;
+    private Double threshold;
+    private List<FilterCriteria> filters = new ArrayList<>();
+
+    // Default constructor
+    public BatchQuery() {
+    }
+
+    public BatchQuery(float[] embedding, int limit, Double threshold, List<FilterCriteria> filters) {
+        this.embedding = embedding;
+        this.limit = limit;
+        this.threshold = threshold;
+        this.filters = filters;
+    }
+
+    // Getters and Setters
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(float[] embedding) {
+        this.embedding = embedding;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public Double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Double threshold) {
+        this.threshold = threshold;
+    }
+
+    public List<FilterCriteria> getFilters() {
+        return filters;
+    }
+
+    public void setFilters(List<FilterCriteria> filters) {
+        this.filters = filters != null ? filters : new ArrayList<>();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchQuery{" +
+                "dimension=" + (embedding != null ? embedding.length : 0) +
+                ", limit=" + limit +
+                ", threshold=" + threshold +
+                ", filters=" + filters.size() +
+                '}';
+    }
+}
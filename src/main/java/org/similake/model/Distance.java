@@ -1,18 +1,41 @@
 package org.similake.model;
 
+import org.similake.distance.VectorKernels;
+
 /**
  * Enum to represent different types of distance measures with corresponding numeric values.
- * 
+ * Each constant scores vectors through the shared {@link VectorKernels} kernel.
+ *
  * @see <a href="https://en.wikipedia.org/wiki/Cosine_similarity">Cosine Similarity</a>
  * @see <a href="https://en.wikipedia.org/wiki/Euclidean_distance">Euclidean Distance</a>
  * @see <a href="https://en.wikipedia.org/wiki/Dot_product">Dot Product</a>
  * @see <a href="https://simple.wikipedia.org/wiki/Manhattan_distance">Manhattan Distance</a>
  */
 public enum Distance {
-    Cosine(1),   // Cosine similarity
-    Euclidean(2),   // Euclidean distance
-    Dot(3),      // Dot product
-    Manhattan(4); // Manhattan distance
+    Cosine(1) {   // Cosine similarity
+        @Override
+        public double score(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            return VectorKernels.get().cosine(a, aOffset, b, bOffset, length);
+        }
+    },
+    Euclidean(2) {   // Euclidean distance
+        @Override
+        public double score(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            return -Math.sqrt(VectorKernels.get().squaredEuclidean(a, aOffset, b, bOffset, length));
+        }
+    },
+    Dot(3) {      // Dot product
+        @Override
+        public double score(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            return VectorKernels.get().dot(a, aOffset, b, bOffset, length);
+        }
+    },
+    Manhattan(4) { // Manhattan distance
+        @Override
+        public double score(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            return -VectorKernels.get().manhattan(a, aOffset, b, bOffset, length);
+        }
+    };
 
     private final int value;
 
@@ -25,4 +48,29 @@ public enum Distance {
     public int getValue() {
         return value;
     }
+
+    /**
+     * Scores two vector slices so that a higher score always means more similar: similarities are
+     * returned as-is and distances negated. Indexes and top-k heaps rank by this score.
+     */
+    public abstract double score(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    public double score(float[] a, float[] b) {
+        return score(a, 0, b, 0, a.length);
+    }
+
+    // Euclidean and Manhattan are distances: smaller is better
+    public boolean isDistance() {
+        return this == Euclidean || this == Manhattan;
+    }
+
+    // Value reported to clients for a score: the similarity itself, or the positive distance
+    public double toReported(double score) {
+        return isDistance() ? -score : score;
+    }
+
+    // Score matching a reported value, so thresholds given by clients can be compared against scores
+    public double fromReported(double value) {
+        return isDistance() ? -value : value;
+    }
 }
@@ -0,0 +1,11 @@
+package org.similake.model;
+
+/**
+ * Enum to represent the vector index maintained for a collection.
+ *
+ * @see <a href="https://arxiv.org/abs/1603.09320">Hierarchical Navigable Small World graphs</a>
+ */
+public enum IndexType {
+    Flat,   // Exact scan over every point
+    Hnsw    // Approximate nearest-neighbour graph
+}
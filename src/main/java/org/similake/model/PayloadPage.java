@@ -0,0 +1,37 @@
+package org.similake.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One page of a payload listing and the opaque cursor of the next page, null on the last page
+public class PayloadPage {
+
+    private List<Payload> payloads = new ArrayList<>();
+    private String nextCursor;
+
+    // Default constructor
+    public PayloadPage() {
+    }
+
+    public PayloadPage(List<Payload> payloads, String nextCursor) {
+        this.payloads = payloads;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<Payload> getPayloads() {
+        return payloads;
+    }
+
+    public void setPayloads(List<Payload> payloads) {
+        this.payloads = payloads;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,13 @@
+package org.similake.model;
+
+/**
+ * Enum to represent how a collection compresses its vectors for scoring.
+ *
+ * @see <a href="https://ieeexplore.ieee.org/document/5432202">Product Quantization for Nearest Neighbor Search</a>
+ */
+public enum Quantization {
+    None,      // Full-precision float vectors only
+    Product,   // M-byte product-quantization codes scored with per-query lookup tables
+    Scalar,    // One signed byte per dimension scored with integer dot products
+    Binary     // One sign bit per dimension scored with Hamming distance, always rescored
+}
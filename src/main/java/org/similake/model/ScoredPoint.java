@@ -0,0 +1,21 @@
+package org.similake.model;
+
+// A stored point and its similarity to a query, on the internal higher-is-better scale
+public class ScoredPoint {
+
+    private final Point point;
+    private final double score;
+
+    public ScoredPoint(Point point, double score) {
+        this.point = point;
+        this.score = score;
+    }
+
+    public Point getPoint() {
+        return point;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
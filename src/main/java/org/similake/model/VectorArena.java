@@ -0,0 +1,78 @@
+package org.similake.model;
+
+import java.util.Arrays;
+
+/**
+ * Append-only columnar storage for the vectors of one collection. Vectors are laid out
+ * back to back in large float pages (ordinal o lives at offset (o % PAGE_VECTORS) * dimension
+ * of page o / PAGE_VECTORS), so a scan streams linearly through a few big arrays instead of
+ * following one pointer per point. Pages keep every block below the 2^31 element array limit;
+ * only the last page grows, geometrically, until it is full.
+ * Writers are serialized; readers see every ordinal below size() without locking.
+ */
+public class VectorArena {
+    public static final int PAGE_SHIFT = 14;
+    public static final int PAGE_VECTORS = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_VECTORS - 1;
+    private static final int INITIAL_VECTORS = 64;
+
+    private final int dimension;
+    private volatile float[][] pages = new float[0][];
+    private volatile int size;
+
+    public VectorArena(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Vector dimension must be positive");
+        }
+        this.dimension = dimension;
+    }
+
+    // Copy a vector into the arena and return its ordinal
+    public synchronized int add(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + dimension + " but got "
+                    + (vector == null ? "none" : vector.length));
+        }
+        int ordinal = size;
+        int pageIndex = ordinal >>> PAGE_SHIFT;
+        int slot = ordinal & PAGE_MASK;
+        float[][] current = pages;
+        if (pageIndex == current.length) {
+            current = Arrays.copyOf(current, pageIndex + 1);
+            current[pageIndex] = new float[INITIAL_VECTORS * dimension];
+        } else if ((slot + 1) * dimension > current[pageIndex].length) {
+            current = current.clone();
+            int capacity = Math.min(PAGE_VECTORS, current[pageIndex].length / dimension * 2);
+            current[pageIndex] = Arrays.copyOf(current[pageIndex], capacity * dimension);
+        }
+        System.arraycopy(vector, 0, current[pageIndex], slot * dimension, dimension);
+        pages = current;
+        // Publishing the size last makes the copied vector visible to lock-free readers
+        size = ordinal + 1;
+        return ordinal;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    // Backing page holding the vector of an ordinal
+    public float[] page(int ordinal) {
+        return pages[ordinal >>> PAGE_SHIFT];
+    }
+
+    // Offset of the vector of an ordinal inside its page
+    public int offset(int ordinal) {
+        return (ordinal & PAGE_MASK) * dimension;
+    }
+
+    // Copy of the vector at an ordinal
+    public float[] get(int ordinal) {
+        int offset = offset(ordinal);
+        return Arrays.copyOfRange(page(ordinal), offset, offset + dimension);
+    }
+}
@@ -1,25 +1,174 @@
 package org.similake.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterCriteria;
+import org.similake.creteria.FilterPredicate;
+import org.similake.distance.VectorKernel;
+import org.similake.distance.VectorKernels;
+import org.similake.index.HnswIndex;
+import org.similake.index.MetadataIndex;
+import org.similake.index.Neighbor;
+import org.similake.index.TopK;
+import org.similake.index.VectorValues;
+import org.similake.quantization.BinaryQuantizer;
+import org.similake.quantization.ProductQuantizer;
+import org.similake.quantization.ScalarQuantizer;
+import org.similake.quantization.VectorQuantizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
 
+/**
+ * In-memory collection stored column by column: the vectors sit back to back in a {@link VectorArena}
+ * and ids, metadata and content live in parallel arrays indexed by ordinal. Scans stream through the
+ * vector pages and only touch the other columns for the points they return.
+ * Writers are serialized; readers see every ordinal below pointCount() without locking.
+ */
 public class VectorStore {
+    private static final Logger logger = LoggerFactory.getLogger(VectorStore.class);
+    private static final int INITIAL_CAPACITY = 64;
+    // Vector block reused across the queries of a batch: 64 KB of floats, well inside L2
+    private static final int BATCH_BLOCK_FLOATS = 16 * 1024;
+
     // Fields representing size and distance calculation type
     private int size;
     private Distance distanceType;
-    private List<Point> points;
+    // Metric every search ranks by, cosine when the store was created without one
+    private final Distance metric;
+    // Vector column, released once a quantizer holds the only copy the store needs
+    private volatile VectorArena vectors;
+    // Id column, split into the two halves of each UUID
+    private volatile long[] idHigh = new long[INITIAL_CAPACITY];
+    private volatile long[] idLow = new long[INITIAL_CAPACITY];
+    private volatile Map<String, Object>[] metadata = newMetadataColumn(INITIAL_CAPACITY);
+    private volatile String[] contents = new String[INITIAL_CAPACITY];
+    // Cosine only: L2 norm of every vector, computed once at ingest so a comparison is a single dot product
+    private volatile float[] norms = new float[INITIAL_CAPACITY];
+    // Number of published points, written after every column so readers never see a partial point
+    private volatile int count;
+    // Inverted index from metadata values to the ordinals holding them, plus the declared range indexes
+    private final MetadataIndex metadataIndex;
+    // Optional approximate nearest-neighbour index, ordinals match the column ordinals
+    private HnswIndex hnswIndex;
+    // Optional compressed copy of the vectors, ordinals match the column ordinals once trained
+    private VectorQuantizer quantizer;
+    private int quantizationTrainingSize;
+    private boolean rerank;
+    private int oversample;
+    // Original vectors are released after encoding unless something still needs them
+    private boolean keepOriginals = true;
 
 
     // Constructor to initialize VectorStore with size and distance type
     public VectorStore(int size, Distance distanceType) {
+        this(size, distanceType, List.of());
+    }
+
+    private VectorStore(int size, Distance distanceType, List<String> rangeIndexFields) {
         this.size = size;
         this.distanceType = distanceType;
-        this.points = new ArrayList<>();
+        this.metric = distanceType != null ? distanceType : Distance.Cosine;
+        this.vectors = new VectorArena(size);
+        this.metadataIndex = new MetadataIndex(rangeIndexFields);
+    }
+
+    // Constructor to initialize VectorStore from a collection config, building the configured index
+    public VectorStore(CollectionConfig config) {
+        this(config.getSize(), config.getDistance(), config.getRangeIndexFields());
+        if (config.getIndexType() == IndexType.Hnsw) {
+            this.hnswIndex = new HnswIndex(config.getHnswM(), config.getHnswEfConstruction(), new ArenaVectorValues());
+        }
+        if (config.getQuantization() != Quantization.None) {
+            this.quantizer = switch (config.getQuantization()) {
+                case Product -> new ProductQuantizer(config.getSize(), config.getPqSubvectors(), metric);
+                case Scalar -> new ScalarQuantizer(config.getSize(), metric);
+                case Binary -> new BinaryQuantizer(config.getSize());
+                default -> throw new IllegalArgumentException("Unsupported quantization: " + config.getQuantization());
+            };
+            this.quantizationTrainingSize = config.getQuantizationTrainingSize();
+            // Hamming distances only rank candidates, so binary codes are always rescored
+            this.rerank = config.isRerank() || config.getQuantization() == Quantization.Binary;
+            this.oversample = config.getOversample();
+            // Rescoring and the HNSW graph both read the original vectors
+            this.keepOriginals = rerank || hnswIndex != null;
+        }
+    }
+
+    // Method to add a Point to the store; the point's fields are copied into the columns
+    public synchronized void addPoint(Point point) {
+        float[] vector = point.getVector();
+        if (vector == null || vector.length != size) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + size + " but got "
+                    + (vector == null ? "none" : vector.length));
+        }
+        int ordinal = count;
+        ensureCapacity(ordinal + 1);
+        idHigh[ordinal] = point.getId().getMostSignificantBits();
+        idLow[ordinal] = point.getId().getLeastSignificantBits();
+        metadata[ordinal] = point.getMetadata();
+        contents[ordinal] = point.getContent();
+        if (metric == Distance.Cosine) {
+            norms[ordinal] = (float) Math.sqrt(VectorKernels.get().dot(vector, 0, vector, 0, size));
+        }
+        VectorArena arena = vectors;
+        if (arena != null) {
+            arena.add(vector);
+        }
+        metadataIndex.add(ordinal, point.getMetadata());
+        count = ordinal + 1;
+
+        if (hnswIndex != null) {
+            hnswIndex.add(vector);
+        }
+        if (quantizer != null) {
+            if (quantizer.isTrained()) {
+                quantizer.add(vector);
+            } else if (count >= quantizationTrainingSize) {
+                trainQuantizer();
+            }
+        }
+    }
+
+    // Grow every non-vector column to hold at least the given number of points
+    private void ensureCapacity(int required) {
+        if (required <= contents.length) {
+            return;
+        }
+        int capacity = Math.max(required, contents.length * 2);
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        metadata = Arrays.copyOf(metadata, capacity);
+        contents = Arrays.copyOf(contents, capacity);
+        norms = Arrays.copyOf(norms, capacity);
     }
 
-    // Method to add a Point to the store
-    public void addPoint(Point point) {
-        this.points.add(point);
+    // Train on every buffered vector, then encode them all
+    private void trainQuantizer() {
+        VectorArena arena = vectors;
+        List<float[]> buffered = new ArrayList<>(arena.size());
+        for (int ordinal = 0; ordinal < arena.size(); ordinal++) {
+            buffered.add(arena.get(ordinal));
+        }
+        quantizer.train(buffered);
+        buffered.forEach(quantizer::add);
+        if (!keepOriginals) {
+            vectors = null;
+        }
+        logger.info("Trained {} over {} points: {} bytes per vector instead of {}",
+                quantizer.getClass().getSimpleName(), buffered.size(), quantizer.bytesPerVector(), size * Float.BYTES);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object>[] newMetadataColumn(int capacity) {
+        return (Map<String, Object>[]) new Map[capacity];
     }
 
     // Getter for size
@@ -32,10 +181,260 @@ public class VectorStore {
         return distanceType;
     }
 
-    // Getter for the list of points
+    // Number of points in the store
+    public int pointCount() {
+        return count;
+    }
+
+    // Materializes every point; prefer the ordinal accessors on hot paths
     public List<Point> getPoints() {
+        int snapshot = count;
+        List<Point> points = new ArrayList<>(snapshot);
+        for (int ordinal = 0; ordinal < snapshot; ordinal++) {
+            points.add(getPoint(ordinal));
+        }
         return points;
     }
 
+    public Point getPoint(int ordinal) {
+        return new Point(getId(ordinal), getContent(ordinal), getVector(ordinal), getMetadata(ordinal));
+    }
+
+    public UUID getId(int ordinal) {
+        return new UUID(idHigh[ordinal], idLow[ordinal]);
+    }
+
+    public Map<String, Object> getMetadata(int ordinal) {
+        return metadata[ordinal];
+    }
+
+    public String getContent(int ordinal) {
+        return contents[ordinal];
+    }
+
+    // Vector of the point at an ordinal, reconstructed from its code if the original was released
+    public float[] getVector(int ordinal) {
+        VectorArena arena = vectors;
+        return arena != null ? arena.get(ordinal) : quantizer.reconstruct(ordinal);
+    }
+
+    // Payload view of the point at an ordinal
+    public Payload toPayload(int ordinal) {
+        return new Payload(getId(ordinal).toString(), getMetadata(ordinal),
+                getContent(ordinal), List.of(), getVector(ordinal));
+    }
+
+    /**
+     * Scores ordinals against one query under the store's metric, reading vectors in place from the arena.
+     * For cosine the query norm is computed once here and the stored norms are reused.
+     */
+    public IntToDoubleFunction scorer(float[] query) {
+        VectorArena arena = vectors;
+        if (arena == null) {
+            return ordinal -> metric.score(query, quantizer.reconstruct(ordinal));
+        }
+        if (metric == Distance.Cosine) {
+            VectorKernel kernel = VectorKernels.get();
+            double queryNorm = Math.sqrt(kernel.dot(query, 0, query, 0, size));
+            return ordinal -> cosine(kernel.dot(query, 0, arena.page(ordinal), arena.offset(ordinal), size),
+                    queryNorm, norms[ordinal]);
+        }
+        return ordinal -> metric.score(query, 0, arena.page(ordinal), arena.offset(ordinal), size);
+    }
+
+    private static double cosine(double dot, double norm1, double norm2) {
+        return norm1 == 0 || norm2 == 0 ? 0 : dot / (norm1 * norm2);
+    }
+
+    @JsonIgnore
+    public boolean hasHnswIndex() {
+        return hnswIndex != null;
+    }
+
+    @JsonIgnore
+    public boolean hasOriginalVectors() {
+        return vectors != null;
+    }
+
+    @JsonIgnore
+    public boolean hasTrainedQuantizer() {
+        return quantizer != null && quantizer.isTrained();
+    }
+
+    /**
+     * Ordinals of the published points passing every filter, ascending, answered from the metadata index.
+     * Returns null when no filter can use the index and the caller has to check every point itself.
+     */
+    public int[] matchingOrdinals(List<FilterCriteria> filters) {
+        int snapshot = count;
+        MetadataIndex.Resolution resolution = metadataIndex.resolve(filters);
+        if (resolution == null) {
+            return null;
+        }
+        List<FilterCriteria> remaining = resolution.getRemainingFilters();
+        FilterPredicate residual = FilterPredicate.compile(remaining);
+        int[] candidates = resolution.getOrdinals().toArray();
+        int matches = 0;
+        for (int ordinal : candidates) {
+            // The index may already hold a point that is still being published
+            if (ordinal < snapshot && (remaining.isEmpty() || residual.test(metadata[ordinal]))) {
+                candidates[matches++] = ordinal;
+            }
+        }
+        return matches == candidates.length ? candidates : Arrays.copyOf(candidates, matches);
+    }
+
+    // Estimated share of the published points passing the filters, from the metadata statistics
+    public MetadataIndex.Estimate estimateFilter(List<FilterCriteria> filters) {
+        return metadataIndex.estimate(filters, count);
+    }
+
+    /**
+     * Exact search: streams through the vector pages in ordinal order and keeps the best limit
+     * matches in a bounded heap. Ordinals rejected by accept are skipped before scoring.
+     */
+    public List<Neighbor> searchExact(float[] query, int limit, IntPredicate accept) {
+        TopK topK = new TopK(limit);
+        scanExact(query, 0, count, accept, topK);
+        return topK.toSortedList();
+    }
+
+    // Score the ordinals in [from, to) against the original vectors into the given heap
+    public void scanExact(float[] query, int from, int to, IntPredicate accept, TopK topK) {
+        VectorArena arena = vectors;
+        if (arena == null) {
+            throw new IllegalStateException("VectorStore has released its original vectors");
+        }
+        int end = Math.min(to, Math.min(count, arena.size()));
+        boolean cosine = metric == Distance.Cosine;
+        VectorKernel kernel = VectorKernels.get();
+        double queryNorm = cosine ? Math.sqrt(kernel.dot(query, 0, query, 0, size)) : 0;
+        float[] vectorNorms = norms;
+        int ordinal = from;
+        while (ordinal < end) {
+            // Stay inside one page so the inner loop walks a single array
+            float[] page = arena.page(ordinal);
+            int pageEnd = Math.min(end, (ordinal / VectorArena.PAGE_VECTORS + 1) * VectorArena.PAGE_VECTORS);
+            for (int offset = arena.offset(ordinal); ordinal < pageEnd; ordinal++, offset += size) {
+                if (accept != null && !accept.test(ordinal)) {
+                    continue;
+                }
+                topK.offer(ordinal, cosine
+                        ? cosine(kernel.dot(query, 0, page, offset, size), queryNorm, vectorNorms[ordinal])
+                        : metric.score(query, 0, page, offset, size));
+            }
+        }
+    }
+
+    // Score ordinals[from, to) against the query into the given heap, for filtered subsets of the store
+    public void scanOrdinals(float[] query, int[] ordinals, int from, int to, TopK topK) {
+        IntToDoubleFunction scorer = scorer(query);
+        for (int i = from; i < to; i++) {
+            topK.offer(ordinals[i], scorer.applyAsDouble(ordinals[i]));
+        }
+    }
+
+    /**
+     * Exact scan of [from, to) for a batch of queries, heaps[q] collecting the results of queries[q].
+     * The range is cut into blocks of about BATCH_BLOCK_FLOATS floats, small enough to stay in cache, and
+     * every query is scored against a block before moving on, so each vector is read from memory once
+     * per block instead of once per query. accepts[q] may be null for an unfiltered query.
+     */
+    public void scanExactBatch(float[][] queries, int from, int to, IntPredicate[] accepts, TopK[] heaps) {
+        VectorArena arena = vectors;
+        if (arena == null) {
+            throw new IllegalStateException("VectorStore has released its original vectors");
+        }
+        int end = Math.min(to, Math.min(count, arena.size()));
+        boolean cosine = metric == Distance.Cosine;
+        VectorKernel kernel = VectorKernels.get();
+        double[] queryNorms = new double[queries.length];
+        if (cosine) {
+            for (int q = 0; q < queries.length; q++) {
+                queryNorms[q] = Math.sqrt(kernel.dot(queries[q], 0, queries[q], 0, size));
+            }
+        }
+        float[] vectorNorms = norms;
+        int blockVectors = Math.max(1, BATCH_BLOCK_FLOATS / size);
+        int blockStart = from;
+        while (blockStart < end) {
+            // Blocks never cross a page, so each one is a single run of one array
+            float[] page = arena.page(blockStart);
+            int pageEnd = (blockStart / VectorArena.PAGE_VECTORS + 1) * VectorArena.PAGE_VECTORS;
+            int blockEnd = Math.min(end, Math.min(pageEnd, blockStart + blockVectors));
+            int blockOffset = arena.offset(blockStart);
+            for (int q = 0; q < queries.length; q++) {
+                float[] query = queries[q];
+                IntPredicate accept = accepts[q];
+                TopK topK = heaps[q];
+                for (int ordinal = blockStart, offset = blockOffset; ordinal < blockEnd; ordinal++, offset += size) {
+                    if (accept != null && !accept.test(ordinal)) {
+                        continue;
+                    }
+                    topK.offer(ordinal, cosine
+                            ? cosine(kernel.dot(query, 0, page, offset, size), queryNorms[q], vectorNorms[ordinal])
+                            : metric.score(query, 0, page, offset, size));
+                }
+            }
+            blockStart = blockEnd;
+        }
+    }
+
+    // Approximate search through the HNSW index; returned ordinals are column ordinals
+    public List<Neighbor> searchHnsw(float[] query, int limit, int ef, IntPredicate accept) {
+        if (hnswIndex == null) {
+            throw new IllegalStateException("VectorStore has no HNSW index");
+        }
+        return hnswIndex.search(query, limit, ef, accept);
+    }
+
+    /**
+     * Scans the quantized codes and keeps the best limit * oversample candidates, then rescores them
+     * against the original vectors when rerank is enabled. Without rerank the approximate scores are returned.
+     */
+    public List<Neighbor> searchQuantized(float[] query, int limit, IntPredicate accept) {
+        if (!hasTrainedQuantizer()) {
+            throw new IllegalStateException("VectorStore has no trained quantizer");
+        }
+        // Read the size before taking the scorer so every scanned ordinal is covered by its code snapshot
+        int total = quantizer.size();
+        IntToDoubleFunction scorer = quantizer.scorer(query);
+        TopK shortlist = new TopK(rerank ? limit * oversample : limit);
+        for (int ordinal = 0; ordinal < total; ordinal++) {
+            if (accept != null && !accept.test(ordinal)) {
+                continue;
+            }
+            shortlist.offer(ordinal, scorer.applyAsDouble(ordinal));
+        }
+        if (!rerank) {
+            return shortlist.toSortedList();
+        }
+
+        IntToDoubleFunction exact = scorer(query);
+        TopK results = new TopK(limit);
+        for (Neighbor candidate : shortlist.toSortedList()) {
+            results.offer(candidate.getOrdinal(), exact.applyAsDouble(candidate.getOrdinal()));
+        }
+        return results.toSortedList();
+    }
+
+    // Exposes the arena to the HNSW graph without copying vectors out of it
+    private class ArenaVectorValues implements VectorValues {
+        @Override
+        public IntToDoubleFunction scorer(float[] query) {
+            return VectorStore.this.scorer(query);
+        }
+
+        @Override
+        public double similarity(int ordinal1, int ordinal2) {
+            VectorArena arena = vectors;
+            if (metric == Distance.Cosine) {
+                return cosine(VectorKernels.get().dot(arena.page(ordinal1), arena.offset(ordinal1),
+                        arena.page(ordinal2), arena.offset(ordinal2), size), norms[ordinal1], norms[ordinal2]);
+            }
+            return metric.score(arena.page(ordinal1), arena.offset(ordinal1),
+                    arena.page(ordinal2), arena.offset(ordinal2), size);
+        }
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package org.similake.persist;
+
+import org.similake.model.Point;
+
+import java.util.List;
+
+// Storage engines whose persisted collections can be partitioned with an IVF index. Engines that score their stored
+// vectors in place (VectorStoreService.searchStoredVectors) never read partitions and do not implement it
+public interface IvfVectorStoreService {
+
+    // Method to (re)train the IVF partitions of a persisted collection; nlist <= 0 picks sqrt(points)
+    String trainIvfIndex(String vectorName, int nlist);
+
+    // Method to fetch the points in the nprobe IVF partitions closest to the query, or null if no IVF index is trained
+    List<Point> getIvfCandidates(String vectorName, float[] query, int nprobe);
+}
@@ -0,0 +1,344 @@
+package org.similake.persist;
+
+import org.similake.model.Point;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Versioned binary encoding of points, little-endian throughout:
+ * <pre>
+ * byte    version (1)
+ * byte[3] reserved
+ * int     dimension, -1 without a vector
+ * long    id, most significant bits
+ * long    id, least significant bits
+ * float[] vector, starting at VECTOR_OFFSET so it is 4-byte aligned and can be read without decoding the rest
+ * string  content
+ * value   metadata, a map or null
+ * </pre>
+ * Strings are an int byte length (-1 for null) followed by UTF-8. Values are a type tag followed by the value:
+ * metadata keeps its JSON types (strings, numbers, booleans, lists and nested maps), and numbers keep their Java type.
+ * Values written with Java serialization by earlier versions are recognized by their stream header and still decoded.
+ * <p>
+ * The parts of a point can also be encoded on their own, for stores that keep them apart: a vector is its raw
+ * little-endian floats with no header, so it can be scored straight from the bytes, and metadata is the version byte
+ * followed by the metadata value.
+ */
+public final class PointCodec {
+
+    public static final byte VERSION = 1;
+    // Byte offset of the first vector component
+    public static final int VECTOR_OFFSET = 24;
+
+    // First two bytes of every Java serialization stream
+    private static final byte JAVA_STREAM_MAGIC_0 = (byte) 0xAC;
+    private static final byte JAVA_STREAM_MAGIC_1 = (byte) 0xED;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte LIST = 7;
+    private static final byte MAP = 8;
+    private static final byte BIG_INTEGER = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte SHORT = 11;
+    private static final byte BYTE = 12;
+
+    private PointCodec() {
+    }
+
+    public static byte[] encode(Point point) {
+        byte[] content = utf8(point.getContent());
+        float[] vector = point.getVector();
+        int dimension = vector == null ? -1 : vector.length;
+        Writer writer = new Writer(VECTOR_OFFSET + 4 * Math.max(dimension, 0) + 4 + (content == null ? 0 : content.length) + 64);
+        writer.buffer.put(VERSION).put((byte) 0).putShort((short) 0).putInt(dimension)
+                .putLong(point.getId().getMostSignificantBits()).putLong(point.getId().getLeastSignificantBits());
+        if (vector != null) {
+            writer.buffer.asFloatBuffer().put(vector);
+            writer.buffer.position(writer.buffer.position() + 4 * dimension);
+        }
+        writer.putBytes(content);
+        writer.putValue(point.getMetadata());
+        return writer.toByteArray();
+    }
+
+    public static Point decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        if (isJavaSerialized(bytes)) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (Point) in.readObject();
+            }
+        }
+        ByteBuffer buffer = header(bytes);
+        int dimension = buffer.getInt();
+        UUID id = new UUID(buffer.getLong(), buffer.getLong());
+        float[] vector = null;
+        if (dimension >= 0) {
+            vector = new float[dimension];
+            buffer.asFloatBuffer().get(vector);
+            buffer.position(buffer.position() + 4 * dimension);
+        }
+        try {
+            String content = readString(buffer);
+            Object metadata = readValue(buffer);
+            if (metadata != null && !(metadata instanceof Map)) {
+                throw new IOException("Point metadata is not a map");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) metadata;
+            return new Point(id, content, vector, map);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt point value", e);
+        }
+    }
+
+    public static byte[] encodeVector(float[] vector) {
+        if (vector == null) {
+            return new byte[0];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 * vector.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    // Number of components of an encoded vector
+    public static int vectorDimension(byte[] bytes) {
+        return bytes.length / 4;
+    }
+
+    // Decodes an encoded vector into target from offset on; target must have room for all of its components
+    public static void decodeVector(byte[] bytes, float[] target, int offset) {
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(target, offset, vectorDimension(bytes));
+    }
+
+    // Decodes an encoded vector; an empty value stands for a point without a vector
+    public static float[] decodeVector(byte[] bytes) {
+        if (bytes.length == 0) {
+            return null;
+        }
+        float[] vector = new float[vectorDimension(bytes)];
+        decodeVector(bytes, vector, 0);
+        return vector;
+    }
+
+    public static byte[] encodeMetadata(Map<String, Object> metadata) {
+        Writer writer = new Writer(64);
+        writer.putTag(VERSION);
+        writer.putValue(metadata);
+        return writer.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> decodeMetadata(byte[] bytes) throws IOException {
+        if (bytes.length < 2 || bytes[0] != VERSION) {
+            throw new IOException("Unsupported metadata encoding");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(1);
+        try {
+            Object metadata = readValue(buffer);
+            if (metadata != null && !(metadata instanceof Map)) {
+                throw new IOException("Point metadata is not a map");
+            }
+            return (Map<String, Object>) metadata;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt metadata value", e);
+        }
+    }
+
+    // Dimension of the vector in an encoded point, -1 without one; only valid for values of this codec
+    public static int dimension(byte[] bytes) throws IOException {
+        return header(bytes).getInt();
+    }
+
+    public static boolean isJavaSerialized(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == JAVA_STREAM_MAGIC_0 && bytes[1] == JAVA_STREAM_MAGIC_1;
+    }
+
+    private static ByteBuffer header(byte[] bytes) throws IOException {
+        if (bytes.length < VECTOR_OFFSET) {
+            throw new IOException("Point value too short: " + bytes.length + " bytes");
+        }
+        if (bytes[0] != VERSION) {
+            throw new IOException("Unsupported point encoding version: " + bytes[0]);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(4);
+        return buffer;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(buffer);
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case DOUBLE:
+                return buffer.getDouble();
+            case FLOAT:
+                return buffer.getFloat();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case SHORT:
+                return buffer.getShort();
+            case BYTE:
+                return buffer.get();
+            case BIG_INTEGER:
+                return new BigInteger(readString(buffer));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(buffer));
+            case LIST: {
+                int size = buffer.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = buffer.getInt();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(16, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    String key = readString(buffer);
+                    map.put(key, readValue(buffer));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown value type " + tag);
+        }
+    }
+
+    // Growable little-endian buffer
+    private static final class Writer {
+        private ByteBuffer buffer;
+
+        Writer(int capacity) {
+            buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                grown.put(buffer.array(), 0, buffer.position());
+                buffer = grown;
+            }
+        }
+
+        void putBytes(byte[] bytes) {
+            ensure(4 + (bytes == null ? 0 : bytes.length));
+            if (bytes == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(bytes.length).put(bytes);
+            }
+        }
+
+        void putTag(byte tag) {
+            ensure(1);
+            buffer.put(tag);
+        }
+
+        void putValue(Object value) {
+            if (value == null) {
+                putTag(NULL);
+            } else if (value instanceof String string) {
+                putTag(STRING);
+                putBytes(utf8(string));
+            } else if (value instanceof Integer number) {
+                putTag(INT);
+                ensure(4);
+                buffer.putInt(number);
+            } else if (value instanceof Long number) {
+                putTag(LONG);
+                ensure(8);
+                buffer.putLong(number);
+            } else if (value instanceof Double number) {
+                putTag(DOUBLE);
+                ensure(8);
+                buffer.putDouble(number);
+            } else if (value instanceof Float number) {
+                putTag(FLOAT);
+                ensure(4);
+                buffer.putFloat(number);
+            } else if (value instanceof Boolean bool) {
+                putTag(BOOLEAN);
+                ensure(1);
+                buffer.put((byte) (bool ? 1 : 0));
+            } else if (value instanceof Short number) {
+                putTag(SHORT);
+                ensure(2);
+                buffer.putShort(number);
+            } else if (value instanceof Byte number) {
+                putTag(BYTE);
+                ensure(1);
+                buffer.put(number);
+            } else if (value instanceof BigInteger number) {
+                putTag(BIG_INTEGER);
+                putBytes(utf8(number.toString()));
+            } else if (value instanceof BigDecimal number) {
+                putTag(BIG_DECIMAL);
+                putBytes(utf8(number.toString()));
+            } else if (value instanceof List<?> list) {
+                putTag(LIST);
+                ensure(4);
+                buffer.putInt(list.size());
+                for (Object element : list) {
+                    putValue(element);
+                }
+            } else if (value instanceof Map<?, ?> map) {
+                putTag(MAP);
+                ensure(4);
+                buffer.putInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    putBytes(utf8(String.valueOf(entry.getKey())));
+                    putValue(entry.getValue());
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported metadata value of type " + value.getClass().getName());
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[buffer.position()];
+            System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+            return bytes;
+        }
+    }
+}
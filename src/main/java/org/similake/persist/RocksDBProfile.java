@@ -0,0 +1,190 @@
+package org.similake.persist;
+
+import jakarta.annotation.PreDestroy;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.Statistics;
+import org.rocksdb.StatsLevel;
+import org.rocksdb.TickerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tuning shared by every RocksDB database of the application (storage.rocksdb.*):
+ * - one LRU block cache of block-cache-bytes for all databases, holding their index and filter blocks too, so memory
+ *   use is bounded by the cache and does not grow with the number of collections;
+ * - bloom filters of bloom-bits-per-key (0 disables them), which let point lookups of content and metadata skip
+ *   files that cannot hold the key;
+ * - compression of content and metadata, and separately of vectors, whose float bits rarely compress and would
+ *   otherwise be decompressed on every scan;
+ * - scan-readahead-bytes of readahead for full scans, which also bypass the block cache so a scan does not evict
+ *   the blocks of point lookups;
+ * - statistics of cache, filter and read activity, aggregated over all databases.
+ */
+@Service
+public class RocksDBProfile {
+
+    private static final Logger logger = LoggerFactory.getLogger(RocksDBProfile.class);
+
+    // Tickers reported by statistics(), enough to size the cache and judge the filters
+    private static final List<TickerType> REPORTED_TICKERS = List.of(
+            TickerType.BLOCK_CACHE_HIT, TickerType.BLOCK_CACHE_MISS,
+            TickerType.BLOCK_CACHE_DATA_HIT, TickerType.BLOCK_CACHE_DATA_MISS,
+            TickerType.BLOCK_CACHE_INDEX_HIT, TickerType.BLOCK_CACHE_INDEX_MISS,
+            TickerType.BLOCK_CACHE_FILTER_HIT, TickerType.BLOCK_CACHE_FILTER_MISS,
+            TickerType.BLOOM_FILTER_USEFUL, TickerType.BLOOM_FILTER_FULL_POSITIVE,
+            TickerType.BLOOM_FILTER_FULL_TRUE_POSITIVE,
+            TickerType.NUMBER_KEYS_READ, TickerType.BYTES_READ, TickerType.NUMBER_DB_SEEK,
+            TickerType.ITER_BYTES_READ, TickerType.NUMBER_KEYS_WRITTEN, TickerType.BYTES_WRITTEN);
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private final long blockCacheBytes;
+    private final double bloomBitsPerKey;
+    private final CompressionType compression;
+    private final CompressionType vectorCompression;
+    private final long scanReadaheadBytes;
+    private final LRUCache blockCache;
+    private final BloomFilter bloomFilter;
+    private final Statistics statistics;
+
+    public RocksDBProfile(@Value("${storage.rocksdb.block-cache-bytes:268435456}") long blockCacheBytes,
+                          @Value("${storage.rocksdb.bloom-bits-per-key:10}") double bloomBitsPerKey,
+                          @Value("${storage.rocksdb.compression:lz4}") String compression,
+                          @Value("${storage.rocksdb.vector-compression:none}") String vectorCompression,
+                          @Value("${storage.rocksdb.scan-readahead-bytes:2097152}") long scanReadaheadBytes,
+                          @Value("${storage.rocksdb.statistics:true}") boolean statistics) {
+        if (blockCacheBytes <= 0) {
+            throw new IllegalArgumentException("storage.rocksdb.block-cache-bytes must be positive");
+        }
+        this.blockCacheBytes = blockCacheBytes;
+        this.bloomBitsPerKey = Math.max(0, bloomBitsPerKey);
+        this.compression = compressionType("storage.rocksdb.compression", compression);
+        this.vectorCompression = compressionType("storage.rocksdb.vector-compression", vectorCompression);
+        this.scanReadaheadBytes = Math.max(0, scanReadaheadBytes);
+        this.blockCache = new LRUCache(blockCacheBytes);
+        this.bloomFilter = this.bloomBitsPerKey > 0 ? new BloomFilter(this.bloomBitsPerKey, false) : null;
+        if (statistics) {
+            this.statistics = new Statistics();
+            this.statistics.setStatsLevel(StatsLevel.EXCEPT_DETAILED_TIMERS);
+        } else {
+            this.statistics = null;
+        }
+        logger.info("RocksDB profile: {} byte block cache, {} bloom bits per key, {} compression ({} for vectors), "
+                        + "{} byte scan readahead, statistics {}", blockCacheBytes, this.bloomBitsPerKey, this.compression,
+                this.vectorCompression, this.scanReadaheadBytes, statistics ? "on" : "off");
+    }
+
+    private static CompressionType compressionType(String property, String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "none":
+                return CompressionType.NO_COMPRESSION;
+            case "snappy":
+                return CompressionType.SNAPPY_COMPRESSION;
+            case "zlib":
+                return CompressionType.ZLIB_COMPRESSION;
+            case "lz4":
+                return CompressionType.LZ4_COMPRESSION;
+            case "lz4hc":
+                return CompressionType.LZ4HC_COMPRESSION;
+            case "zstd":
+                return CompressionType.ZSTD_COMPRESSION;
+            default:
+                throw new IllegalArgumentException(property + " must be none, snappy, zlib, lz4, lz4hc or zstd but was " + name);
+        }
+    }
+
+    // Options of a database; the caller owns and closes them
+    public DBOptions newDBOptions(boolean createIfMissing) {
+        DBOptions options = new DBOptions().setCreateIfMissing(createIfMissing);
+        if (statistics != null) {
+            options.setStatistics(statistics);
+        }
+        return options;
+    }
+
+    // Options of a column family; the caller owns and closes them
+    public ColumnFamilyOptions newColumnOptions(String family) {
+        return new ColumnFamilyOptions()
+                .setTableFormatConfig(tableConfig())
+                .setCompressionType(compressionOf(family));
+    }
+
+    // Options for SST files written outside a database and ingested into the given column family
+    public Options newSstOptions(String family) {
+        return new Options()
+                .setTableFormatConfig(tableConfig())
+                .setCompressionType(compressionOf(family));
+    }
+
+    // Read options of full scans; the caller owns and closes them
+    public ReadOptions newScanOptions() {
+        return new ReadOptions().setFillCache(false).setReadaheadSize(scanReadaheadBytes);
+    }
+
+    private BlockBasedTableConfig tableConfig() {
+        BlockBasedTableConfig config = new BlockBasedTableConfig()
+                .setBlockCache(blockCache)
+                .setCacheIndexAndFilterBlocks(true)
+                .setPinL0FilterAndIndexBlocksInCache(true);
+        if (bloomFilter != null) {
+            config.setFilterPolicy(bloomFilter);
+        }
+        return config;
+    }
+
+    private CompressionType compressionOf(String family) {
+        return RocksDBService.VECTORS.equals(family) ? vectorCompression : compression;
+    }
+
+    // Settings, block cache use and read statistics since startup (tickers only with statistics enabled)
+    public Map<String, Object> statistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("blockCacheCapacity", blockCacheBytes);
+        stats.put("blockCacheUsage", blockCache.getUsage());
+        stats.put("blockCachePinnedUsage", blockCache.getPinnedUsage());
+        stats.put("bloomBitsPerKey", bloomBitsPerKey);
+        stats.put("compression", compression.name());
+        stats.put("vectorCompression", vectorCompression.name());
+        stats.put("scanReadaheadBytes", scanReadaheadBytes);
+        if (statistics != null) {
+            long hits = statistics.getTickerCount(TickerType.BLOCK_CACHE_HIT);
+            long misses = statistics.getTickerCount(TickerType.BLOCK_CACHE_MISS);
+            stats.put("blockCacheHitRatio", hits + misses == 0 ? null : (double) hits / (hits + misses));
+            Map<String, Long> tickers = new LinkedHashMap<>();
+            for (TickerType ticker : REPORTED_TICKERS) {
+                tickers.put(ticker.name().toLowerCase(Locale.ROOT), statistics.getTickerCount(ticker));
+            }
+            stats.put("tickers", tickers);
+        }
+        return stats;
+    }
+
+    // Runs after the registry has closed its databases, which depend on this profile
+    @PreDestroy
+    public void close() {
+        if (statistics != null) {
+            statistics.close();
+        }
+        if (bloomFilter != null) {
+            bloomFilter.close();
+        }
+        blockCache.close();
+    }
+}
@@ -0,0 +1,254 @@
+package org.similake.persist;
+
+import jakarta.annotation.PreDestroy;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Open RocksDB databases by directory, kept for the life of the application instead of being opened per call.
+ * Callers borrow a database with try-with-resources:
+ * <pre>
+ * try (RocksDBRegistry.Handle handle = registry.open(path, true)) {
+ *     handle.db().put(key, value);
+ * }
+ * </pre>
+ * Any number of threads can use a database at once; closing it, on removal, shutdown or when its directory was
+ * deleted underneath it, waits until every borrowed handle is returned. Databases are opened with all of their column
+ * families, and {@link Handle#column(String)} creates missing ones on first use. Options of databases and column
+ * families come from the shared {@link RocksDBProfile}.
+ */
+@Service
+public class RocksDBRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(RocksDBRegistry.class);
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final RocksDBProfile profile;
+
+    public RocksDBRegistry(RocksDBProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Borrows the database in the given directory, opening it on first use. A database whose directory was deleted
+     * or replaced since it was opened is closed and opened again. Without createIfMissing, a missing database is a
+     * RocksDBException.
+     */
+    public Handle open(String path, boolean createIfMissing) throws RocksDBException {
+        Path dir = Paths.get(path).toAbsolutePath().normalize();
+        while (true) {
+            Entry entry = entries.get(dir);
+            if (entry == null || entry.isStale()) {
+                entry = openEntry(dir, createIfMissing);
+            }
+            entry.lock.readLock().lock();
+            if (!entry.closed) {
+                return new Handle(entry);
+            }
+            // Closed between the lookup and the lock; look again
+            entry.lock.readLock().unlock();
+        }
+    }
+
+    private Entry openEntry(Path dir, boolean createIfMissing) throws RocksDBException {
+        Entry stale;
+        synchronized (this) {
+            stale = entries.get(dir);
+            if (stale != null && !stale.isStale()) {
+                return stale;
+            }
+            if (stale != null) {
+                entries.remove(dir, stale);
+            }
+        }
+        if (stale != null) {
+            // Outside the monitor, since it waits for borrowers that may be opening other databases
+            logger.info("Reopening RocksDB at {}: its files were removed", dir);
+            closeEntry(stale);
+        }
+        synchronized (this) {
+            Entry entry = entries.get(dir);
+            if (entry != null) {
+                return entry;
+            }
+            if (!createIfMissing && !Files.isDirectory(dir)) {
+                throw new RocksDBException("RocksDB not found: " + dir);
+            }
+            DBOptions options = profile.newDBOptions(createIfMissing);
+            List<ColumnFamilyOptions> columnOptions = new ArrayList<>();
+            try {
+                List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+                for (byte[] name : columnFamilies(dir)) {
+                    ColumnFamilyOptions familyOptions = profile.newColumnOptions(new String(name, StandardCharsets.UTF_8));
+                    columnOptions.add(familyOptions);
+                    descriptors.add(new ColumnFamilyDescriptor(name, familyOptions));
+                }
+                List<ColumnFamilyHandle> handles = new ArrayList<>();
+                RocksDB db = RocksDB.open(options, dir.toString(), descriptors, handles);
+                entry = new Entry(dir, profile, options, columnOptions, db);
+                for (ColumnFamilyHandle handle : handles) {
+                    entry.columns.put(new String(handle.getName(), StandardCharsets.UTF_8), handle);
+                }
+            } catch (RocksDBException e) {
+                options.close();
+                columnOptions.forEach(ColumnFamilyOptions::close);
+                throw e;
+            }
+            entries.put(dir, entry);
+            logger.info("Opened RocksDB at {}", dir);
+            return entry;
+        }
+    }
+
+    // A database has to be opened with every column family it holds; a new one only has the default family
+    private static List<byte[]> columnFamilies(Path dir) throws RocksDBException {
+        if (!Files.exists(dir.resolve("CURRENT"))) {
+            return List.of(RocksDB.DEFAULT_COLUMN_FAMILY);
+        }
+        try (Options options = new Options()) {
+            return RocksDB.listColumnFamilies(options, dir.toString());
+        }
+    }
+
+    // Closes the database in the given directory, if open, once its borrowed handles are returned
+    public void close(String path) {
+        Entry entry = entries.remove(Paths.get(path).toAbsolutePath().normalize());
+        if (entry != null) {
+            closeEntry(entry);
+        }
+    }
+
+    private void closeEntry(Entry entry) {
+        entry.lock.writeLock().lock();
+        try {
+            if (!entry.closed) {
+                entry.closed = true;
+                // Column family handles have to be released before their database
+                for (ColumnFamilyHandle handle : entry.columns.values()) {
+                    handle.close();
+                }
+                entry.db.close();
+                entry.options.close();
+                entry.columnOptions.forEach(ColumnFamilyOptions::close);
+                logger.info("Closed RocksDB at {}", entry.dir);
+            }
+        } finally {
+            entry.lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isOpen(String path) {
+        return entries.containsKey(Paths.get(path).toAbsolutePath().normalize());
+    }
+
+    public int openCount() {
+        return entries.size();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        for (Path dir : new ArrayList<>(entries.keySet())) {
+            Entry entry = entries.remove(dir);
+            if (entry != null) {
+                closeEntry(entry);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Path dir;
+        private final RocksDBProfile profile;
+        private final DBOptions options;
+        // Options of every open column family, released with the database
+        private final List<ColumnFamilyOptions> columnOptions;
+        private final RocksDB db;
+        private final Map<String, ColumnFamilyHandle> columns = new ConcurrentHashMap<>();
+        // Shared by borrowers, exclusive for closing
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean closed;
+
+        Entry(Path dir, RocksDBProfile profile, DBOptions options, List<ColumnFamilyOptions> columnOptions, RocksDB db) {
+            this.dir = dir;
+            this.profile = profile;
+            this.options = options;
+            this.columnOptions = new ArrayList<>(columnOptions);
+            this.db = db;
+        }
+
+        ColumnFamilyHandle column(String name) throws RocksDBException {
+            ColumnFamilyHandle handle = columns.get(name);
+            if (handle != null) {
+                return handle;
+            }
+            synchronized (this) {
+                handle = columns.get(name);
+                if (handle == null) {
+                    ColumnFamilyOptions familyOptions = profile.newColumnOptions(name);
+                    try {
+                        handle = db.createColumnFamily(
+                                new ColumnFamilyDescriptor(name.getBytes(StandardCharsets.UTF_8), familyOptions));
+                    } catch (RocksDBException e) {
+                        familyOptions.close();
+                        throw e;
+                    }
+                    columnOptions.add(familyOptions);
+                    columns.put(name, handle);
+                }
+                return handle;
+            }
+        }
+
+        // RocksDB keeps CURRENT for as long as the database exists, so its absence means the directory was deleted
+        boolean isStale() {
+            return !Files.exists(dir.resolve("CURRENT"));
+        }
+    }
+
+    // A borrowed database; closing the handle returns it, the database stays open
+    public static class Handle implements AutoCloseable {
+        private final Entry entry;
+        private boolean released;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public RocksDB db() {
+            return entry.db;
+        }
+
+        // The named column family of the database, created if it does not exist yet
+        public ColumnFamilyHandle column(String name) throws RocksDBException {
+            return entry.column(name);
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                entry.lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package org.similake.persist;
 
-import org.rocksdb.Options;
-import org.rocksdb.RocksDB;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterPredicate;
+import org.similake.index.Neighbor;
+import org.similake.index.TopK;
+import org.similake.model.Distance;
+import org.similake.model.IndexType;
 import org.similake.model.Point;
+import org.similake.model.Quantization;
+import org.similake.model.ScoredPoint;
+import org.similake.model.VectorStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 
 @Service
@@ -26,23 +43,54 @@ public class RocksDBService implements VectorStoreService{
 
     @Value("${config.path}")
     private  String CONFIG_DIR;
-    static {
-        RocksDB.loadLibrary();
-    }
+
+    // Points sorted in memory per SST run of a bulk import
+    @Value("${storage.rocksdb.import-run-points:100000}")
+    private int importRunPoints;
+
+    // Column families of a collection database, all keyed by point id. Searches only iterate the vectors;
+    // content and metadata are read by key for the points that are returned or have to pass a filter
+    static final String VECTORS = "vectors";
+    static final String CONTENT = "content";
+    static final String METADATA = "metadata";
+
+    // Points moved to the split column families before a legacy collection is handed out are written in batches of this size
+    private static final int SPLIT_BATCH_SIZE = 1024;
+
+    // Databases of collections and configs, kept open between calls
+    @Autowired
+    private RocksDBRegistry registry;
+
+    // Block cache, filters and scan settings shared by all databases
+    @Autowired
+    private RocksDBProfile profile;
+
+    // Collections whose points are known to be in the split column families
+    private final Set<String> splitCollections = ConcurrentHashMap.newKeySet();
+
+    // In-memory HNSW/quantized mirrors of persisted collections, loaded on first search and kept current on put
+    private final Map<String, VectorStore> indexedStores = new ConcurrentHashMap<>();
+
+    // Persisted collections whose config asks for neither an HNSW index nor quantization, so that searches do not read
+    // the config again just to find there is no mirror; dropped when the collection is created again or removed
+    private final Set<String> unindexedCollections = ConcurrentHashMap.newKeySet();
+
+    // Writes of a collection share its lock while they update storage and then the in-memory index; an index build
+    // holds it alone, so every write lands entirely before or entirely after the scan of the build
+    private final Map<String, ReadWriteLock> collectionLocks = new ConcurrentHashMap<>();
 
     @Override
     // Method to persist CollectionConfig to disk
     public String persistVectorToStorage(String collectionName, CollectionConfig config) {
         logger.info("Persisting collection to disk: {}", collectionName);
-        try (final Options options = new Options().setCreateIfMissing(true)) {
-            try (final RocksDB rocksDB = RocksDB.open(options, COLLECTIONS_DIR + collectionName)) {
-                // Serialize CollectionConfig object to byte array
-                createConfig(collectionName, config);
-                logger.info("Persisted collection to disk: {}", collectionName);
-            }
+        // Creates the collection's database
+        try (RocksDBRegistry.Handle handle = openCollection(collectionName, true)) {
+            logger.info("Opened collection database: {}", collectionName);
         } catch (RocksDBException e) {
             throw new RuntimeException(e);
         }
+        createConfig(collectionName, config);
+        logger.info("Persisted collection to disk: {}", collectionName);
         return "Created and persisted collection successfully: " + collectionName;
     }
 
@@ -50,14 +98,13 @@ public class RocksDBService implements VectorStoreService{
     public boolean createConfig(String collectionName, CollectionConfig config) {
         logger.info("Persisting config to disk: " + collectionName);
         boolean isSuccess = true;
-        try (final Options options = new Options().setCreateIfMissing(true)) {
-            try (final RocksDB rocksDB = RocksDB.open(options, CONFIG_DIR + collectionName)) {
-                // Serialize CollectionConfig object to byte array
-                byte[] serializedConfig = serializeCollectionConfig(config);
-                // Store serialized CollectionConfig in RocksDB using collectionName as the key
-                rocksDB.put(collectionName.getBytes(), serializedConfig);
-                logger.info("Persisted config to disk: {}", collectionName);
-            }
+        unindexedCollections.remove(collectionName);
+        try (RocksDBRegistry.Handle handle = registry.open(CONFIG_DIR + collectionName, true)) {
+            // Serialize CollectionConfig object to byte array
+            byte[] serializedConfig = serializeCollectionConfig(config);
+            // Store serialized CollectionConfig in RocksDB using collectionName as the key
+            handle.db().put(collectionName.getBytes(), serializedConfig);
+            logger.info("Persisted config to disk: {}", collectionName);
         } catch (RocksDBException | IOException e) {
             throw new RuntimeException(e);
 
@@ -81,18 +128,17 @@ public class RocksDBService implements VectorStoreService{
     public CollectionConfig fetchVectorFromStorage(String collectionName) {
         logger.info("Fetching collection from disk: {}", collectionName);
         if (Files.exists(Paths.get(CONFIG_DIR + collectionName))) {
-        try (final Options options = new Options().setCreateIfMissing(false)) { // Set to false since the collection must already exist
-            try (final RocksDB rocksDB = RocksDB.openReadOnly(options, CONFIG_DIR + collectionName)) {
-                // Retrieve the serialized CollectionConfig byte array using collectionName as the key
-                byte[] serializedConfig = rocksDB.get(collectionName.getBytes());
-                // If no collection is found, return null or handle as needed
-                if (serializedConfig == null) {
-                    logger.warn("Collection not found: {}", collectionName);
-                    return null;
-                }
-                // Deserialize the byte array back to CollectionConfig object
-                return deserializeCollectionConfig(serializedConfig);
+        // The collection must already exist
+        try (RocksDBRegistry.Handle handle = registry.open(CONFIG_DIR + collectionName, false)) {
+            // Retrieve the serialized CollectionConfig byte array using collectionName as the key
+            byte[] serializedConfig = handle.db().get(collectionName.getBytes());
+            // If no collection is found, return null or handle as needed
+            if (serializedConfig == null) {
+                logger.warn("Collection not found: {}", collectionName);
+                return null;
             }
+            // Deserialize the byte array back to CollectionConfig object
+            return deserializeCollectionConfig(serializedConfig);
         } catch (RocksDBException | IOException | ClassNotFoundException e) {
             throw new RuntimeException(e);
         }}
@@ -134,72 +180,360 @@ public class RocksDBService implements VectorStoreService{
     // Method to add a Payload (Point) to a VectorStore and persist to RocksDB
     public void addPayloadToVectorStore(String vectorName, Point point) {
         logger.info("Adding payload to VectorStore: {}", vectorName);
+        // Storage first, then the index mirror, without blocking other writers of the collection
+        Lock lock = collectionLock(vectorName).readLock();
+        lock.lock();
+        try {
+            // A build holds the lock alone, so the mirror cannot appear between this check and the write
+            VectorStore indexedStore = indexedStores.get(vectorName);
+            boolean replaced = putPoint(vectorName, point, indexedStore != null);
+            if (replaced) {
+                // The in-memory index cannot drop the old version, so it is rebuilt on the next search
+                indexedStores.remove(vectorName);
+            } else if (indexedStore != null) {
+                mirrorPoint(indexedStore, vectorName, point);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReadWriteLock collectionLock(String vectorName) {
+        return collectionLocks.computeIfAbsent(vectorName, name -> new ReentrantReadWriteLock());
+    }
+
+    @Override
+    public boolean deletePoint(String vectorName, UUID pointId) {
+        Lock lock = collectionLock(vectorName).readLock();
+        lock.lock();
+        try (RocksDBRegistry.Handle handle = openCollection(vectorName, false);
+             WriteBatch batch = new WriteBatch();
+             WriteOptions writeOptions = new WriteOptions()) {
+            byte[] key = pointId.toString().getBytes();
+            if (handle.db().get(handle.column(VECTORS), key) == null) {
+                return false;
+            }
+            batch.delete(handle.column(VECTORS), key);
+            batch.delete(handle.column(CONTENT), key);
+            batch.delete(handle.column(METADATA), key);
+            handle.db().write(writeOptions, batch);
+            // The in-memory index cannot drop single points, so it is discarded and rebuilt on the next search
+            indexedStores.remove(vectorName);
+            logger.info("Deleted point {} from VectorStore: {}", pointId, vectorName);
+            return true;
+        } catch (RocksDBException e) {
+            throw new RuntimeException("Failed to delete point from VectorStore", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Sorts the points into SST files next to the collection and attaches them in place of writing them one by one
+    @Override
+    public long importPoints(String vectorName, Stream<Point> points) {
+        logger.info("Importing points into VectorStore: {}", vectorName);
+        Path stagingDir;
+        try {
+            stagingDir = Files.createTempDirectory(Paths.get(COLLECTIONS_DIR), "." + vectorName + "-import-");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to import points into VectorStore", e);
+        }
+        try (SstPointImporter importer = new SstPointImporter(stagingDir, importRunPoints, profile)) {
+            points.forEach(point -> {
+                try {
+                    importer.add(point);
+                } catch (RocksDBException e) {
+                    throw new RuntimeException("Failed to import points into VectorStore", e);
+                }
+            });
+            long imported;
+            try {
+                imported = importer.prepare();
+            } catch (RocksDBException | IOException e) {
+                throw new RuntimeException("Failed to import points into VectorStore", e);
+            }
+            // Only attaching the prepared files holds up an index build
+            Lock lock = collectionLock(vectorName).readLock();
+            lock.lock();
+            try (RocksDBRegistry.Handle handle = openCollection(vectorName, false)) {
+                importer.attach(handle);
+                // The in-memory index is discarded and rebuilt with the imported points on the next search
+                indexedStores.remove(vectorName);
+            } catch (RocksDBException e) {
+                throw new RuntimeException("Failed to import points into VectorStore", e);
+            } finally {
+                lock.unlock();
+            }
+            logger.info("Imported {} points into VectorStore: {}", imported, vectorName);
+            return imported;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to clean up import of VectorStore: " + vectorName, e);
+        }
+    }
 
-        try (final Options options = new Options().setCreateIfMissing(true)) {
-            try (final RocksDB rocksDB = RocksDB.open(options, COLLECTIONS_DIR + vectorName)) {
+    // Writes the point; returns whether it replaced a stored point with the same id, which is only looked up if asked
+    private boolean putPoint(String vectorName, Point point, boolean checkReplaced) {
+        try (RocksDBRegistry.Handle handle = openCollection(vectorName, true);
+             WriteBatch batch = new WriteBatch();
+             WriteOptions writeOptions = new WriteOptions()) {
+            byte[] key = point.getId().toString().getBytes(StandardCharsets.UTF_8);
+            boolean replaced = checkReplaced && handle.db().get(handle.column(VECTORS), key) != null;
+            // The parts of the point go to their column families in one atomic write, keyed by the Point's UUID
+            writePoint(handle, batch, key, point);
+            handle.db().write(writeOptions, batch);
+            logger.info("Payload added to VectorStore: {}", vectorName);
+            return replaced;
+        } catch (RocksDBException e) {
+            throw new RuntimeException("Failed to add payload to VectorStore", e);
+        }
+    }
 
-                // Serialize Point object (representing Payload) to byte array
-                byte[] serializedPoint = serializePoint(point);
+    // Adds the parts of a point to the batch; absent content or metadata deletes what an earlier version of the point had
+    private void writePoint(RocksDBRegistry.Handle handle, WriteBatch batch, byte[] key, Point point) throws RocksDBException {
+        batch.put(handle.column(VECTORS), key, PointCodec.encodeVector(point.getVector()));
+        if (point.getContent() != null) {
+            batch.put(handle.column(CONTENT), key, point.getContent().getBytes(StandardCharsets.UTF_8));
+        } else {
+            batch.delete(handle.column(CONTENT), key);
+        }
+        if (point.getMetadata() != null) {
+            batch.put(handle.column(METADATA), key, PointCodec.encodeMetadata(point.getMetadata()));
+        } else {
+            batch.delete(handle.column(METADATA), key);
+        }
+    }
+
+    // Assembles a point from its vector and the content and metadata stored under the same key
+    private Point readPoint(RocksDBRegistry.Handle handle, byte[] key, byte[] vector) throws RocksDBException, IOException {
+        byte[] content = handle.db().get(handle.column(CONTENT), key);
+        return new Point(UUID.fromString(new String(key, StandardCharsets.UTF_8)),
+                content == null ? null : new String(content, StandardCharsets.UTF_8),
+                PointCodec.decodeVector(vector), readMetadata(handle, key));
+    }
+
+    private Map<String, Object> readMetadata(RocksDBRegistry.Handle handle, byte[] key) throws RocksDBException, IOException {
+        byte[] metadata = handle.db().get(handle.column(METADATA), key);
+        return metadata == null ? null : PointCodec.decodeMetadata(metadata);
+    }
 
-                // Use the Point's UUID as the key and store the serialized payload (Point) in RocksDB
-                rocksDB.put(point.getId().toString().getBytes(), serializedPoint);
-                logger.info("Payload added to VectorStore: {}", vectorName);
+    // Borrows a collection database, first moving points stored whole by earlier versions into the split column families
+    private RocksDBRegistry.Handle openCollection(String vectorName, boolean createIfMissing) throws RocksDBException {
+        RocksDBRegistry.Handle handle = registry.open(COLLECTIONS_DIR + vectorName, createIfMissing);
+        if (!splitCollections.contains(vectorName)) {
+            try {
+                splitLegacyPoints(vectorName, handle);
+            } catch (RocksDBException | RuntimeException e) {
+                handle.close();
+                throw e;
+            }
+        }
+        return handle;
+    }
 
+    // Callers of other collections wait too, but this only runs once per collection and is a no-op for new ones
+    private synchronized void splitLegacyPoints(String vectorName, RocksDBRegistry.Handle handle) throws RocksDBException {
+        if (splitCollections.contains(vectorName)) {
+            return;
+        }
+        int moved = 0;
+        try (ReadOptions scanOptions = profile.newScanOptions();
+             RocksIterator iterator = handle.db().newIterator(scanOptions);
+             WriteOptions writeOptions = new WriteOptions()) {
+            WriteBatch batch = new WriteBatch();
+            try {
+                for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                    try {
+                        writePoint(handle, batch, iterator.key(), deserializePoint(iterator.value()));
+                    } catch (IOException | ClassNotFoundException e) {
+                        // Left where it is, so nothing is lost
+                        logger.warn("Skipping unreadable point {} in {}: {}",
+                                new String(iterator.key(), StandardCharsets.UTF_8), vectorName, e.getMessage());
+                        continue;
+                    }
+                    batch.delete(iterator.key());
+                    if (++moved % SPLIT_BATCH_SIZE == 0) {
+                        handle.db().write(writeOptions, batch);
+                        batch.close();
+                        batch = new WriteBatch();
+                    }
+                }
+                handle.db().write(writeOptions, batch);
+            } finally {
+                batch.close();
+            }
+        }
+        if (moved > 0) {
+            logger.info("Moved {} points of {} into separate vector, content and metadata column families", moved, vectorName);
+        }
+        splitCollections.add(vectorName);
+    }
+
+    // Scores the vector column family alone; metadata is only read for points good enough to enter the top k, and
+    // content only for the results
+    @Override
+    public List<ScoredPoint> searchStoredVectors(String vectorName, float[] query, int limit, double minScore,
+                                                 Distance metric, FilterPredicate filter) {
+        try (RocksDBRegistry.Handle handle = openCollection(vectorName, false);
+             ReadOptions scanOptions = profile.newScanOptions();
+             RocksIterator iterator = handle.db().newIterator(handle.column(VECTORS), scanOptions)) {
+            TopK topK = new TopK(limit);
+            // Keys and vectors of the points offered to the heap, indexed by the ordinal they were offered with; once
+            // they reach twice the limit, those of evicted points are dropped
+            List<byte[]> keys = new ArrayList<>();
+            List<byte[]> vectors = new ArrayList<>();
+            int compactAt = 2 * Math.max(1, limit);
+            float[] vector = new float[query.length];
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                byte[] value = iterator.value();
+                // Points without a vector or with one of another dimension stay stored but cannot be scored
+                if (value.length == 0 || PointCodec.vectorDimension(value) != query.length) {
+                    continue;
+                }
+                PointCodec.decodeVector(value, vector, 0);
+                double score = metric.score(query, vector);
+                if (score < minScore || (topK.isFull() && score <= topK.minScore())) {
+                    continue;
+                }
+                byte[] key = iterator.key();
+                if (filter == FilterPredicate.ALWAYS || filter.test(readMetadata(handle, key))) {
+                    if (keys.size() == compactAt) {
+                        topK = compact(topK, keys, vectors, limit);
+                    }
+                    keys.add(key);
+                    vectors.add(value);
+                    topK.offer(keys.size() - 1, score);
+                }
+            }
+            List<ScoredPoint> results = new ArrayList<>(topK.size());
+            for (Neighbor neighbor : topK.toSortedList()) {
+                int ordinal = neighbor.getOrdinal();
+                results.add(new ScoredPoint(readPoint(handle, keys.get(ordinal), vectors.get(ordinal)), neighbor.getScore()));
             }
+            return results;
         } catch (RocksDBException | IOException e) {
-            throw new RuntimeException("Failed to add payload to VectorStore", e);
+            logger.error("Error while searching points in RocksDB for vector store: " + vectorName, e);
+            return List.of();
         }
+    }
 
+    // Keeps the keys and vectors of the points still in the heap, renumbered from 0, and returns the renumbered heap
+    private static TopK compact(TopK topK, List<byte[]> keys, List<byte[]> vectors, int limit) {
+        TopK kept = new TopK(limit);
+        List<byte[]> keptKeys = new ArrayList<>(topK.size());
+        List<byte[]> keptVectors = new ArrayList<>(topK.size());
+        for (Neighbor neighbor : topK.toSortedList()) {
+            kept.offer(keptKeys.size(), neighbor.getScore());
+            keptKeys.add(keys.get(neighbor.getOrdinal()));
+            keptVectors.add(vectors.get(neighbor.getOrdinal()));
+        }
+        keys.clear();
+        keys.addAll(keptKeys);
+        vectors.clear();
+        vectors.addAll(keptVectors);
+        return kept;
     }
 
-    // Helper method to serialize Point object to byte array
-    private byte[] serializePoint(Point point) throws IOException {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutputStream out = new ObjectOutputStream(bos)) {
-            out.writeObject(point);
-            out.flush();
-            return bos.toByteArray();
+    @Override
+    public VectorStore getIndexedVectorStore(String vectorName) {
+        VectorStore indexedStore = indexedStores.get(vectorName);
+        if (indexedStore != null) {
+            return indexedStore;
+        }
+        if (unindexedCollections.contains(vectorName)) {
+            return null;
+        }
+        CollectionConfig config = fetchVectorFromStorage(vectorName);
+        if (config == null) {
+            return null;
+        }
+        if (config.getIndexType() != IndexType.Hnsw && config.getQuantization() == Quantization.None) {
+            unindexedCollections.add(vectorName);
+            return null;
+        }
+        Lock lock = collectionLock(vectorName).writeLock();
+        lock.lock();
+        try {
+            return indexedStores.computeIfAbsent(vectorName, name -> {
+                logger.info("Building in-memory index for persisted collection: {}", name);
+                VectorStore store = new VectorStore(config);
+                scanPoints(name, null, point -> {
+                    mirrorPoint(store, name, point);
+                    return true;
+                });
+                return store;
+            });
+        } finally {
+            lock.unlock();
         }
     }
+
+    // Points whose vector does not match the collection dimension stay on disk but are left out of the mirror
+    private void mirrorPoint(VectorStore store, String vectorName, Point point) {
+        try {
+            store.addPoint(point);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Skipping point {} in the in-memory index of {}: {}", point.getId(), vectorName, e.getMessage());
+        }
+    }
+
     // Method to fetch all Points from RocksDB for a given vector store
     public List<Point> getAllPointsFromVectorStore(String vectorName) {
         List<Point> points = new ArrayList<>();
 
-        try (final Options options = new Options().setCreateIfMissing(false)) {
-            try (final RocksDB rocksDB = RocksDB.open(options, COLLECTIONS_DIR + vectorName)) {
-                // Iterate through all the key-value pairs in RocksDB
-                RocksIterator iterator = rocksDB.newIterator();
-                for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
-                    byte[] serializedPoint = iterator.value();
-                    Point point = deserializePoint(serializedPoint);
-                    points.add(point);
-                }
+        try (RocksDBRegistry.Handle handle = openCollection(vectorName, false);
+             ReadOptions scanOptions = profile.newScanOptions();
+             PointScan scan = new PointScan(handle, scanOptions)) {
+            // Iterate through all the points in RocksDB
+            for (scan.seekToFirst(); scan.isValid(); scan.next()) {
+                points.add(scan.point());
             }
-        } catch (RocksDBException | IOException | ClassNotFoundException e) {
+        } catch (RocksDBException | IOException e) {
             logger.error("Error while fetching points from RocksDB for vector store: " + vectorName, e);
         }
 
         return points;
     }
 
+    // The cursor is the key of the next point, so a scan resumes with a seek
+    @Override
+    public String scanPoints(String vectorName, String cursor, Predicate<Point> visitor) {
+        try (RocksDBRegistry.Handle handle = openCollection(vectorName, false);
+             ReadOptions scanOptions = profile.newScanOptions();
+             PointScan scan = new PointScan(handle, scanOptions)) {
+            if (cursor == null) {
+                scan.seekToFirst();
+            } else {
+                scan.seek(cursor.getBytes(StandardCharsets.UTF_8));
+            }
+            while (scan.isValid()) {
+                Point point = scan.point();
+                scan.next();
+                if (!visitor.test(point)) {
+                    return scan.isValid() ? new String(scan.key(), StandardCharsets.UTF_8) : null;
+                }
+            }
+        } catch (RocksDBException | IOException e) {
+            logger.error("Error while scanning points from RocksDB for vector store: " + vectorName, e);
+        }
+        return null;
+    }
+
     public List<Point> getAllPointsFromVectorStoreWithFilter(String vectorName, Map<String, Object> metadata) {
         List<Point> points = new ArrayList<>();
 
-        try (final Options options = new Options().setCreateIfMissing(false)) {
-            try (final RocksDB rocksDB = RocksDB.open(options, COLLECTIONS_DIR + vectorName)) {
-                // Iterate through all the key-value pairs in RocksDB
-                RocksIterator iterator = rocksDB.newIterator();
-                for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
-                    byte[] serializedPoint = iterator.value();
-                    Point point = deserializePoint(serializedPoint);
+        try (RocksDBRegistry.Handle handle = openCollection(vectorName, false);
+             ReadOptions scanOptions = profile.newScanOptions();
+             PointScan scan = new PointScan(handle, scanOptions)) {
+            // Iterate through all the points in RocksDB
+            for (scan.seekToFirst(); scan.isValid(); scan.next()) {
+                Point point = scan.point();
 
-                    // Apply metadata filtering
-                    if (matchesMetadata(point, metadata)) {
-                        points.add(point);
-                    }
+                // Apply metadata filtering
+                if (matchesMetadata(point, metadata)) {
+                    points.add(point);
                 }
             }
-        } catch (RocksDBException | IOException | ClassNotFoundException e) {
+        } catch (RocksDBException | IOException e) {
             logger.error("Error while fetching points from RocksDB for vector store: " + vectorName, e);
         }
 
@@ -251,12 +585,9 @@ public class RocksDBService implements VectorStoreService{
         });
     }
 
-    // Helper method to deserialize byte array back to Point object
+    // Helper method to deserialize a Point stored whole by earlier versions, Java-serialized or in the PointCodec encoding
     private Point deserializePoint(byte[] serializedPoint) throws IOException, ClassNotFoundException {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(serializedPoint);
-             ObjectInputStream in = new ObjectInputStream(bis)) {
-            return (Point) in.readObject();
-        }
+        return PointCodec.decode(serializedPoint);
     }
 
     // **Updated Method** to remove a vector and its configuration recursively
@@ -264,6 +595,11 @@ public class RocksDBService implements VectorStoreService{
     public boolean removeVector(String collectionName) {
         logger.info("Removing vector and config for collection: {}", collectionName);
         boolean isSuccess = false;
+        indexedStores.remove(collectionName);
+        unindexedCollections.remove(collectionName);
+        registry.close(COLLECTIONS_DIR + collectionName);
+        splitCollections.remove(collectionName);
+        registry.close(CONFIG_DIR + collectionName);
 
         try {
             // Recursively delete the vector data (all points)
@@ -291,7 +627,13 @@ public class RocksDBService implements VectorStoreService{
 
     @Override
     public Double calculateCosineSimilarity(float[] vector1, float[] vector2) {
-        return 0.0;
+        if (vector1 == null || vector2 == null || vector1.length == 0) {
+            return null;
+        }
+        if (vector1.length != vector2.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        return Math.max(-1.0, Math.min(1.0, Distance.Cosine.score(vector1, vector2)));
     }
 
     // Helper method to recursively delete a directory and its contents
@@ -311,4 +653,71 @@ public class RocksDBService implements VectorStoreService{
         });
     }
 
+    /**
+     * Reads points in key order from iterators over the vector, content and metadata column families of one consistent
+     * view. Content and metadata are found by advancing their iterators alongside the vectors, one sequential read of
+     * each family, instead of a lookup per point.
+     */
+    private static final class PointScan implements AutoCloseable {
+        private final RocksIterator vectors;
+        private final RocksIterator content;
+        private final RocksIterator metadata;
+
+        PointScan(RocksDBRegistry.Handle handle, ReadOptions readOptions) throws RocksDBException {
+            List<RocksIterator> iterators = handle.db().newIterators(List.of(handle.column(VECTORS),
+                    handle.column(CONTENT), handle.column(METADATA)), readOptions);
+            this.vectors = iterators.get(0);
+            this.content = iterators.get(1);
+            this.metadata = iterators.get(2);
+        }
+
+        void seekToFirst() {
+            vectors.seekToFirst();
+            content.seekToFirst();
+            metadata.seekToFirst();
+        }
+
+        void seek(byte[] key) {
+            vectors.seek(key);
+            content.seek(key);
+            metadata.seek(key);
+        }
+
+        boolean isValid() {
+            return vectors.isValid();
+        }
+
+        byte[] key() {
+            return vectors.key();
+        }
+
+        void next() {
+            vectors.next();
+        }
+
+        Point point() throws IOException {
+            byte[] key = vectors.key();
+            byte[] text = valueAt(content, key);
+            byte[] encodedMetadata = valueAt(metadata, key);
+            return new Point(UUID.fromString(new String(key, StandardCharsets.UTF_8)),
+                    text == null ? null : new String(text, StandardCharsets.UTF_8),
+                    PointCodec.decodeVector(vectors.value()),
+                    encodedMetadata == null ? null : PointCodec.decodeMetadata(encodedMetadata));
+        }
+
+        // Moves the iterator up to the key; the value stored under it, or null if the point has none in that family
+        private static byte[] valueAt(RocksIterator iterator, byte[] key) {
+            while (iterator.isValid() && Arrays.compareUnsigned(iterator.key(), key) < 0) {
+                iterator.next();
+            }
+            return iterator.isValid() && Arrays.equals(iterator.key(), key) ? iterator.value() : null;
+        }
+
+        @Override
+        public void close() {
+            vectors.close();
+            content.close();
+            metadata.close();
+        }
+    }
 }
@@ -0,0 +1,262 @@
+package org.similake.persist;
+
+import org.rocksdb.CompressionType;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.SstFileReader;
+import org.rocksdb.SstFileReaderIterator;
+import org.rocksdb.SstFileWriter;
+import org.similake.model.Point;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Bulk load of points into a RocksDB collection without going through its memtable, write-ahead log and compactions.
+ * Points are buffered and sorted by id; every full buffer is written as a sorted run to its own SST file. Ingesting
+ * merges the runs into one SST file per column family, a later point replacing an earlier one with the same id, and
+ * attaches the files to the database.
+ * <p>
+ * RocksDB attaches the files of one column family atomically, but RocksJava has no call attaching files to several
+ * column families at once, so the families are attached one after the other. The vector file, whose entries are what
+ * make points visible, is attached last, so an import that fails halfway adds no points, though points it replaces may
+ * already show their new content and metadata.
+ */
+final class SstPointImporter implements Closeable {
+
+    private static final Comparator<byte[]> KEY_ORDER = Arrays::compareUnsigned;
+
+    private final Path stagingDir;
+    private final int runPoints;
+    private final RocksDBProfile profile;
+    // Options of the temporary runs, which are read once by the merge
+    private final Options options = new Options().setCompressionType(CompressionType.NO_COMPRESSION);
+    private final EnvOptions envOptions = new EnvOptions();
+    // Points of the run being collected, by key
+    private final TreeMap<String, Point> buffer = new TreeMap<>();
+    private final List<Path> runs = new ArrayList<>();
+    // Whether prepare wrote the files of the column families
+    private boolean prepared;
+
+    SstPointImporter(Path stagingDir, int runPoints, RocksDBProfile profile) {
+        this.stagingDir = stagingDir;
+        this.runPoints = Math.max(1, runPoints);
+        this.profile = profile;
+    }
+
+    void add(Point point) throws RocksDBException {
+        buffer.put(point.getId().toString(), point);
+        if (buffer.size() >= runPoints) {
+            writeRun();
+        }
+    }
+
+    private void writeRun() throws RocksDBException {
+        Path run = stagingDir.resolve(String.format("run-%06d.sst", runs.size()));
+        try (SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+            writer.open(run.toString());
+            for (Map.Entry<String, Point> entry : buffer.entrySet()) {
+                writer.put(entry.getKey().getBytes(StandardCharsets.UTF_8), PointCodec.encode(entry.getValue()));
+            }
+            writer.finish();
+        }
+        runs.add(run);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the collected points to one file per column family, without touching the collection; returns the number
+     * of distinct points, which attach then adds.
+     */
+    long prepare() throws RocksDBException, IOException {
+        if (runs.isEmpty() && buffer.isEmpty()) {
+            return 0;
+        }
+        long imported;
+        try (Families families = new Families(familyFile(RocksDBService.VECTORS), familyFile(RocksDBService.CONTENT),
+                familyFile(RocksDBService.METADATA))) {
+            if (runs.isEmpty()) {
+                // Everything fit in one run, which is still in memory
+                for (Map.Entry<String, Point> entry : buffer.entrySet()) {
+                    families.write(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+                }
+                imported = buffer.size();
+            } else {
+                if (!buffer.isEmpty()) {
+                    writeRun();
+                }
+                imported = mergeRuns(families);
+            }
+            families.finish();
+        }
+        prepared = true;
+        return imported;
+    }
+
+    // Attaches the files written by prepare to the collection, vectors last; a no-op if there were no points
+    void attach(RocksDBRegistry.Handle handle) throws RocksDBException {
+        if (!prepared) {
+            return;
+        }
+        try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)) {
+            for (String family : List.of(RocksDBService.CONTENT, RocksDBService.METADATA, RocksDBService.VECTORS)) {
+                handle.db().ingestExternalFile(handle.column(family), List.of(familyFile(family).toString()), ingestOptions);
+            }
+        }
+        prepared = false;
+    }
+
+    private Path familyFile(String family) {
+        return stagingDir.resolve(family + ".sst");
+    }
+
+    // K-way merge of the sorted runs; among equal keys the latest run comes first and the others are skipped
+    private long mergeRuns(Families families) throws RocksDBException, IOException {
+        List<RunCursor> cursors = new ArrayList<>();
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(Comparator.comparing((RunCursor cursor) -> cursor.key, KEY_ORDER)
+                .thenComparing(cursor -> -cursor.run));
+        long imported = 0;
+        try (ReadOptions readOptions = profile.newScanOptions()) {
+            for (int run = 0; run < runs.size(); run++) {
+                RunCursor cursor = new RunCursor(run, runs.get(run), options, readOptions);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            byte[] last = null;
+            while (!queue.isEmpty()) {
+                RunCursor cursor = queue.poll();
+                if (last == null || KEY_ORDER.compare(last, cursor.key) != 0) {
+                    try {
+                        families.write(cursor.key, PointCodec.decode(cursor.value));
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException(e);
+                    }
+                    last = cursor.key;
+                    imported++;
+                }
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+        return imported;
+    }
+
+    @Override
+    public void close() throws IOException {
+        envOptions.close();
+        options.close();
+        if (Files.exists(stagingDir)) {
+            try (Stream<Path> files = Files.list(stagingDir)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(stagingDir);
+        }
+    }
+
+    // One SST file per column family, filled in key order with the table settings and compression of that family
+    private final class Families implements AutoCloseable {
+        private final Options vectorOptions = profile.newSstOptions(RocksDBService.VECTORS);
+        private final Options contentOptions = profile.newSstOptions(RocksDBService.CONTENT);
+        private final Options metadataOptions = profile.newSstOptions(RocksDBService.METADATA);
+        private final SstFileWriter vectors = new SstFileWriter(envOptions, vectorOptions);
+        private final SstFileWriter content = new SstFileWriter(envOptions, contentOptions);
+        private final SstFileWriter metadata = new SstFileWriter(envOptions, metadataOptions);
+
+        Families(Path vectorsFile, Path contentFile, Path metadataFile) throws RocksDBException {
+            vectors.open(vectorsFile.toString());
+            content.open(contentFile.toString());
+            metadata.open(metadataFile.toString());
+        }
+
+        // Absent content or metadata is written as a delete, so it hides what an existing point with the same id had
+        void write(byte[] key, Point point) throws RocksDBException {
+            vectors.put(key, PointCodec.encodeVector(point.getVector()));
+            if (point.getContent() != null) {
+                content.put(key, point.getContent().getBytes(StandardCharsets.UTF_8));
+            } else {
+                content.delete(key);
+            }
+            if (point.getMetadata() != null) {
+                metadata.put(key, PointCodec.encodeMetadata(point.getMetadata()));
+            } else {
+                metadata.delete(key);
+            }
+        }
+
+        void finish() throws RocksDBException {
+            vectors.finish();
+            content.finish();
+            metadata.finish();
+        }
+
+        @Override
+        public void close() {
+            vectors.close();
+            content.close();
+            metadata.close();
+            vectorOptions.close();
+            contentOptions.close();
+            metadataOptions.close();
+        }
+    }
+
+    private static final class RunCursor {
+        private final int run;
+        private final SstFileReader reader;
+        private final SstFileReaderIterator iterator;
+        private boolean started;
+        private byte[] key;
+        private byte[] value;
+
+        RunCursor(int run, Path file, Options options, ReadOptions readOptions) throws RocksDBException {
+            this.run = run;
+            this.reader = new SstFileReader(options);
+            reader.open(file.toString());
+            this.iterator = reader.newIterator(readOptions);
+        }
+
+        // Moves to the next entry of the run; false once it is exhausted
+        boolean advance() {
+            if (started) {
+                iterator.next();
+            } else {
+                iterator.seekToFirst();
+                started = true;
+            }
+            if (!iterator.isValid()) {
+                return false;
+            }
+            key = iterator.key();
+            value = iterator.value();
+            return true;
+        }
+
+        void close() {
+            iterator.close();
+            reader.close();
+        }
+    }
+}
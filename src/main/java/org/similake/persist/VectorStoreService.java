@@ -1,10 +1,17 @@
 package org.similake.persist;
 
 import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterPredicate;
+import org.similake.model.Distance;
 import org.similake.model.Point;
+import org.similake.model.ScoredPoint;
+import org.similake.model.VectorStore;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public interface VectorStoreService {
 
@@ -23,9 +30,36 @@ public interface VectorStoreService {
     // Method to add a Point payload to a VectorStore
     void addPayloadToVectorStore(String vectorName, Point point);
 
+    // Method to add a stream of Points at once, returning how many were added; engines with a faster path than adding the
+    // Points one by one override it
+    default long importPoints(String vectorName, Stream<Point> points) {
+        long[] added = new long[1];
+        points.forEach(point -> {
+            addPayloadToVectorStore(vectorName, point);
+            added[0]++;
+        });
+        return added[0];
+    }
+
     // Method to fetch all Points from storage for a given vector store
     List<Point> getAllPointsFromVectorStore(String vectorName);
 
+    // Method to visit Points in storage order from a cursor returned by an earlier scan (null for the first point) until
+    // the visitor returns false; returns the cursor of the next unvisited Point, or null once the end of storage is reached
+    String scanPoints(String vectorName, String cursor, Predicate<Point> visitor);
+
+    // Method to delete a Point by id; returns false if the collection holds no Point with that id.
+    // Throws UnsupportedOperationException for engines that cannot delete single Points
+    boolean deletePoint(String vectorName, UUID pointId);
+
+    // Method to score the stored vectors of a collection where they lie and return the best limit points passing the filter,
+    // best first; null if the engine can only be searched through getAllPointsFromVectorStore
+    List<ScoredPoint> searchStoredVectors(String vectorName, float[] query, int limit, double minScore,
+                                          Distance metric, FilterPredicate filter);
+
+    // Method to fetch the in-memory HNSW/quantized mirror of a persisted collection, or null if it has neither
+    VectorStore getIndexedVectorStore(String vectorName);
+
     // **New Method** to remove a vector (all its points) and its configuration
     boolean removeVector(String collectionName);
 
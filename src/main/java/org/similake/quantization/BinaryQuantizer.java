@@ -0,0 +1,92 @@
+package org.similake.quantization;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 1-bit quantizer: one sign bit per dimension, packed 64 to a long, all codes in one contiguous array.
+ * A point is scored by the negated Hamming distance between its bits and the query's bits, which is
+ * a handful of XOR and bitCount instructions per point. The scores only rank candidates, so binary
+ * collections always rescore their shortlist against the original vectors under the collection metric.
+ * Sign bits track angles, so the prefilter works best for cosine and dot collections.
+ * Needs no training data, so it is trained from the start.
+ */
+public class BinaryQuantizer implements VectorQuantizer {
+    private final int dim;
+    private final int words;
+    private volatile long[] codes = new long[0];
+    private volatile int size;
+
+    public BinaryQuantizer(int dim) {
+        this.dim = dim;
+        this.words = (dim + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return true;
+    }
+
+    @Override
+    public void train(List<float[]> vectors) {
+        // Sign bits need no parameters
+    }
+
+    @Override
+    public synchronized void add(float[] vector) {
+        int base = size * words;
+        if (base + words > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(words * 1024, codes.length * 2));
+        }
+        long[] bits = encode(vector);
+        System.arraycopy(bits, 0, codes, base, words);
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public IntToDoubleFunction scorer(float[] query) {
+        long[] queryBits = encode(query);
+        long[] snapshot = codes;
+        return ordinal -> {
+            int base = ordinal * words;
+            int distance = 0;
+            for (int w = 0; w < words; w++) {
+                distance += Long.bitCount(snapshot[base + w] ^ queryBits[w]);
+            }
+            return -distance;
+        };
+    }
+
+    @Override
+    public float[] reconstruct(int ordinal) {
+        float[] vector = new float[dim];
+        int base = ordinal * words;
+        long[] snapshot = codes;
+        for (int i = 0; i < dim; i++) {
+            boolean positive = (snapshot[base + i / Long.SIZE] & (1L << (i % Long.SIZE))) != 0;
+            vector[i] = positive ? 1 : -1;
+        }
+        return vector;
+    }
+
+    @Override
+    public int bytesPerVector() {
+        return words * Long.BYTES;
+    }
+
+    private long[] encode(float[] vector) {
+        long[] bits = new long[words];
+        for (int i = 0; i < dim; i++) {
+            if (vector[i] > 0) {
+                bits[i / Long.SIZE] |= 1L << (i % Long.SIZE);
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,164 @@
+package org.similake.quantization;
+
+import org.similake.index.KMeans;
+import org.similake.model.Distance;
+import org.similake.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Product quantizer: the vector is split into M sub-vectors and each sub-vector is replaced by the
+ * index of its nearest of 256 k-means centroids, giving an M-byte code. Queries are scored with
+ * asymmetric distance computation (ADC): one lookup table of query/centroid inner products per
+ * sub-space, summed over the code bytes.
+ * For cosine, vectors are L2-normalized before encoding so the ADC inner product approximates cosine
+ * similarity. Dot uses raw inner products, Euclidean and Manhattan tabulate the per sub-space squared
+ * and absolute distances instead, since both sum over dimensions the same way.
+ */
+public class ProductQuantizer implements VectorQuantizer {
+    private static final int CENTROIDS = 256;
+    private static final int TRAINING_ITERATIONS = 15;
+    // Dimensions per sub-vector when the number of sub-vectors is not configured
+    private static final int DEFAULT_SUBVECTOR_DIM = 16;
+
+    private final int dim;
+    private final Distance metric;
+    private final int subvectors;
+    // Sub-vector m covers dimensions [offsets[m], offsets[m + 1])
+    private final int[] offsets;
+
+    // codebooks[m][c] is centroid c of sub-space m
+    private volatile float[][][] codebooks;
+    private volatile byte[] codes = new byte[0];
+    private volatile int size;
+
+    public ProductQuantizer(int dim, int subvectors, Distance metric) {
+        this.dim = dim;
+        this.metric = metric;
+        int m = subvectors > 0 ? subvectors : Math.max(1, dim / DEFAULT_SUBVECTOR_DIM);
+        this.subvectors = Math.min(m, dim);
+        this.offsets = new int[this.subvectors + 1];
+        for (int i = 0; i <= this.subvectors; i++) {
+            offsets[i] = (int) ((long) i * dim / this.subvectors);
+        }
+    }
+
+    @Override
+    public boolean isTrained() {
+        return codebooks != null;
+    }
+
+    @Override
+    public void train(List<float[]> vectors) {
+        Random random = new Random(42);
+        List<float[]> normalized = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            normalized.add(prepare(vector));
+        }
+        float[][][] trained = new float[subvectors][][];
+        for (int m = 0; m < subvectors; m++) {
+            List<float[]> slices = new ArrayList<>(normalized.size());
+            for (float[] vector : normalized) {
+                slices.add(Arrays.copyOfRange(vector, offsets[m], offsets[m + 1]));
+            }
+            trained[m] = KMeans.train(slices, CENTROIDS, TRAINING_ITERATIONS, ProductQuantizer::negativeSquaredDistance, random);
+        }
+        codebooks = trained;
+    }
+
+    @Override
+    public synchronized void add(float[] vector) {
+        float[] normalized = prepare(vector);
+        int base = size * subvectors;
+        if (base + subvectors > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(subvectors * 1024, codes.length * 2));
+        }
+        byte[] target = codes;
+        for (int m = 0; m < subvectors; m++) {
+            float[] slice = Arrays.copyOfRange(normalized, offsets[m], offsets[m + 1]);
+            target[base + m] = (byte) KMeans.nearest(slice, codebooks[m], ProductQuantizer::negativeSquaredDistance);
+        }
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public IntToDoubleFunction scorer(float[] query) {
+        float[] normalized = prepare(query);
+        float[][][] books = codebooks;
+        // table[m * 256 + c] = term of query sub-vector m against centroid c of sub-space m
+        float[] table = new float[subvectors * CENTROIDS];
+        for (int m = 0; m < subvectors; m++) {
+            for (int c = 0; c < books[m].length; c++) {
+                table[m * CENTROIDS + c] = tableEntry(normalized, offsets[m], books[m][c]);
+            }
+        }
+        byte[] snapshot = codes;
+        int stride = subvectors;
+        return ordinal -> {
+            int base = ordinal * stride;
+            float score = 0;
+            for (int m = 0; m < stride; m++) {
+                score += table[m * CENTROIDS + (snapshot[base + m] & 0xFF)];
+            }
+            return switch (metric) {
+                case Euclidean -> -Math.sqrt(Math.max(0, score));
+                case Manhattan -> -score;
+                default -> score;
+            };
+        };
+    }
+
+    @Override
+    public float[] reconstruct(int ordinal) {
+        float[] vector = new float[dim];
+        int base = ordinal * subvectors;
+        byte[] snapshot = codes;
+        for (int m = 0; m < subvectors; m++) {
+            float[] centroid = codebooks[m][snapshot[base + m] & 0xFF];
+            System.arraycopy(centroid, 0, vector, offsets[m], centroid.length);
+        }
+        return vector;
+    }
+
+    @Override
+    public int bytesPerVector() {
+        return subvectors;
+    }
+
+    // Inner product for cosine and dot, squared or absolute difference summed over the sub-vector otherwise
+    private float tableEntry(float[] query, int offset, float[] centroid) {
+        float sum = 0;
+        for (int d = 0; d < centroid.length; d++) {
+            float q = query[offset + d];
+            sum += switch (metric) {
+                case Euclidean -> (q - centroid[d]) * (q - centroid[d]);
+                case Manhattan -> Math.abs(q - centroid[d]);
+                default -> q * centroid[d];
+            };
+        }
+        return sum;
+    }
+
+    // Cosine is encoded on unit vectors, every other metric on the raw values
+    private float[] prepare(float[] vector) {
+        return metric == Distance.Cosine ? Utils.normalize(vector) : vector;
+    }
+
+    private static double negativeSquaredDistance(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return -sum;
+    }
+}
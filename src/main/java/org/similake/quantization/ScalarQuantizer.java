@@ -0,0 +1,165 @@
+package org.similake.quantization;
+
+import org.similake.model.Distance;
+import org.similake.utils.Utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Int8 scalar quantizer: each dimension is mapped linearly from its learned [min, max] range onto
+ * 256 levels and stored as a signed byte, all codes in one contiguous array.
+ * A stored value decodes as x[i] = offset[i] + step[i] * code[i]. For a query q the score
+ * sum(q[i] * x[i]) splits into a per-query constant sum(q[i] * offset[i]) plus sum(q[i] * step[i] * code[i]);
+ * the per-dimension weights q[i] * step[i] are quantized to int8 as well, so the per-point work is
+ * a single integer dot product.
+ * For cosine, vectors are L2-normalized before encoding so the score approximates cosine similarity.
+ * Euclidean expands |q - x|^2 into sum((q[i] - offset[i])^2) - 2 * sum((q[i] - offset[i]) * step[i] * code[i])
+ * + sum((step[i] * code[i])^2), where the last term is stored per point, so it is again one integer dot product.
+ * Manhattan does not decompose and decodes each dimension while scoring.
+ */
+public class ScalarQuantizer implements VectorQuantizer {
+    private static final int LEVELS = 255;
+
+    private final int dim;
+    private final Distance metric;
+    private volatile float[] offset;
+    private volatile float[] step;
+    private volatile byte[] codes = new byte[0];
+    // Euclidean only: sum((step[i] * code[i])^2) of every encoded vector
+    private volatile float[] squaredNorms = new float[0];
+    private volatile int size;
+
+    public ScalarQuantizer(int dim, Distance metric) {
+        this.dim = dim;
+        this.metric = metric;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return step != null;
+    }
+
+    @Override
+    public void train(List<float[]> vectors) {
+        float[] min = new float[dim];
+        float[] max = new float[dim];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] vector : vectors) {
+            float[] prepared = prepare(vector);
+            for (int i = 0; i < dim; i++) {
+                min[i] = Math.min(min[i], prepared[i]);
+                max[i] = Math.max(max[i], prepared[i]);
+            }
+        }
+        float[] trainedOffset = new float[dim];
+        float[] trainedStep = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            float range = max[i] - min[i];
+            trainedStep[i] = range > 0 ? range / LEVELS : 0;
+            // Code -128 decodes to min, code 127 decodes to max
+            trainedOffset[i] = min[i] + 128 * trainedStep[i];
+        }
+        offset = trainedOffset;
+        step = trainedStep;
+    }
+
+    @Override
+    public synchronized void add(float[] vector) {
+        float[] prepared = prepare(vector);
+        int base = size * dim;
+        if (base + dim > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(dim * 1024, codes.length * 2));
+        }
+        if (metric == Distance.Euclidean && size >= squaredNorms.length) {
+            squaredNorms = Arrays.copyOf(squaredNorms, Math.max(1024, squaredNorms.length * 2));
+        }
+        byte[] target = codes;
+        float squaredNorm = 0;
+        for (int i = 0; i < dim; i++) {
+            int code = step[i] > 0 ? Math.round((prepared[i] - offset[i]) / step[i]) : 0;
+            target[base + i] = (byte) Math.max(-128, Math.min(127, code));
+            float decoded = step[i] * target[base + i];
+            squaredNorm += decoded * decoded;
+        }
+        if (metric == Distance.Euclidean) {
+            squaredNorms[size] = squaredNorm;
+        }
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public IntToDoubleFunction scorer(float[] query) {
+        float[] prepared = prepare(query);
+        byte[] snapshot = codes;
+        if (metric == Distance.Manhattan) {
+            return ordinal -> {
+                int base = ordinal * dim;
+                double sum = 0;
+                for (int i = 0; i < dim; i++) {
+                    sum += Math.abs(prepared[i] - offset[i] - step[i] * snapshot[base + i]);
+                }
+                return -sum;
+            };
+        }
+
+        // Per-query constant and per-dimension weights of the int8 dot product
+        boolean euclidean = metric == Distance.Euclidean;
+        double constant = 0;
+        float[] weights = new float[dim];
+        float maxWeight = 0;
+        for (int i = 0; i < dim; i++) {
+            float centered = prepared[i] - offset[i];
+            constant += euclidean ? centered * centered : prepared[i] * offset[i];
+            weights[i] = (euclidean ? centered : prepared[i]) * step[i];
+            maxWeight = Math.max(maxWeight, Math.abs(weights[i]));
+        }
+        byte[] queryCodes = new byte[dim];
+        float weightScale = maxWeight > 0 ? maxWeight / 127 : 0;
+        for (int i = 0; i < dim; i++) {
+            queryCodes[i] = weightScale > 0 ? (byte) Math.round(weights[i] / weightScale) : 0;
+        }
+
+        double bias = constant;
+        float[] norms = squaredNorms;
+        return ordinal -> {
+            int base = ordinal * dim;
+            int dot = 0;
+            for (int i = 0; i < dim; i++) {
+                dot += queryCodes[i] * snapshot[base + i];
+            }
+            if (euclidean) {
+                return -Math.sqrt(Math.max(0, bias - 2 * weightScale * dot + norms[ordinal]));
+            }
+            return bias + weightScale * dot;
+        };
+    }
+
+    @Override
+    public float[] reconstruct(int ordinal) {
+        float[] vector = new float[dim];
+        int base = ordinal * dim;
+        byte[] snapshot = codes;
+        for (int i = 0; i < dim; i++) {
+            vector[i] = offset[i] + step[i] * snapshot[base + i];
+        }
+        return vector;
+    }
+
+    @Override
+    public int bytesPerVector() {
+        return dim;
+    }
+
+    // Cosine is scored on unit vectors, every other metric on the raw values
+    private float[] prepare(float[] vector) {
+        return metric == Distance.Cosine ? Utils.normalize(vector) : vector;
+    }
+}
@@ -0,0 +1,32 @@
+package org.similake.quantization;
+
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Compressed shadow copy of a collection's vectors. Codes are appended in insertion order,
+ * so ordinals match the positions of the points in the owning store.
+ */
+public interface VectorQuantizer {
+
+    // Whether train has been called; add and scorer require a trained quantizer
+    boolean isTrained();
+
+    // Learn the quantizer parameters from a sample of vectors
+    void train(List<float[]> vectors);
+
+    // Encode a vector and append it as the next ordinal
+    void add(float[] vector);
+
+    // Number of encoded vectors
+    int size();
+
+    // Approximate score of every encoded ordinal against the query under the collection metric, higher is more similar
+    IntToDoubleFunction scorer(float[] query);
+
+    // Approximate reconstruction of an encoded vector
+    float[] reconstruct(int ordinal);
+
+    // Bytes used by one encoded vector
+    int bytesPerVector();
+}
@@ -0,0 +1,91 @@
+package org.similake.search;
+
+/**
+ * How one similarity query is executed, with the estimates that led to the choice. Reported back to the
+ * client in the X-Query-Plan header so the planner thresholds can be tuned.
+ */
+public class QueryPlan {
+
+    public enum Strategy {
+        // Score every point, checking filters inline before scoring
+        EXACT_SCAN,
+        // Resolve the filters from the metadata index and score only the matches
+        FILTERED_EXACT_SCAN,
+        // Walk the HNSW graph or quantized codes without filters
+        ANN,
+        // Walk the index, skipping points that fail the filters while the walk continues
+        ANN_INLINE_FILTER,
+        // Fetch extra unfiltered neighbours from the index, then drop the ones failing the filters
+        ANN_OVERFETCH,
+        // Persisted collection: score the filtered points of the probed IVF partitions
+        IVF_PROBE,
+        // Persisted collection: score every filtered point read from disk
+        PERSISTED_SCAN,
+        // Persisted collection: score the stored vectors in place and decode only points that could be returned
+        STORED_VECTOR_SCAN
+    }
+
+    private final Strategy strategy;
+    private final int totalPoints;
+    private final double selectivity;
+    private final int fetchLimit;
+    private boolean fallback;
+
+    public QueryPlan(Strategy strategy, int totalPoints, double selectivity, int fetchLimit) {
+        this.strategy = strategy;
+        this.totalPoints = totalPoints;
+        this.selectivity = selectivity;
+        this.fetchLimit = fetchLimit;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public int getTotalPoints() {
+        return totalPoints;
+    }
+
+    // Estimated share of the points passing the filters, 1 without filters
+    public double getSelectivity() {
+        return selectivity;
+    }
+
+    public long getEstimatedMatches() {
+        return Math.round(selectivity * totalPoints);
+    }
+
+    // Number of unfiltered neighbours an ANN_OVERFETCH plan asks the index for
+    public int getFetchLimit() {
+        return fetchLimit;
+    }
+
+    // Whether an over-fetch came up short and the query was rerun with the inline filter
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder plan = new StringBuilder(strategy.name());
+        if (strategy == Strategy.STORED_VECTOR_SCAN) {
+            return plan.toString();
+        }
+        if (strategy == Strategy.IVF_PROBE || strategy == Strategy.PERSISTED_SCAN) {
+            // Persisted collections have no statistics; report how many filtered points were scored
+            return plan.append("; candidates=").append(totalPoints).toString();
+        }
+        plan.append("; estimated=").append(getEstimatedMatches()).append('/').append(totalPoints);
+        if (strategy == Strategy.ANN_OVERFETCH) {
+            plan.append("; fetch=").append(fetchLimit);
+        }
+        if (fallback) {
+            plan.append("; fallback=").append(Strategy.ANN_INLINE_FILTER.name());
+        }
+        return plan.toString();
+    }
+}
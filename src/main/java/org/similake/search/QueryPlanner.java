@@ -0,0 +1,69 @@
+package org.similake.search;
+
+import org.similake.creteria.FilterCriteria;
+import org.similake.index.MetadataIndex;
+import org.similake.model.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Picks how a filtered similarity query runs against an in-memory collection, from the estimated
+ * selectivity of its filters:
+ * - few matches: score them exactly, which beats walking a graph that mostly holds rejected points;
+ * - most points match: ask the ANN index for a few extra neighbours and filter them afterwards;
+ * - in between: walk the ANN index and skip rejected points inline.
+ * Collections without a usable ANN index always scan, using the metadata index when it narrows the scan.
+ */
+@Service
+public class QueryPlanner {
+
+    // Over-fetch a little beyond limit / selectivity, since matches are not spread evenly over the neighbours
+    private static final double OVERFETCH_MARGIN = 1.5;
+
+    private final int exactThreshold;
+    private final double overfetchSelectivity;
+
+    public QueryPlanner(@Value("${search.planner.exact-threshold:5000}") int exactThreshold,
+                        @Value("${search.planner.overfetch-selectivity:0.5}") double overfetchSelectivity) {
+        this.exactThreshold = exactThreshold;
+        this.overfetchSelectivity = overfetchSelectivity;
+    }
+
+    public QueryPlan plan(VectorStore vectorStore, List<FilterCriteria> filters, int limit, boolean exact) {
+        int total = vectorStore.pointCount();
+        boolean scan = usesExactScan(vectorStore, exact);
+        if (filters.isEmpty()) {
+            return new QueryPlan(scan ? QueryPlan.Strategy.EXACT_SCAN : QueryPlan.Strategy.ANN, total, 1, limit);
+        }
+        MetadataIndex.Estimate estimate = vectorStore.estimateFilter(filters);
+        double selectivity = estimate.getSelectivity();
+        long matches = Math.round(selectivity * total);
+
+        if (scan) {
+            // Materializing the matches only pays off when it skips a good part of the store
+            QueryPlan.Strategy strategy = estimate.isIndexed() && selectivity < overfetchSelectivity
+                    ? QueryPlan.Strategy.FILTERED_EXACT_SCAN : QueryPlan.Strategy.EXACT_SCAN;
+            return new QueryPlan(strategy, total, selectivity, limit);
+        }
+        if (matches <= exactThreshold && (estimate.isIndexed() || vectorStore.hasOriginalVectors())) {
+            QueryPlan.Strategy strategy = estimate.isIndexed()
+                    ? QueryPlan.Strategy.FILTERED_EXACT_SCAN : QueryPlan.Strategy.EXACT_SCAN;
+            return new QueryPlan(strategy, total, selectivity, limit);
+        }
+        if (selectivity >= overfetchSelectivity) {
+            int fetch = (int) Math.min(total, Math.ceil(limit / selectivity * OVERFETCH_MARGIN));
+            return new QueryPlan(QueryPlan.Strategy.ANN_OVERFETCH, total, selectivity, Math.max(limit, fetch));
+        }
+        return new QueryPlan(QueryPlan.Strategy.ANN_INLINE_FILTER, total, selectivity, limit);
+    }
+
+    // Whether a store is searched by scanning its original vectors rather than through an index or codes
+    public static boolean usesExactScan(VectorStore vectorStore, boolean exact) {
+        if (vectorStore.hasHnswIndex() && !exact) {
+            return false;
+        }
+        return !vectorStore.hasTrainedQuantizer() || (exact && vectorStore.hasOriginalVectors());
+    }
+}
@@ -0,0 +1,142 @@
+package org.similake.search;
+
+import jakarta.annotation.PreDestroy;
+import org.similake.index.Neighbor;
+import org.similake.index.TopK;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs exact top-k scans over a range of ordinals, for one query or a batch. Large ranges are split into
+ * chunks on a dedicated ForkJoinPool; every chunk fills its own bounded heap of size limit per query and
+ * the heaps are merged pairwise as the tasks join, so a scan costs O(N log k) and allocates one heap
+ * per chunk and query.
+ * Ranges below the parallel threshold are scanned sequentially on the calling thread.
+ */
+@Service
+public class SearchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchExecutor.class);
+
+    // Chunks never get smaller than this, so task overhead stays negligible next to the scoring
+    private static final int MIN_CHUNK_SIZE = 4096;
+
+    // Chunks per worker, so uneven chunks (filters, page boundaries) still balance out
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private final int parallelism;
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;
+
+    // Scores the ordinals in [from, to) into the given heap
+    @FunctionalInterface
+    public interface RangeScorer {
+        void score(int from, int to, TopK topK);
+    }
+
+    // Scores the ordinals in [from, to) for several queries at once, heaps[q] belongs to query q
+    @FunctionalInterface
+    public interface BatchRangeScorer {
+        void score(int from, int to, TopK[] heaps);
+    }
+
+    public SearchExecutor(@Value("${search.parallelism:0}") int parallelism,
+                          @Value("${search.parallel-threshold:20000}") int parallelThreshold) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelThreshold = parallelThreshold;
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+        logger.info("Search executor using parallelism {} above {} points", this.parallelism, parallelThreshold);
+    }
+
+    /**
+     * Returns the best limit ordinals in [0, count), best first.
+     *
+     * @param count  number of ordinals to scan
+     * @param limit  number of results to keep
+     * @param scorer scores a sub-range of ordinals into a heap; called concurrently for disjoint ranges
+     */
+    public List<Neighbor> search(int count, int limit, RangeScorer scorer) {
+        return searchBatch(count, new int[]{limit}, (from, to, heaps) -> scorer.score(from, to, heaps[0])).get(0);
+    }
+
+    /**
+     * Returns the best limits[q] ordinals in [0, count) for every query q, best first. Every chunk is
+     * scored for all queries in one call, so the scorer can reuse each block of vectors across queries.
+     */
+    public List<List<Neighbor>> searchBatch(int count, int[] limits, BatchRangeScorer scorer) {
+        TopK[] heaps;
+        // A batch is worth splitting once the total number of comparisons passes the threshold
+        if (pool == null || (long) count * limits.length < parallelThreshold) {
+            heaps = newHeaps(limits);
+            scorer.score(0, count, heaps);
+        } else {
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, count / (parallelism * CHUNKS_PER_WORKER) + 1);
+            heaps = pool.invoke(new ScanTask(0, count, chunkSize, limits, scorer));
+        }
+        List<List<Neighbor>> results = new ArrayList<>(heaps.length);
+        for (TopK heap : heaps) {
+            results.add(heap.toSortedList());
+        }
+        return results;
+    }
+
+    private static TopK[] newHeaps(int[] limits) {
+        TopK[] heaps = new TopK[limits.length];
+        for (int q = 0; q < limits.length; q++) {
+            heaps[q] = new TopK(limits[q]);
+        }
+        return heaps;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class ScanTask extends RecursiveTask<TopK[]> {
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final int[] limits;
+        private final BatchRangeScorer scorer;
+
+        ScanTask(int from, int to, int chunkSize, int[] limits, BatchRangeScorer scorer) {
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.limits = limits;
+            this.scorer = scorer;
+        }
+
+        @Override
+        protected TopK[] compute() {
+            if (to - from <= chunkSize) {
+                TopK[] heaps = newHeaps(limits);
+                scorer.score(from, to, heaps);
+                return heaps;
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(from, middle, chunkSize, limits, scorer);
+            left.fork();
+            TopK[] right = new ScanTask(middle, to, chunkSize, limits, scorer).compute();
+            TopK[] merged = left.join();
+            for (int q = 0; q < merged.length; q++) {
+                merged[q].addAll(right[q]);
+            }
+            return merged;
+        }
+    }
+}
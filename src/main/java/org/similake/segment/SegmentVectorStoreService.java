@@ -0,0 +1,352 @@
+package org.similake.segment;
+
+import jakarta.annotation.PreDestroy;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterPredicate;
+import org.similake.jsonpersist.CollectionConfigFiles;
+import org.similake.model.Distance;
+import org.similake.model.IndexType;
+import org.similake.model.Point;
+import org.similake.model.Quantization;
+import org.similake.model.ScoredPoint;
+import org.similake.model.VectorStore;
+import org.similake.persist.VectorStoreService;
+import org.similake.search.SearchExecutor;
+import org.similake.wal.SyncPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Storage engine keeping each persisted collection in binary {@link VectorSegment}s managed by a
+ * {@link SegmentedCollection}, selected with storage.engine=segment. Exact searches score the memory-mapped vectors in
+ * place and decode payloads only for the points that could enter the top-k; configs stay JSON files as with the JSONL
+ * engine. Write buffers are flushed and segments merged on a single background thread.
+ */
+@Primary
+@Service
+@ConditionalOnProperty(name = "storage.engine", havingValue = "segment")
+public class SegmentVectorStoreService implements VectorStoreService {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentVectorStoreService.class);
+
+    // Points handed to a scan visitor per read of the collection
+    private static final int SCAN_PAGE = 256;
+
+    private final String collectionsDir;
+    private final CollectionConfigFiles configFiles;
+    private final SearchExecutor searchExecutor;
+    private final SyncPolicy syncPolicy;
+    private final int memtablePoints;
+    private final int maxSegments;
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Open collections by name; opened on first use and closed on removal or shutdown
+    private final Map<String, SegmentedCollection> collections = new ConcurrentHashMap<>();
+
+    // In-memory HNSW/quantized mirrors of persisted collections, loaded on first search and kept current on append
+    private final Map<String, VectorStore> indexedStores = new ConcurrentHashMap<>();
+
+    // Persisted collections whose config asks for neither an HNSW index nor quantization, so that searches do not read
+    // the config again just to find there is no mirror; dropped when the collection is created again or removed
+    private final Set<String> unindexedCollections = ConcurrentHashMap.newKeySet();
+
+    public SegmentVectorStoreService(@Value("${db.path}") String collectionsDir,
+                                     @Value("${config.path}") String configDir,
+                                     SearchExecutor searchExecutor,
+                                     SyncPolicy syncPolicy,
+                                     @Value("${storage.segment.memtable-points:10000}") int memtablePoints,
+                                     @Value("${storage.segment.max-segments:8}") int maxSegments) {
+        this.collectionsDir = collectionsDir;
+        this.configFiles = new CollectionConfigFiles(configDir);
+        this.searchExecutor = searchExecutor;
+        this.syncPolicy = syncPolicy;
+        this.memtablePoints = memtablePoints;
+        this.maxSegments = maxSegments;
+    }
+
+    @Override
+    public String persistVectorToStorage(String collectionName, CollectionConfig config) {
+        logger.info("Persisting collection to disk: {}", collectionName);
+        createConfig(collectionName, config);
+        collection(collectionName);
+        return "Created and persisted collection successfully: " + collectionName;
+    }
+
+    @Override
+    public boolean createConfig(String collectionName, CollectionConfig config) {
+        unindexedCollections.remove(collectionName);
+        return configFiles.write(collectionName, config);
+    }
+
+    @Override
+    public CollectionConfig fetchVectorFromStorage(String collectionName) {
+        return configFiles.read(collectionName);
+    }
+
+    @Override
+    public Map<String, CollectionConfig> fetchAllCollectionConfigs() {
+        return configFiles.readAll();
+    }
+
+    @Override
+    public void addPayloadToVectorStore(String vectorName, Point point) {
+        SegmentedCollection collection = collection(vectorName);
+        SegmentedCollection.Write write;
+        // Write and mirror under the collection lock so a concurrent mirror load cannot miss the point
+        synchronized (collection) {
+            try {
+                write = collection.applyUpsert(point);
+            } catch (IOException e) {
+                logger.error("Failed to add payload to {}: {}", vectorName, e.getMessage());
+                throw new RuntimeException("Failed to add payload to VectorStore", e);
+            }
+            VectorStore indexedStore = indexedStores.get(vectorName);
+            if (write.found()) {
+                // The in-memory index cannot drop the old version, so it is rebuilt on the next search
+                indexedStores.remove(vectorName);
+            } else if (indexedStore != null) {
+                mirrorPoint(indexedStore, vectorName, point);
+            }
+        }
+        // Outside the collection lock, so concurrent writers share the fsync
+        try {
+            write.commit();
+        } catch (IOException e) {
+            logger.error("Failed to sync payload of {}: {}", vectorName, e.getMessage());
+            throw new RuntimeException("Failed to add payload to VectorStore", e);
+        }
+    }
+
+    @Override
+    public boolean deletePoint(String vectorName, UUID pointId) {
+        SegmentedCollection collection = existingCollection(vectorName);
+        if (collection == null) {
+            return false;
+        }
+        SegmentedCollection.Write write;
+        synchronized (collection) {
+            try {
+                write = collection.applyDelete(pointId);
+            } catch (IOException e) {
+                logger.error("Failed to delete point {} from {}: {}", pointId, vectorName, e.getMessage());
+                throw new RuntimeException("Failed to delete point from VectorStore", e);
+            }
+            if (!write.found()) {
+                return false;
+            }
+            indexedStores.remove(vectorName);
+        }
+        // Outside the collection lock, so concurrent writers share the fsync
+        try {
+            write.commit();
+        } catch (IOException e) {
+            logger.error("Failed to delete point {} from {}: {}", pointId, vectorName, e.getMessage());
+            throw new RuntimeException("Failed to delete point from VectorStore", e);
+        }
+        return true;
+    }
+
+    @Override
+    public List<Point> getAllPointsFromVectorStore(String vectorName) {
+        List<Point> points = new ArrayList<>();
+        scanPoints(vectorName, null, points::add);
+        return points;
+    }
+
+    // Points are visited in id order and the cursor is the id of the next point, which stays valid across flushes and merges
+    @Override
+    public String scanPoints(String vectorName, String cursor, Predicate<Point> visitor) {
+        SegmentedCollection collection = existingCollection(vectorName);
+        if (collection == null) {
+            return null;
+        }
+        UUID next;
+        try {
+            next = cursor == null ? null : UUID.fromString(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        do {
+            SegmentedCollection.Page page = collection.scan(next, SCAN_PAGE);
+            List<Point> points = page.getPoints();
+            for (int i = 0; i < points.size(); i++) {
+                if (!visitor.test(points.get(i))) {
+                    UUID resume = i + 1 < points.size() ? points.get(i + 1).getId() : page.getNext();
+                    return resume == null ? null : resume.toString();
+                }
+            }
+            next = page.getNext();
+        } while (next != null);
+        return null;
+    }
+
+    @Override
+    public List<ScoredPoint> searchStoredVectors(String vectorName, float[] query, int limit, double minScore,
+                                                 Distance metric, FilterPredicate filter) {
+        SegmentedCollection collection = existingCollection(vectorName);
+        if (collection == null) {
+            return List.of();
+        }
+        return collection.search(query, limit, minScore, metric, filter, searchExecutor);
+    }
+
+    @Override
+    public VectorStore getIndexedVectorStore(String vectorName) {
+        VectorStore indexedStore = indexedStores.get(vectorName);
+        if (indexedStore != null) {
+            return indexedStore;
+        }
+        if (unindexedCollections.contains(vectorName)) {
+            return null;
+        }
+        CollectionConfig config = fetchVectorFromStorage(vectorName);
+        if (config == null) {
+            return null;
+        }
+        if (config.getIndexType() != IndexType.Hnsw && config.getQuantization() == Quantization.None) {
+            unindexedCollections.add(vectorName);
+            return null;
+        }
+        SegmentedCollection collection = collection(vectorName);
+        synchronized (collection) {
+            return indexedStores.computeIfAbsent(vectorName, name -> {
+                logger.info("Building in-memory index for persisted collection: {}", name);
+                VectorStore store = new VectorStore(config);
+                scanPoints(name, null, point -> {
+                    mirrorPoint(store, name, point);
+                    return true;
+                });
+                logger.info("Built in-memory index for {} with {} points", name, store.pointCount());
+                return store;
+            });
+        }
+    }
+
+    // Points whose vector does not match the collection dimension are left out of the mirror
+    private void mirrorPoint(VectorStore store, String vectorName, Point point) {
+        try {
+            store.addPoint(point);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Skipping point {} in the in-memory index of {}: {}", point.getId(), vectorName, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean removeVector(String collectionName) {
+        logger.info("Removing vector and config for collection: {}", collectionName);
+        indexedStores.remove(collectionName);
+        unindexedCollections.remove(collectionName);
+        SegmentedCollection collection = collections.remove(collectionName);
+        boolean success = true;
+        try {
+            if (collection != null) {
+                collection.close();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to close collection {}: {}", collectionName, e.getMessage());
+            success = false;
+        }
+        success &= deleteRecursively(Paths.get(collectionsDir, collectionName));
+        success &= configFiles.delete(collectionName);
+        return success;
+    }
+
+    @Override
+    public Double calculateCosineSimilarity(float[] vector1, float[] vector2) {
+        if (vector1 == null || vector2 == null || vector1.length == 0) {
+            return null;
+        }
+        if (vector1.length != vector2.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        return Math.max(-1.0, Math.min(1.0, Distance.Cosine.score(vector1, vector2)));
+    }
+
+    @PreDestroy
+    public void close() {
+        maintenance.shutdown();
+        try {
+            if (!maintenance.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Segment maintenance did not finish within 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Writes still buffered stay in the logs and are flushed on the next open
+        collections.forEach((name, collection) -> {
+            try {
+                collection.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close collection {}: {}", name, e.getMessage());
+            }
+        });
+        collections.clear();
+    }
+
+    // Open storage of a collection, created on first use
+    private SegmentedCollection collection(String vectorName) {
+        return collections.computeIfAbsent(vectorName, name -> {
+            CollectionConfig config = fetchVectorFromStorage(name);
+            if (config == null) {
+                throw new IllegalArgumentException("Collection not found: " + name);
+            }
+            try {
+                SegmentedCollection collection = SegmentedCollection.open(Paths.get(collectionsDir, name),
+                        config.getSize(), memtablePoints, maxSegments, maintenance, syncPolicy);
+                logger.info("Opened {} with {} points in {} segments", name, collection.size(), collection.segmentCount());
+                return collection;
+            } catch (IOException e) {
+                logger.error("Failed to open collection {}: {}", name, e.getMessage());
+                throw new RuntimeException("Failed to open collection: " + name, e);
+            }
+        });
+    }
+
+    // Storage of an existing collection, or null if the collection has no config
+    private SegmentedCollection existingCollection(String vectorName) {
+        SegmentedCollection collection = collections.get(vectorName);
+        if (collection != null || fetchVectorFromStorage(vectorName) == null) {
+            return collection;
+        }
+        return collection(vectorName);
+    }
+
+    private boolean deleteRecursively(Path path) {
+        if (!Files.exists(path)) {
+            return true;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path file : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to delete {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+}
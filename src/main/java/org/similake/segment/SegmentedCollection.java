@@ -0,0 +1,846 @@
+package org.similake.segment;
+
+import org.similake.creteria.FilterPredicate;
+import org.similake.index.Neighbor;
+import org.similake.model.Distance;
+import org.similake.model.Point;
+import org.similake.model.ScoredPoint;
+import org.similake.search.SearchExecutor;
+import org.similake.wal.SyncPolicy;
+import org.similake.wal.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Log-structured storage of one collection. Writes are appended to a write-ahead log and applied to an in-memory
+ * write buffer ordered by point id; a full buffer is flushed in the background into an immutable
+ * {@link VectorSegment} written in id order. Upserts hide older versions of a point and deletes are written as
+ * tombstones, so no file is ever rewritten in place. Background compaction merges adjacent segments, dropping hidden
+ * versions, until at most maxSegments remain, which bounds the number of files a read has to consult.
+ * The MANIFEST file lists the live segments, oldest first, and is replaced atomically after every flush and merge;
+ * segment files it does not list are leftovers of an interrupted flush or merge and are deleted on open.
+ * Readers share a read lock; applying a write and swapping segments in take the write lock only briefly. Searches
+ * hold the read lock just long enough to take a snapshot of the segments and write buffers and score it without the
+ * lock, so writes never wait for a scan; segments a merge replaced are closed only once no search reads them anymore.
+ */
+public class SegmentedCollection implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedCollection.class);
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String LOG_PREFIX = "wal-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private static final byte UPSERT = 1;
+    private static final byte DELETE = 2;
+
+    // Vectors copied out of a segment mapping per block while scanning
+    private static final int SCAN_BLOCK = 256;
+
+    private final Path dir;
+    private final int dimension;
+    private final int memtableLimit;
+    private final int maxSegments;
+    private final Executor maintenance;
+    private final SyncPolicy syncPolicy;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held shared while a search scans its snapshot, and exclusively to close segments that are no longer listed
+    private final ReentrantReadWriteLock scanLock = new ReentrantReadWriteLock();
+    // Orders log appends of concurrent writers the same way as their memtable updates, and against the log swap of a
+    // flush, so a write is logged in the log of the buffer it is applied to
+    private final Object writeLock = new Object();
+    // Serializes flushes and merges
+    private final Object maintenanceLock = new Object();
+
+    // Guarded by lock
+    private List<Sealed> segments = new ArrayList<>();
+    private TreeMap<UUID, Entry> memtable = new TreeMap<>();
+    private TreeMap<UUID, Entry> frozen;
+    private WriteAheadLog log;
+    private boolean flushScheduled;
+    private boolean closed;
+
+    private long nextFileNumber;
+
+    private SegmentedCollection(Path dir, int dimension, int memtableLimit, int maxSegments, Executor maintenance,
+                                SyncPolicy syncPolicy) {
+        this.dir = dir;
+        this.dimension = dimension;
+        this.memtableLimit = Math.max(1, memtableLimit);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.maintenance = maintenance;
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * Opens the collection stored in dir, creating it if needed. Writes logged but not flushed before the last
+     * shutdown are replayed and flushed before the collection is returned.
+     */
+    public static SegmentedCollection open(Path dir, int dimension, int memtableLimit, int maxSegments,
+                                           Executor maintenance, SyncPolicy syncPolicy) throws IOException {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Vector dimension must be positive");
+        }
+        Files.createDirectories(dir);
+        SegmentedCollection collection = new SegmentedCollection(dir, dimension, memtableLimit, maxSegments, maintenance,
+                syncPolicy);
+        try {
+            collection.recover();
+        } catch (IOException | RuntimeException e) {
+            collection.close();
+            throw e;
+        }
+        return collection;
+    }
+
+    private void recover() throws IOException {
+        List<Long> listed = new ArrayList<>();
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest)) {
+                if (!line.isBlank()) {
+                    listed.add(Long.parseLong(line.trim()));
+                }
+            }
+        }
+        List<Long> logs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX)) {
+                    logs.add(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())));
+                } else if (name.startsWith(SEGMENT_PREFIX)) {
+                    long number = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.indexOf('.')));
+                    nextFileNumber = Math.max(nextFileNumber, number + 1);
+                    if (!listed.contains(number)) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+        for (long number : listed) {
+            nextFileNumber = Math.max(nextFileNumber, number + 1);
+            VectorSegment segment = VectorSegment.open(segmentPrefix(number), dimension);
+            segments.add(new Sealed(segment, number, new BitSet(segment.size())));
+        }
+        // Replaying the segments oldest first leaves each id visible in its newest record only
+        for (int s = 0; s < segments.size(); s++) {
+            Sealed sealed = segments.get(s);
+            for (int ordinal = 0; ordinal < sealed.segment.size(); ordinal++) {
+                UUID id = sealed.segment.id(ordinal);
+                hideInSegments(id, s);
+                if (!sealed.segment.isTombstone(ordinal)) {
+                    sealed.live.set(ordinal);
+                }
+            }
+        }
+        logs.sort(Comparator.naturalOrder());
+        for (long number : logs) {
+            nextFileNumber = Math.max(nextFileNumber, number + 1);
+            try (WriteAheadLog replayed = WriteAheadLog.open(logPath(number), this::replay)) {
+                logger.info("Replayed {} bytes of {}", replayed.size(), replayed.path());
+            }
+        }
+        log = WriteAheadLog.open(logPath(nextFileNumber++), record -> { }, syncPolicy);
+        if (!memtable.isEmpty()) {
+            flush();
+        }
+        for (long number : logs) {
+            Files.deleteIfExists(logPath(number));
+        }
+    }
+
+    private void replay(ByteBuffer record) {
+        byte operation = record.get();
+        UUID id = new UUID(record.getLong(), record.getLong());
+        if (operation == DELETE) {
+            apply(id, null);
+            return;
+        }
+        float[] vector = new float[record.getInt()];
+        record.asFloatBuffer().get(vector);
+        record.position(record.position() + 4 * vector.length);
+        byte[] payload = new byte[record.remaining()];
+        record.get(payload);
+        try {
+            VectorSegment.Payload decoded = VectorSegment.decodePayload(payload);
+            apply(id, new Point(id, decoded.content, vector, decoded.metadata));
+        } catch (IOException e) {
+            throw new RuntimeException("Corrupt log record for point " + id + " in " + dir, e);
+        }
+    }
+
+    /**
+     * Inserts a point or replaces the stored point with the same id. Returns true if a point was replaced.
+     * The write is as durable as the sync policy requires when this returns; it is visible to readers already while
+     * its log record is being forced.
+     */
+    public boolean upsert(Point point) throws IOException {
+        Write write = applyUpsert(point);
+        write.commit();
+        return write.found();
+    }
+
+    // Deletes a point; returns false, writing nothing, if no point has the id
+    public boolean delete(UUID id) throws IOException {
+        Write write = applyDelete(id);
+        write.commit();
+        return write.found();
+    }
+
+    /**
+     * Logs and applies an upsert without waiting for its log record to be forced. Callers that update state of their
+     * own along with the write do so under their lock and commit after releasing it, so concurrent writers share the
+     * fsync.
+     */
+    public Write applyUpsert(Point point) throws IOException {
+        float[] vector = point.getVector();
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + dimension + " but got "
+                    + (vector == null ? "none" : vector.length));
+        }
+        byte[] payload = VectorSegment.encodePayload(point);
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 4 + 4 * dimension + payload.length).order(ByteOrder.LITTLE_ENDIAN);
+        record.put(UPSERT).putLong(point.getId().getMostSignificantBits()).putLong(point.getId().getLeastSignificantBits())
+                .putInt(dimension);
+        record.asFloatBuffer().put(vector);
+        record.position(record.position() + 4 * dimension);
+        record.put(payload);
+        WriteAheadLog target;
+        long position;
+        boolean replaced;
+        synchronized (writeLock) {
+            target = log();
+            position = target.write(record.array());
+            replaced = applyWrite(point.getId(), point);
+        }
+        flushIfFull();
+        return new Write(target, position, replaced);
+    }
+
+    // Logs and applies a delete without waiting for its log record to be forced; writes nothing if no point has the id
+    public Write applyDelete(UUID id) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(1 + 16).order(ByteOrder.LITTLE_ENDIAN);
+        record.put(DELETE).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        WriteAheadLog target;
+        long position;
+        synchronized (writeLock) {
+            if (!contains(id)) {
+                return new Write(null, 0, false);
+            }
+            target = log();
+            position = target.write(record.array());
+            applyWrite(id, null);
+        }
+        flushIfFull();
+        return new Write(target, position, true);
+    }
+
+    private WriteAheadLog log() {
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Collection is closed: " + dir);
+            }
+            return log;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean applyWrite(UUID id, Point point) {
+        lock.writeLock().lock();
+        try {
+            return apply(id, point);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called after the write lock is released, since an inline flush takes it again for the log swap
+    private void flushIfFull() {
+        lock.writeLock().lock();
+        try {
+            if (memtable.size() < memtableLimit || frozen != null || flushScheduled || closed) {
+                return;
+            }
+            flushScheduled = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        try {
+            maintenance.execute(() -> {
+                try {
+                    flush();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Failed to flush write buffer of {}: {}", dir, e.getMessage(), e);
+                } finally {
+                    lock.writeLock().lock();
+                    flushScheduled = false;
+                    lock.writeLock().unlock();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the log keeps the buffered writes for the next open
+            lock.writeLock().lock();
+            flushScheduled = false;
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Makes a point (or a tombstone, for null) the visible version of its id; returns whether a point was visible before
+    private boolean apply(UUID id, Point point) {
+        boolean replaced;
+        Entry previous = memtable.get(id);
+        if (previous != null) {
+            // Older versions were hidden when the buffered one was written
+            replaced = previous.point != null;
+        } else {
+            Entry flushing = frozen == null ? null : frozen.get(id);
+            if (flushing != null && !flushing.shadowed) {
+                flushing.shadowed = true;
+                replaced = flushing.point != null;
+            } else {
+                replaced = hideInSegments(id, segments.size());
+            }
+        }
+        memtable.put(id, new Entry(point));
+        return replaced;
+    }
+
+    // Hides the newest record of an id in the segments older than the given index; returns whether it was a visible point
+    private boolean hideInSegments(UUID id, int before) {
+        for (int s = before - 1; s >= 0; s--) {
+            Sealed sealed = segments.get(s);
+            int ordinal = sealed.segment.find(id);
+            if (ordinal >= 0) {
+                boolean visible = sealed.live.get(ordinal);
+                sealed.live.clear(ordinal);
+                return visible;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(UUID id) {
+        lock.readLock().lock();
+        try {
+            Entry buffered = memtable.get(id);
+            if (buffered != null) {
+                return buffered.point != null;
+            }
+            Entry flushing = frozen == null ? null : frozen.get(id);
+            if (flushing != null && !flushing.shadowed) {
+                return flushing.point != null;
+            }
+            for (int s = segments.size() - 1; s >= 0; s--) {
+                int ordinal = segments.get(s).segment.find(id);
+                if (ordinal >= 0) {
+                    return segments.get(s).live.get(ordinal);
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of visible points
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (Sealed sealed : segments) {
+                size += sealed.live.cardinality();
+            }
+            return size + buffered().size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Visible points of the write buffers; callers hold the read lock
+    private List<Point> buffered() {
+        List<Point> points = new ArrayList<>();
+        if (frozen != null) {
+            for (Entry entry : frozen.values()) {
+                if (entry.point != null && !entry.shadowed) {
+                    points.add(entry.point);
+                }
+            }
+        }
+        for (Entry entry : memtable.values()) {
+            if (entry.point != null) {
+                points.add(entry.point);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Exact top-k search over the visible points. Segment vectors are scored in place from their mappings; metadata is
+     * decoded only for points that would enter the top-k, and whole points only for the results.
+     */
+    public List<ScoredPoint> search(float[] query, int limit, double minScore, Distance metric, FilterPredicate filter,
+                                    SearchExecutor executor) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        scanLock.readLock().lock();
+        try {
+            List<Sealed> sealed;
+            BitSet[] live;
+            List<Point> buffered;
+            lock.readLock().lock();
+            try {
+                sealed = segments;
+                live = new BitSet[sealed.size()];
+                for (int s = 0; s < sealed.size(); s++) {
+                    live[s] = (BitSet) sealed.get(s).live.clone();
+                }
+                buffered = buffered();
+            } finally {
+                lock.readLock().unlock();
+            }
+            // Segments and then the write buffers form one ordinal space for the parallel scan
+            int[] starts = new int[sealed.size() + 1];
+            for (int s = 0; s < sealed.size(); s++) {
+                starts[s + 1] = starts[s] + sealed.get(s).segment.size();
+            }
+            int segmentTotal = starts[sealed.size()];
+            List<Neighbor> neighbors = executor.search(segmentTotal + buffered.size(), limit, (from, to, topK) -> {
+                float[] block = new float[SCAN_BLOCK * dimension];
+                for (int s = 0; s < sealed.size(); s++) {
+                    int start = Math.max(from, starts[s]);
+                    int end = Math.min(to, starts[s + 1]);
+                    VectorSegment segment = sealed.get(s).segment;
+                    for (int blockStart = start; blockStart < end; blockStart += SCAN_BLOCK) {
+                        int count = Math.min(SCAN_BLOCK, end - blockStart);
+                        int first = blockStart - starts[s];
+                        segment.readVectors(first, count, block);
+                        for (int i = 0; i < count; i++) {
+                            if (!live[s].get(first + i)) {
+                                continue;
+                            }
+                            double score = metric.score(query, 0, block, i * dimension, dimension);
+                            // The filter needs the decoded metadata, so it only runs for points that would enter the heap
+                            if (score < minScore || (topK.isFull() && score <= topK.minScore())) {
+                                continue;
+                            }
+                            if (filter == FilterPredicate.ALWAYS || filter.test(segment.metadata(first + i))) {
+                                topK.offer(blockStart + i, score);
+                            }
+                        }
+                    }
+                }
+                for (int ordinal = Math.max(from, segmentTotal); ordinal < to; ordinal++) {
+                    Point point = buffered.get(ordinal - segmentTotal);
+                    double score = metric.score(query, point.getVector());
+                    if (score >= minScore && filter.test(point.getMetadata())) {
+                        topK.offer(ordinal, score);
+                    }
+                }
+            });
+            List<ScoredPoint> results = new ArrayList<>(neighbors.size());
+            for (Neighbor neighbor : neighbors) {
+                int ordinal = neighbor.getOrdinal();
+                Point point;
+                if (ordinal >= segmentTotal) {
+                    point = buffered.get(ordinal - segmentTotal);
+                } else {
+                    int s = segmentOf(starts, ordinal);
+                    point = sealed.get(s).segment.point(ordinal - starts[s]);
+                }
+                results.add(new ScoredPoint(point, neighbor.getScore()));
+            }
+            return results;
+        } finally {
+            scanLock.readLock().unlock();
+        }
+    }
+
+    // Index of the segment whose ordinal range holds a global ordinal
+    private static int segmentOf(int[] starts, int ordinal) {
+        int low = 0;
+        int high = starts.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= ordinal) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Up to limit visible points with ids from the given one on (null for the first), in id order, and the id to
+     * continue from, or null after the last point. Ids stay valid cursors across flushes and merges.
+     */
+    public Page scan(UUID from, int limit) {
+        lock.readLock().lock();
+        try {
+            // Every id is visible in one place at most, so the first limit + 1 ids of each source are enough
+            TreeMap<UUID, Point> merged = new TreeMap<>();
+            for (Sealed sealed : segments) {
+                int taken = 0;
+                for (int ordinal = from == null ? 0 : sealed.segment.seek(from);
+                     ordinal < sealed.segment.size() && taken <= limit; ordinal++) {
+                    if (sealed.live.get(ordinal)) {
+                        merged.put(sealed.segment.id(ordinal), null);
+                        taken++;
+                    }
+                }
+            }
+            for (Point point : buffered()) {
+                if (from == null || point.getId().compareTo(from) >= 0) {
+                    merged.put(point.getId(), point);
+                }
+            }
+            List<Point> points = new ArrayList<>(Math.min(limit, merged.size()));
+            UUID next = null;
+            for (Map.Entry<UUID, Point> entry : merged.entrySet()) {
+                if (points.size() == limit) {
+                    next = entry.getKey();
+                    break;
+                }
+                points.add(entry.getValue() != null ? entry.getValue() : lookup(entry.getKey()));
+            }
+            return new Page(points, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Visible segment version of an id; callers hold the read lock
+    private Point lookup(UUID id) {
+        for (int s = segments.size() - 1; s >= 0; s--) {
+            Sealed sealed = segments.get(s);
+            int ordinal = sealed.segment.find(id);
+            if (ordinal >= 0 && sealed.live.get(ordinal)) {
+                return sealed.segment.point(ordinal);
+            }
+        }
+        throw new IllegalStateException("Point " + id + " is not visible in " + dir);
+    }
+
+    /**
+     * Writes the write buffer into a new segment, then merges segments while there are more than maxSegments.
+     * Runs on the maintenance executor, or directly during recovery.
+     */
+    public void flush() throws IOException {
+        synchronized (maintenanceLock) {
+            WriteAheadLog flushedLog;
+            long number;
+            // A writer between its log append and its memtable update would otherwise apply a write logged only in
+            // the log this flush deletes to the new buffer
+            synchronized (writeLock) {
+                lock.writeLock().lock();
+                try {
+                    if (memtable.isEmpty() || closed) {
+                        return;
+                    }
+                    frozen = memtable;
+                    memtable = new TreeMap<>();
+                    flushedLog = log;
+                    number = nextFileNumber++;
+                    log = WriteAheadLog.open(logPath(nextFileNumber++), record -> { }, syncPolicy);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            // The frozen buffer only changes by being shadowed, so it is written without the lock
+            boolean olderSegments = !segments.isEmpty();
+            VectorSegment segment = VectorSegment.open(segmentPrefix(number), dimension);
+            for (Map.Entry<UUID, Entry> entry : frozen.entrySet()) {
+                if (entry.getValue().point != null) {
+                    segment.append(entry.getValue().point);
+                } else if (olderSegments) {
+                    // Only needed while an older segment may still hold the point
+                    segment.appendTombstone(entry.getKey());
+                }
+            }
+            segment.sync();
+
+            lock.writeLock().lock();
+            try {
+                BitSet live = new BitSet(segment.size());
+                for (int ordinal = 0; ordinal < segment.size(); ordinal++) {
+                    if (!segment.isTombstone(ordinal) && !frozen.get(segment.id(ordinal)).shadowed) {
+                        live.set(ordinal);
+                    }
+                }
+                List<Sealed> updated = new ArrayList<>(segments);
+                updated.add(new Sealed(segment, number, live));
+                writeManifest(updated);
+                segments = updated;
+                frozen = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            flushedLog.close();
+            Files.deleteIfExists(flushedLog.path());
+            logger.info("Flushed {} records of {} into segment {}", segment.size(), dir, number);
+            compact();
+        }
+    }
+
+    // Merges adjacent segments, smallest pair first, until at most maxSegments remain
+    private void compact() throws IOException {
+        while (true) {
+            List<Sealed> current;
+            BitSet[] live;
+            lock.readLock().lock();
+            try {
+                if (segments.size() <= maxSegments || closed) {
+                    return;
+                }
+                current = segments;
+                live = new BitSet[current.size()];
+                for (int s = 0; s < current.size(); s++) {
+                    live[s] = (BitSet) current.get(s).live.clone();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            int pair = 0;
+            long smallest = Long.MAX_VALUE;
+            for (int s = 0; s + 1 < current.size(); s++) {
+                long records = current.get(s).segment.size() + current.get(s + 1).segment.size();
+                if (records < smallest) {
+                    smallest = records;
+                    pair = s;
+                }
+            }
+            merge(current, live, pair);
+        }
+    }
+
+    private void merge(List<Sealed> current, BitSet[] live, int pair) throws IOException {
+        Sealed older = current.get(pair);
+        Sealed newer = current.get(pair + 1);
+        // Tombstones can go once no segment older than the merged ones is left to hide points in
+        boolean keepTombstones = pair > 0;
+        long number;
+        lock.writeLock().lock();
+        try {
+            number = nextFileNumber++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        VectorSegment merged = VectorSegment.open(segmentPrefix(number), dimension);
+        // Source segment (0 older, 1 newer) and ordinal of every merged record, to carry later deletes over at the swap
+        List<long[]> sources = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < older.segment.size() || j < newer.segment.size()) {
+            int comparison = i == older.segment.size() ? 1 : j == newer.segment.size() ? -1
+                    : older.segment.id(i).compareTo(newer.segment.id(j));
+            Sealed source;
+            int sourceIndex;
+            int ordinal;
+            if (comparison < 0) {
+                source = older;
+                sourceIndex = 0;
+                ordinal = i++;
+            } else {
+                if (comparison == 0) {
+                    // The newer record wins; the older one was hidden by it
+                    i++;
+                }
+                source = newer;
+                sourceIndex = 1;
+                ordinal = j++;
+            }
+            if (source.segment.isTombstone(ordinal)) {
+                if (keepTombstones) {
+                    merged.appendTombstone(source.segment.id(ordinal));
+                    sources.add(new long[]{-1, -1});
+                }
+            } else if (live[pair + sourceIndex].get(ordinal)) {
+                merged.append(source.segment.point(ordinal));
+                sources.add(new long[]{sourceIndex, ordinal});
+            }
+        }
+        merged.sync();
+
+        lock.writeLock().lock();
+        try {
+            BitSet mergedLive = new BitSet(merged.size());
+            for (int ordinal = 0; ordinal < merged.size(); ordinal++) {
+                long[] origin = sources.get(ordinal);
+                // Points deleted or replaced while the merge ran stay hidden
+                if (origin[0] >= 0 && (origin[0] == 0 ? older : newer).live.get((int) origin[1])) {
+                    mergedLive.set(ordinal);
+                }
+            }
+            List<Sealed> updated = new ArrayList<>(segments);
+            int position = updated.indexOf(older);
+            updated.set(position, new Sealed(merged, number, mergedLive));
+            updated.remove(position + 1);
+            writeManifest(updated);
+            segments = updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scanLock.writeLock().lock();
+        try {
+            for (Sealed replaced : List.of(older, newer)) {
+                replaced.segment.close();
+                VectorSegment.delete(segmentPrefix(replaced.number));
+            }
+        } finally {
+            scanLock.writeLock().unlock();
+        }
+        logger.info("Merged segments {} and {} of {} into segment {} with {} records",
+                older.number, newer.number, dir, number, merged.size());
+    }
+
+    private void writeManifest(List<Sealed> sealed) throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        for (Sealed segment : sealed) {
+            manifest.append(segment.number).append('\n');
+        }
+        Path staging = dir.resolve(MANIFEST + ".tmp");
+        Files.writeString(staging, manifest);
+        try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(staging, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path segmentPrefix(long number) {
+        return dir.resolve(String.format("%s%06d", SEGMENT_PREFIX, number));
+    }
+
+    private Path logPath(long number) {
+        return dir.resolve(String.format("%s%06d%s", LOG_PREFIX, number, LOG_SUFFIX));
+    }
+
+    // Closes the files; buffered writes stay in the log and are flushed by the next open
+    @Override
+    public void close() throws IOException {
+        synchronized (maintenanceLock) {
+            scanLock.writeLock().lock();
+            lock.writeLock().lock();
+            try {
+                closed = true;
+                if (log != null) {
+                    log.close();
+                }
+                for (Sealed sealed : segments) {
+                    sealed.segment.close();
+                }
+            } finally {
+                lock.writeLock().unlock();
+                scanLock.writeLock().unlock();
+            }
+        }
+    }
+
+    // A segment of the manifest and which of its records are the visible version of their point
+    private static class Sealed {
+        private final VectorSegment segment;
+        private final long number;
+        private final BitSet live;
+
+        Sealed(VectorSegment segment, long number, BitSet live) {
+            this.segment = segment;
+            this.number = number;
+            this.live = live;
+        }
+    }
+
+    // A buffered write: a point, or a tombstone when point is null
+    private static class Entry {
+        private final Point point;
+        // Set on an entry of the buffer being flushed once a newer write to its id arrives
+        private boolean shadowed;
+
+        Entry(Point point) {
+            this.point = point;
+        }
+    }
+
+    // A write that is applied and logged, but not necessarily durable until it is committed
+    public static class Write {
+        private final WriteAheadLog log;
+        private final long position;
+        private final boolean found;
+
+        private Write(WriteAheadLog log, long position, boolean found) {
+            this.log = log;
+            this.position = position;
+            this.found = found;
+        }
+
+        // Whether a point with the id was visible before the write
+        public boolean found() {
+            return found;
+        }
+
+        // Waits until the log record is as durable as the sync policy requires; outside any lock of the caller's
+        public void commit() throws IOException {
+            if (log != null) {
+                log.commit(position);
+            }
+        }
+    }
+
+    // One page of a scan in id order
+    public static class Page {
+        private final List<Point> points;
+        private final UUID next;
+
+        public Page(List<Point> points, UUID next) {
+            this.points = points;
+            this.next = next;
+        }
+
+        public List<Point> getPoints() {
+            return points;
+        }
+
+        // Id to continue the scan from, or null after the last point
+        public UUID getNext() {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package org.similake.segment;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.similake.model.Point;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary storage of a collection's points in three files sharing a name prefix:
+ * - {@code .vectors}: the vectors as little-endian floats at a fixed stride, so vector o starts at byte o * 4 * dimension;
+ * - {@code .ids}: one fixed-size record per point with its UUID and the offset and length of its payload;
+ * - {@code .payloads}: content and metadata of each point as a JSON object.
+ * Vectors are read through read-only memory mappings, so a scan copies floats straight out of the page cache with
+ * no parsing; payloads are only decoded for the points a query returns or filters on.
+ * A point is appended payload first, then vector, then id record; the id file is the commit point, and opening a
+ * segment cuts the other two files back to the last complete record. Deleted points are recorded as tombstones:
+ * id records flagged as such, with a zero vector and an empty payload.
+ * Appends are serialized; readers see every ordinal below size() without locking.
+ */
+public class VectorSegment implements Closeable {
+
+    static final String VECTORS_SUFFIX = ".vectors";
+    static final String IDS_SUFFIX = ".ids";
+    static final String PAYLOADS_SUFFIX = ".payloads";
+
+    // UUID (16 bytes), payload offset (8), payload length (4) and flags (4)
+    private static final int ID_RECORD_BYTES = 32;
+    // Record flag of a deleted point
+    private static final int TOMBSTONE = 1;
+    // Upper bound on the bytes of one vector mapping; vectors never straddle two mappings
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path prefix;
+    private final int dimension;
+    private final int windowVectors;
+    private final FileChannel vectors;
+    private final FileChannel ids;
+    private final FileChannel payloads;
+
+    // Id records kept on the heap: most and least significant UUID bits, payload offsets and lengths
+    private long[] idHigh;
+    private long[] idLow;
+    private long[] payloadOffsets;
+    private int[] payloadLengths;
+    private int[] flags;
+    private long payloadsEnd;
+    private volatile int size;
+
+    // Read-only mappings of the vector file; all but the last cover windowVectors vectors
+    private volatile FloatBuffer[] windows = new FloatBuffer[0];
+    private volatile int mappedVectors;
+
+    private VectorSegment(Path prefix, int dimension) throws IOException {
+        this.prefix = prefix;
+        this.dimension = dimension;
+        this.windowVectors = (int) Math.max(1, MAX_WINDOW_BYTES / (4L * dimension));
+        this.vectors = FileChannel.open(path(VECTORS_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.ids = FileChannel.open(path(IDS_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.payloads = FileChannel.open(path(PAYLOADS_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Opens the segment with the given file name prefix, creating empty files if it does not exist yet, and drops
+     * a partly written last point.
+     */
+    public static VectorSegment open(Path prefix, int dimension) throws IOException {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Vector dimension must be positive");
+        }
+        VectorSegment segment = new VectorSegment(prefix, dimension);
+        try {
+            segment.load();
+        } catch (IOException | RuntimeException e) {
+            segment.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    private void load() throws IOException {
+        int count = (int) Math.min(ids.size() / ID_RECORD_BYTES, vectors.size() / (4L * dimension));
+        idHigh = new long[Math.max(64, count)];
+        idLow = new long[idHigh.length];
+        payloadOffsets = new long[idHigh.length];
+        payloadLengths = new int[idHigh.length];
+        flags = new int[idHigh.length];
+        ByteBuffer records = ByteBuffer.allocate(ID_RECORD_BYTES * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        int loaded = 0;
+        long position = 0;
+        while (loaded < count) {
+            records.clear();
+            records.limit(Math.min(records.capacity(), (count - loaded) * ID_RECORD_BYTES));
+            while (records.hasRemaining()) {
+                if (ids.read(records, position + records.position()) < 0) {
+                    throw new IOException("Unexpected end of " + path(IDS_SUFFIX));
+                }
+            }
+            position += records.limit();
+            records.flip();
+            while (records.hasRemaining()) {
+                idHigh[loaded] = records.getLong();
+                idLow[loaded] = records.getLong();
+                payloadOffsets[loaded] = records.getLong();
+                payloadLengths[loaded] = records.getInt();
+                flags[loaded] = records.getInt();
+                loaded++;
+            }
+        }
+        payloadsEnd = count == 0 ? 0 : payloadOffsets[count - 1] + payloadLengths[count - 1];
+        if (payloads.size() < payloadsEnd) {
+            throw new IOException("Payload file of " + prefix + " is shorter than its id records");
+        }
+        // Cut off whatever an interrupted append left behind
+        ids.truncate((long) count * ID_RECORD_BYTES);
+        vectors.truncate((long) count * 4 * dimension);
+        payloads.truncate(payloadsEnd);
+        size = count;
+    }
+
+    // Appends a point and returns its ordinal
+    public int append(Point point) throws IOException {
+        float[] vector = point.getVector();
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + dimension + " but got "
+                    + (vector == null ? "none" : vector.length));
+        }
+        return appendRecord(point.getId(), vector, encodePayload(point), 0);
+    }
+
+    // Appends a record marking a point as deleted, with a zero vector and no payload, and returns its ordinal
+    public int appendTombstone(UUID id) throws IOException {
+        return appendRecord(id, new float[dimension], new byte[0], TOMBSTONE);
+    }
+
+    private synchronized int appendRecord(UUID id, float[] vector, byte[] payload, int recordFlags) throws IOException {
+        int ordinal = size;
+        writeFully(payloads, ByteBuffer.wrap(payload), payloadsEnd);
+
+        ByteBuffer vectorBytes = ByteBuffer.allocate(4 * dimension).order(ByteOrder.LITTLE_ENDIAN);
+        vectorBytes.asFloatBuffer().put(vector);
+        writeFully(vectors, vectorBytes, (long) ordinal * 4 * dimension);
+
+        ByteBuffer record = ByteBuffer.allocate(ID_RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        record.putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .putLong(payloadsEnd)
+                .putInt(payload.length)
+                .putInt(recordFlags)
+                .flip();
+        writeFully(ids, record, (long) ordinal * ID_RECORD_BYTES);
+
+        if (ordinal == idHigh.length) {
+            int capacity = idHigh.length * 2;
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            payloadOffsets = Arrays.copyOf(payloadOffsets, capacity);
+            payloadLengths = Arrays.copyOf(payloadLengths, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        idHigh[ordinal] = id.getMostSignificantBits();
+        idLow[ordinal] = id.getLeastSignificantBits();
+        payloadOffsets[ordinal] = payloadsEnd;
+        payloadLengths[ordinal] = payload.length;
+        flags[ordinal] = recordFlags;
+        payloadsEnd += payload.length;
+        // Publishing the size last makes the new record visible to lock-free readers
+        size = ordinal + 1;
+        return ordinal;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public UUID id(int ordinal) {
+        checkOrdinal(ordinal);
+        return new UUID(idHigh[ordinal], idLow[ordinal]);
+    }
+
+    public boolean isTombstone(int ordinal) {
+        checkOrdinal(ordinal);
+        return (flags[ordinal] & TOMBSTONE) != 0;
+    }
+
+    /**
+     * Ordinal of the record with the given id, or -1. Only valid for segments written in ascending id order, as
+     * compared by UUID.compareTo.
+     */
+    public int find(UUID id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareId(middle, id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // First ordinal whose id is not below the given one, in a segment written in ascending id order
+    public int seek(UUID id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareId(middle, id.getMostSignificantBits(), id.getLeastSignificantBits()) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Same order as UUID.compareTo: signed comparison of the high bits, then of the low bits
+    private int compareId(int ordinal, long high, long low) {
+        int comparison = Long.compare(idHigh[ordinal], high);
+        return comparison != 0 ? comparison : Long.compare(idLow[ordinal], low);
+    }
+
+    // Copies the vectors of count consecutive ordinals into target, back to back from offset 0, in bulk from the mapped file
+    public void readVectors(int from, int count, float[] target) {
+        int end = from + count;
+        if (from < 0 || end > size) {
+            throw new IndexOutOfBoundsException("Ordinals " + from + ".." + end + " outside segment of " + size);
+        }
+        if (end > mappedVectors) {
+            remap();
+        }
+        FloatBuffer[] mapped = windows;
+        int copied = 0;
+        while (from < end) {
+            FloatBuffer window = mapped[from / windowVectors];
+            int inWindow = Math.min(end - from, windowVectors - from % windowVectors);
+            window.get((from % windowVectors) * dimension, target, copied * dimension, inWindow * dimension);
+            copied += inWindow;
+            from += inWindow;
+        }
+    }
+
+    public float[] vector(int ordinal) {
+        float[] vector = new float[dimension];
+        readVectors(ordinal, 1, vector);
+        return vector;
+    }
+
+    public Map<String, Object> metadata(int ordinal) {
+        return readPayload(ordinal).metadata;
+    }
+
+    // Decodes the whole point at an ordinal
+    public Point point(int ordinal) {
+        Payload payload = readPayload(ordinal);
+        return new Point(id(ordinal), payload.content, vector(ordinal), payload.metadata);
+    }
+
+    // Bytes of the payload and vector files held by one record
+    public long recordBytes(int ordinal) {
+        checkOrdinal(ordinal);
+        return payloadLengths[ordinal] + 4L * dimension + ID_RECORD_BYTES;
+    }
+
+    // Maps the vectors appended since the last call, extending the mapping of the last window
+    private synchronized void remap() {
+        int count = size;
+        if (count <= mappedVectors) {
+            return;
+        }
+        int windowCount = (count + windowVectors - 1) / windowVectors;
+        FloatBuffer[] current = Arrays.copyOf(windows, windowCount);
+        // Full windows stay mapped; only the last, partial one is mapped again at its new length
+        for (int window = Math.max(0, mappedVectors / windowVectors); window < windowCount; window++) {
+            long start = (long) window * windowVectors;
+            long vectorsInWindow = Math.min(windowVectors, count - start);
+            try {
+                MappedByteBuffer mapped = vectors.map(FileChannel.MapMode.READ_ONLY, start * 4 * dimension, vectorsInWindow * 4 * dimension);
+                current[window] = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to map vectors of " + prefix, e);
+            }
+        }
+        windows = current;
+        mappedVectors = count;
+    }
+
+    private Payload readPayload(int ordinal) {
+        checkOrdinal(ordinal);
+        ByteBuffer bytes = ByteBuffer.allocate(payloadLengths[ordinal]);
+        try {
+            while (bytes.hasRemaining()) {
+                if (payloads.read(bytes, payloadOffsets[ordinal] + bytes.position()) < 0) {
+                    throw new IOException("Unexpected end of " + path(PAYLOADS_SUFFIX));
+                }
+            }
+            return decodePayload(bytes.array());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read payload " + ordinal + " of " + prefix, e);
+        }
+    }
+
+    static Payload decodePayload(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return new Payload(null, null);
+        }
+        Map<String, Object> fields = mapper.readValue(bytes, new TypeReference<Map<String, Object>>() {});
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metadata = (Map<String, Object>) fields.get("metadata");
+        return new Payload((String) fields.get("content"), metadata);
+    }
+
+    static byte[] encodePayload(Point point) throws IOException {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("content", point.getContent());
+        fields.put("metadata", point.getMetadata());
+        return mapper.writeValueAsBytes(fields);
+    }
+
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " outside segment of " + size);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private Path path(String suffix) {
+        return prefix.resolveSibling(prefix.getFileName() + suffix);
+    }
+
+    // Deletes the files of a closed segment
+    public static void delete(Path prefix) throws IOException {
+        for (String suffix : new String[]{VECTORS_SUFFIX, IDS_SUFFIX, PAYLOADS_SUFFIX}) {
+            Files.deleteIfExists(prefix.resolveSibling(prefix.getFileName() + suffix));
+        }
+    }
+
+    // Forces appended points to the storage device
+    public synchronized void sync() throws IOException {
+        payloads.force(false);
+        vectors.force(false);
+        ids.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        windows = new FloatBuffer[0];
+        mappedVectors = 0;
+        try (vectors; ids; payloads) {
+            // Closed in reverse order by the try-with-resources
+        }
+    }
+
+    // Content and metadata of a point as stored in the payload file
+    static class Payload {
+        final String content;
+        final Map<String, Object> metadata;
+
+        Payload(String content, Map<String, Object> metadata) {
+            this.content = content;
+            this.metadata = metadata;
+        }
+    }
+}
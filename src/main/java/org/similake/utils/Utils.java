@@ -1,9 +1,12 @@
 package org.similake.utils;
 
 import org.similake.creteria.FilterCriteria;
+import org.similake.creteria.FilterPredicate;
+import org.similake.distance.VectorKernels;
 import org.similake.model.Payload;
 
 import java.util.List;
+import java.util.Map;
 
 public class Utils {
     public static Object parseValue(String value) {
@@ -22,46 +25,41 @@ public class Utils {
 
 
     public static boolean filterPayload(Payload payload, List<FilterCriteria> filters) {
-        return filters.stream().allMatch(filter -> {
-            Object pointValue = payload.getMetadata().get(filter.getField());
-            if (pointValue == null) {
-                return false;
-            }
+        return filterMetadata(payload.getMetadata(), filters);
+    }
 
-            return compareValues(pointValue, filter.getValue(), filter.getOperator());
-        });
+    // Same as filterPayload, but works on a point's metadata without building a Payload first.
+    // Compiles the filters on every call; loops over many points should compile a FilterPredicate once instead
+    public static boolean filterMetadata(Map<String, Object> metadata, List<FilterCriteria> filters) {
+        return FilterPredicate.compile(filters).test(metadata);
     }
-    private static boolean compareValues(Object pointValue, Object filterValue, String operator) {
-        // Convert to comparable if numbers
-        if (pointValue instanceof Number && filterValue instanceof Number) {
-            double point = ((Number) pointValue).doubleValue();
-            double filter = ((Number) filterValue).doubleValue();
 
-            return switch (operator.toLowerCase()) {
-                case "eq" -> point == filter;
-                case "ne" -> point != filter;
-                case "gt" -> point > filter;
-                case "lt" -> point < filter;
-                case "gte" -> point >= filter;
-                case "lte" -> point <= filter;
-                default -> false;
-            };
-        }
+    /**
+     * Calculates the cosine similarity between two vectors of the same length.
+     * Returns 0 when either vector has zero magnitude.
+     */
+    public static double cosineSimilarity(float[] vector1, float[] vector2) {
+        return cosineSimilarity(vector1, 0, vector2, 0, vector1.length);
+    }
 
-        // String comparison
-        if (pointValue instanceof String && filterValue instanceof String) {
-            String point = (String) pointValue;
-            String filter = (String) filterValue;
+    // Cosine similarity between length floats of a starting at aOffset and of b starting at bOffset
+    public static double cosineSimilarity(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return VectorKernels.get().cosine(a, aOffset, b, bOffset, length);
+    }
 
-            return switch (operator.toLowerCase()) {
-                case "eq" -> point.equalsIgnoreCase(filter);
-                case "ne" -> !point.equalsIgnoreCase(filter);
-                case "like" -> point.toLowerCase().contains(filter.toLowerCase());
-                default -> false;
-            };
+    // Returns an L2-normalized copy of the vector; a zero vector is returned unchanged
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
         }
-
-        // Default equals comparison for other types
-        return operator.equals("eq") && pointValue.equals(filterValue);
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package org.similake.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Long-lived append channel of a log file with group commit. Writers append with {@link #write} while holding
+ * whatever lock orders their updates, then call {@link #commit} outside of it: under the always policy the first
+ * committer forces everything written so far with one fsync while later committers wait, and every committer whose
+ * data was covered returns without forcing again. Throughput therefore grows with the number of concurrent writers
+ * instead of being bound by one fsync per write.
+ */
+public class LogAppender implements Closeable {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+
+    // Guarded by this
+    private long end;
+    // Bytes known to be on disk
+    private volatile long synced;
+    // Held while forcing, so committers queue up behind the fsync in progress
+    private final Object syncLock = new Object();
+    private volatile boolean closed;
+
+    private LogAppender(Path path, FileChannel channel, SyncPolicy policy, long end) {
+        this.path = path;
+        this.channel = channel;
+        this.policy = policy;
+        this.end = end;
+        this.synced = end;
+    }
+
+    /**
+     * Opens a log for appending, creating it and its directory if needed. Bytes after validLength, such as a record
+     * torn by a crash, are cut off first; pass -1 to keep the whole file.
+     */
+    public static LogAppender open(Path path, long validLength, SyncPolicy policy) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        try {
+            if (validLength >= 0 && validLength < channel.size()) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            LogAppender appender = new LogAppender(path, channel, policy, channel.size());
+            policy.register(appender);
+            return appender;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends data at the end of the file and returns the file length after it, the position to commit. The channel
+     * is in append mode, so lines added by another process are never overwritten.
+     */
+    public synchronized long write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        end = channel.position();
+        return end;
+    }
+
+    // Makes the data up to position durable as the sync policy requires
+    public void commit(long position) throws IOException {
+        if (policy.getMode() == SyncPolicy.Mode.ALWAYS) {
+            sync(position);
+        }
+    }
+
+    public long append(ByteBuffer data) throws IOException {
+        long position = write(data);
+        commit(position);
+        return position;
+    }
+
+    // Forces everything written so far
+    public void sync() throws IOException {
+        sync(size());
+    }
+
+    private void sync(long position) throws IOException {
+        if (synced >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            // A force that ran while this thread waited, or the one of close, may already have covered the position
+            if (synced >= position) {
+                return;
+            }
+            if (closed) {
+                throw new IOException("Log " + path + " was closed before position " + position + " was forced");
+            }
+            long target = size();
+            try {
+                channel.force(false);
+                policy.forced();
+            } catch (ClosedChannelException e) {
+                // Closed meanwhile; close forced everything unless its force failed
+                if (!closed || synced < position) {
+                    throw e;
+                }
+                return;
+            }
+            synced = target;
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    // Length of the file as written through this appender
+    public synchronized long size() {
+        return end;
+    }
+
+    // Forces and closes the file; commits of data written before still return normally, unless the force failed
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            if (closed) {
+                return;
+            }
+            policy.unregister(this);
+            try {
+                if (channel.isOpen()) {
+                    channel.force(false);
+                    synced = size();
+                }
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+}
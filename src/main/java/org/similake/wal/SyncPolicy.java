@@ -0,0 +1,125 @@
+package org.similake.wal;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * When appended log data is forced to the storage device (storage.wal.fsync):
+ * - always: a write returns once it is on disk; concurrent writers share one fsync (group commit);
+ * - interval: a background thread forces every open log each storage.wal.fsync-interval-ms, so a crash can lose the
+ *   writes of the last interval;
+ * - os: the operating system decides, so a crash of the machine (not of the process) can lose recent writes.
+ * Logs are always forced when they are closed.
+ */
+@Service
+public class SyncPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncPolicy.class);
+
+    public enum Mode {
+        ALWAYS, INTERVAL, OS
+    }
+
+    private static final SyncPolicy ALWAYS = new SyncPolicy("always", 0);
+    private static final SyncPolicy OS = new SyncPolicy("os", 0);
+
+    private final Mode mode;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    // Open logs forced by the scheduler in interval mode
+    private final Set<LogAppender> appenders = ConcurrentHashMap.newKeySet();
+    // Forces made to commit or sync writes of logs under this policy
+    private final LongAdder forces = new LongAdder();
+
+    public SyncPolicy(@Value("${storage.wal.fsync:always}") String mode,
+                      @Value("${storage.wal.fsync-interval-ms:100}") long intervalMillis) {
+        try {
+            this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("storage.wal.fsync must be always, interval or os but was " + mode);
+        }
+        if (this.mode == Mode.INTERVAL && intervalMillis <= 0) {
+            throw new IllegalArgumentException("storage.wal.fsync-interval-ms must be positive");
+        }
+        this.intervalMillis = intervalMillis;
+        if (this.mode == Mode.INTERVAL) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::syncAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+        logger.info("Write-ahead logs synced with policy {}{}", this.mode,
+                this.mode == Mode.INTERVAL ? " every " + intervalMillis + " ms" : "");
+    }
+
+    // Every write forced before it returns, for callers outside the application context
+    public static SyncPolicy always() {
+        return ALWAYS;
+    }
+
+    // Writes left to the operating system until the log is closed, for data that can be rebuilt after a crash
+    public static SyncPolicy os() {
+        return OS;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    // Number of fsyncs that committed or synced writes; with group commit, fewer than the writes committed
+    public long getForceCount() {
+        return forces.sum();
+    }
+
+    void forced() {
+        forces.increment();
+    }
+
+    void register(LogAppender appender) {
+        if (mode == Mode.INTERVAL) {
+            appenders.add(appender);
+        }
+    }
+
+    void unregister(LogAppender appender) {
+        appenders.remove(appender);
+    }
+
+    private void syncAll() {
+        for (LogAppender appender : appenders) {
+            try {
+                appender.sync();
+            } catch (IOException e) {
+                logger.error("Failed to sync {}: {}", appender.path(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            syncAll();
+        }
+    }
+}
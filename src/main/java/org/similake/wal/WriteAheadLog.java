@@ -0,0 +1,118 @@
+package org.similake.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque records, each framed by its length and the CRC32 of its bytes. Opening a log replays
+ * its records in order up to the first torn or corrupt one, which is cut off together with anything after it,
+ * so a crash in the middle of an append loses at most that record.
+ * Records are appended through a {@link LogAppender}, so concurrent writers share fsyncs and durability follows the
+ * {@link SyncPolicy}.
+ */
+public class WriteAheadLog implements Closeable {
+
+    // Record length (4 bytes) and CRC32 (4 bytes)
+    private static final int HEADER_BYTES = 8;
+    // Largest record accepted on replay; anything longer is taken for garbage
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final LogAppender appender;
+
+    private WriteAheadLog(Path path, LogAppender appender) {
+        this.path = path;
+        this.appender = appender;
+    }
+
+    // Opens or creates a log whose appends are forced before they return
+    public static WriteAheadLog open(Path path, Consumer<ByteBuffer> replay) throws IOException {
+        return open(path, replay, SyncPolicy.always());
+    }
+
+    // Opens or creates a log, handing every intact record to replay before new records can be appended
+    public static WriteAheadLog open(Path path, Consumer<ByteBuffer> replay, SyncPolicy policy) throws IOException {
+        long end = 0;
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                end = replay(path, channel, replay);
+            }
+        }
+        return new WriteAheadLog(path, LogAppender.open(path, end, policy));
+    }
+
+    private static long replay(Path path, FileChannel channel, Consumer<ByteBuffer> replay) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(path, channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(path, channel, record, position + HEADER_BYTES);
+            crc.reset();
+            crc.update(record.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            replay.accept(record.flip().order(ByteOrder.LITTLE_ENDIAN));
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    // Appends a record without waiting for it to be durable; returns the position to commit
+    public long write(byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer framed = ByteBuffer.allocate(HEADER_BYTES + record.length).order(ByteOrder.LITTLE_ENDIAN);
+        framed.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+        return appender.write(framed);
+    }
+
+    // Waits until the records up to position are as durable as the sync policy requires
+    public void commit(long position) throws IOException {
+        appender.commit(position);
+    }
+
+    public void append(byte[] record) throws IOException {
+        commit(write(record));
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    // Bytes of intact records in the log
+    public long size() {
+        return appender.size();
+    }
+
+    private static void readFully(Path path, FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + path);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appender.close();
+    }
+}
@@ -1,21 +1,42 @@
 package org.similake.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.similake.collections.Collections;
 import org.similake.collections.config.CollectionConfig;
 import org.similake.model.Distance;
+import org.similake.model.Payload;
+import org.similake.model.PayloadPage;
+import org.similake.model.Point;
 import org.similake.persist.RocksDBService;
+import org.similake.search.SearchExecutor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -27,6 +48,9 @@ public class CollectionsControllerTest {
     @Mock
     private Collections collections;
 
+    @Spy
+    private SearchExecutor searchExecutor = new SearchExecutor(2, 16);
+
     @InjectMocks
     private CollectionsController collectionsController;
 
@@ -84,4 +108,192 @@ public class CollectionsControllerTest {
         assertEquals("Invalid distance metric", response.getBody());
         //verify(collections, never()).addVectorStore(anyString(), anyInt(), any(Distance.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPersistedSimilarity_MatchesScoringEveryFilteredPoint() {
+        Random random = new Random(9);
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            float[] vector = new float[8];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            points.add(new Point(UUID.randomUUID(), "content " + i, vector, Map.of("group", i % 3 == 0 ? "a" : "b", "rank", i)));
+        }
+        float[] query = points.get(3).getVector().clone();
+        query[0] += 0.3f;
+        MultiValueMap<String, String> metadata = new LinkedMultiValueMap<>();
+        metadata.add("metadata.group.eq", "a");
+        metadata.add("metadata.rank.gte", "30");
+        when(rocksDBService.getAllPointsFromVectorStore("persisted")).thenReturn(points);
+        // An engine without in-place scoring, so the points are read and scored by the controller
+        when(rocksDBService.searchStoredVectors(anyString(), any(), anyInt(), anyDouble(), any(), any())).thenReturn(null);
+
+        // Cosine thresholds are minimum similarities, Euclidean ones maximum distances
+        Map<Distance, Double> thresholds = Map.of(Distance.Cosine, 0.2, Distance.Euclidean, 4.0);
+        for (Map.Entry<Distance, Double> entry : thresholds.entrySet()) {
+            Distance metric = entry.getKey();
+            double minScore = metric.fromReported(entry.getValue());
+            when(rocksDBService.fetchVectorFromStorage("persisted")).thenReturn(new CollectionConfig("persisted", 8, metric, true));
+
+            ResponseEntity<List<PayloadSimilarity>> response = collectionsController.calculateCosineSimilarity(
+                    "persisted", query, 10, entry.getValue(), metadata, null, null, false);
+
+            // What the full-materialization path returned: every filtered point scored, sorted, then cut to the limit
+            List<Point> expected = points.stream()
+                    .filter(point -> point.getMetadata().get("group").equals("a") && (int) point.getMetadata().get("rank") >= 30)
+                    .filter(point -> metric.score(query, point.getVector()) >= minScore)
+                    .sorted(Comparator.comparingDouble((Point point) -> metric.score(query, point.getVector())).reversed())
+                    .limit(10)
+                    .toList();
+            assertTrue(expected.size() > 3);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertTrue(response.getHeaders().getFirst("X-Query-Plan").contains("PERSISTED_SCAN"));
+            List<PayloadSimilarity> results = response.getBody();
+            assertEquals(expected.stream().map(point -> point.getId().toString()).toList(),
+                    results.stream().map(result -> result.getPayload().getId()).toList(), metric + " top 10");
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(metric.toReported(metric.score(query, expected.get(i).getVector())),
+                        results.get(i).getSimilarity(), 1e-9);
+                assertEquals(expected.get(i).getContent(), results.get(i).getPayload().getContent());
+            }
+        }
+    }
+
+    // Points of group a (every third) and b, with the vectors of a 4-dimensional collection
+    private static List<Point> groupedPoints(int count) {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            points.add(new Point(UUID.randomUUID(), "content " + i, new float[]{i + 1, 1, 0, 0},
+                    Map.of("group", i % 3 == 0 ? "a" : "b", "rank", i)));
+        }
+        return points;
+    }
+
+    // An in-memory collection created and filled through the endpoints, as the controller keeps its own collections
+    private void inMemoryCollection(String vectorName, List<Point> points) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("size", 4);
+        requestBody.put("distance", "Cosine");
+        requestBody.put("persist", "false");
+        assertEquals(HttpStatus.OK, collectionsController.createVectorStore(vectorName, "testApiKey", requestBody).getStatusCode());
+        for (Point point : points) {
+            Payload payload = new Payload(point.getId().toString(), point.getMetadata(), point.getContent(), null, point.getVector());
+            assertEquals(HttpStatus.CREATED, collectionsController.addPayload(vectorName, payload).getStatusCode());
+        }
+    }
+
+    private static MultiValueMap<String, String> groupFilter(String group) {
+        MultiValueMap<String, String> metadata = new LinkedMultiValueMap<>();
+        metadata.add("metadata.group.eq", group);
+        return metadata;
+    }
+
+    private static List<String> ids(List<Point> points) {
+        return points.stream().map(point -> point.getId().toString()).toList();
+    }
+
+    // Follows nextCursor from the first page to the last, checking every page but the last is full
+    private List<String> pageThrough(String vectorName, int limit, MultiValueMap<String, String> metadata) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            ResponseEntity<PayloadPage> response = collectionsController.getPayloadPage(vectorName, limit, cursor, metadata);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            PayloadPage page = response.getBody();
+            cursor = page.getNextCursor();
+            assertTrue(page.getPayloads().size() == limit || cursor == null);
+            page.getPayloads().forEach(payload -> ids.add(payload.getId()));
+        } while (cursor != null);
+        return ids;
+    }
+
+    // A persisted collection whose scan visits the points in list order, the cursor being the index of the next one
+    private void persistedCollection(String vectorName, List<Point> points) {
+        when(rocksDBService.fetchVectorFromStorage(vectorName)).thenReturn(new CollectionConfig(vectorName, 4, Distance.Cosine, true));
+        when(rocksDBService.scanPoints(eq(vectorName), any(), any())).thenAnswer(invocation -> {
+            String cursor = invocation.getArgument(1);
+            Predicate<Point> visitor = invocation.getArgument(2);
+            for (int i = cursor == null ? 0 : Integer.parseInt(cursor); i < points.size(); i++) {
+                if (!visitor.test(points.get(i))) {
+                    return i + 1 < points.size() ? Integer.toString(i + 1) : null;
+                }
+            }
+            return null;
+        });
+    }
+
+    @Test
+    public void testPayloadPage_FollowsNextCursorToTheLastPage() {
+        List<Point> points = groupedPoints(25);
+        List<String> groupA = ids(points.stream().filter(point -> point.getMetadata().get("group").equals("a")).toList());
+        inMemoryCollection("memory", points);
+        persistedCollection("persisted", points);
+
+        for (String vectorName : List.of("memory", "persisted")) {
+            for (int limit : new int[]{1, 4, 9, 25}) {
+                assertEquals(groupA, pageThrough(vectorName, limit, groupFilter("a")), vectorName + " pages of " + limit);
+            }
+            assertEquals(ids(points), pageThrough(vectorName, 10, new LinkedMultiValueMap<>()), vectorName);
+        }
+    }
+
+    @Test
+    public void testPayloadPage_LimitOutsideRangeIsRejected() {
+        inMemoryCollection("memory", groupedPoints(5));
+        MultiValueMap<String, String> none = new LinkedMultiValueMap<>();
+
+        assertEquals(HttpStatus.BAD_REQUEST, collectionsController.getPayloadPage("memory", 0, null, none).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, collectionsController.getPayloadPage("memory", 10_001, null, none).getStatusCode());
+        ResponseEntity<PayloadPage> largest = collectionsController.getPayloadPage("memory", 10_000, null, none);
+        assertEquals(HttpStatus.OK, largest.getStatusCode());
+        assertEquals(5, largest.getBody().getPayloads().size());
+        assertNull(largest.getBody().getNextCursor());
+    }
+
+    @Test
+    public void testPayloadPage_BadCursorIsRejected() {
+        List<Point> points = groupedPoints(5);
+        inMemoryCollection("memory", points);
+        persistedCollection("persisted", points);
+        MultiValueMap<String, String> none = new LinkedMultiValueMap<>();
+        String memoryCursor = collectionsController.getPayloadPage("memory", 2, null, none).getBody().getNextCursor();
+        String persistedCursor = collectionsController.getPayloadPage("persisted", 2, null, none).getBody().getNextCursor();
+        assertNotNull(memoryCursor);
+        assertNotNull(persistedCursor);
+
+        // Not Base64, a cursor of the other kind of store, and a position that is not an ordinal
+        String notOrdinal = Base64.getUrlEncoder().encodeToString("m:first".getBytes(StandardCharsets.UTF_8));
+        for (String cursor : List.of("not a cursor!", persistedCursor, notOrdinal)) {
+            assertEquals(HttpStatus.BAD_REQUEST, collectionsController.getPayloadPage("memory", 2, cursor, none).getStatusCode(), cursor);
+        }
+        assertEquals(HttpStatus.BAD_REQUEST, collectionsController.getPayloadPage("persisted", 2, memoryCursor, none).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, collectionsController.getPayloadPage("missing", 2, null, none).getStatusCode());
+    }
+
+    @Test
+    public void testStreamPayloads_WritesOneFilteredPayloadPerLine() throws Exception {
+        List<Point> points = groupedPoints(20);
+        List<Point> groupB = points.stream().filter(point -> point.getMetadata().get("group").equals("b")).toList();
+        inMemoryCollection("memory", points);
+        persistedCollection("persisted", points);
+        ObjectMapper mapper = new ObjectMapper();
+
+        for (String vectorName : List.of("memory", "persisted")) {
+            ResponseEntity<StreamingResponseBody> response = collectionsController.streamPayloads(vectorName, groupFilter("b"));
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            response.getBody().writeTo(out);
+
+            String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+            assertEquals(groupB.size(), lines.length, vectorName);
+            for (int i = 0; i < lines.length; i++) {
+                Payload payload = mapper.readValue(lines[i], Payload.class);
+                assertEquals(groupB.get(i).getId().toString(), payload.getId());
+                assertEquals(groupB.get(i).getContent(), payload.getContent());
+            }
+        }
+        assertEquals(HttpStatus.NOT_FOUND, collectionsController.streamPayloads("missing", new LinkedMultiValueMap<>()).getStatusCode());
+    }
+}
@@ -0,0 +1,65 @@
+package org.similake.creteria;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterPredicateTest {
+
+    private static final Map<String, Object> PHONE = Map.of("brand", "Apple", "price", 799, "model", "iPhone 15 Pro",
+            "refurbished", true);
+
+    private static FilterCriteria filter(String field, String operator, Object value) {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setField(field);
+        filter.setOperator(operator);
+        filter.setValue(value);
+        return filter;
+    }
+
+    private static boolean matches(String field, String operator, Object value) {
+        return FilterPredicate.compile(filter(field, operator, value)).test(PHONE);
+    }
+
+    @Test
+    void leavesFollowTheLiteralType() {
+        assertTrue(matches("brand", "eq", "APPLE"));
+        assertTrue(matches("brand", "NE", "Sony"));
+        assertFalse(matches("brand", "ne", "apple"));
+        assertTrue(matches("model", "like", "PHONE 15"));
+        assertTrue(matches("model", "like", ""));
+        assertFalse(matches("model", "like", "Pro Max"));
+        assertFalse(matches("brand", "gt", "A"), "Strings have no ordering operators");
+
+        assertTrue(matches("price", "eq", 799.0));
+        assertTrue(matches("price", "lt", 800L));
+        assertTrue(matches("price", "gte", 799L));
+        assertFalse(matches("price", "gt", 799L));
+        assertFalse(matches("price", "like", 79L), "Numbers have no like operator");
+
+        // Mismatched types and missing fields never match
+        assertFalse(matches("price", "eq", "799"));
+        assertFalse(matches("brand", "eq", 1L));
+        assertFalse(matches("color", "ne", "red"));
+
+        // Other literals only support the exact eq operator
+        assertTrue(matches("refurbished", "eq", true));
+        assertFalse(matches("refurbished", "EQ", true));
+        assertFalse(FilterPredicate.compile(filter("brand", "eq", "Apple")).test(null));
+    }
+
+    @Test
+    void compositionFollowsBooleanLogic() {
+        FilterPredicate apple = FilterPredicate.compile(filter("brand", "eq", "apple"));
+        FilterPredicate cheap = FilterPredicate.compile(filter("price", "lt", 500L));
+
+        assertFalse(apple.and(cheap).test(PHONE));
+        assertTrue(apple.or(cheap).test(PHONE));
+        assertTrue(apple.and(cheap.negate()).test(PHONE));
+        assertFalse(FilterPredicate.compile(List.of(filter("brand", "eq", "apple"), filter("price", "lt", 500L))).test(PHONE));
+        assertTrue(FilterPredicate.compile(List.of()).test(null), "No filters accept everything");
+    }
+}
@@ -0,0 +1,50 @@
+package org.similake.distance;
+
+import org.junit.jupiter.api.Test;
+import org.similake.model.Distance;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorKernelTest {
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Test
+    void simdKernelMatchesScalarKernel() {
+        VectorKernel simd = new SimdVectorKernel();
+        VectorKernel scalar = new ScalarVectorKernel();
+        Random random = new Random(13);
+        // Lengths below, at and past the lane count, with tails, at non-zero offsets
+        for (int length : new int[]{1, 3, 8, 17, 64, 100, 1536}) {
+            float[] a = randomVector(random, length + 5);
+            float[] b = randomVector(random, length + 2);
+            double tolerance = 1e-4 * length;
+            assertEquals(scalar.dot(a, 5, b, 2, length), simd.dot(a, 5, b, 2, length), tolerance);
+            assertEquals(scalar.cosine(a, 5, b, 2, length), simd.cosine(a, 5, b, 2, length), 1e-5);
+            assertEquals(scalar.squaredEuclidean(a, 5, b, 2, length), simd.squaredEuclidean(a, 5, b, 2, length), tolerance);
+            assertEquals(scalar.manhattan(a, 5, b, 2, length), simd.manhattan(a, 5, b, 2, length), tolerance);
+        }
+        assertEquals(0, simd.cosine(new float[16], 0, randomVector(random, 16), 0, 16), "Zero vectors should score 0");
+    }
+
+    @Test
+    void distanceScoresRankCloserVectorsHigher() {
+        float[] query = {1, 0, 0, 0};
+        float[] near = {0.9f, 0.1f, 0, 0};
+        float[] far = {-1, 2, 0, 3};
+        for (Distance distance : Distance.values()) {
+            assertTrue(distance.score(query, near) > distance.score(query, far), distance + " should rank the nearer vector first");
+        }
+        assertEquals(5, Distance.Euclidean.toReported(Distance.Euclidean.score(new float[]{0, 0}, new float[]{3, 4})), 1e-6);
+        assertEquals(7, Distance.Manhattan.toReported(Distance.Manhattan.score(new float[]{0, 0}, new float[]{3, 4})), 1e-6);
+        assertEquals(-3, Distance.Dot.toReported(Distance.Dot.score(new float[]{1, 1}, new float[]{-1, -2})), 1e-6);
+    }
+}
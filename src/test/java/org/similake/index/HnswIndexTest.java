@@ -0,0 +1,168 @@
+package org.similake.index;
+
+import org.junit.jupiter.api.Test;
+import org.similake.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    private static final int DIM = 32;
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    // Vector values over a plain list; vectors must be appended before they are added to the index
+    private static VectorValues listValues(List<float[]> vectors) {
+        return new VectorValues() {
+            @Override
+            public IntToDoubleFunction scorer(float[] query) {
+                return ordinal -> Utils.cosineSimilarity(query, vectors.get(ordinal));
+            }
+
+            @Override
+            public double similarity(int ordinal1, int ordinal2) {
+                return Utils.cosineSimilarity(vectors.get(ordinal1), vectors.get(ordinal2));
+            }
+        };
+    }
+
+    @Test
+    void searchMatchesExactScanOnRandomVectors() {
+        Random random = new Random(7);
+        List<float[]> vectors = new ArrayList<>();
+        HnswIndex index = new HnswIndex(16, 200, listValues(vectors));
+        for (int i = 0; i < 2000; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            assertEquals(i, index.add(vector), "Ordinals should follow insertion order");
+        }
+
+        int k = 10;
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random);
+            Set<Integer> expected = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> Utils.cosineSimilarity(query, vectors.get(i))).reversed())
+                    .limit(k)
+                    .collect(Collectors.toSet());
+            List<Neighbor> result = index.search(query, k, 100, null);
+            assertEquals(k, result.size(), "Search should return k neighbours");
+            for (int i = 1; i < result.size(); i++) {
+                assertTrue(result.get(i - 1).getScore() >= result.get(i).getScore(), "Results should be sorted best first");
+            }
+            for (Neighbor neighbor : result) {
+                if (expected.contains(neighbor.getOrdinal())) {
+                    hits++;
+                }
+            }
+        }
+        double recall = hits / (double) (queries * k);
+        assertTrue(recall > 0.9, "Recall@10 should exceed 0.9 but was " + recall);
+    }
+
+    @Test
+    void searchOnlyReturnsAcceptedNodes() {
+        Random random = new Random(11);
+        List<float[]> vectors = new ArrayList<>();
+        HnswIndex index = new HnswIndex(8, 100, listValues(vectors));
+        for (int i = 0; i < 500; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            index.add(vector);
+        }
+
+        List<Neighbor> result = index.search(randomVector(random), 5, 50, ordinal -> ordinal % 2 == 0);
+
+        assertEquals(5, result.size(), "Filtered search should still fill the result");
+        Set<Integer> ordinals = new HashSet<>();
+        result.forEach(neighbor -> ordinals.add(neighbor.getOrdinal()));
+        assertTrue(ordinals.stream().allMatch(ordinal -> ordinal % 2 == 0), "Only accepted ordinals should be returned");
+    }
+
+    @Test
+    void emptyIndexReturnsNoResults() {
+        HnswIndex index = new HnswIndex(16, 200, listValues(new ArrayList<>()));
+        assertTrue(index.search(new float[DIM], 10, 64, null).isEmpty(), "Empty index should return no neighbours");
+    }
+
+    // Ordinals and scores of a search, for comparing whole result lists
+    private static List<String> results(HnswIndex index, float[] query) {
+        return index.search(query, 10, 64, null).stream()
+                .map(neighbor -> neighbor.getOrdinal() + ":" + neighbor.getScore())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void pooledVisitedSetsKeepSearchesIndependent() throws Exception {
+        Random random = new Random(13);
+        List<float[]> vectors = new ArrayList<>();
+        HnswIndex index = new HnswIndex(8, 64, listValues(vectors));
+        for (int i = 0; i < 300; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            index.add(vector);
+        }
+        List<float[]> queries = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int q = 0; q < 20; q++) {
+            queries.add(randomVector(random));
+            expected.add(results(index, queries.get(q)));
+        }
+
+        // Concurrent searches take different sets from the pool, so none sees another's visited nodes
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(threads.submit(() -> {
+                    for (int round = 0; round < 25; round++) {
+                        for (int q = 0; q < queries.size(); q++) {
+                            assertEquals(expected.get(q), results(index, queries.get(q)));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // Growing the graph past the pooled sets gives the same graph and results as an index that never reused one
+        HnswIndex fresh = new HnswIndex(8, 64, listValues(vectors));
+        for (int i = 300; i < 1000; i++) {
+            vectors.add(randomVector(random));
+        }
+        for (int i = 0; i < 300; i++) {
+            fresh.add(vectors.get(i));
+        }
+        for (int i = 300; i < 1000; i++) {
+            index.add(vectors.get(i));
+            fresh.add(vectors.get(i));
+        }
+        for (float[] query : queries) {
+            assertEquals(results(fresh, query), results(index, query));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.similake.index;
+
+import org.junit.jupiter.api.Test;
+import org.similake.model.Distance;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IvfIndexTest {
+
+    private static final int DIM = 16;
+
+    // Points around a few random centers, the shape IVF partitions are meant for
+    private static List<float[]> clustered(Random random, int centers, int points) {
+        List<float[]> centerVectors = new ArrayList<>();
+        for (int c = 0; c < centers; c++) {
+            float[] center = new float[DIM];
+            for (int d = 0; d < DIM; d++) {
+                center[d] = (float) random.nextGaussian() * 4;
+            }
+            centerVectors.add(center);
+        }
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            float[] center = centerVectors.get(i % centers);
+            float[] vector = new float[DIM];
+            for (int d = 0; d < DIM; d++) {
+                vector[d] = center[d] + (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    // Posting lists as the storage layer keeps them: the ordinals assigned to each list
+    private static Map<Integer, List<Integer>> postingLists(IvfIndex index, List<float[]> vectors) {
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            lists.computeIfAbsent(index.assign(vectors.get(i)), list -> new ArrayList<>()).add(i);
+        }
+        return lists;
+    }
+
+    private static List<Integer> topK(List<float[]> vectors, List<Integer> candidates, float[] query, int k, Distance metric) {
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble((Integer i) -> metric.score(query, vectors.get(i))).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private static List<Integer> probed(IvfIndex index, Map<Integer, List<Integer>> lists, float[] query, int nprobe) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int list : index.probe(query, nprobe)) {
+            candidates.addAll(lists.getOrDefault(list, List.of()));
+        }
+        return candidates;
+    }
+
+    @Test
+    void probingFewListsRecallsMostOfTheExactNeighbors() {
+        Random random = new Random(3);
+        List<float[]> vectors = clustered(random, 20, 4000);
+        List<Integer> all = IntStream.range(0, vectors.size()).boxed().toList();
+        IvfIndex index = IvfIndex.train(vectors, 40, Distance.Cosine::score);
+        Map<Integer, List<Integer>> lists = postingLists(index, vectors);
+        assertEquals(40, index.getListCount());
+
+        int k = 10;
+        int hits = 0;
+        int read = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = vectors.get(random.nextInt(vectors.size())).clone();
+            query[0] += 0.5f;
+            List<Integer> candidates = probed(index, lists, query, 4);
+            read += candidates.size();
+            Set<Integer> exact = new HashSet<>(topK(vectors, all, query, k, Distance.Cosine));
+            for (int found : topK(vectors, candidates, query, k, Distance.Cosine)) {
+                if (exact.contains(found)) {
+                    hits++;
+                }
+            }
+        }
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.9, "recall@10 with 4 of 40 lists was " + recall);
+        assertTrue(read < queries * vectors.size() / 4, "probing 4 of 40 lists should read a fraction of the points");
+    }
+
+    @Test
+    void probingEveryListIsExact() {
+        Random random = new Random(11);
+        List<float[]> vectors = clustered(random, 8, 600);
+        List<Integer> all = IntStream.range(0, vectors.size()).boxed().toList();
+        for (Distance metric : Distance.values()) {
+            IvfIndex index = IvfIndex.train(vectors, 12, metric::score);
+            Map<Integer, List<Integer>> lists = postingLists(index, vectors);
+            for (int q = 0; q < 10; q++) {
+                float[] query = clustered(random, 1, 1).get(0);
+                List<Integer> candidates = probed(index, lists, query, index.getListCount());
+                assertEquals(vectors.size(), candidates.size());
+                assertEquals(topK(vectors, all, query, 10, metric), topK(vectors, candidates, query, 10, metric),
+                        metric + " results differ from the exact scan");
+            }
+        }
+    }
+
+    @Test
+    void assignmentAndProbeOrderFollowTheCollectionMetric() {
+        // Same direction, different lengths: cosine cannot tell the centroids apart, euclidean distance can
+        float[][] centroids = {{1, 0}, {10, 0}, {0, 1}};
+        IvfIndex euclidean = new IvfIndex(centroids, Distance.Euclidean::score);
+        assertEquals(1, euclidean.assign(new float[]{9, 0.5f}));
+        assertEquals(0, euclidean.assign(new float[]{1.5f, 0.2f}));
+        assertArrayEquals(new int[]{1, 0, 2}, euclidean.probe(new float[]{8, 0}, 3));
+
+        IvfIndex dot = new IvfIndex(centroids, Distance.Dot::score);
+        assertEquals(1, dot.assign(new float[]{1.5f, 0.2f}), "the longer centroid has the larger dot product");
+    }
+
+    @Test
+    void tinyAndEmptyCollections() {
+        assertThrows(IllegalArgumentException.class, () -> IvfIndex.train(List.of(), 4, Distance.Cosine::score));
+
+        // Fewer points than requested lists: one list per point
+        List<float[]> vectors = List.of(new float[]{1, 0}, new float[]{0, 1}, new float[]{-1, 0});
+        IvfIndex index = IvfIndex.train(vectors, 10, Distance.Cosine::score);
+        assertEquals(3, index.getListCount());
+        Set<Integer> assigned = new HashSet<>();
+        for (float[] vector : vectors) {
+            assigned.add(index.assign(vector));
+        }
+        assertEquals(3, assigned.size());
+        // nprobe is clamped to the lists there are, and to at least one
+        assertEquals(3, index.probe(new float[]{1, 1}, 100).length);
+        assertEquals(1, index.probe(new float[]{1, 1}, 0).length);
+
+        assertThrows(IllegalArgumentException.class, () -> IvfIndex.train(vectors, 0, Distance.Cosine::score));
+        IvfIndex single = IvfIndex.train(List.<float[]>of(new float[]{2, 2}), 1, Distance.Euclidean::score);
+        assertEquals(1, single.getListCount());
+        assertEquals(0, single.assign(new float[]{-5, 3}));
+    }
+}
@@ -0,0 +1,76 @@
+package org.similake.index;
+
+import org.junit.jupiter.api.Test;
+import org.similake.model.Distance;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KMeansTest {
+
+    @Test
+    void separatesWellSeparatedClusters() {
+        Random random = new Random(1);
+        float[][] centers = {{10, 0, 0}, {0, 10, 0}, {0, 0, 10}, {-10, -10, -10}};
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            float[] center = centers[i % centers.length];
+            vectors.add(new float[]{center[0] + (float) random.nextGaussian(), center[1] + (float) random.nextGaussian(),
+                    center[2] + (float) random.nextGaussian()});
+        }
+        float[][] centroids = KMeans.train(vectors, 4, 20, Distance.Euclidean::score, new Random(42));
+        assertEquals(4, centroids.length);
+
+        // Every cluster maps to its own centroid, which lies close to the cluster center
+        Set<Integer> used = new HashSet<>();
+        for (int c = 0; c < centers.length; c++) {
+            int nearest = KMeans.nearest(centers[c], centroids, Distance.Euclidean::score);
+            used.add(nearest);
+            for (int i = c; i < vectors.size(); i += centers.length) {
+                assertEquals(nearest, KMeans.nearest(vectors.get(i), centroids, Distance.Euclidean::score));
+            }
+            assertTrue(-Distance.Euclidean.score(centers[c], centroids[nearest]) < 0.5,
+                    "centroid should be near the mean of its cluster");
+        }
+        assertEquals(4, used.size());
+    }
+
+    @Test
+    void moreClustersThanVectorsKeepsEveryVector() {
+        List<float[]> vectors = List.of(new float[]{1, 2}, new float[]{3, 4});
+        float[][] centroids = KMeans.train(vectors, 5, 10, Distance.Euclidean::score, new Random(0));
+        assertEquals(2, centroids.length);
+        Set<String> distinct = new HashSet<>();
+        for (float[] centroid : centroids) {
+            distinct.add(centroid[0] + "," + centroid[1]);
+        }
+        assertEquals(Set.of("1.0,2.0", "3.0,4.0"), distinct);
+        // Training copies the seeds instead of moving the caller's vectors
+        assertArrayEquals(new float[]{1, 2}, vectors.get(0));
+    }
+
+    @Test
+    void nearestPicksTheHighestScore() {
+        float[][] centroids = {{0, 0}, {5, 5}, {-3, 1}};
+        assertEquals(1, KMeans.nearest(new float[]{4, 6}, centroids, Distance.Euclidean::score));
+        assertEquals(2, KMeans.nearest(new float[]{-3, 0}, centroids, Distance.Euclidean::score));
+        assertThrows(IllegalArgumentException.class,
+                () -> KMeans.train(List.of(), 3, 10, Distance.Euclidean::score, new Random(0)));
+    }
+
+    @Test
+    void vectorsMissingOrOfAnotherDimensionAreRejected() {
+        List<float[]> mixed = new ArrayList<>(List.of(new float[]{1, 2}, new float[]{3, 4}, new float[]{5}));
+        assertThrows(IllegalArgumentException.class,
+                () -> KMeans.train(mixed, 2, 10, Distance.Euclidean::score, new Random(0)));
+        List<float[]> missing = new ArrayList<>(List.of(new float[]{1, 2}, new float[]{3, 4}));
+        missing.add(null);
+        assertThrows(IllegalArgumentException.class,
+                () -> KMeans.train(missing, 2, 10, Distance.Euclidean::score, new Random(0)));
+    }
+}
@@ -0,0 +1,76 @@
+package org.similake.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrdinalBitmapTest {
+
+    // Mixes sparse chunks (array form) and dense chunks (bitset form)
+    private static BitSet randomSet(Random random, int chunks) {
+        BitSet set = new BitSet();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int values = random.nextBoolean() ? random.nextInt(100) : 5000 + random.nextInt(30000);
+            for (int i = 0; i < values; i++) {
+                set.set((chunk << 16) | random.nextInt(1 << 16));
+            }
+        }
+        return set;
+    }
+
+    private static OrdinalBitmap toBitmap(BitSet set) {
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        set.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static void assertSameOrdinals(BitSet expected, OrdinalBitmap actual) {
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+        assertEquals(expected.cardinality(), actual.getCardinality());
+    }
+
+    @Test
+    void setOperationsMatchBitSet() {
+        Random random = new Random(11);
+        for (int round = 0; round < 5; round++) {
+            BitSet a = randomSet(random, 4);
+            BitSet b = randomSet(random, 4);
+            OrdinalBitmap bitmapA = toBitmap(a);
+            OrdinalBitmap bitmapB = toBitmap(b);
+            assertSameOrdinals(a, bitmapA);
+
+            BitSet and = (BitSet) a.clone();
+            and.and(b);
+            assertSameOrdinals(and, OrdinalBitmap.and(bitmapA, bitmapB));
+
+            BitSet or = (BitSet) a.clone();
+            or.or(b);
+            assertSameOrdinals(or, OrdinalBitmap.or(bitmapA, bitmapB));
+
+            BitSet andNot = (BitSet) a.clone();
+            andNot.andNot(b);
+            assertSameOrdinals(andNot, OrdinalBitmap.andNot(bitmapA, bitmapB));
+
+            for (int probe = 0; probe < 1000; probe++) {
+                int ordinal = random.nextInt(4 << 16);
+                assertEquals(a.get(ordinal), bitmapA.contains(ordinal));
+            }
+        }
+    }
+
+    @Test
+    void outOfOrderAndDuplicateAddsKeepTheSetSorted() {
+        OrdinalBitmap bitmap = OrdinalBitmap.of(70000, 5, 3, 5, 1 << 20, 3);
+        assertArrayEquals(new int[]{3, 5, 70000, 1 << 20}, bitmap.toArray());
+        assertFalse(bitmap.contains(4));
+        assertFalse(bitmap.contains(-1));
+
+        OrdinalBitmap copy = bitmap.copy();
+        copy.add(4);
+        assertFalse(bitmap.contains(4), "Copies must not share containers");
+        assertTrue(copy.contains(4));
+    }
+}
@@ -0,0 +1,37 @@
+package org.similake.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeIndexTest {
+
+    @Test
+    void rangesMatchLinearScanAcrossTailMerges() {
+        Random random = new Random(12);
+        RangeIndex index = new RangeIndex();
+        // Enough values for several tail merges plus an unmerged tail, with many duplicates
+        double[] values = new double[20_000];
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            values[ordinal] = random.nextInt(500) / 4.0;
+            index.add(ordinal, values[ordinal]);
+        }
+        assertEquals(values.length, index.size());
+
+        for (int round = 0; round < 50; round++) {
+            double low = random.nextInt(520) / 4.0 - 5;
+            double high = low + random.nextInt(200) / 4.0;
+            boolean lowInclusive = random.nextBoolean();
+            boolean highInclusive = random.nextBoolean();
+            int[] expected = IntStream.range(0, values.length)
+                    .filter(i -> lowInclusive ? values[i] >= low : values[i] > low)
+                    .filter(i -> highInclusive ? values[i] <= high : values[i] < high)
+                    .toArray();
+            assertArrayEquals(expected, index.range(low, lowInclusive, high, highInclusive).toArray());
+        }
+        assertEquals(values.length, index.range(Double.NEGATIVE_INFINITY, true, Double.POSITIVE_INFINITY, true).getCardinality());
+    }
+}
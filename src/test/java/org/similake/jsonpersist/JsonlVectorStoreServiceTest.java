@@ -0,0 +1,261 @@
+package org.similake.jsonpersist;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.model.Point;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest
+class JsonlVectorStoreServiceTest {
+
+    private static final String COLLECTION = "jsonlServiceTest";
+
+    @Value("${db.path}")
+    private String COLLECTIONS_DIR;
+
+    @Autowired
+    private JsonlVectorStoreService service;
+
+    @BeforeEach
+    void setUp() {
+        service.removeVector(COLLECTION);
+        service.persistVectorToStorage(COLLECTION, CollectionConfig.fromMap(COLLECTION,
+                Map.of("size", 4, "distance", "Cosine", "persist", "true")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.removeVector(COLLECTION);
+    }
+
+    // Content long enough that every line spans more than one 64 KB read buffer
+    private static Point point(int i, int contentLength) {
+        return new Point(UUID.randomUUID(), String.valueOf((char) ('a' + i % 26)).repeat(contentLength),
+                new float[]{i, 1, 0, 0}, Map.of("i", i));
+    }
+
+    private static List<UUID> ids(List<Point> points) {
+        return points.stream().map(Point::getId).toList();
+    }
+
+    @Test
+    void cachedPointsAreReloadedFromTheRightOffsetAfterLongLines() throws IOException {
+        List<Point> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Point point = point(i, 100_000 + i * 7_000);
+            service.addPayloadToVectorStore(COLLECTION, point);
+            expected.add(point);
+        }
+        assertEquals(ids(expected), ids(service.getAllPointsFromVectorStore(COLLECTION)));
+
+        for (int i = 3; i < 5; i++) {
+            Point point = point(i, 70_000);
+            service.addPayloadToVectorStore(COLLECTION, point);
+            expected.add(point);
+        }
+        assertEquals(ids(expected), ids(service.getAllPointsFromVectorStore(COLLECTION)));
+
+        // A line appended behind the service's back is read on the next call, starting where the cached read stopped
+        Point external = point(5, 90_000);
+        Files.write(Paths.get(COLLECTIONS_DIR, COLLECTION, "vectors.jsonl"),
+                (new ObjectMapper().writeValueAsString(external) + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        expected.add(external);
+        List<Point> reloaded = service.getAllPointsFromVectorStore(COLLECTION);
+        assertEquals(ids(expected), ids(reloaded));
+        assertEquals(external.getContent(), reloaded.get(5).getContent());
+    }
+
+    // Visits pages of pageSize points from the cursor, collecting them, until scanPoints reports the end
+    private List<Point> scanAll(int pageSize) {
+        List<Point> scanned = new ArrayList<>();
+        String cursor = null;
+        do {
+            List<Point> page = new ArrayList<>();
+            cursor = service.scanPoints(COLLECTION, cursor, point -> {
+                page.add(point);
+                return page.size() < pageSize;
+            });
+            assertTrue(page.size() == pageSize || cursor == null);
+            scanned.addAll(page);
+        } while (cursor != null);
+        return scanned;
+    }
+
+    @Test
+    void scanPointsResumesFromEachCursorInStorageOrder() {
+        List<Point> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Point point = point(i, i == 3 ? 150_000 : 20);
+            service.addPayloadToVectorStore(COLLECTION, point);
+            expected.add(point);
+        }
+        for (int pageSize : new int[]{1, 2, 3, 7, 10}) {
+            assertEquals(ids(expected), ids(scanAll(pageSize)), "pages of " + pageSize);
+        }
+
+        // Stopping on the last point leaves nothing to resume
+        List<Point> all = new ArrayList<>();
+        assertNull(service.scanPoints(COLLECTION, null, point -> {
+            all.add(point);
+            return all.size() < expected.size();
+        }));
+        assertEquals(ids(expected), ids(all));
+    }
+
+    @Test
+    void cursorsStayValidWhilePointsAreAdded() {
+        List<Point> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Point point = point(i, 20);
+            service.addPayloadToVectorStore(COLLECTION, point);
+            expected.add(point);
+        }
+        List<Point> scanned = new ArrayList<>();
+        String cursor = service.scanPoints(COLLECTION, null, point -> {
+            scanned.add(point);
+            return scanned.size() < 3;
+        });
+        assertNotNull(cursor);
+
+        for (int i = 4; i < 6; i++) {
+            Point point = point(i, 20);
+            service.addPayloadToVectorStore(COLLECTION, point);
+            expected.add(point);
+        }
+        assertNull(service.scanPoints(COLLECTION, cursor, point -> {
+            scanned.add(point);
+            return true;
+        }));
+        assertEquals(ids(expected), ids(scanned));
+    }
+
+    @Test
+    void invalidCursorsAreRejected() {
+        service.addPayloadToVectorStore(COLLECTION, point(0, 20));
+        assertThrows(IllegalArgumentException.class, () -> service.scanPoints(COLLECTION, "next", point -> true));
+        assertThrows(IllegalArgumentException.class, () -> service.scanPoints(COLLECTION, "-1", point -> true));
+        assertNull(service.scanPoints("jsonlServiceTestMissing", null, point -> true));
+    }
+
+    @Test
+    void collectionsWithoutAnIndexGetOneOnceTheirConfigAsksForIt() {
+        for (int i = 0; i < 3; i++) {
+            service.addPayloadToVectorStore(COLLECTION, point(i, 20));
+        }
+        assertNull(service.getIndexedVectorStore(COLLECTION));
+        assertNull(service.getIndexedVectorStore(COLLECTION));
+
+        // A new config replaces the remembered decision
+        service.createConfig(COLLECTION, CollectionConfig.fromMap(COLLECTION,
+                Map.of("size", 4, "distance", "Cosine", "persist", "true", "indexType", "Hnsw")));
+        assertEquals(3, service.getIndexedVectorStore(COLLECTION).pointCount());
+
+        // So does removing the collection and creating it again without an index
+        service.removeVector(COLLECTION);
+        service.persistVectorToStorage(COLLECTION, CollectionConfig.fromMap(COLLECTION,
+                Map.of("size", 4, "distance", "Cosine", "persist", "true")));
+        service.addPayloadToVectorStore(COLLECTION, point(0, 20));
+        assertNull(service.getIndexedVectorStore(COLLECTION));
+        service.removeVector(COLLECTION);
+        service.persistVectorToStorage(COLLECTION, CollectionConfig.fromMap(COLLECTION,
+                Map.of("size", 4, "distance", "Cosine", "persist", "true", "quantization", "Scalar")));
+        assertNotNull(service.getIndexedVectorStore(COLLECTION));
+    }
+
+    @Test
+    void ivfTrainingAndAssignmentSkipPointsWithoutAVectorOfTheCollectionDimension() {
+        List<Point> valid = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Point point = point(i, 20);
+            service.addPayloadToVectorStore(COLLECTION, point);
+            valid.add(point);
+        }
+        service.addPayloadToVectorStore(COLLECTION, new Point(UUID.randomUUID(), "short", new float[]{1, 2}, null));
+        service.addPayloadToVectorStore(COLLECTION, new Point(UUID.randomUUID(), "none", null, null));
+
+        assertTrue(service.trainIvfIndex(COLLECTION, 3).contains("over 20 points"));
+        service.addPayloadToVectorStore(COLLECTION, new Point(UUID.randomUUID(), "long", new float[]{1, 2, 3, 4, 5}, null));
+        Point later = point(20, 20);
+        service.addPayloadToVectorStore(COLLECTION, later);
+        valid.add(later);
+
+        // Probing every list reads back exactly the points of the collection dimension
+        List<Point> candidates = service.getIvfCandidates(COLLECTION, new float[]{1, 1, 0, 0}, 3);
+        assertEquals(ids(valid).stream().sorted().toList(), ids(candidates).stream().sorted().toList());
+    }
+
+    @Test
+    void ivfTrainingWithoutAnyUsablePointIsRejected() {
+        service.addPayloadToVectorStore(COLLECTION, new Point(UUID.randomUUID(), "short", new float[]{1, 2}, null));
+        assertThrows(IllegalArgumentException.class, () -> service.trainIvfIndex(COLLECTION, 2));
+    }
+
+    @Test
+    void retrainingSwapsInANewGenerationWhileSearchesReadAWholeOne() throws Exception {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Point point = point(i, 20);
+            service.addPayloadToVectorStore(COLLECTION, point);
+            points.add(point);
+        }
+        service.trainIvfIndex(COLLECTION, 4);
+        List<UUID> expected = ids(points).stream().sorted().toList();
+
+        // Probing every list always reads each point once, whichever generation a search started on
+        AtomicBoolean training = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (training.get() && failure.get() == null) {
+                List<UUID> found = ids(service.getIvfCandidates(COLLECTION, new float[]{1, 1, 0, 0}, 8))
+                        .stream().sorted().toList();
+                if (!expected.equals(found)) {
+                    failure.set("Read " + found.size() + " of " + expected.size() + " points");
+                }
+            }
+        });
+        reader.start();
+        try {
+            for (int round = 0; round < 5; round++) {
+                service.trainIvfIndex(COLLECTION, 3 + round % 2);
+            }
+        } finally {
+            training.set(false);
+            reader.join();
+        }
+        assertNull(failure.get());
+
+        // Only the current generation is left, and points added later land in its lists
+        Path ivfDir = Paths.get(COLLECTIONS_DIR, COLLECTION, "ivf");
+        try (Stream<Path> generations = Files.list(ivfDir).filter(Files::isDirectory)) {
+            assertEquals(List.of(ivfDir.resolve(Files.readString(ivfDir.resolve("CURRENT")).trim())),
+                    generations.toList());
+        }
+        Point later = point(30, 20);
+        service.addPayloadToVectorStore(COLLECTION, later);
+        assertTrue(ids(service.getIvfCandidates(COLLECTION, new float[]{1, 1, 0, 0}, 8)).contains(later.getId()));
+    }
+}
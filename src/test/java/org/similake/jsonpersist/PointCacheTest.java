@@ -0,0 +1,51 @@
+package org.similake.jsonpersist;
+
+import org.junit.jupiter.api.Test;
+import org.similake.model.Point;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointCacheTest {
+
+    private static PointCache.Entry entry(int points) {
+        PointCache.Entry entry = new PointCache.Entry();
+        for (int i = 0; i < points; i++) {
+            entry.add(new Point(UUID.randomUUID(), "c" + i, new float[64]));
+        }
+        return entry;
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedCollections() {
+        // Each entry of 100 points is about 44 KB, so the budget holds two of them
+        PointCache cache = new PointCache(100_000);
+        cache.put("a", entry(100));
+        cache.put("b", entry(100));
+        assertNotNull(cache.get("a"), "Reading a marks it as recently used");
+
+        cache.put("c", entry(100));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"), "The least recently used collection is evicted");
+        assertNotNull(cache.get("c"));
+        assertTrue(cache.sizeInBytes() <= 100_000);
+
+        cache.put("huge", entry(1_000));
+        assertNull(cache.get("huge"), "A collection over the whole budget is not cached");
+        assertEquals(2, cache.collectionCount());
+    }
+
+    @Test
+    void viewsKeepTheirSizeWhileTheEntryGrows() {
+        PointCache.Entry entry = entry(64);
+        List<Point> view = entry.points();
+        entry.add(new Point(UUID.randomUUID(), "extra", new float[64]));
+
+        assertEquals(64, view.size(), "Earlier views do not see later appends");
+        assertEquals(65, entry.points().size());
+        assertSame(view.get(0), entry.points().get(0));
+        assertThrows(UnsupportedOperationException.class, () -> view.add(null));
+    }
+}
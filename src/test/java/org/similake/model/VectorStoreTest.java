@@ -0,0 +1,183 @@
+package org.similake.model;
+
+import org.junit.jupiter.api.Test;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterCriteria;
+import org.similake.index.Neighbor;
+import org.similake.index.TopK;
+import org.similake.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorStoreTest {
+
+    private static final int DIM = 8;
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Test
+    void exactSearchMatchesBruteForceAcrossArenaPages() {
+        Random random = new Random(3);
+        VectorStore store = new VectorStore(DIM, Distance.Cosine);
+        List<float[]> vectors = new ArrayList<>();
+        // Spill into a second arena page
+        int count = VectorArena.PAGE_VECTORS + 500;
+        for (int i = 0; i < count; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            store.addPoint(new Point(UUID.randomUUID(), "doc-" + i, vector, Map.of("parity", i % 2)));
+        }
+        assertEquals(count, store.pointCount());
+
+        float[] query = randomVector(random);
+        List<Integer> expected = IntStream.range(0, count).boxed()
+                .filter(i -> i % 2 == 1)
+                .sorted(Comparator.comparingDouble((Integer i) -> Utils.cosineSimilarity(query, vectors.get(i))).reversed())
+                .limit(10)
+                .collect(Collectors.toList());
+        List<Integer> actual = store.searchExact(query, 10, ordinal -> store.getMetadata(ordinal).get("parity").equals(1))
+                .stream().map(Neighbor::getOrdinal).collect(Collectors.toList());
+
+        assertEquals(expected, actual, "Exact search should return the brute-force top 10 in order");
+    }
+
+    @Test
+    void cosineScorerMatchesCosineOfRawVectors() {
+        Random random = new Random(4);
+        VectorStore store = new VectorStore(DIM, Distance.Cosine);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            store.addPoint(new Point(UUID.randomUUID(), "doc-" + i, vector));
+        }
+
+        float[] query = randomVector(random);
+        IntToDoubleFunction scorer = store.scorer(query);
+        for (int i = 0; i < vectors.size(); i++) {
+            assertEquals(Utils.cosineSimilarity(query, vectors.get(i)), scorer.applyAsDouble(i), 1e-6);
+            assertArrayEquals(vectors.get(i), store.getVector(i), "Raw vectors should be kept as ingested");
+        }
+    }
+
+    @Test
+    void batchScanMatchesSingleQueryScans() {
+        Random random = new Random(6);
+        VectorStore store = new VectorStore(DIM, Distance.Euclidean);
+        int count = VectorArena.PAGE_VECTORS + 300;
+        for (int i = 0; i < count; i++) {
+            store.addPoint(new Point(UUID.randomUUID(), "doc-" + i, randomVector(random), Map.of("bucket", i % 3)));
+        }
+
+        float[][] queries = {randomVector(random), randomVector(random), randomVector(random)};
+        IntPredicate[] accepts = {null, ordinal -> store.getMetadata(ordinal).get("bucket").equals(1),
+                ordinal -> store.getMetadata(ordinal).get("bucket").equals(2)};
+        int[] limits = {5, 10, 1};
+        TopK[] heaps = new TopK[queries.length];
+        for (int q = 0; q < queries.length; q++) {
+            heaps[q] = new TopK(limits[q]);
+        }
+        // Two calls, the first ending inside a block, to cover partial ranges
+        store.scanExactBatch(queries, 0, 1000, accepts, heaps);
+        store.scanExactBatch(queries, 1000, count, accepts, heaps);
+
+        for (int q = 0; q < queries.length; q++) {
+            IntPredicate accept = accepts[q] != null ? accepts[q] : ordinal -> true;
+            assertEquals(store.searchExact(queries[q], limits[q], accept).stream().map(Neighbor::getOrdinal).collect(Collectors.toList()),
+                    heaps[q].toSortedList().stream().map(Neighbor::getOrdinal).collect(Collectors.toList()),
+                    "Query " + q + " should get the same top-k as a scan of its own");
+        }
+    }
+
+    @Test
+    void metadataIndexMatchesPerPointFilters() {
+        Random random = new Random(7);
+        VectorStore store = new VectorStore(DIM, Distance.Cosine);
+        String[] brands = {"Apple", "Sony", "apple", "LG"};
+        for (int i = 0; i < 2000; i++) {
+            store.addPoint(new Point(UUID.randomUUID(), "doc-" + i, randomVector(random),
+                    Map.of("brand", brands[i % brands.length], "price", i % 7, "stock", random.nextInt(100))));
+        }
+
+        List<List<FilterCriteria>> queries = List.of(
+                List.of(filter("brand", "eq", "APPLE")),
+                List.of(filter("brand", "eq", "Apple"), filter("price", "eq", 3L)),
+                List.of(filter("price", "EQ", 2.0), filter("stock", "lt", 50L)),
+                List.of(filter("brand", "eq", "Nokia")));
+        for (List<FilterCriteria> filters : queries) {
+            int[] expected = IntStream.range(0, store.pointCount())
+                    .filter(ordinal -> Utils.filterMetadata(store.getMetadata(ordinal), filters))
+                    .toArray();
+            assertArrayEquals(expected, store.matchingOrdinals(filters));
+        }
+        assertNull(store.matchingOrdinals(List.of(filter("stock", "gt", 10L))),
+                "Range filters are not answered by the inverted index");
+    }
+
+    @Test
+    void declaredRangeFieldsAnswerRangeFilters() {
+        Random random = new Random(8);
+        CollectionConfig config = new CollectionConfig("ranges", DIM, Distance.Cosine, false);
+        config.setRangeIndexFields(List.of("price"));
+        VectorStore store = new VectorStore(config);
+        for (int i = 0; i < 3000; i++) {
+            Object price = i % 10 == 0 ? "n/a" : (Object) (random.nextInt(1000) / 2.0);
+            store.addPoint(new Point(UUID.randomUUID(), "doc-" + i, randomVector(random),
+                    Map.of("price", price, "brand", i % 2 == 0 ? "Apple" : "Sony")));
+        }
+
+        List<List<FilterCriteria>> queries = List.of(
+                List.of(filter("price", "lt", 100L)),
+                List.of(filter("price", "gte", 50.5), filter("price", "LTE", 60L), filter("brand", "eq", "apple")),
+                List.of(filter("price", "gt", 400L), filter("price", "gt", 450L)),
+                List.of(filter("price", "gt", 10L), filter("price", "lt", 5L)));
+        for (List<FilterCriteria> filters : queries) {
+            int[] expected = IntStream.range(0, store.pointCount())
+                    .filter(ordinal -> Utils.filterMetadata(store.getMetadata(ordinal), filters))
+                    .toArray();
+            assertArrayEquals(expected, store.matchingOrdinals(filters));
+        }
+    }
+
+    private static FilterCriteria filter(String field, String operator, Object value) {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setField(field);
+        filter.setOperator(operator);
+        filter.setValue(value);
+        return filter;
+    }
+
+    @Test
+    void columnsRoundTripEveryPointField() {
+        VectorStore store = new VectorStore(DIM, Distance.Cosine);
+        UUID id = UUID.randomUUID();
+        float[] vector = randomVector(new Random(5));
+        store.addPoint(new Point(id, "content", vector, Map.of("brand", "Apple")));
+
+        Point point = store.getPoint(0);
+        assertEquals(id, point.getId());
+        assertEquals("content", point.getContent());
+        assertArrayEquals(vector, point.getVector());
+        assertEquals("Apple", point.getMetadata().get("brand"));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.addPoint(new Point(UUID.randomUUID(), "short", new float[DIM - 1])));
+        assertEquals(1, store.pointCount(), "A rejected point should not be published");
+    }
+}
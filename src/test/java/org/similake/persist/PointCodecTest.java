@@ -0,0 +1,109 @@
+package org.similake.persist;
+
+import org.junit.jupiter.api.Test;
+import org.similake.model.Point;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointCodecTest {
+
+    private static Point samplePoint(int dimension) {
+        Random random = new Random(7);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("city", "Zürich");
+        metadata.put("rank", 3);
+        metadata.put("views", 12_000_000_000L);
+        metadata.put("score", 0.25);
+        metadata.put("active", true);
+        metadata.put("missing", null);
+        metadata.put("price", new BigDecimal("19.99"));
+        metadata.put("tags", List.of("a", 1, false));
+        metadata.put("nested", Map.of("depth", 2));
+        return new Point(UUID.randomUUID(), "some content", vector, metadata);
+    }
+
+    private static byte[] javaSerialize(Point point) throws IOException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(point);
+            out.flush();
+            return bos.toByteArray();
+        }
+    }
+
+    private static void assertSamePoint(Point expected, Point actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertArrayEquals(expected.getVector(), actual.getVector());
+        assertEquals(expected.getMetadata(), actual.getMetadata());
+    }
+
+    @Test
+    void roundTripsEveryField() throws Exception {
+        Point point = samplePoint(64);
+        byte[] bytes = PointCodec.encode(point);
+
+        assertEquals(PointCodec.VERSION, bytes[0]);
+        assertEquals(64, PointCodec.dimension(bytes));
+        assertSamePoint(point, PointCodec.decode(bytes));
+        // Metadata keeps its insertion order
+        assertEquals(List.copyOf(point.getMetadata().keySet()),
+                List.copyOf(PointCodec.decode(bytes).getMetadata().keySet()));
+
+        Point empty = new Point(UUID.randomUUID(), null, null, null);
+        Point decoded = PointCodec.decode(PointCodec.encode(empty));
+        assertSamePoint(empty, decoded);
+        assertEquals(-1, PointCodec.dimension(PointCodec.encode(empty)));
+    }
+
+    @Test
+    void javaSerializedValuesAreStillReadable() throws Exception {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("city", "Berlin");
+        Point point = new Point(UUID.randomUUID(), "legacy", new float[]{1f, 2f, 3f}, metadata);
+        byte[] legacy = javaSerialize(point);
+
+        assertTrue(PointCodec.isJavaSerialized(legacy));
+        assertFalse(PointCodec.isJavaSerialized(PointCodec.encode(point)));
+        assertSamePoint(point, PointCodec.decode(legacy));
+    }
+
+    @Test
+    void encodingIsSmallerThanJavaSerialization() throws Exception {
+        Point point = samplePoint(768);
+        byte[] encoded = PointCodec.encode(point);
+        // The vector takes exactly four bytes per component after the fixed header
+        assertTrue(encoded.length < PointCodec.VECTOR_OFFSET + 768 * 4 + 300);
+        assertTrue(encoded.length < javaSerialize(point).length);
+    }
+
+    @Test
+    void rejectsUnsupportedValuesAndCorruptInput() {
+        Point point = new Point(UUID.randomUUID(), "x", new float[]{1f}, Map.of("when", new Object()));
+        assertThrows(IllegalArgumentException.class, () -> PointCodec.encode(point));
+
+        byte[] truncated = PointCodec.encode(samplePoint(8));
+        byte[] cut = Arrays.copyOf(truncated, truncated.length - 5);
+        assertThrows(IOException.class, () -> PointCodec.decode(cut));
+
+        byte[] future = PointCodec.encode(samplePoint(8));
+        future[0] = 9;
+        assertThrows(IOException.class, () -> PointCodec.decode(future));
+    }
+}
@@ -0,0 +1,55 @@
+package org.similake.persist;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.FlushOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RocksDBProfileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rejectsUnknownCompression() {
+        assertThrows(IllegalArgumentException.class, () -> new RocksDBProfile(1 << 20, 10, "brotli", "none", 0, true));
+        assertThrows(IllegalArgumentException.class, () -> new RocksDBProfile(0, 10, "lz4", "none", 0, true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statisticsCoverReadsOfEveryDatabase() throws Exception {
+        RocksDBProfile profile = new RocksDBProfile(4 << 20, 10, "zstd", "none", 1 << 20, true);
+        RocksDBRegistry registry = new RocksDBRegistry(profile);
+        try {
+            for (String name : new String[]{"first", "second"}) {
+                try (RocksDBRegistry.Handle handle = registry.open(dir.resolve(name).toString(), true);
+                     FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+                    byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+                    handle.db().put(handle.column(RocksDBService.CONTENT), key, "value".getBytes(StandardCharsets.UTF_8));
+                    handle.db().flush(flushOptions, handle.column(RocksDBService.CONTENT));
+                    assertArrayEquals("value".getBytes(StandardCharsets.UTF_8),
+                            handle.db().get(handle.column(RocksDBService.CONTENT), key));
+                    // A key outside the file is ruled out by its bloom filter
+                    assertNull(handle.db().get(handle.column(RocksDBService.CONTENT), "kez".getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+            Map<String, Object> stats = profile.statistics();
+            assertEquals(4L << 20, stats.get("blockCacheCapacity"));
+            assertEquals("ZSTD_COMPRESSION", stats.get("compression"));
+            assertEquals("NO_COMPRESSION", stats.get("vectorCompression"));
+            Map<String, Long> tickers = (Map<String, Long>) stats.get("tickers");
+            assertEquals(4L, tickers.get("number_keys_read"));
+            assertEquals(2L, tickers.get("bloom_filter_useful"));
+            assertTrue((long) stats.get("blockCacheUsage") > 0);
+        } finally {
+            registry.closeAll();
+            profile.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.similake.persist;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RocksDBRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    private final RocksDBProfile profile = new RocksDBProfile(8 << 20, 10, "lz4", "none", 0, true);
+    private final RocksDBRegistry registry = new RocksDBRegistry(profile);
+
+    @AfterEach
+    void tearDown() {
+        registry.closeAll();
+        profile.close();
+    }
+
+    @Test
+    void databaseStaysOpenAcrossCallsAndReopensAfterItsDirectoryIsDeleted() throws Exception {
+        String path = dir.resolve("collection").toString();
+        RocksDB first;
+        try (RocksDBRegistry.Handle handle = registry.open(path, true)) {
+            first = handle.db();
+            handle.db().put("a".getBytes(), "1".getBytes());
+        }
+        try (RocksDBRegistry.Handle handle = registry.open(path, false)) {
+            assertSame(first, handle.db());
+            assertArrayEquals("1".getBytes(), handle.db().get("a".getBytes()));
+        }
+
+        try (Stream<Path> files = Files.walk(dir.resolve("collection"))) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+        assertThrows(RocksDBException.class, () -> registry.open(path, false));
+        try (RocksDBRegistry.Handle handle = registry.open(path, true)) {
+            assertNotSame(first, handle.db());
+            assertNull(handle.db().get("a".getBytes()));
+        }
+
+        registry.close(path);
+        assertFalse(registry.isOpen(path));
+        assertEquals(0, registry.openCount());
+    }
+
+    @Test
+    void columnFamiliesAreCreatedOnFirstUseAndOpenedWithTheirDatabase() throws Exception {
+        String path = dir.resolve("families").toString();
+        try (RocksDBRegistry.Handle handle = registry.open(path, true)) {
+            handle.db().put(handle.column("vectors"), "a".getBytes(), "v".getBytes());
+            assertSame(handle.column("vectors"), handle.column("vectors"));
+        }
+        registry.close(path);
+        try (RocksDBRegistry.Handle handle = registry.open(path, false)) {
+            assertArrayEquals("v".getBytes(), handle.db().get(handle.column("vectors"), "a".getBytes()));
+            assertNull(handle.db().get("a".getBytes()));
+        }
+    }
+
+    @Test
+    void concurrentWritersShareOneDatabase() throws Exception {
+        String path = dir.resolve("shared").toString();
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int writer = thread;
+                futures.add(writers.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        try (RocksDBRegistry.Handle handle = registry.open(path, true)) {
+                            handle.db().put((writer + ":" + i).getBytes(), new byte[]{1});
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            writers.shutdown();
+        }
+        assertEquals(1, registry.openCount());
+        int count = 0;
+        try (RocksDBRegistry.Handle handle = registry.open(path, false);
+             RocksIterator iterator = handle.db().newIterator()) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                count++;
+            }
+        }
+        assertEquals(2000, count);
+    }
+
+    @Test
+    void closeWaitsForBorrowedHandles() throws Exception {
+        String path = dir.resolve("borrowed").toString();
+        RocksDBRegistry.Handle borrowed = registry.open(path, true);
+        Thread closer = new Thread(() -> registry.close(path));
+        closer.start();
+        closer.join(200);
+        // The database cannot be closed under a reader
+        assertTrue(closer.isAlive());
+        borrowed.db().put("k".getBytes(), "v".getBytes());
+        borrowed.close();
+        closer.join(5000);
+        assertFalse(closer.isAlive());
+        assertFalse(registry.isOpen(path));
+    }
+}
@@ -4,8 +4,14 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.rocksdb.RocksIterator;
 import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterPredicate;
+import org.similake.index.Neighbor;
 import org.similake.model.Distance;
+import org.similake.model.Point;
+import org.similake.model.VectorStore;
+import org.similake.model.ScoredPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,10 +19,25 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -35,6 +56,9 @@ class RocksDBServiceTest {
     @Autowired
     private RocksDBService rocksDBService;
 
+    @Autowired
+    private RocksDBRegistry registry;
+
     @BeforeEach
     void setUp() throws IOException {
         createDirectoryIfNotExists(COLLECTIONS_DIR);
@@ -176,4 +200,231 @@ class RocksDBServiceTest {
         assertEquals(config2.getDistance(), fetchedConfig2.getDistance(), "Distances should match for config2");
         assertEquals(config2.isPersist(), fetchedConfig2.isPersist(), "Persist flags should match for config2");
     }
-}
\ No newline at end of file
+
+    @Test
+    void scanPointsResumesFromCursor() {
+        String collectionName = "scan_collection";
+        rocksDBService.persistVectorToStorage(collectionName, new CollectionConfig(collectionName, 2, Distance.Cosine, true));
+        for (int i = 0; i < 5; i++) {
+            rocksDBService.addPayloadToVectorStore(collectionName, new Point(UUID.randomUUID(), "c" + i, new float[]{i, 1}));
+        }
+
+        // Pages of two points, each scan resuming at the cursor returned by the previous one
+        List<String> scanned = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            List<String> page = new ArrayList<>();
+            cursor = rocksDBService.scanPoints(collectionName, cursor, point -> {
+                page.add(point.getId().toString());
+                return page.size() < 2;
+            });
+            scanned.addAll(page);
+            pages++;
+        } while (cursor != null);
+
+        List<String> all = rocksDBService.getAllPointsFromVectorStore(collectionName).stream()
+                .map(point -> point.getId().toString())
+                .toList();
+        assertEquals(all, scanned, "Paged scan should visit every point once, in storage order");
+        assertEquals(3, pages, "Five points in pages of two should take three scans");
+    }
+
+    @Test
+    void pointsStoredWholeAreSplitIntoColumnFamiliesAndSearchedByVector() throws Exception {
+        String collectionName = "legacy_collection";
+        Point javaSerialized = new Point(UUID.randomUUID(), "near", new float[]{1, 0}, new HashMap<>(Map.of("group", "a")));
+        Point encoded = new Point(UUID.randomUUID(), "far", new float[]{0, 1}, Map.of("group", "b"));
+        // Collections written by earlier versions hold each point whole in the default column family
+        try (RocksDBRegistry.Handle handle = registry.open(COLLECTIONS_DIR + collectionName, true)) {
+            try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                 ObjectOutputStream out = new ObjectOutputStream(bos)) {
+                out.writeObject(javaSerialized);
+                out.flush();
+                handle.db().put(javaSerialized.getId().toString().getBytes(), bos.toByteArray());
+            }
+            handle.db().put(encoded.getId().toString().getBytes(), PointCodec.encode(encoded));
+        }
+        rocksDBService.createConfig(collectionName, new CollectionConfig(collectionName, 2, Distance.Cosine, true));
+        rocksDBService.addPayloadToVectorStore(collectionName, new Point(UUID.randomUUID(), "middle", new float[]{1, 1}));
+
+        List<ScoredPoint> results = rocksDBService.searchStoredVectors(collectionName, new float[]{1, 0.1f}, 2,
+                Double.NEGATIVE_INFINITY, Distance.Cosine, FilterPredicate.ALWAYS);
+        assertEquals(List.of("near", "middle"), results.stream().map(result -> result.getPoint().getContent()).toList());
+        assertEquals(Map.of("group", "a"), results.get(0).getPoint().getMetadata());
+        assertArrayEquals(new float[]{1, 0}, results.get(0).getPoint().getVector());
+
+        FilterPredicate groupB = metadata -> metadata != null && "b".equals(metadata.get("group"));
+        List<ScoredPoint> filtered = rocksDBService.searchStoredVectors(collectionName, new float[]{1, 0.1f}, 2,
+                Double.NEGATIVE_INFINITY, Distance.Cosine, groupB);
+        assertEquals(List.of(encoded.getId()), filtered.stream().map(result -> result.getPoint().getId()).toList());
+
+        // Nothing is left in the default column family, and deletes clear every family
+        try (RocksDBRegistry.Handle handle = registry.open(COLLECTIONS_DIR + collectionName, false);
+             RocksIterator iterator = handle.db().newIterator()) {
+            iterator.seekToFirst();
+            assertFalse(iterator.isValid());
+        }
+        assertTrue(rocksDBService.deletePoint(collectionName, javaSerialized.getId()));
+        assertFalse(rocksDBService.deletePoint(collectionName, javaSerialized.getId()));
+        try (RocksDBRegistry.Handle handle = registry.open(COLLECTIONS_DIR + collectionName, false)) {
+            byte[] key = javaSerialized.getId().toString().getBytes();
+            assertNull(handle.db().get(handle.column(RocksDBService.CONTENT), key));
+            assertNull(handle.db().get(handle.column(RocksDBService.METADATA), key));
+        }
+        assertEquals(2, rocksDBService.getAllPointsFromVectorStore(collectionName).size());
+    }
+
+    @Test
+    void scansPairEachVectorWithItsOwnContentAndMetadata() throws Exception {
+        String collectionName = "lockstep_collection";
+        rocksDBService.persistVectorToStorage(collectionName, new CollectionConfig(collectionName, 2, Distance.Cosine, true));
+        // Every combination of absent content and metadata, so the families hold different subsets of the keys
+        Map<UUID, Point> expected = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            Point point = new Point(UUID.randomUUID(), i % 2 == 0 ? "c" + i : null, new float[]{i, 1},
+                    i % 3 == 0 ? null : Map.of("i", i));
+            rocksDBService.addPayloadToVectorStore(collectionName, point);
+            expected.put(point.getId(), point);
+        }
+        // Content and metadata left behind under keys without a vector are skipped
+        try (RocksDBRegistry.Handle handle = registry.open(COLLECTIONS_DIR + collectionName, false)) {
+            for (int i = 0; i < 5; i++) {
+                byte[] key = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+                handle.db().put(handle.column(RocksDBService.CONTENT), key, "orphan".getBytes(StandardCharsets.UTF_8));
+                handle.db().put(handle.column(RocksDBService.METADATA), key, PointCodec.encodeMetadata(Map.of("orphan", true)));
+            }
+        }
+
+        List<Point> all = rocksDBService.getAllPointsFromVectorStore(collectionName);
+        assertEquals(expected.size(), all.size());
+        for (Point point : all) {
+            Point stored = expected.get(point.getId());
+            assertEquals(stored.getContent(), point.getContent());
+            assertEquals(stored.getMetadata(), point.getMetadata());
+            assertArrayEquals(stored.getVector(), point.getVector());
+        }
+
+        // Resuming from a cursor lines the content and metadata up again
+        List<Point> scanned = new ArrayList<>();
+        String cursor = null;
+        do {
+            List<Point> page = new ArrayList<>();
+            cursor = rocksDBService.scanPoints(collectionName, cursor, point -> {
+                page.add(point);
+                return page.size() < 7;
+            });
+            scanned.addAll(page);
+        } while (cursor != null);
+        assertEquals(all.stream().map(Point::getId).toList(), scanned.stream().map(Point::getId).toList());
+        for (Point point : scanned) {
+            assertEquals(expected.get(point.getId()).getContent(), point.getContent());
+            assertEquals(expected.get(point.getId()).getMetadata(), point.getMetadata());
+        }
+
+        List<Point> filtered = rocksDBService.getAllPointsFromVectorStoreWithFilter(collectionName, Map.of("i", 5));
+        assertEquals(1, filtered.size());
+        assertEquals(expected.get(filtered.get(0).getId()).getMetadata(), filtered.get(0).getMetadata());
+    }
+
+    @Test
+    void searchStoredVectorsKeepsTheBestPointsOfALongScan() {
+        String collectionName = "topk_collection";
+        rocksDBService.persistVectorToStorage(collectionName, new CollectionConfig(collectionName, 4, Distance.Euclidean, true));
+        Random random = new Random(5);
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            float[] vector = new float[4];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            Point point = new Point(UUID.randomUUID(), "c" + i, vector, Map.of("i", i));
+            rocksDBService.addPayloadToVectorStore(collectionName, point);
+            points.add(point);
+        }
+        // Points without a vector or with one of another dimension are not scored
+        rocksDBService.addPayloadToVectorStore(collectionName, new Point(UUID.randomUUID(), "none", null, null));
+        rocksDBService.addPayloadToVectorStore(collectionName, new Point(UUID.randomUUID(), "short", new float[]{0, 0}, null));
+
+        float[] query = {0.5f, -0.5f, 0.25f, 0};
+        // Many more points are offered to the heap than it keeps, so the kept keys and vectors are compacted
+        for (int limit : new int[]{1, 3, 10}) {
+            List<Point> expected = points.stream()
+                    .sorted(Comparator.comparingDouble((Point point) -> Distance.Euclidean.score(query, point.getVector())).reversed())
+                    .limit(limit)
+                    .toList();
+            List<ScoredPoint> results = rocksDBService.searchStoredVectors(collectionName, query, limit,
+                    Double.NEGATIVE_INFINITY, Distance.Euclidean, FilterPredicate.ALWAYS);
+            assertEquals(expected.stream().map(Point::getId).toList(),
+                    results.stream().map(result -> result.getPoint().getId()).toList(), "top " + limit);
+            for (int i = 0; i < limit; i++) {
+                assertEquals(expected.get(i).getContent(), results.get(i).getPoint().getContent());
+                assertArrayEquals(expected.get(i).getVector(), results.get(i).getPoint().getVector());
+            }
+        }
+    }
+
+    @Test
+    void pointsAddedWhileTheIndexIsBuiltAreMirroredOnce() throws Exception {
+        String collectionName = "mirror_collection";
+        rocksDBService.persistVectorToStorage(collectionName, CollectionConfig.fromMap(collectionName,
+                Map.of("size", 2, "distance", "Cosine", "persist", "true", "indexType", "Hnsw")));
+        for (int i = 0; i < 50; i++) {
+            rocksDBService.addPayloadToVectorStore(collectionName, new Point(UUID.randomUUID(), "c" + i, new float[]{i, 1}));
+        }
+
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        VectorStore mirror;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(writers.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        rocksDBService.addPayloadToVectorStore(collectionName,
+                                new Point(UUID.randomUUID(), "w" + i, new float[]{1, i}));
+                    }
+                }));
+            }
+            // Built while the writers run, so some of their points come from the scan and the rest from the writes
+            mirror = rocksDBService.getIndexedVectorStore(collectionName);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        Set<UUID> stored = rocksDBService.getAllPointsFromVectorStore(collectionName).stream()
+                .map(Point::getId)
+                .collect(Collectors.toSet());
+        assertEquals(450, stored.size());
+        assertEquals(450, mirror.pointCount());
+        assertEquals(stored, IntStream.range(0, mirror.pointCount()).mapToObj(mirror::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void replacingAPointLeavesOneVersionInTheIndexedSearch() {
+        String collectionName = "replace_collection";
+        rocksDBService.persistVectorToStorage(collectionName, CollectionConfig.fromMap(collectionName,
+                Map.of("size", 2, "distance", "Cosine", "persist", "true", "indexType", "Hnsw")));
+        UUID id = UUID.randomUUID();
+        rocksDBService.addPayloadToVectorStore(collectionName, new Point(id, "first", new float[]{1, 0}, Map.of("version", 1)));
+        for (int i = 0; i < 20; i++) {
+            rocksDBService.addPayloadToVectorStore(collectionName, new Point(UUID.randomUUID(), "c" + i, new float[]{i, 1}));
+        }
+        VectorStore mirror = rocksDBService.getIndexedVectorStore(collectionName);
+        List<Neighbor> before = mirror.searchHnsw(new float[]{1, 0}, 3, 64, null);
+        assertEquals(id, mirror.getId(before.get(0).getOrdinal()));
+
+        // Re-put under the same id while the mirror exists
+        rocksDBService.addPayloadToVectorStore(collectionName, new Point(id, "second", new float[]{1, 0.01f}, Map.of("version", 2)));
+        VectorStore rebuilt = rocksDBService.getIndexedVectorStore(collectionName);
+        assertEquals(21, rebuilt.pointCount());
+        List<Neighbor> after = rebuilt.searchHnsw(new float[]{1, 0}, 3, 64, null);
+        List<UUID> ids = after.stream().map(neighbor -> rebuilt.getId(neighbor.getOrdinal())).toList();
+        assertEquals(1, ids.stream().filter(id::equals).count());
+        int ordinal = after.get(ids.indexOf(id)).getOrdinal();
+        assertEquals(Map.of("version", 2), rebuilt.getMetadata(ordinal));
+        assertEquals("second", rebuilt.getContent(ordinal));
+    }
+}
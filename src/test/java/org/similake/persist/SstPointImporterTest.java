@@ -0,0 +1,123 @@
+package org.similake.persist;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.similake.model.Point;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SstPointImporterTest {
+
+    @TempDir
+    Path dir;
+
+    private final RocksDBProfile profile = new RocksDBProfile(8 << 20, 10, "lz4", "none", 0, true);
+    private final RocksDBRegistry registry = new RocksDBRegistry(profile);
+
+    @AfterEach
+    void tearDown() {
+        registry.closeAll();
+        profile.close();
+    }
+
+    @Test
+    void sortedRunsAreMergedAndLaterPointsWin() throws Exception {
+        String path = dir.resolve("collection").toString();
+        UUID replaced = UUID.randomUUID();
+        try (RocksDBRegistry.Handle handle = registry.open(path, true)) {
+            byte[] key = replaced.toString().getBytes(StandardCharsets.UTF_8);
+            handle.db().put(handle.column(RocksDBService.VECTORS), key, PointCodec.encodeVector(new float[]{9, 9}));
+            handle.db().put(handle.column(RocksDBService.CONTENT), key, "old".getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        Path staging = Files.createDirectory(dir.resolve("staging"));
+        long imported;
+        // Runs of three points, so the ten points plus updates span several SST runs
+        try (SstPointImporter importer = new SstPointImporter(staging, 3, profile)) {
+            for (int i = 0; i < ids.size(); i++) {
+                importer.add(new Point(ids.get(i), "first " + i, new float[]{i, 0}, Map.of("i", i)));
+            }
+            importer.add(new Point(ids.get(4), "second 4", new float[]{4, 1}, null));
+            importer.add(new Point(replaced, null, new float[]{1, 1}, Map.of("new", true)));
+            imported = importer.prepare();
+            try (RocksDBRegistry.Handle handle = registry.open(path, false)) {
+                importer.attach(handle);
+            }
+        }
+        assertFalse(Files.exists(staging));
+        assertEquals(11, imported);
+
+        try (RocksDBRegistry.Handle handle = registry.open(path, false);
+             RocksIterator iterator = handle.db().newIterator(handle.column(RocksDBService.VECTORS))) {
+            List<String> keys = new ArrayList<>();
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                keys.add(new String(iterator.key(), StandardCharsets.UTF_8));
+            }
+            assertEquals(11, keys.size());
+            assertEquals(keys.stream().sorted().toList(), keys);
+
+            byte[] updated = ids.get(4).toString().getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(new float[]{4, 1}, PointCodec.decodeVector(handle.db().get(handle.column(RocksDBService.VECTORS), updated)));
+            assertEquals("second 4", new String(handle.db().get(handle.column(RocksDBService.CONTENT), updated), StandardCharsets.UTF_8));
+            assertNull(handle.db().get(handle.column(RocksDBService.METADATA), updated));
+
+            // Absent content of an imported point hides the content of the point it replaces
+            byte[] key = replaced.toString().getBytes(StandardCharsets.UTF_8);
+            assertNull(handle.db().get(handle.column(RocksDBService.CONTENT), key));
+            assertEquals(Map.of("new", true),
+                    PointCodec.decodeMetadata(handle.db().get(handle.column(RocksDBService.METADATA), key)));
+        }
+    }
+
+    @Test
+    void anImportFailingBeforeItsVectorsAreAttachedAddsNoPoints() throws Exception {
+        String path = dir.resolve("collection").toString();
+        UUID existing = UUID.randomUUID();
+        byte[] existingKey = existing.toString().getBytes(StandardCharsets.UTF_8);
+        try (RocksDBRegistry.Handle handle = registry.open(path, true)) {
+            handle.db().put(handle.column(RocksDBService.VECTORS), existingKey, PointCodec.encodeVector(new float[]{9, 9}));
+            handle.db().put(handle.column(RocksDBService.CONTENT), existingKey, "old".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Path staging = Files.createDirectory(dir.resolve("staging"));
+        try (SstPointImporter importer = new SstPointImporter(staging, 3, profile)) {
+            for (int i = 0; i < 5; i++) {
+                importer.add(new Point(UUID.randomUUID(), "new " + i, new float[]{i, 0}, Map.of("i", i)));
+            }
+            importer.add(new Point(existing, "replaced", new float[]{1, 1}, null));
+            assertEquals(6, importer.prepare());
+            // Content and metadata are attached, then the vector file is missing
+            Files.delete(staging.resolve(RocksDBService.VECTORS + ".sst"));
+            try (RocksDBRegistry.Handle handle = registry.open(path, false)) {
+                assertThrows(RocksDBException.class, () -> importer.attach(handle));
+            }
+        }
+
+        try (RocksDBRegistry.Handle handle = registry.open(path, false);
+             RocksIterator iterator = handle.db().newIterator(handle.column(RocksDBService.VECTORS))) {
+            List<String> keys = new ArrayList<>();
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                keys.add(new String(iterator.key(), StandardCharsets.UTF_8));
+            }
+            assertEquals(List.of(existing.toString()), keys);
+            assertArrayEquals(new float[]{9, 9}, PointCodec.decodeVector(handle.db().get(handle.column(RocksDBService.VECTORS), existingKey)));
+            // The one documented leak: the point the import replaces already shows its new content
+            assertEquals("replaced", new String(handle.db().get(handle.column(RocksDBService.CONTENT), existingKey), StandardCharsets.UTF_8));
+        }
+    }
+}
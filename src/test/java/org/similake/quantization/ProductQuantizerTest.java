@@ -0,0 +1,98 @@
+package org.similake.quantization;
+
+import org.junit.jupiter.api.Test;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.index.Neighbor;
+import org.similake.model.Distance;
+import org.similake.model.Point;
+import org.similake.model.VectorStore;
+import org.similake.utils.Utils;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.similake.quantization.QuantizerFixtures.*;
+
+class ProductQuantizerTest {
+
+    @Test
+    void adcScoresEqualTheExactScoreOfTheReconstruction() {
+        List<float[]> vectors = randomVectors(new Random(3), 600);
+        float[] query = randomVectors(new Random(4), 1).get(0);
+        for (Distance metric : Distance.values()) {
+            ProductQuantizer quantizer = new ProductQuantizer(DIM, 8, metric);
+            quantizer.train(vectors);
+            vectors.forEach(quantizer::add);
+            assertEquals(8, quantizer.bytesPerVector());
+
+            // Cosine codes are built from unit vectors, so the reconstruction is compared with the normalized query
+            float[] prepared = metric == Distance.Cosine ? Utils.normalize(query) : query;
+            Distance exact = metric == Distance.Cosine ? Distance.Dot : metric;
+            IntToDoubleFunction scorer = quantizer.scorer(query);
+            for (int ordinal = 0; ordinal < 50; ordinal++) {
+                double expected = exact.score(prepared, quantizer.reconstruct(ordinal));
+                assertEquals(expected, scorer.applyAsDouble(ordinal), 1e-4 * Math.max(1, Math.abs(expected)),
+                        metric + " ADC score of ordinal " + ordinal);
+            }
+        }
+    }
+
+    // Store of 1000 vectors with PQ codes trained on the first 500
+    private static VectorStore quantizedStore(List<float[]> vectors, boolean rerank) {
+        CollectionConfig config = CollectionConfig.fromMap("pq", Map.of("size", DIM, "distance", "Cosine",
+                "persist", "false", "quantization", "Product", "pqSubvectors", 8,
+                "quantizationTrainingSize", 500, "oversample", 8, "rerank", rerank));
+        VectorStore store = new VectorStore(config);
+        for (float[] vector : vectors) {
+            store.addPoint(new Point(UUID.randomUUID(), null, vector, null));
+        }
+        assertTrue(store.hasTrainedQuantizer());
+        return store;
+    }
+
+    // Without rerank the store drops its original vectors, so the exact top 10 is computed from the test's copies
+    private static double recallAt10(VectorStore store, List<float[]> vectors, List<float[]> queries) {
+        int hits = 0;
+        for (float[] query : queries) {
+            Set<Integer> exact = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> Utils.cosineSimilarity(query, vectors.get(i))).reversed())
+                    .limit(10)
+                    .collect(Collectors.toSet());
+            for (Neighbor neighbor : store.searchQuantized(query, 10, null)) {
+                if (exact.contains(neighbor.getOrdinal())) {
+                    hits++;
+                }
+            }
+        }
+        return hits / (10.0 * queries.size());
+    }
+
+    @Test
+    void rerankingTheShortlistRestoresRecall() {
+        List<float[]> vectors = randomVectors(new Random(7), 1000);
+        List<float[]> queries = randomVectors(new Random(8), 30);
+
+        double approximate = recallAt10(quantizedStore(vectors, false), vectors, queries);
+        double reranked = recallAt10(quantizedStore(vectors, true), vectors, queries);
+        assertTrue(approximate >= 0.3, "recall@10 of the PQ codes alone was " + approximate);
+        assertTrue(reranked >= 0.85, "recall@10 after rescoring an 8x shortlist was " + reranked);
+        assertTrue(reranked > approximate + 0.1, "rescoring should beat PQ scores: " + reranked + " vs " + approximate);
+
+        // Reranked scores are exact cosine similarities
+        VectorStore store = quantizedStore(vectors, true);
+        Neighbor best = store.searchQuantized(queries.get(0), 1, null).get(0);
+        assertEquals(Utils.cosineSimilarity(queries.get(0), vectors.get(best.getOrdinal())), best.getScore(), 1e-5);
+        Set<Integer> ordinals = new HashSet<>();
+        store.searchQuantized(queries.get(0), 10, null).forEach(neighbor -> ordinals.add(neighbor.getOrdinal()));
+        assertEquals(10, ordinals.size());
+    }
+}
@@ -0,0 +1,64 @@
+package org.similake.quantization;
+
+import org.similake.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Gaussian vectors and recall checks shared by the quantizer tests
+final class QuantizerFixtures {
+
+    static final int DIM = 64;
+    static final int POINTS = 1000;
+
+    private QuantizerFixtures() {
+    }
+
+    static List<float[]> randomVectors(Random random, int count) {
+        List<float[]> vectors = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            float[] vector = new float[DIM];
+            for (int i = 0; i < DIM; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    // Trains the quantizer on POINTS vectors and encodes them, returning the originals
+    static List<float[]> encode(VectorQuantizer quantizer) {
+        List<float[]> vectors = randomVectors(new Random(3), POINTS);
+        quantizer.train(vectors);
+        vectors.forEach(quantizer::add);
+        assertEquals(POINTS, quantizer.size(), "Every vector should be encoded");
+        return vectors;
+    }
+
+    // Fraction of queries whose exact nearest neighbour is in the quantized top shortlistSize
+    static double shortlistRecall(VectorQuantizer quantizer, List<float[]> vectors, int shortlistSize) {
+        Random random = new Random(5);
+        int hits = 0;
+        int queries = 50;
+        for (float[] query : randomVectors(random, queries)) {
+            int exact = IntStream.range(0, vectors.size()).boxed()
+                    .max(Comparator.comparingDouble(i -> Utils.cosineSimilarity(query, vectors.get(i))))
+                    .orElseThrow();
+            IntToDoubleFunction scorer = quantizer.scorer(query);
+            boolean found = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(scorer::applyAsDouble).reversed())
+                    .limit(shortlistSize)
+                    .anyMatch(i -> i == exact);
+            if (found) {
+                hits++;
+            }
+        }
+        return hits / (double) queries;
+    }
+}
@@ -0,0 +1,39 @@
+package org.similake.quantization;
+
+import org.junit.jupiter.api.Test;
+import org.similake.model.Distance;
+import org.similake.utils.Utils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.similake.quantization.QuantizerFixtures.*;
+
+class ScalarQuantizerTest {
+
+    @Test
+    void scalarQuantizerApproximatesCosine() {
+        ScalarQuantizer quantizer = new ScalarQuantizer(DIM, Distance.Cosine);
+        List<float[]> vectors = encode(quantizer);
+
+        assertEquals(DIM, quantizer.bytesPerVector(), "Int8 codes should use one byte per dimension");
+        float[] query = vectors.get(0);
+        double approximate = quantizer.scorer(query).applyAsDouble(1);
+        double exact = Utils.cosineSimilarity(query, vectors.get(1));
+        assertEquals(exact, approximate, 0.02, "Int8 score should be close to cosine similarity");
+        assertTrue(shortlistRecall(quantizer, vectors, 5) >= 0.95, "Nearest neighbour should be in the int8 top 5");
+    }
+
+    @Test
+    void scalarQuantizerApproximatesEuclideanDistance() {
+        ScalarQuantizer quantizer = new ScalarQuantizer(DIM, Distance.Euclidean);
+        List<float[]> vectors = encode(quantizer);
+
+        float[] query = vectors.get(0);
+        for (int ordinal = 1; ordinal < 20; ordinal++) {
+            double approximate = quantizer.scorer(query).applyAsDouble(ordinal);
+            double exact = Distance.Euclidean.score(query, vectors.get(ordinal));
+            assertEquals(exact, approximate, 0.05 * Math.abs(exact), "Int8 score should be close to the negated Euclidean distance");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.similake.quantization;
+
+import org.junit.jupiter.api.Test;
+import org.similake.model.Distance;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.similake.quantization.QuantizerFixtures.*;
+
+class VectorQuantizerTest {
+
+    @Test
+    void productQuantizerShortlistContainsNearestNeighbour() {
+        ProductQuantizer quantizer = new ProductQuantizer(DIM, 16, Distance.Cosine);
+        List<float[]> vectors = encode(quantizer);
+
+        assertEquals(16, quantizer.bytesPerVector(), "PQ codes should use one byte per sub-vector");
+        assertEquals(DIM, quantizer.reconstruct(0).length, "Reconstruction should have the full dimension");
+        assertTrue(shortlistRecall(quantizer, vectors, 40) >= 0.9, "Nearest neighbour should be in the PQ top 40");
+    }
+
+    @Test
+    void binaryQuantizerPacksSignBits() {
+        BinaryQuantizer quantizer = new BinaryQuantizer(DIM);
+        assertTrue(quantizer.isTrained(), "Binary quantizer needs no training");
+        List<float[]> vectors = encode(quantizer);
+
+        assertEquals(8, quantizer.bytesPerVector(), "64 dimensions should pack into one long");
+        assertEquals(0, quantizer.scorer(vectors.get(7)).applyAsDouble(7), "A vector should have Hamming distance 0 to itself");
+        assertTrue(shortlistRecall(quantizer, vectors, 200) >= 0.9, "Nearest neighbour should be in the binary top 200");
+    }
+}
@@ -0,0 +1,83 @@
+package org.similake.search;
+
+import org.junit.jupiter.api.Test;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.creteria.FilterCriteria;
+import org.similake.model.Distance;
+import org.similake.model.IndexType;
+import org.similake.model.Point;
+import org.similake.model.VectorStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryPlannerTest {
+
+    private static final int DIM = 4;
+    private static final int POINTS = 1000;
+
+    // Every point has a brand (1% "rare", 20% "mid", the rest "common") and a uniform price in [0, 1000)
+    private static VectorStore store(IndexType indexType) {
+        CollectionConfig config = new CollectionConfig("plans", DIM, Distance.Cosine, false);
+        config.setIndexType(indexType);
+        VectorStore store = new VectorStore(config);
+        Random random = new Random(13);
+        for (int i = 0; i < POINTS; i++) {
+            String brand = i % 100 == 0 ? "rare" : i % 5 == 1 ? "mid" : "common";
+            float[] vector = {random.nextFloat(), random.nextFloat(), random.nextFloat(), random.nextFloat()};
+            store.addPoint(new Point(UUID.randomUUID(), "doc-" + i, vector, Map.of("brand", brand, "price", i)));
+        }
+        return store;
+    }
+
+    private static FilterCriteria filter(String field, String operator, Object value) {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setField(field);
+        filter.setOperator(operator);
+        filter.setValue(value);
+        return filter;
+    }
+
+    @Test
+    void selectivityPicksTheAnnStrategy() {
+        VectorStore store = store(IndexType.Hnsw);
+        QueryPlanner planner = new QueryPlanner(50, 0.5);
+
+        assertEquals(QueryPlan.Strategy.ANN, planner.plan(store, List.of(), 10, false).getStrategy());
+
+        QueryPlan rare = planner.plan(store, List.of(filter("brand", "eq", "rare")), 10, false);
+        assertEquals(QueryPlan.Strategy.FILTERED_EXACT_SCAN, rare.getStrategy());
+        assertEquals(10, rare.getEstimatedMatches());
+
+        QueryPlan mid = planner.plan(store, List.of(filter("brand", "eq", "mid")), 10, false);
+        assertEquals(QueryPlan.Strategy.ANN_INLINE_FILTER, mid.getStrategy());
+
+        QueryPlan common = planner.plan(store, List.of(filter("brand", "eq", "common")), 10, false);
+        assertEquals(QueryPlan.Strategy.ANN_OVERFETCH, common.getStrategy());
+        assertTrue(common.getFetchLimit() > 10 && common.getFetchLimit() < 30, "Fetch should cover limit / selectivity");
+
+        // Without a range index the sampled histogram still tells a narrow range from a wide one
+        assertEquals(QueryPlan.Strategy.EXACT_SCAN,
+                planner.plan(store, List.of(filter("price", "lt", 20L)), 10, false).getStrategy());
+        assertEquals(QueryPlan.Strategy.ANN_OVERFETCH,
+                planner.plan(store, List.of(filter("price", "gte", 100L)), 10, false).getStrategy());
+    }
+
+    @Test
+    void flatCollectionsOnlyNarrowTheScan() {
+        VectorStore store = store(IndexType.Flat);
+        QueryPlanner planner = new QueryPlanner(50, 0.5);
+
+        assertEquals(QueryPlan.Strategy.EXACT_SCAN, planner.plan(store, List.of(), 10, false).getStrategy());
+        assertEquals(QueryPlan.Strategy.FILTERED_EXACT_SCAN,
+                planner.plan(store, List.of(filter("brand", "eq", "mid")), 10, false).getStrategy());
+        assertEquals(QueryPlan.Strategy.EXACT_SCAN,
+                planner.plan(store, List.of(filter("brand", "eq", "common")), 10, false).getStrategy());
+        assertEquals(QueryPlan.Strategy.EXACT_SCAN,
+                planner.plan(store, List.of(filter("brand", "like", "ra")), 10, false).getStrategy());
+    }
+}
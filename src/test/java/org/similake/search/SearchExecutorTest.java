@@ -0,0 +1,82 @@
+package org.similake.search;
+
+import org.junit.jupiter.api.Test;
+import org.similake.index.Neighbor;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchExecutorTest {
+
+    @Test
+    void parallelSearchMatchesFullSort() {
+        Random random = new Random(9);
+        double[] scores = random.doubles(200_000).toArray();
+        SearchExecutor executor = new SearchExecutor(4, 1000);
+        try {
+            List<Neighbor> result = executor.search(scores.length, 25, (from, to, topK) -> {
+                for (int i = from; i < to; i++) {
+                    topK.offer(i, scores[i]);
+                }
+            });
+
+            List<Integer> expected = IntStream.range(0, scores.length).boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> scores[i]).reversed())
+                    .limit(25)
+                    .collect(Collectors.toList());
+            assertEquals(expected, result.stream().map(Neighbor::getOrdinal).collect(Collectors.toList()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void batchSearchKeepsOneTopKPerQuery() {
+        Random random = new Random(10);
+        double[] scores = random.doubles(100_000).toArray();
+        SearchExecutor executor = new SearchExecutor(4, 1000);
+        try {
+            // Query 1 ranks the same scores in reverse
+            List<List<Neighbor>> results = executor.searchBatch(scores.length, new int[]{7, 3}, (from, to, heaps) -> {
+                for (int i = from; i < to; i++) {
+                    heaps[0].offer(i, scores[i]);
+                    heaps[1].offer(i, -scores[i]);
+                }
+            });
+
+            assertEquals(2, results.size());
+            assertEquals(IntStream.range(0, scores.length).boxed()
+                            .sorted(Comparator.comparingDouble((Integer i) -> scores[i]).reversed())
+                            .limit(7).collect(Collectors.toList()),
+                    results.get(0).stream().map(Neighbor::getOrdinal).collect(Collectors.toList()));
+            assertEquals(IntStream.range(0, scores.length).boxed()
+                            .sorted(Comparator.comparingDouble((Integer i) -> scores[i]))
+                            .limit(3).collect(Collectors.toList()),
+                    results.get(1).stream().map(Neighbor::getOrdinal).collect(Collectors.toList()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void smallRangesStayOnCallingThread() {
+        SearchExecutor executor = new SearchExecutor(4, 1000);
+        Thread caller = Thread.currentThread();
+        try {
+            List<Neighbor> result = executor.search(500, 3, (from, to, topK) -> {
+                assertSame(caller, Thread.currentThread(), "Small scans should not be forked");
+                for (int i = from; i < to; i++) {
+                    topK.offer(i, -i);
+                }
+            });
+            assertEquals(List.of(0, 1, 2), result.stream().map(Neighbor::getOrdinal).collect(Collectors.toList()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.similake.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.similake.collections.config.CollectionConfig;
+import org.similake.model.Point;
+import org.similake.search.SearchExecutor;
+import org.similake.wal.SyncPolicy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentVectorStoreServiceTest {
+
+    private static final String COLLECTION = "segmentServiceTest";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentWritersShareTheFsyncOfTheirCommits() throws Exception {
+        SyncPolicy policy = new SyncPolicy("always", 0);
+        SegmentVectorStoreService service = new SegmentVectorStoreService(dir.resolve("collections").toString(),
+                dir.resolve("config").toString(), new SearchExecutor(2, 16), policy, 100_000, 8);
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            service.persistVectorToStorage(COLLECTION, CollectionConfig.fromMap(COLLECTION,
+                    Map.of("size", 4, "distance", "Cosine", "persist", "true")));
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int writer = thread;
+                futures.add(writers.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        service.addPayloadToVectorStore(COLLECTION, new Point(UUID.randomUUID(), writer + ":" + i,
+                                new float[]{writer, i, 1, 0}, null));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertEquals(1600, service.getAllPointsFromVectorStore(COLLECTION).size());
+            // Each commit forces once when writers wait for the fsync under the collection lock
+            long forces = policy.getForceCount();
+            assertTrue(forces > 0 && forces < 1600, "1600 writes took " + forces + " forces");
+        } finally {
+            writers.shutdown();
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.similake.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.similake.creteria.FilterPredicate;
+import org.similake.model.Distance;
+import org.similake.model.Point;
+import org.similake.model.ScoredPoint;
+import org.similake.search.SearchExecutor;
+import org.similake.wal.SyncPolicy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedCollectionTest {
+
+    private static final int DIMENSION = 8;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(5);
+
+    private Point point(UUID id, int version) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = random.nextFloat() * 2 - 1;
+        }
+        return new Point(id, "version " + version, vector, Map.of("version", version));
+    }
+
+    // Flushes and merges run inline, so every write leaves the collection in a settled state
+    private SegmentedCollection open(int memtablePoints, int maxSegments) throws IOException {
+        return SegmentedCollection.open(dir, DIMENSION, memtablePoints, maxSegments, Runnable::run,
+                SyncPolicy.always());
+    }
+
+    private static List<Point> scanAll(SegmentedCollection collection, int pageSize) {
+        List<Point> points = new ArrayList<>();
+        UUID next = null;
+        do {
+            SegmentedCollection.Page page = collection.scan(next, pageSize);
+            points.addAll(page.getPoints());
+            next = page.getNext();
+        } while (next != null);
+        return points;
+    }
+
+    private static void assertMatches(TreeMap<UUID, Point> expected, SegmentedCollection collection) {
+        assertEquals(expected.size(), collection.size());
+        List<Point> scanned = scanAll(collection, 7);
+        assertEquals(new ArrayList<>(expected.keySet()), scanned.stream().map(Point::getId).toList());
+        for (Point point : scanned) {
+            assertEquals(expected.get(point.getId()).getContent(), point.getContent());
+            assertArrayEquals(expected.get(point.getId()).getVector(), point.getVector());
+        }
+
+        float[] query = expected.firstEntry().getValue().getVector();
+        List<Point> exact = expected.values().stream()
+                .sorted(Comparator.comparingDouble(p -> -Distance.Cosine.score(query, p.getVector())))
+                .limit(5).toList();
+        List<ScoredPoint> found = collection.search(query, 5, -1, Distance.Cosine, FilterPredicate.ALWAYS,
+                new SearchExecutor(2, 16));
+        assertEquals(exact.stream().map(Point::getId).toList(), found.stream().map(s -> s.getPoint().getId()).toList());
+        assertEquals(exact.get(0).getContent(), found.get(0).getPoint().getContent());
+    }
+
+    @Test
+    void replacedAndDeletedPointsStayHiddenAcrossFlushesMergesAndReopening() throws IOException {
+        TreeMap<UUID, Point> expected = new TreeMap<>();
+        List<UUID> ids = new ArrayList<>();
+        try (SegmentedCollection collection = open(10, 3)) {
+            for (int i = 0; i < 120; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                Point point = point(id, 0);
+                assertFalse(collection.upsert(point));
+                expected.put(id, point);
+            }
+            for (int i = 0; i < 120; i += 5) {
+                Point point = point(ids.get(i), 1);
+                assertTrue(collection.upsert(point));
+                expected.put(point.getId(), point);
+            }
+            for (int i = 1; i < 120; i += 7) {
+                assertTrue(collection.delete(ids.get(i)));
+                expected.remove(ids.get(i));
+            }
+            assertFalse(collection.delete(ids.get(1)));
+            assertFalse(collection.delete(UUID.randomUUID()));
+            assertFalse(collection.contains(ids.get(1)));
+            assertTrue(collection.contains(ids.get(0)));
+
+            assertTrue(collection.segmentCount() <= 3);
+            assertMatches(expected, collection);
+        }
+        try (SegmentedCollection collection = open(10, 3)) {
+            assertMatches(expected, collection);
+            // A deleted point can be written again
+            Point point = point(ids.get(1), 2);
+            assertFalse(collection.upsert(point));
+            expected.put(point.getId(), point);
+            assertMatches(expected, collection);
+        }
+    }
+
+    @Test
+    void unflushedWritesAreReplayedFromTheLog() throws IOException {
+        TreeMap<UUID, Point> expected = new TreeMap<>();
+        try (SegmentedCollection collection = open(1000, 8)) {
+            for (int i = 0; i < 6; i++) {
+                Point point = point(UUID.randomUUID(), 0);
+                collection.upsert(point);
+                expected.put(point.getId(), point);
+            }
+            UUID deleted = expected.firstKey();
+            assertTrue(collection.delete(deleted));
+            expected.remove(deleted);
+            assertEquals(0, collection.segmentCount());
+        }
+        try (SegmentedCollection collection = open(1000, 8)) {
+            // The replayed writes are flushed on open and their log is dropped
+            assertEquals(1, collection.segmentCount());
+            assertMatches(expected, collection);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().endsWith(".log")).count());
+        }
+    }
+
+    @Test
+    void writesRacingFlushesSurviveReopening() throws Exception {
+        Map<UUID, Point> expected = new ConcurrentHashMap<>();
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            // A write caught by a flush is lost only if no later flush writes it out, so flushes stop while the
+            // writers still run and the round closes the collection with their last writes in the buffer
+            for (int round = 0; round < 5; round++) {
+                // Without forcing the log, writers spend their time between the log append and the buffer update
+                try (SegmentedCollection collection = SegmentedCollection.open(dir, DIMENSION, 100_000, 4, Runnable::run,
+                        new SyncPolicy("os", 0))) {
+                    AtomicInteger written = new AtomicInteger();
+                    Future<?> flusher = writers.submit(() -> {
+                        while (written.get() < 4500) {
+                            collection.flush();
+                        }
+                        return null;
+                    });
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int w = 0; w < 3; w++) {
+                        int seed = round * 3 + w;
+                        futures.add(writers.submit(() -> {
+                            Random values = new Random(seed);
+                            for (int i = 0; i < 2000; i++) {
+                                float[] vector = new float[DIMENSION];
+                                for (int d = 0; d < DIMENSION; d++) {
+                                    vector[d] = values.nextFloat();
+                                }
+                                Point point = new Point(UUID.randomUUID(), "writer " + seed, vector, null);
+                                collection.upsert(point);
+                                expected.put(point.getId(), point);
+                                written.incrementAndGet();
+                            }
+                            return null;
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                    flusher.get();
+                    assertEquals(expected.size(), collection.size());
+                }
+                try (SegmentedCollection collection = open(100_000, 4)) {
+                    assertEquals(expected.size(), collection.size());
+                    for (UUID id : expected.keySet()) {
+                        assertTrue(collection.contains(id), "acknowledged point " + id + " was lost");
+                    }
+                }
+            }
+            try (SegmentedCollection collection = open(100_000, 4)) {
+                assertMatches(new TreeMap<>(expected), collection);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.similake.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.similake.model.Point;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<Point> points(int count, int dimension) {
+        Random random = new Random(3);
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = random.nextFloat() * 2 - 1;
+            }
+            points.add(new Point(UUID.randomUUID(), "content " + i, vector, Map.of("index", i, "brand", i % 2 == 0 ? "Apple" : "Sony")));
+        }
+        return points;
+    }
+
+    @Test
+    void pointsSurviveReopening() throws IOException {
+        List<Point> points = points(300, 12);
+        try (VectorSegment segment = VectorSegment.open(dir.resolve("segment"), 12)) {
+            for (Point point : points.subList(0, 100)) {
+                segment.append(point);
+            }
+            // Vectors mapped before later appends are still read correctly afterwards
+            assertArrayEquals(points.get(99).getVector(), segment.vector(99));
+            for (Point point : points.subList(100, 300)) {
+                segment.append(point);
+            }
+            float[] block = new float[150 * 12];
+            segment.readVectors(90, 150, block);
+            for (int i = 0; i < 150; i++) {
+                assertArrayEquals(points.get(90 + i).getVector(), Arrays.copyOfRange(block, i * 12, (i + 1) * 12));
+            }
+        }
+        try (VectorSegment segment = VectorSegment.open(dir.resolve("segment"), 12)) {
+            assertEquals(300, segment.size());
+            for (int ordinal : new int[]{0, 150, 299}) {
+                Point point = segment.point(ordinal);
+                assertEquals(points.get(ordinal).getId(), point.getId());
+                assertEquals(points.get(ordinal).getContent(), point.getContent());
+                assertArrayEquals(points.get(ordinal).getVector(), point.getVector());
+                assertEquals(ordinal, ((Number) point.getMetadata().get("index")).intValue());
+            }
+        }
+    }
+
+    @Test
+    void interruptedAppendIsDropped() throws IOException {
+        List<Point> points = points(3, 4);
+        try (VectorSegment segment = VectorSegment.open(dir.resolve("segment"), 4)) {
+            for (Point point : points) {
+                segment.append(point);
+            }
+        }
+        // A payload and vector written without their id record, as left by a crash mid-append
+        Files.write(dir.resolve("segment.payloads"), new byte[]{'{', '}'}, StandardOpenOption.APPEND);
+        Files.write(dir.resolve("segment.vectors"), new byte[16], StandardOpenOption.APPEND);
+
+        try (VectorSegment segment = VectorSegment.open(dir.resolve("segment"), 4)) {
+            assertEquals(3, segment.size());
+            Point extra = points(4, 4).get(3);
+            assertEquals(3, segment.append(extra));
+            assertEquals(extra.getId(), segment.point(3).getId());
+            assertArrayEquals(points.get(2).getVector(), segment.vector(2));
+        }
+        assertEquals(4L * 4 * 4, Files.size(dir.resolve("segment.vectors")));
+    }
+
+    @Test
+    void rejectsVectorsOfAnotherDimension() throws IOException {
+        try (VectorSegment segment = VectorSegment.open(dir.resolve("segment"), 4)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> segment.append(new Point(UUID.randomUUID(), "c", new float[3])));
+            assertEquals(0, segment.size());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.similake.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<String> replay(Path path) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (WriteAheadLog ignored = WriteAheadLog.open(path, record -> {
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            records.add(new String(bytes, StandardCharsets.UTF_8));
+        })) {
+            return records;
+        }
+    }
+
+    @Test
+    void tornRecordIsCutOffOnReplay() throws IOException {
+        Path path = dir.resolve("wal.log");
+        try (WriteAheadLog log = WriteAheadLog.open(path, record -> fail("new log has no records"))) {
+            log.append("first".getBytes(StandardCharsets.UTF_8));
+            log.append("second".getBytes(StandardCharsets.UTF_8));
+        }
+        long intact = Files.size(path);
+        // A crash in the middle of an append leaves a header without all of its bytes
+        Files.write(path, new byte[]{42, 0, 0, 0, 1, 2}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("first", "second"), replay(path));
+        assertEquals(intact, Files.size(path));
+
+        try (WriteAheadLog log = WriteAheadLog.open(path, record -> { })) {
+            log.append("third".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(List.of("first", "second", "third"), replay(path));
+    }
+
+    @Test
+    void concurrentWritersAreAllDurableUnderEveryPolicy() throws Exception {
+        for (SyncPolicy policy : List.of(SyncPolicy.always(), new SyncPolicy("interval", 5), new SyncPolicy("os", 0))) {
+            Path path = dir.resolve(policy.getMode() + ".log");
+            ExecutorService writers = Executors.newFixedThreadPool(8);
+            try (WriteAheadLog log = WriteAheadLog.open(path, record -> { }, policy)) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    int writer = thread;
+                    futures.add(writers.submit(() -> {
+                        for (int i = 0; i < 200; i++) {
+                            log.append((writer + ":" + i).getBytes(StandardCharsets.UTF_8));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                writers.shutdown();
+                policy.shutdown();
+            }
+            List<String> records = replay(path);
+            assertEquals(1600, records.size());
+            assertEquals(1600, new HashSet<>(records).size());
+        }
+    }
+
+    @Test
+    void appenderCutsOffBytesAfterTheValidLength() throws IOException {
+        Path path = dir.resolve("lines.jsonl");
+        Files.writeString(path, "{\"a\":1}\n{\"a\":");
+        try (LogAppender appender = LogAppender.open(path, 8, SyncPolicy.always())) {
+            assertEquals(8, appender.size());
+            long end = appender.append(ByteBuffer.wrap("{\"a\":2}\n".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(16, end);
+        }
+        assertEquals("{\"a\":1}\n{\"a\":2}\n", Files.readString(path));
+    }
+}